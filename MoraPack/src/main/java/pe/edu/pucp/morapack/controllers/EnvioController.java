@@ -9,10 +9,10 @@ import pe.edu.pucp.morapack.services.servicesImp.AeropuertoServiceImp;
 import pe.edu.pucp.morapack.services.servicesImp.EnvioServiceImp;
 import pe.edu.pucp.morapack.services.servicesImp.PaisServiceImp;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -20,7 +20,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
 
 @CrossOrigin(origins = "*")
 @RestController
@@ -124,13 +123,13 @@ public class EnvioController {
 
                         // Vuelos de la ruta
                         List<Map<String, Object>> vuelosRuta = new ArrayList<>();
-                        if (parte.getVuelosRuta() != null) {
-                            for (ParteAsignadaPlanDeVuelo vueloEnRuta : parte.getVuelosRuta()) {
-                                PlanDeVuelo vuelo = vueloEnRuta.getPlanDeVuelo();
+                        if (parte.getRuta() != null) {
+                            for (int i = 0; i < parte.getRuta().size(); i++) {
+                                PlanDeVuelo vuelo = parte.getRuta().get(i);
                                 if (vuelo != null) {
                                     Map<String, Object> vueloMap = new HashMap<>();
                                     vueloMap.put("id", vuelo.getId());
-                                    vueloMap.put("orden", vueloEnRuta.getOrden());
+                                    vueloMap.put("orden", i + 1);
                                     vueloMap.put("ciudadOrigen", vuelo.getCiudadOrigen());
                                     vueloMap.put("ciudadDestino", vuelo.getCiudadDestino());
                                     vueloMap.put("horaSalida", vuelo.getHoraOrigen());
@@ -230,7 +229,7 @@ public class EnvioController {
                 List<ParteAsignada> partesConVuelos = new ArrayList<>();
                 for (ParteAsignada parte : envio.getParteAsignadas()) {
                     if (!Boolean.TRUE.equals(parte.getEntregado()) &&
-                            parte.getVuelosRuta() != null && !parte.getVuelosRuta().isEmpty()) {
+                            parte.getRuta() != null && !parte.getRuta().isEmpty()) {
                         partesConVuelos.add(parte);
                     }
                 }
@@ -273,14 +272,14 @@ public class EnvioController {
 
                     // Procesar vuelos de la ruta
                     List<Map<String, Object>> vuelosRutaMap = new ArrayList<>();
-                    for (ParteAsignadaPlanDeVuelo vr : parte.getVuelosRuta()) {
-                        if (vr.getPlanDeVuelo() == null)
+                    for (int i = 0; i < parte.getRuta().size(); i++) {
+                        PlanDeVuelo vuelo = parte.getRuta().get(i);
+                        if (vuelo == null)
                             continue;
 
-                        PlanDeVuelo vuelo = vr.getPlanDeVuelo();
                         Map<String, Object> vueloMap = new HashMap<>();
                         vueloMap.put("id", vuelo.getId());
-                        vueloMap.put("orden", vr.getOrden());
+                        vueloMap.put("orden", i + 1);
 
                         // horaOrigen y horaDestino son los nombres correctos en PlanDeVuelo
                         if (vuelo.getHoraOrigen() != null) {
@@ -466,177 +465,56 @@ public class EnvioController {
 
     @PostMapping("lecturaArchivo")
     public Map<String, Object> cargarEnvios(@RequestParam("arch") MultipartFile arch) throws IOException {
-        long startTime = System.currentTimeMillis();
-        ArrayList<Envio> envios = new ArrayList<>();
-        Map<String, Object> resultado = new java.util.HashMap<>();
-
-        // ⚡ OPTIMIZACIÓN: Cargar todos los aeropuertos UNA SOLA VEZ y crear un mapa
-        System.out.println("📂 Cargando aeropuertos en caché...");
-        ArrayList<Aeropuerto> todosAeropuertos = aeropuertoService.obtenerTodosAeropuertos();
-        java.util.Map<String, Aeropuerto> aeropuertosPorCodigo = new java.util.HashMap<>();
-        for (Aeropuerto a : todosAeropuertos) {
-            aeropuertosPorCodigo.put(a.getCodigo(), a);
-        }
-        System.out.println("✅ " + todosAeropuertos.size() + " aeropuertos en caché");
-
-        // ⚡ OPTIMIZACIÓN: Obtener los hubs UNA SOLA VEZ
-        ArrayList<Aeropuerto> hubs = new ArrayList<>();
-        String[] hubCodes = { "SPIM", "EBCI", "UBBB" };
-        for (String code : hubCodes) {
-            Aeropuerto hub = aeropuertosPorCodigo.get(code);
-            if (hub != null) {
-                hubs.add(hub);
-            }
-        }
-        System.out.println("✅ " + hubs.size() + " hubs configurados");
-
-        String enviosDatos = new String(arch.getBytes());
-        String[] lineas = enviosDatos.split("\n");
-        int i = 0;
-        int errores = 0;
-
-        for (String linea : lineas) {
-            String data[] = linea.split("-");
-            if (data.length > 1) {
-                // ⚡ OPTIMIZACIÓN: Usar el mapa en lugar de consultar la BD
-                Aeropuerto aeropuertoDestino = aeropuertosPorCodigo.get(data[4]);
-                if (aeropuertoDestino != null) {
-                    try {
-                        Long idEnvioPorAeropuerto = Long.valueOf(data[0]);
-                        Integer anho = Integer.parseInt(data[1].substring(0, 4));
-                        Integer mes = Integer.parseInt(data[1].substring(4, 6));
-                        Integer dia = Integer.parseInt(data[1].substring(6, 8));
-                        Integer hora = Integer.parseInt(data[2]);
-                        Integer minutos = Integer.parseInt(data[3]);
-                        Integer numProductos = Integer.parseInt(data[5]);
-                        String cliente = data[6];
-
-                        LocalDateTime fechaIngreso = LocalDateTime.of(LocalDate.of(anho, mes, dia),
-                                LocalTime.of(hora, minutos, 0));
-
-                        String husoCiudadDestino = aeropuertoDestino.getHusoHorario();
-
-                        Envio newEnvio = new Envio(idEnvioPorAeropuerto, fechaIngreso, husoCiudadDestino,
-                                aeropuertoDestino, numProductos, cliente);
-
-                        // ⚡ OPTIMIZACIÓN: Usar los hubs ya cargados
-                        if (!hubs.isEmpty()) {
-                            newEnvio.setAeropuertosOrigen(new ArrayList<>(hubs));
-                        }
-
-                        envios.add(newEnvio);
-                    } catch (Exception e) {
-                        errores++;
-                    }
-                }
-            }
-            i++;
-            // ⚡ OPTIMIZACIÓN: Log cada 5000 envíos
-            if (i % 5000 == 0) {
-                System.out.println("📊 Procesados " + i + " líneas, " + envios.size() + " envíos válidos");
-            }
-        }
-
-        System.out.println("📊 Envíos procesados: " + envios.size() + " (errores: " + errores + ")");
-
-        if (!envios.isEmpty()) {
-            System.out.println("💾 Guardando " + envios.size() + " envíos en BD...");
-            envioService.insertarListaEnvios(envios);
-            System.out.println("✅ Envíos guardados");
-        }
-
-        long endTime = System.currentTimeMillis();
-        long durationInMillis = endTime - startTime;
-        double durationInSeconds = durationInMillis / 1000.0;
-        System.out.println("⏱️ Tiempo de ejecución: " + durationInSeconds + " segundos");
-
-        // ⚡ OPTIMIZACIÓN: Devolver solo un resumen en lugar de todos los envíos
-        resultado.put("estado", "éxito");
-        resultado.put("mensaje", "Envíos cargados correctamente");
-        resultado.put("enviosCargados", envios.size());
-        resultado.put("errores", errores);
-        resultado.put("tiempoEjecucionSegundos", durationInSeconds);
-        return resultado;
+        // ⚡ OPTIMIZACIÓN: Los aeropuertos se cargan UNA SOLA VEZ y el archivo se procesa en tubería
+        CargadorPedidos cargador = new CargadorPedidos(envioService, aeropuertoService.obtenerTodosAeropuertos());
+        return cargador.cargarBytes(arch.getBytes(), 0);
     }
 
     /**
      * Carga envíos desde archivo. Soporta continuar desde donde falló.
      * 
-     * @param skip Número de líneas a saltar (para continuar carga interrumpida).
-     *             Usar el valor de "enviosCargados" del intento anterior.
-     *             Ejemplo: /api/envios/leerArchivoBack?skip=2485000
+     * @param desdeByte Posición del archivo desde la que continuar una carga
+     *                  interrumpida. Usar el valor de "continuarCon" del intento
+     *                  anterior.
+     *                  Ejemplo: /api/envios/leerArchivoBack?desdeByte=104857600
+     * @param skip      Compatibilidad con clientes anteriores: número de líneas a
+     *                  saltar. Se traduce a la posición en bytes de la línea
+     *                  siguiente; se ignora si se indica desdeByte.
+     *                  Ejemplo: /api/envios/leerArchivoBack?skip=2485000
      */
     @PostMapping("leerArchivoBack")
-    public Map<String, Object> leerArchivoBack(@RequestParam(defaultValue = "0") int skip) {
-        long startTime = System.currentTimeMillis();
-        Scanner scanner = null;
-        InputStream inputStream = null;
+    public Map<String, Object> leerArchivoBack(@RequestParam(defaultValue = "0") long desdeByte,
+            @RequestParam(defaultValue = "0") long skip) {
+        // ⚡ NOTA: Ya no verificamos envíos existentes aquí para evitar cargar millones
+        // en memoria
+        // El usuario debe verificar con SELECT COUNT(*) FROM envio en MySQL
         Map<String, Object> resultado = new java.util.HashMap<>();
-
-        // ⚡ OPTIMIZACIÓN: Guardar en lotes para evitar OutOfMemoryError
-        final int BATCH_SIZE = 5000;
-        ArrayList<Envio> batchEnvios = new ArrayList<>(BATCH_SIZE);
-        int totalEnviosGuardados = 0;
-        int lineasSaltadas = 0;
-
         try {
-            // ⚡ NOTA: Ya no verificamos envíos existentes aquí para evitar cargar millones
-            // en memoria
-            // El usuario debe verificar con SELECT COUNT(*) FROM envio en MySQL
-
-            if (skip > 0) {
+            if (desdeByte > 0) {
+                System.out.println("⏭️ Continuando carga desde el byte " + desdeByte + "...");
+            } else if (skip > 0) {
                 System.out.println("⏭️ Continuando carga - saltando primeras " + skip + " líneas...");
             } else {
                 System.out.println("📂 Iniciando carga desde el principio...");
             }
 
-            // ⚡ OPTIMIZACIÓN: Cargar todos los aeropuertos UNA SOLA VEZ y crear un mapa
             System.out.println("📂 Cargando aeropuertos en caché...");
-            ArrayList<Aeropuerto> todosAeropuertos = aeropuertoService.obtenerTodosAeropuertos();
-            java.util.Map<String, Aeropuerto> aeropuertosPorCodigo = new java.util.HashMap<>();
-            for (Aeropuerto a : todosAeropuertos) {
-                aeropuertosPorCodigo.put(a.getCodigo(), a);
-            }
-            System.out.println("✅ " + todosAeropuertos.size() + " aeropuertos en caché");
-
-            // ⚡ OPTIMIZACIÓN: Obtener los hubs UNA SOLA VEZ
-            ArrayList<Aeropuerto> hubs = new ArrayList<>();
-            String[] hubCodes = { "SPIM", "EBCI", "UBBB" };
-            for (String code : hubCodes) {
-                Aeropuerto hub = aeropuertosPorCodigo.get(code);
-                if (hub != null) {
-                    hubs.add(hub);
-                } else {
-                    System.out.println("⚠️ Hub " + code + " no encontrado!");
+            CargadorPedidos cargador = new CargadorPedidos(envioService, aeropuertoService.obtenerTodosAeropuertos());
+
+            Path rutaArchivo = buscarArchivoPedidos();
+            if (rutaArchivo != null) {
+                // ⚡ OPTIMIZACIÓN: Archivo mapeado en memoria
+                System.out.println("📂 Leyendo archivo mapeado en memoria: " + rutaArchivo.toAbsolutePath());
+                if (desdeByte == 0 && skip > 0) {
+                    desdeByte = LectorPedidos.posicionTrasLineas(rutaArchivo, skip);
                 }
+                return cargador.cargarArchivo(rutaArchivo, desdeByte);
             }
-            System.out.println("✅ " + hubs.size() + " hubs configurados");
-
-            // Intentar leer desde el classpath primero (funciona en JAR y en desarrollo)
-            inputStream = getClass().getClassLoader().getResourceAsStream("envios/pedidos-completos.txt");
 
-            if (inputStream != null) {
-                System.out.println("📂 Leyendo archivo desde classpath: envios/pedidos-completos.txt");
-                scanner = new Scanner(inputStream, "UTF-8");
-            } else {
-                // Si no se encuentra en el classpath, intentar como archivo del sistema
-                File enviosFile = new File("src/main/resources/envios/pedidos-completos.txt");
-
-                if (!enviosFile.exists()) {
-                    // También intentar desde la raíz del proyecto
-                    enviosFile = new File("envios/pedidos-completos.txt");
-
-                    if (!enviosFile.exists()) {
-                        // Intentar con ruta absoluta relativa al directorio de trabajo
-                        String workingDir = System.getProperty("user.dir");
-                        enviosFile = new File(workingDir + "/src/main/resources/envios/pedidos-completos.txt");
-                    }
-                }
-
-                if (enviosFile.exists()) {
-                    System.out.println("📂 Leyendo archivo desde sistema de archivos: " + enviosFile.getAbsolutePath());
-                    scanner = new Scanner(enviosFile, "UTF-8");
-                } else {
+            // Dentro del JAR el recurso no es un archivo: se lee completo a memoria
+            try (InputStream inputStream = getClass().getClassLoader()
+                    .getResourceAsStream("envios/pedidos-completos.txt")) {
+                if (inputStream == null) {
                     System.err.println("❌ Archivo no encontrado. Buscado en:");
                     System.err.println("  - classpath:envios/pedidos-completos.txt");
                     System.err.println("  - src/main/resources/envios/pedidos-completos.txt");
@@ -648,137 +526,42 @@ public class EnvioController {
                     resultado.put("enviosCargados", 0);
                     return resultado;
                 }
-            }
-
-            // ⏭️ Saltar líneas si es continuación
-            while (lineasSaltadas < skip && scanner.hasNextLine()) {
-                scanner.nextLine();
-                lineasSaltadas++;
-                if (lineasSaltadas % 100000 == 0) {
-                    System.out.println("⏭️ Saltadas " + lineasSaltadas + "/" + skip + " líneas...");
-                }
-            }
-            if (skip > 0) {
-                System.out.println("⏭️ Saltadas " + lineasSaltadas + " líneas. Comenzando carga...");
-            }
-
-            // Procesar el archivo
-            int lineasProcesadas = 0;
-            int errores = 0;
-            System.out.println("📂 Procesando envíos del archivo (guardando en lotes de " + BATCH_SIZE + ")...");
-
-            while (scanner.hasNextLine()) {
-                String linea = scanner.nextLine().trim();
-                if (linea.isEmpty()) {
-                    continue;
-                }
-
-                String data[] = linea.split("-");
-                if (data.length > 1) {
-                    // ⚡ OPTIMIZACIÓN: Usar el mapa en lugar de consultar la BD
-                    Aeropuerto aeropuertoDestino = aeropuertosPorCodigo.get(data[4]);
-                    if (aeropuertoDestino != null) {
-                        try {
-                            Long idEnvioPorAeropuerto = Long.valueOf(data[0]);
-                            Integer anho = Integer.parseInt(data[1].substring(0, 4));
-                            Integer mes = Integer.parseInt(data[1].substring(4, 6));
-                            Integer dia = Integer.parseInt(data[1].substring(6, 8));
-                            Integer hora = Integer.parseInt(data[2]);
-                            Integer minutos = Integer.parseInt(data[3]);
-                            Integer numProductos = Integer.parseInt(data[5]);
-                            String cliente = data[6];
-
-                            LocalDateTime fechaIngreso = LocalDateTime.of(LocalDate.of(anho, mes, dia),
-                                    LocalTime.of(hora, minutos, 0));
-
-                            String husoCiudadDestino = aeropuertoDestino.getHusoHorario();
-
-                            Envio newEnvio = new Envio(idEnvioPorAeropuerto, fechaIngreso, husoCiudadDestino,
-                                    aeropuertoDestino, numProductos, cliente);
-
-                            // ⚡ OPTIMIZACIÓN: Usar los hubs ya cargados
-                            if (!hubs.isEmpty()) {
-                                newEnvio.setAeropuertosOrigen(new ArrayList<>(hubs));
-                            }
-
-                            batchEnvios.add(newEnvio);
-
-                            // ⚡ GUARDAR EN LOTES para evitar OutOfMemoryError
-                            if (batchEnvios.size() >= BATCH_SIZE) {
-                                envioService.insertarListaEnvios(batchEnvios);
-                                totalEnviosGuardados += batchEnvios.size();
-                                batchEnvios.clear(); // Liberar memoria
-                                System.out.println("💾 Guardados " + totalEnviosGuardados + " envíos (total con skip: "
-                                        + (skip + totalEnviosGuardados) + ")...");
-                            }
-                        } catch (Exception e) {
-                            errores++;
-                        }
-                    }
-                }
-                lineasProcesadas++;
-                // Log cada 50000 líneas
-                if (lineasProcesadas % 50000 == 0) {
-                    System.out.println("📊 Procesadas " + lineasProcesadas + " líneas...");
+                System.out.println("📂 Leyendo archivo desde classpath: envios/pedidos-completos.txt");
+                byte[] contenido = inputStream.readAllBytes();
+                if (desdeByte == 0 && skip > 0) {
+                    desdeByte = LectorPedidos.posicionTrasLineas(java.nio.ByteBuffer.wrap(contenido), skip);
                 }
+                return cargador.cargarBytes(contenido, desdeByte);
             }
-
-            // Guardar el último lote (lo que quedó)
-            if (!batchEnvios.isEmpty()) {
-                envioService.insertarListaEnvios(batchEnvios);
-                totalEnviosGuardados += batchEnvios.size();
-                batchEnvios.clear();
-                System.out.println("💾 Guardado último lote. Total: " + totalEnviosGuardados + " envíos");
-            }
-
-            System.out.println(
-                    "✅ Carga completada: " + totalEnviosGuardados + " envíos nuevos (errores: " + errores + ")");
-            System.out.println("✅ Total en BD: " + (skip + totalEnviosGuardados) + " envíos");
-
-        } catch (FileNotFoundException e) {
-            System.err.println("❌ Archivo de pedidos no encontrado: " + e.getMessage());
-            e.printStackTrace();
-            resultado.put("estado", "error");
-            resultado.put("mensaje", "Archivo no encontrado: " + e.getMessage());
-            resultado.put("enviosCargados", totalEnviosGuardados);
-            resultado.put("totalConSkip", skip + totalEnviosGuardados);
-            return resultado;
         } catch (Exception e) {
             System.err.println("❌ Error al cargar envíos desde archivo: " + e.getMessage());
             e.printStackTrace();
             resultado.put("estado", "error");
             resultado.put("mensaje", "Error: " + e.getMessage());
-            resultado.put("enviosCargados", totalEnviosGuardados);
-            resultado.put("totalConSkip", skip + totalEnviosGuardados);
-            resultado.put("continuarCon", "skip=" + (skip + totalEnviosGuardados));
+            resultado.put("enviosCargados", 0);
+            resultado.put("continuarCon", "desdeByte=" + desdeByte);
             return resultado;
-        } finally {
-            // Cerrar recursos
-            if (scanner != null) {
-                scanner.close();
+        }
+    }
+
+    // Archivo de pedidos en el sistema de archivos (classpath en desarrollo o rutas conocidas)
+    private Path buscarArchivoPedidos() {
+        try {
+            java.net.URL recurso = getClass().getClassLoader().getResource("envios/pedidos-completos.txt");
+            if (recurso != null && "file".equals(recurso.getProtocol())) {
+                return Path.of(recurso.toURI());
             }
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    System.err.println("Error al cerrar inputStream: " + e.getMessage());
-                }
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo resolver el recurso como archivo: " + e.getMessage());
+        }
+        String[] rutas = { "src/main/resources/envios/pedidos-completos.txt", "envios/pedidos-completos.txt",
+                System.getProperty("user.dir") + "/src/main/resources/envios/pedidos-completos.txt" };
+        for (String ruta : rutas) {
+            if (Files.isRegularFile(Path.of(ruta))) {
+                return Path.of(ruta);
             }
         }
-
-        long endTime = System.currentTimeMillis();
-        long durationInMillis = endTime - startTime;
-        double durationInSeconds = durationInMillis / 1000.0;
-        System.out.println("⏱️ Tiempo de ejecución: " + durationInSeconds + " segundos");
-
-        // ⚡ OPTIMIZACIÓN: Devolver solo un resumen en lugar de todos los envíos
-        resultado.put("estado", "éxito");
-        resultado.put("mensaje", "Envíos cargados correctamente");
-        resultado.put("enviosCargadosNuevos", totalEnviosGuardados);
-        resultado.put("lineasSaltadas", skip);
-        resultado.put("totalEnvios", skip + totalEnviosGuardados);
-        resultado.put("tiempoEjecucionSegundos", durationInSeconds);
-        return resultado;
+        return null;
     }
 
 }
@@ -45,13 +45,14 @@ public class GraspController {
         ArrayList<Continente> continentes = continenteService.obtenerTodosContinentes();
         ArrayList<Pais> paises = paisService.obtenerTodosPaises();
         ArrayList<Envio> envios = envioService.obtenerEnvios();
-        ArrayList<PlanDeVuelo> planes = planDeVueloService.obtenerListaPlanesDeVuelo();
+        // Los vuelos con fecha se instancian por ventana; aquí solo interesan las rutas
+        List<RutaVuelo> rutas = planDeVueloService.obtenerRutasVuelo();
         System.out.println("DEBUG iniciarGrasp: aeropuertos=" + aeropuertos.size() +
-                " planes=" + planes.size() + " envios=" + envios.size());
+                " rutas=" + rutas.size() + " envios=" + envios.size());
 
-        System.out.println("DEBUG muestra planes: primero=" +
-                (planes.isEmpty() ? "none" : planes.get(0).getId()) +
-                " último=" + (planes.isEmpty() ? "none" : planes.get(planes.size() - 1).getId()));
+        System.out.println("DEBUG muestra rutas: primera=" +
+                (rutas.isEmpty() ? "none" : rutas.get(0).getId()) +
+                " última=" + (rutas.isEmpty() ? "none" : rutas.get(rutas.size() - 1).getId()));
 
         System.out.println("DEBUG muestra envío: primero=" +
                 (envios.isEmpty() ? "none" : envios.get(0).getId()) +
@@ -7,6 +7,7 @@ import org.springframework.web.multipart.MultipartFile;
 import pe.edu.pucp.morapack.dtos.PlanDeVueloResponse;
 import pe.edu.pucp.morapack.models.Aeropuerto;
 import pe.edu.pucp.morapack.models.PlanDeVuelo;
+import pe.edu.pucp.morapack.models.RutaVuelo;
 import pe.edu.pucp.morapack.services.AeropuertoService;
 import pe.edu.pucp.morapack.services.PlanDeVueloService;
 import pe.edu.pucp.morapack.services.servicesImp.AeropuertoServiceImp;
@@ -20,6 +21,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
@@ -42,9 +44,23 @@ public class PlanDeVueloController {
         return planDeVueloService.insertarListaPlanesDeVuelo(planes);
     }
 
+    /**
+     * Vuelos con despegue (UTC, formato yyyy-MM-ddTHH:mm:ss) dentro de la
+     * ventana: los guardados en plan_de_vuelo y los instanciados desde las rutas.
+     */
     @GetMapping("obtenerTodos")
-    ArrayList<PlanDeVueloResponse> obtenerTodosPlanesVuelos() {
-        return planDeVueloService.obtenerPlanesDeVuelo();
+    ArrayList<PlanDeVueloResponse> obtenerTodosPlanesVuelos(@RequestParam("fechaInicio") String fechaInicio,
+            @RequestParam("fechaFin") String fechaFin) {
+        return planDeVueloService.obtenerPlanesDeVuelo(LocalDateTime.parse(fechaInicio),
+                LocalDateTime.parse(fechaFin));
+    }
+
+    /**
+     * Plantillas de vuelos diarios registradas (una por línea de vuelos.txt).
+     */
+    @GetMapping("obtenerRutas")
+    List<RutaVuelo> obtenerRutasVuelo() {
+        return planDeVueloService.obtenerRutasVuelo();
     }
 
     @GetMapping("obtenerPorId")
@@ -126,19 +142,18 @@ public class PlanDeVueloController {
         return planes;
     }
 
-    // ⚠️ SIN @Transactional para que cada lote haga commit inmediato y no se pierda
-    // si falla después
+    /**
+     * Registra las rutas de vuelos.txt como plantillas vigentes durante 730 días
+     * desde la fecha indicada. Los vuelos con fecha se instancian al consultar
+     * una ventana (obtenerVuelosEnRango) y solo se guardan en plan_de_vuelo los
+     * que llevan carga o se cancelan.
+     */
     @PostMapping("cargarMasivoArchivoPlanes/{fecha}")
     public Map<String, Object> cargarPlanesMasivoVuelo(@RequestParam("arch") MultipartFile arch,
             @PathVariable String fecha) throws IOException {
         long startTime = System.currentTimeMillis();
         Map<String, Object> resultado = new HashMap<>();
 
-        // ⚡ OPTIMIZACIÓN: Guardar en lotes para evitar OutOfMemoryError
-        final int BATCH_SIZE = 5000;
-        ArrayList<PlanDeVuelo> batchPlanes = new ArrayList<>(BATCH_SIZE);
-        int totalPlanesGuardados = 0;
-
         // Parsear la fecha base
         String anio = fecha.substring(0, 4);
         String mes = fecha.substring(4, 6);
@@ -148,6 +163,7 @@ public class PlanDeVueloController {
         int dd = Integer.parseInt(dia);
 
         LocalDate fechaBase = LocalDate.of(aa, mm, dd);
+        LocalDate fechaFin = fechaBase.plusDays(729);
 
         // ⚡ OPTIMIZACIÓN: Cargar aeropuertos en caché UNA SOLA VEZ
         System.out.println("📂 Cargando aeropuertos en caché...");
@@ -160,13 +176,9 @@ public class PlanDeVueloController {
 
         String planesDatos = new String(arch.getBytes());
         String[] lineas = planesDatos.split("\n");
-        int totalLineas = lineas.length;
-        System.out.println(
-                "📂 Procesando " + totalLineas + " rutas x 730 días (guardando en lotes de " + BATCH_SIZE + ")...");
+        ArrayList<RutaVuelo> rutas = new ArrayList<>(lineas.length);
 
-        int lineaActual = 0;
         for (String linea : lineas) {
-            lineaActual++;
             String data[] = linea.trim().split("-");
 
             if (data.length > 1) {
@@ -175,77 +187,33 @@ public class PlanDeVueloController {
                 Aeropuerto aeropuertoDest = aeropuertosPorCodigo.get(data[1]);
 
                 if (aeropuertoOrigen != null && aeropuertoDest != null) {
-                    Integer ciudadOrigen = aeropuertoOrigen.getId();
-                    Integer ciudadDestino = aeropuertoDest.getId();
-                    String husoOrigen = aeropuertoOrigen.getHusoHorario();
-                    String husoDestino = aeropuertoDest.getHusoHorario();
-                    LocalTime hI = LocalTime.parse(data[2]);
-                    LocalTime hF = LocalTime.parse(data[3]);
-                    Integer capacidad = Integer.parseInt(data[4]);
-
-                    // ✅ GENERAR PARA 730 DÍAS (2 años aprox.)
-                    for (int diaOffset = 0; diaOffset < 730; diaOffset++) {
-                        LocalDate fechaVuelo = fechaBase.plusDays(diaOffset);
-
-                        LocalDateTime fechaInicio = LocalDateTime.of(fechaVuelo, hI);
-                        LocalDateTime fechaFin;
-
-                        // Calcular si el vuelo acaba en el mismo o diferente día
-                        Integer cantDias = planDeVueloService.planAcabaAlSiguienteDia(
-                                data[2], data[3], husoOrigen, husoDestino,
-                                fechaVuelo.getYear(), fechaVuelo.getMonthValue(), fechaVuelo.getDayOfMonth());
-
-                        fechaFin = LocalDateTime.of(fechaVuelo, hF).plusDays(cantDias);
-
-                        PlanDeVuelo plan = PlanDeVuelo.builder()
-                                .ciudadOrigen(ciudadOrigen)
-                                .ciudadDestino(ciudadDestino)
-                                .horaOrigen(fechaInicio)
-                                .horaDestino(fechaFin)
-                                .husoHorarioOrigen(husoOrigen)
-                                .husoHorarioDestino(husoDestino)
-                                .capacidadMaxima(capacidad)
-                                .capacidadOcupada(0)
-                                .estado(1)
-                                .build();
-
-                        batchPlanes.add(plan);
-
-                        // ⚡ GUARDAR EN LOTES para evitar OutOfMemoryError
-                        if (batchPlanes.size() >= BATCH_SIZE) {
-                            planDeVueloService.insertarListaPlanesDeVuelo(batchPlanes);
-                            totalPlanesGuardados += batchPlanes.size();
-                            batchPlanes.clear(); // Liberar memoria
-                            System.out.println("💾 Guardados " + totalPlanesGuardados + " planes... (línea "
-                                    + lineaActual + "/" + totalLineas + ")");
-                        }
-                    }
+                    RutaVuelo ruta = RutaVuelo.crear(aeropuertoOrigen, aeropuertoDest, LocalTime.parse(data[2]),
+                            LocalTime.parse(data[3]), Integer.parseInt(data[4]));
+                    ruta.setVigenteDesde(fechaBase);
+                    ruta.setVigenteHasta(fechaFin);
+                    rutas.add(ruta);
                 }
             }
         }
 
-        // Guardar el último lote (lo que quedó)
-        if (!batchPlanes.isEmpty()) {
-            planDeVueloService.insertarListaPlanesDeVuelo(batchPlanes);
-            totalPlanesGuardados += batchPlanes.size();
-            batchPlanes.clear();
-            System.out.println("💾 Guardado último lote. Total: " + totalPlanesGuardados + " planes");
-        }
+        int rutasRegistradas = planDeVueloService.registrarRutasVuelo(rutas);
 
         long endTime = System.currentTimeMillis();
         long durationInMillis = endTime - startTime;
         double durationInSeconds = durationInMillis / 1000.0;
 
-        System.out.println("✅ Vuelos generados: " + totalPlanesGuardados);
-        System.out.println("📅 Rango: " + fechaBase + " hasta " + fechaBase.plusDays(729));
+        System.out.println("✅ Rutas registradas: " + rutasRegistradas + " (equivalen a "
+                + rutasRegistradas * 730L + " vuelos)");
+        System.out.println("📅 Rango: " + fechaBase + " hasta " + fechaFin);
         System.out.println("⏱️ Tiempo de ejecución: " + durationInSeconds + " segundos");
 
         // 🔹 Devolver solo un resumen
         resultado.put("estado", "éxito");
-        resultado.put("mensaje", "Vuelos cargados correctamente desde archivo");
-        resultado.put("planesGenerados", totalPlanesGuardados);
+        resultado.put("mensaje", "Rutas de vuelo cargadas correctamente desde archivo");
+        resultado.put("rutasRegistradas", rutasRegistradas);
+        resultado.put("vuelosDisponibles", rutasRegistradas * 730L);
         resultado.put("fechaInicio", fechaBase.toString());
-        resultado.put("fechaFin", fechaBase.plusDays(729).toString());
+        resultado.put("fechaFin", fechaFin.toString());
         resultado.put("tiempoEjecucionSegundos", durationInSeconds);
 
         return resultado;
@@ -2,6 +2,8 @@ package pe.edu.pucp.morapack.controllers;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.bind.annotation.*;
 import pe.edu.pucp.morapack.models.*;
 import pe.edu.pucp.morapack.services.servicesImp.*;
@@ -38,6 +40,10 @@ public class PlanificadorController {
     private LocalDateTime fechaInicioSimulacion;
     private LocalDateTime fechaFinSimulacion;
 
+    // 🧪 Sesiones de simulación aisladas (varias en paralelo, cada una con su estado)
+    private static final int MAX_SESIONES_CONCURRENTES = 4;
+    private final Map<String, Planificador> sesiones = new java.util.concurrent.ConcurrentHashMap<>();
+
     // Endpoint para iniciar el planificador programado (modo normal)
     @PostMapping("/iniciar")
     public Map<String, Object> iniciarPlanificadorProgramado() {
@@ -206,7 +212,8 @@ public class PlanificadorController {
             System.out.println("⚙️ Creando planificador...");
             planificador = new Planificador(grasp, webSocketService, envioService, planDeVueloService,
                     aeropuertoService);
-            planificador.iniciarPlanificacionProgramada(Planificador.ModoSimulacion.SEMANAL, fechaInicio, fechaFin);
+            planificador.iniciarPlanificacionProgramada(Planificador.ModoSimulacion.SEMANAL, fechaInicio, fechaFin,
+                    crearReloj(request));
 
             planificadorIniciado = true;
 
@@ -327,7 +334,8 @@ public class PlanificadorController {
             // Crear e iniciar el planificador en modo SEMANAL
             planificador = new Planificador(grasp, webSocketService, envioService, planDeVueloService,
                     aeropuertoService);
-            planificador.iniciarPlanificacionProgramada(Planificador.ModoSimulacion.SEMANAL, fechaInicio, fechaFin);
+            planificador.iniciarPlanificacionProgramada(Planificador.ModoSimulacion.SEMANAL, fechaInicio, fechaFin,
+                    crearReloj(request));
 
             planificadorIniciado = true;
 
@@ -390,9 +398,11 @@ public class PlanificadorController {
             ArrayList<Pais> paises = paisService.obtenerTodosPaises();
 
             // ⚡ OPTIMIZACIÓN: Cargar solo vuelos y envíos desde la fecha de inicio
-            // (simulación colapso sin límite)
+            // (simulación colapso sin límite). Los vuelos se instancian desde las rutas
+            // para la misma ventana de 6 días que luego desliza recargarDatosBase
             LocalDateTime fechaInicioVuelos = fechaInicio.minusDays(1);
-            ArrayList<PlanDeVuelo> planes = planDeVueloService.obtenerVuelosDesdeFecha(fechaInicioVuelos, "0");
+            ArrayList<PlanDeVuelo> planes = planDeVueloService.obtenerVuelosEnRango(fechaInicioVuelos, "0",
+                    fechaInicio.plusDays(6), "0");
             ArrayList<Envio> envios = envioService.obtenerEnviosDesdeFechaConPartes(fechaInicioVuelos, "0");
 
             System.out.println("🚀 INICIANDO SIMULACIÓN DE COLAPSO");
@@ -421,7 +431,8 @@ public class PlanificadorController {
             // Crear e iniciar el planificador en modo COLAPSO
             planificador = new Planificador(grasp, webSocketService, envioService, planDeVueloService,
                     aeropuertoService);
-            planificador.iniciarPlanificacionProgramada(Planificador.ModoSimulacion.COLAPSO, fechaInicio, null);
+            planificador.iniciarPlanificacionProgramada(Planificador.ModoSimulacion.COLAPSO, fechaInicio, null,
+                    crearReloj(request));
 
             planificadorIniciado = true;
 
@@ -445,6 +456,550 @@ public class PlanificadorController {
         return response;
     }
 
+    /**
+     * ⚡ SIMULACIÓN ACELERADA (headless): ejecuta una simulación SEMANAL o COLAPSO
+     * completa conducida por un reloj virtual, sin esperar el tiempo real entre
+     * ciclos ni entre eventos. Responde al terminar con el intervalo simulado y el
+     * tiempo real empleado. Pensado para estudios de capacidad.
+     *
+     * Body: { "modo": "SEMANAL" | "COLAPSO", "fechaInicio": "...", "fechaFin": "..." }
+     * (fechaFin es opcional en COLAPSO y actúa como límite). "descomposicion"
+     * (NINGUNA | FRANJAS | CONTINENTE) elige cómo se paraleliza el GRASP de cada ciclo.
+     * Con "aislada" (por defecto true) corre en una sesión propia que se quita del
+     * registro al terminar; sus partes se eliminan de BD salvo "limpiar": "false".
+     */
+    @PostMapping("/simular-acelerado")
+    public Map<String, Object> simularAcelerado(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            // No competir con una simulación en tiempo real (comparten la BD)
+            if (planificador != null && planificador.estaEnEjecucion()) {
+                response.put("estado", "error");
+                response.put("mensaje", "El planificador ya está en ejecución");
+                return response;
+            }
+
+            String modoStr = request.getOrDefault("modo", "SEMANAL");
+            String fechaInicioStr = request.get("fechaInicio");
+            String fechaFinStr = request.get("fechaFin");
+
+            if (fechaInicioStr == null) {
+                response.put("estado", "error");
+                response.put("mensaje", "Se requiere el parámetro 'fechaInicio' en formato 'yyyy-MM-ddTHH:mm:ss'");
+                return response;
+            }
+
+            Planificador.ModoSimulacion modo = Planificador.ModoSimulacion.valueOf(modoStr.toUpperCase());
+            LocalDateTime fechaInicio = LocalDateTime.parse(fechaInicioStr);
+            LocalDateTime fechaFin = fechaFinStr != null ? LocalDateTime.parse(fechaFinStr) : null;
+
+            if (fechaFin != null && fechaInicio.isAfter(fechaFin)) {
+                response.put("estado", "error");
+                response.put("mensaje", "La fecha de inicio debe ser anterior a la fecha de fin");
+                return response;
+            }
+
+            // ⚡ Solo datos básicos: envíos y vuelos se cargan por ciclo desde BD
+            Grasp grasp = new Grasp();
+            grasp.setAeropuertos(aeropuertoService.obtenerTodosAeropuertos());
+            grasp.setContinentes(continenteService.obtenerTodosContinentes());
+            grasp.setPaises(paisService.obtenerTodosPaises());
+            grasp.setEnvios(new ArrayList<>());
+            grasp.setPlanesDeVuelo(new ArrayList<>());
+            grasp.setHubsPropio();
+
+            Planificador planificadorAcelerado = new Planificador(grasp, webSocketService, envioService,
+                    planDeVueloService, aeropuertoService);
+            if (request.get("descomposicion") != null) {
+                planificadorAcelerado.setDescomposicionGrasp(
+                        Grasp.Descomposicion.valueOf(request.get("descomposicion").toUpperCase()));
+            }
+
+            // 🧪 Por defecto corre en una sesión aislada para no tocar el estado compartido
+            boolean aislada = Boolean.parseBoolean(request.getOrDefault("aislada", "true"));
+            String idSesion = null;
+            if (aislada) {
+                if (sesionesActivas() >= MAX_SESIONES_CONCURRENTES) {
+                    response.put("estado", "error");
+                    response.put("mensaje", "Se alcanzó el máximo de sesiones concurrentes (" +
+                            MAX_SESIONES_CONCURRENTES + ")");
+                    return response;
+                }
+                idSesion = generarIdSesion();
+                planificadorAcelerado.configurarSesion(idSesion);
+                sesiones.put(idSesion, planificadorAcelerado);
+            }
+
+            try {
+                response.putAll(planificadorAcelerado.ejecutarSimulacionAcelerada(modo, fechaInicio, fechaFin));
+            } finally {
+                // La ejecución es síncrona y su resultado va en la respuesta: la sesión no
+                // queda registrada y, salvo limpiar=false, sus partes se eliminan de BD
+                if (idSesion != null) {
+                    sesiones.remove(idSesion);
+                    if (Boolean.parseBoolean(request.getOrDefault("limpiar", "true"))) {
+                        try {
+                            response.putAll(envioService.eliminarDatosDeSesion(idSesion));
+                        } catch (Exception e) {
+                            System.err.printf("❌ Error al limpiar la sesión %s: %s%n", idSesion, e.getMessage());
+                        }
+                    }
+                }
+            }
+            response.put("timestamp", LocalDateTime.now().toString());
+
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error en simulación acelerada: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return response;
+    }
+
+    // ==================== SESIONES DE SIMULACIÓN ====================
+
+    /**
+     * 🧪 Inicia una simulación programada (SEMANAL o COLAPSO) en una sesión aislada.
+     * Cada sesión tiene su id, su propio estado de capacidad, sus schedulers y sus
+     * partes asignadas etiquetadas en BD, de modo que varios analistas pueden
+     * simular a la vez sin pisarse.
+     *
+     * Body: { "modo", "fechaInicio", "fechaFin" (opcional en COLAPSO),
+     * "factorAceleracion" (opcional) }
+     */
+    @PostMapping("/sesiones")
+    public Map<String, Object> crearSesion(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            if (sesionesActivas() >= MAX_SESIONES_CONCURRENTES) {
+                response.put("estado", "error");
+                response.put("mensaje", "Se alcanzó el máximo de sesiones concurrentes (" +
+                        MAX_SESIONES_CONCURRENTES + ")");
+                return response;
+            }
+
+            String fechaInicioStr = request.get("fechaInicio");
+            if (fechaInicioStr == null) {
+                response.put("estado", "error");
+                response.put("mensaje", "Se requiere el parámetro 'fechaInicio' en formato 'yyyy-MM-ddTHH:mm:ss'");
+                return response;
+            }
+
+            Planificador.ModoSimulacion modo = Planificador.ModoSimulacion
+                    .valueOf(request.getOrDefault("modo", "SEMANAL").toUpperCase());
+            LocalDateTime fechaInicio = LocalDateTime.parse(fechaInicioStr);
+            LocalDateTime fechaFin = request.get("fechaFin") != null ? LocalDateTime.parse(request.get("fechaFin"))
+                    : null;
+
+            if (modo == Planificador.ModoSimulacion.NORMAL
+                    || (modo == Planificador.ModoSimulacion.SEMANAL && fechaFin == null)) {
+                response.put("estado", "error");
+                response.put("mensaje", "Las sesiones requieren modo SEMANAL (con fecha fin) o COLAPSO");
+                return response;
+            }
+
+            Grasp grasp = new Grasp();
+            grasp.setAeropuertos(aeropuertoService.obtenerTodosAeropuertos());
+            grasp.setContinentes(continenteService.obtenerTodosContinentes());
+            grasp.setPaises(paisService.obtenerTodosPaises());
+            grasp.setEnvios(new ArrayList<>());
+            grasp.setPlanesDeVuelo(new ArrayList<>());
+            grasp.setHubsPropio();
+
+            String idSesion = generarIdSesion();
+            Planificador planificadorSesion = new Planificador(grasp, webSocketService, envioService,
+                    planDeVueloService, aeropuertoService);
+            planificadorSesion.configurarSesion(idSesion);
+            sesiones.put(idSesion, planificadorSesion);
+
+            planificadorSesion.iniciarPlanificacionProgramada(modo, fechaInicio,
+                    modo == Planificador.ModoSimulacion.SEMANAL ? fechaFin : null, crearReloj(request));
+
+            response.put("estado", "éxito");
+            response.put("mensaje", "Sesión de simulación iniciada correctamente");
+            response.put("idSesion", idSesion);
+            response.put("modo", modo.name());
+            response.put("timestamp", LocalDateTime.now().toString());
+
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error al crear sesión: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return response;
+    }
+
+    @GetMapping("/sesiones")
+    public Map<String, Object> listarSesiones() {
+        Map<String, Object> response = new HashMap<>();
+        List<Map<String, Object>> lista = new ArrayList<>();
+
+        for (Map.Entry<String, Planificador> entry : sesiones.entrySet()) {
+            Planificador p = entry.getValue();
+            Map<String, Object> info = new HashMap<>();
+            info.put("idSesion", entry.getKey());
+            info.put("modo", p.getModoSimulacion() != null ? p.getModoSimulacion().name() : "N/A");
+            info.put("enEjecucion", p.estaEnEjecucion());
+            info.put("cicloActual", p.getCicloActual().get());
+            info.put("ultimoHorizontePlanificado",
+                    p.getUltimoHorizontePlanificado() != null ? p.getUltimoHorizontePlanificado().toString() : "N/A");
+            lista.add(info);
+        }
+
+        response.put("sesiones", lista);
+        response.put("sesionesActivas", sesionesActivas());
+        response.put("maxSesiones", MAX_SESIONES_CONCURRENTES);
+        return response;
+    }
+
+    @GetMapping("/sesiones/{idSesion}")
+    public Map<String, Object> obtenerSesion(@PathVariable String idSesion) {
+        Map<String, Object> response = new HashMap<>();
+        Planificador p = sesiones.get(idSesion);
+
+        if (p == null) {
+            response.put("estado", "error");
+            response.put("mensaje", "Sesión no encontrada: " + idSesion);
+            return response;
+        }
+
+        response.put("idSesion", idSesion);
+        response.put("enEjecucion", p.estaEnEjecucion());
+        response.put("cicloActual", p.getCicloActual().get());
+        response.put("estadisticas", p.getEstadisticasActuales());
+        if (p.getUltimoHorizontePlanificado() != null) {
+            response.put("horizonte", p.getEstadoHorizonte());
+        }
+        if (p.getEstadoSesion() != null) {
+            response.put("estadoSesion", p.getEstadoSesion().resumen());
+        }
+        return response;
+    }
+
+    /**
+     * 💾 Guarda ahora un checkpoint del planificador principal (o de la sesión
+     * indicada). Además se guarda uno automáticamente cada pocos ciclos.
+     */
+    @PostMapping("/checkpoint")
+    public Map<String, Object> guardarCheckpoint(@RequestParam(required = false) String idSesion) {
+        Map<String, Object> response = new HashMap<>();
+        Planificador p = idSesion == null || Planificador.SESION_PRINCIPAL.equals(idSesion) ? planificador
+                : sesiones.get(idSesion);
+
+        if (p == null || !p.estaEnEjecucion()) {
+            response.put("estado", "error");
+            response.put("mensaje", "No hay planificador en ejecución para la sesión indicada");
+            return response;
+        }
+
+        Map<String, Object> resumen = p.guardarCheckpoint();
+        if (resumen == null) {
+            response.put("estado", "error");
+            response.put("mensaje", "No se pudo guardar el checkpoint");
+            return response;
+        }
+        response.put("estado", "éxito");
+        response.put("mensaje", "Checkpoint guardado");
+        response.put("checkpoint", resumen);
+        return response;
+    }
+
+    /**
+     * 💾 Reanuda una simulación desde su último checkpoint en disco (tras un
+     * reinicio de la JVM). Body: idSesion (por defecto "principal") y
+     * factorAceleracion opcional.
+     */
+    @PostMapping("/reanudar")
+    public Map<String, Object> reanudarDesdeCheckpoint(@RequestBody(required = false) Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        Map<String, String> parametros = request != null ? request : new HashMap<>();
+        String idSesion = parametros.getOrDefault("idSesion", Planificador.SESION_PRINCIPAL);
+        boolean esPrincipal = Planificador.SESION_PRINCIPAL.equals(idSesion);
+
+        try {
+            if (esPrincipal ? planificador != null && planificador.estaEnEjecucion()
+                    : sesiones.containsKey(idSesion) && sesiones.get(idSesion).estaEnEjecucion()) {
+                response.put("estado", "error");
+                response.put("mensaje", "La sesión " + idSesion + " ya está en ejecución");
+                return response;
+            }
+            if (!esPrincipal && sesionesActivas() >= MAX_SESIONES_CONCURRENTES) {
+                response.put("estado", "error");
+                response.put("mensaje", "Se alcanzó el máximo de sesiones concurrentes (" +
+                        MAX_SESIONES_CONCURRENTES + ")");
+                return response;
+            }
+
+            Optional<CheckpointPlanificador> checkpointOpt = CheckpointPlanificador.cargar(idSesion);
+            if (checkpointOpt.isEmpty()) {
+                response.put("estado", "error");
+                response.put("mensaje", "No existe checkpoint para la sesión " + idSesion);
+                return response;
+            }
+            CheckpointPlanificador checkpoint = checkpointOpt.get();
+
+            // El factor del checkpoint se respeta salvo que se indique otro
+            if (!parametros.containsKey("factorAceleracion") && checkpoint.getFactorAceleracion() > 0) {
+                parametros = new HashMap<>(parametros);
+                parametros.put("factorAceleracion", String.valueOf(checkpoint.getFactorAceleracion()));
+            }
+
+            Grasp grasp = new Grasp();
+            grasp.setAeropuertos(aeropuertoService.obtenerTodosAeropuertos());
+            grasp.setContinentes(continenteService.obtenerTodosContinentes());
+            grasp.setPaises(paisService.obtenerTodosPaises());
+            grasp.setEnvios(new ArrayList<>());
+            grasp.setPlanesDeVuelo(new ArrayList<>());
+            grasp.setHubsPropio();
+
+            Planificador p = new Planificador(grasp, webSocketService, envioService, planDeVueloService,
+                    aeropuertoService);
+            if (!p.reanudarDesdeCheckpoint(checkpoint, crearReloj(parametros))) {
+                response.put("estado", "error");
+                response.put("mensaje", "No se pudo reanudar desde el checkpoint");
+                return response;
+            }
+
+            if (esPrincipal) {
+                planificador = p;
+                planificadorIniciado = true;
+                fechaInicioSimulacion = checkpoint.getFechaInicioSimulacion();
+                fechaFinSimulacion = checkpoint.getFechaFinSimulacion();
+            } else {
+                sesiones.put(idSesion, p);
+            }
+
+            response.put("estado", "éxito");
+            response.put("mensaje", "Simulación reanudada desde checkpoint");
+            response.put("checkpoint", checkpoint.resumen());
+            response.put("timestamp", LocalDateTime.now().toString());
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error al reanudar: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return response;
+    }
+
+    /**
+     * 🧪 Ejecuta escenarios "qué pasaría si" en paralelo sobre una copia del
+     * estado de la sesión, sin afectar la simulación en curso. Body:
+     * idSesion (opcional), fechaInicio (por defecto el horizonte actual),
+     * horizontes, modo y la lista de escenarios.
+     */
+    @PostMapping("/escenarios")
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> ejecutarEscenarios(@RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            String idSesion = (String) request.getOrDefault("idSesion", Planificador.SESION_PRINCIPAL);
+            Planificador p = Planificador.SESION_PRINCIPAL.equals(idSesion) ? planificador : sesiones.get(idSesion);
+
+            LocalDateTime inicio;
+            if (request.get("fechaInicio") != null) {
+                inicio = LocalDateTime.parse((String) request.get("fechaInicio"));
+            } else if (p != null && p.getUltimoHorizontePlanificado() != null) {
+                inicio = p.getUltimoHorizontePlanificado();
+            } else {
+                response.put("estado", "error");
+                response.put("mensaje", "Debe indicar fechaInicio si la sesión no está en ejecución");
+                return response;
+            }
+
+            Planificador.ModoSimulacion modo = request.get("modo") != null
+                    ? Planificador.ModoSimulacion.valueOf(((String) request.get("modo")).toUpperCase())
+                    : p != null ? p.getModoSimulacion() : Planificador.ModoSimulacion.SEMANAL;
+            int horizontes = request.get("horizontes") instanceof Number n ? n.intValue() : 1;
+
+            List<SimuladorEscenarios.Escenario> escenarios = new ArrayList<>();
+            if (request.get("escenarios") instanceof List<?> lista) {
+                for (Object datos : lista) {
+                    escenarios.add(SimuladorEscenarios.Escenario.desdeMapa((Map<String, Object>) datos));
+                }
+            }
+
+            SimuladorEscenarios simulador = new SimuladorEscenarios(aeropuertoService, planDeVueloService,
+                    envioService, continenteService, paisService);
+            simulador.prepararBase(inicio, Planificador.minutosHorizonte(modo), horizontes,
+                    p != null ? p.getEstadoSesion() : null);
+            response.putAll(simulador.ejecutar(escenarios));
+            response.putIfAbsent("mensaje", "Escenarios ejecutados");
+            response.put("idSesion", idSesion);
+            response.put("modo", modo.name());
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error al ejecutar escenarios: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return response;
+    }
+
+    /**
+     * 🧪 Busca el multiplicador de demanda con el que la red colapsa, con
+     * simulaciones COLAPSO aceleradas en paralelo (una sesión aislada por
+     * multiplicador). Body: fechaInicio, fechaFin (opcional),
+     * multiplicadores [1, 2, 4, 8] y tolerancia (0.05).
+     */
+    @PostMapping("/buscar-colapso")
+    public Map<String, Object> buscarColapso(@RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            if (request.get("fechaInicio") == null) {
+                response.put("estado", "error");
+                response.put("mensaje", "Debe indicar fechaInicio");
+                return response;
+            }
+            LocalDateTime inicio = LocalDateTime.parse((String) request.get("fechaInicio"));
+            LocalDateTime fin = request.get("fechaFin") != null
+                    ? LocalDateTime.parse((String) request.get("fechaFin"))
+                    : null;
+
+            List<Double> multiplicadores = new ArrayList<>();
+            if (request.get("multiplicadores") instanceof List<?> lista) {
+                for (Object m : lista) {
+                    multiplicadores.add(((Number) m).doubleValue());
+                }
+            }
+            double tolerancia = request.get("tolerancia") instanceof Number n ? n.doubleValue()
+                    : BuscadorColapso.TOLERANCIA_POR_DEFECTO;
+
+            BuscadorColapso buscador = new BuscadorColapso(aeropuertoService, continenteService, paisService,
+                    envioService, planDeVueloService, webSocketService);
+            response.putAll(buscador.buscar(inicio, fin, multiplicadores, tolerancia));
+            response.putIfAbsent("mensaje", "Búsqueda de colapso finalizada");
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error al buscar el punto de colapso: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return response;
+    }
+
+    /**
+     * 🔧 Aplica una disrupción a la simulación en curso y repara el plan al
+     * instante, re-enrutando solo las partes afectadas. Body: idSesion
+     * (opcional), vuelosCancelados [ids] y capacidadAeropuertos {codigo: factor}
+     * (0.8 = -20% de capacidad máxima).
+     */
+    @PostMapping("/disrupcion")
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> aplicarDisrupcion(@RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            String idSesion = (String) request.getOrDefault("idSesion", Planificador.SESION_PRINCIPAL);
+            Planificador p = Planificador.SESION_PRINCIPAL.equals(idSesion) ? planificador : sesiones.get(idSesion);
+            if (p == null || !p.estaEnEjecucion()) {
+                response.put("estado", "error");
+                response.put("mensaje", "No hay planificador en ejecución para la sesión indicada");
+                return response;
+            }
+
+            Set<Integer> vuelosCancelados = new HashSet<>();
+            if (request.get("vuelosCancelados") instanceof List<?> ids) {
+                for (Object id : ids) {
+                    vuelosCancelados.add(((Number) id).intValue());
+                }
+            }
+
+            Map<Integer, Integer> capacidadAeropuertos = new HashMap<>();
+            if (request.get("capacidadAeropuertos") instanceof Map<?, ?> factores) {
+                for (Map.Entry<String, Object> entrada : ((Map<String, Object>) factores).entrySet()) {
+                    Optional<Aeropuerto> aeropuerto = aeropuertoService.obtenerAeropuertoPorCodigo(entrada.getKey());
+                    if (aeropuerto.isEmpty()) {
+                        response.put("estado", "error");
+                        response.put("mensaje", "Aeropuerto no encontrado: " + entrada.getKey());
+                        return response;
+                    }
+                    double factor = ((Number) entrada.getValue()).doubleValue();
+                    capacidadAeropuertos.put(aeropuerto.get().getId(),
+                            (int) Math.floor(aeropuerto.get().getCapacidadMaxima() * factor));
+                }
+            }
+
+            if (vuelosCancelados.isEmpty() && capacidadAeropuertos.isEmpty()) {
+                response.put("estado", "error");
+                response.put("mensaje", "Debe indicar vuelosCancelados o capacidadAeropuertos");
+                return response;
+            }
+
+            response.putAll(p.repararDisrupcion(vuelosCancelados, capacidadAeropuertos));
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error al reparar la disrupción: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return response;
+    }
+
+    /**
+     * Detiene la sesión y la quita del registro. Con limpiar=true también elimina
+     * de BD las partes asignadas etiquetadas con esta sesión.
+     */
+    @PostMapping("/sesiones/{idSesion}/detener")
+    public Map<String, Object> detenerSesion(@PathVariable String idSesion,
+            @RequestParam(defaultValue = "false") boolean limpiar) {
+        Map<String, Object> response = new HashMap<>();
+        Planificador p = sesiones.remove(idSesion);
+
+        if (p == null) {
+            response.put("estado", "error");
+            response.put("mensaje", "Sesión no encontrada: " + idSesion);
+            return response;
+        }
+
+        try {
+            if (p.estaEnEjecucion()) {
+                p.detenerPlanificacion();
+            }
+
+            if (limpiar) {
+                response.putAll(envioService.eliminarDatosDeSesion(idSesion));
+            }
+
+            response.put("estado", "éxito");
+            response.put("mensaje", "Sesión " + idSesion + " detenida");
+        } catch (Exception e) {
+            response.put("estado", "error");
+            response.put("mensaje", "Error al detener sesión: " + e.getMessage());
+        }
+
+        return response;
+    }
+
+    private long sesionesActivas() {
+        return sesiones.values().stream().filter(Planificador::estaEnEjecucion).count();
+    }
+
+    private String generarIdSesion() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * ⏱️ Crea el reloj de la simulación a partir del parámetro opcional
+     * 'factorAceleracion' (minutos simulados por minuto real). 1 = tiempo real;
+     * sin parámetro se usa la velocidad histórica (x120: un ciclo cada 2 min reales
+     * en modo semanal y cada 4 min en colapso, liberación cada 90 s).
+     */
+    private RelojSimulacion crearReloj(Map<String, String> request) {
+        String factorStr = request.get("factorAceleracion");
+        if (factorStr == null || factorStr.isBlank()) {
+            return new RelojEscalado(RelojEscalado.FACTOR_POR_DEFECTO);
+        }
+        double factor = Double.parseDouble(factorStr);
+        return factor == 1.0 ? new RelojTiempoReal() : new RelojEscalado(factor);
+    }
+
     // Endpoint para detener el planificador
     @PostMapping("/detener")
     public Map<String, Object> detenerPlanificador() {
@@ -513,6 +1068,17 @@ public class PlanificadorController {
             System.out.println("🧹 [LIMPIAR] Reseteando capacidades de aeropuertos...");
             Query queryAeropuertos = entityManager.createNativeQuery("UPDATE aeropuerto SET capacidad_ocupada = 0");
             aeropuertosActualizados = queryAeropuertos.executeUpdate();
+            // La caché se descarta tras el commit: antes, otra consulta podría recargar los valores viejos
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        aeropuertoService.invalidarCache();
+                    }
+                });
+            } else {
+                aeropuertoService.invalidarCache();
+            }
             System.out.println("✅ Aeropuertos actualizados: " + aeropuertosActualizados);
 
             // 3. Resetear capacidades de planes de vuelo con SQL nativo
@@ -523,19 +1089,26 @@ public class PlanificadorController {
 
             // 4. Eliminar relaciones ParteAsignadaPlanDeVuelo (tabla intermedia)
             System.out.println("🧹 [LIMPIAR] Eliminando relaciones vuelo-parte...");
-            Query queryRelaciones = entityManager.createNativeQuery("DELETE FROM parte_asignada_plan_de_vuelo");
+            // 🧪 Solo las partes de la sesión principal (las sesiones aisladas se limpian
+            // con /sesiones/{id}/detener?limpiar=true)
+            Query queryRelaciones = entityManager.createNativeQuery(
+                    "DELETE pv FROM parte_asignada_plan_de_vuelo pv " +
+                            "JOIN parte_asignada pa ON pa.id = pv.id_parte_asignada WHERE pa.id_sesion IS NULL");
             relacionesVuelosEliminadas = queryRelaciones.executeUpdate();
             System.out.println("✅ Relaciones eliminadas: " + relacionesVuelosEliminadas);
 
             // 5. Eliminar todas las partes asignadas
             System.out.println("🧹 [LIMPIAR] Eliminando partes asignadas...");
-            Query queryPartes = entityManager.createNativeQuery("DELETE FROM parte_asignada");
+            Query queryPartes = entityManager.createNativeQuery("DELETE FROM parte_asignada WHERE id_sesion IS NULL");
             partesEliminadas = queryPartes.executeUpdate();
             System.out.println("✅ Partes eliminadas: " + partesEliminadas);
 
             // Hacer flush para asegurar que los cambios se apliquen
             entityManager.flush();
 
+            // 6. Los contadores por estado de la sesión principal ya no son válidos
+            envioService.eliminarConteosEstado(Planificador.SESION_PRINCIPAL);
+
             long elapsed = System.currentTimeMillis() - startTime;
             System.out.println("🧹 [LIMPIAR] ✅ Limpieza completada en " + elapsed + "ms");
 
@@ -718,6 +1291,25 @@ public class PlanificadorController {
         return solucionFrontend;
     }
 
+    /**
+     * ⏱️ Métricas de programación adaptativa: duración por fase, sobrecargas,
+     * horizontes fusionados/reducidos y retraso respecto al tiempo simulado.
+     */
+    @GetMapping("/metricas-ciclos")
+    public Map<String, Object> obtenerMetricasCiclos() {
+        Map<String, Object> response = new HashMap<>();
+
+        if (planificador != null) {
+            response.put("planificadorActivo", planificadorIniciado && planificador.isEnEjecucion());
+            response.putAll(planificador.getMetricasCiclos().resumen());
+        } else {
+            response.put("planificadorActivo", false);
+            response.put("mensaje", "Planificador no activo");
+        }
+
+        return response;
+    }
+
     @GetMapping("/estado-horizonte")
     public Map<String, Object> obtenerEstadoHorizonte() {
         Map<String, Object> response = new HashMap<>();
@@ -735,8 +1327,8 @@ public class PlanificadorController {
 
     /**
      * ⚡ OPTIMIZADO: Endpoint para obtener resumen de simulación.
-     * Usa consultas COUNT directas a BD (rápido, no carga todos los envíos).
-     * Filtra solo los envíos del rango de fechas de la simulación actual.
+     * Lee los contadores por estado que mantiene el planificador (O(1)); solo si
+     * aún no existen hace el COUNT agrupado en BD sobre el rango de la simulación.
      */
     @GetMapping("/resumen-planificacion")
     @Transactional(readOnly = true)
@@ -744,10 +1336,14 @@ public class PlanificadorController {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            // ⚡ Obtener conteos directamente de BD con consulta COUNT (muy rápido)
-            // Filtra por las fechas de la simulación actual
-            Map<String, Long> conteosPorEstado = obtenerConteosPorEstadoDB(
-                    fechaInicioSimulacion, fechaFinSimulacion);
+            // 🔢 Contadores mantenidos por el planificador (sin COUNT sobre envio)
+            Map<String, Long> conteosPorEstado = envioService.obtenerConteosEstado(Planificador.SESION_PRINCIPAL);
+            String fuenteConteos = "contadores";
+            if (conteosPorEstado == null) {
+                // Filtra por las fechas de la simulación actual
+                conteosPorEstado = obtenerConteosPorEstadoDB(fechaInicioSimulacion, fechaFinSimulacion);
+                fuenteConteos = "bd";
+            }
 
             long totalEnvios = conteosPorEstado.values().stream().mapToLong(Long::longValue).sum();
             long enviosPlanificados = conteosPorEstado.getOrDefault("PLANIFICADO", 0L);
@@ -783,6 +1379,7 @@ public class PlanificadorController {
             infoGeneral.put("cicloActual", planificador != null ? planificador.getCicloActual() : 0);
             infoGeneral.put("enEjecucion", planificadorIniciado);
             infoGeneral.put("totalEnviosBD", totalEnvios);
+            infoGeneral.put("fuenteConteos", fuenteConteos);
             infoGeneral.put("fechaInicio", fechaInicioSimulacion != null ? fechaInicioSimulacion.toString() : null);
             infoGeneral.put("fechaFin", fechaFinSimulacion != null ? fechaFinSimulacion.toString() : null);
 
@@ -1119,10 +1716,11 @@ public class PlanificadorController {
     }
 
     /**
-     * Carga vuelos desde el archivo vuelos.txt para los 7 días de la semana
+     * Registra las rutas del archivo vuelos.txt y devuelve sus vuelos para los 7
+     * días de la semana
      *
      * @param fechaBase Fecha base (primer día de la semana)
-     * @return Lista de planes de vuelo generados para 7 días
+     * @return Lista de planes de vuelo (instanciados) para 7 días
      */
     private ArrayList<PlanDeVuelo> cargarVuelosParaSemanaDesdeArchivo(LocalDate fechaBase) {
         ArrayList<PlanDeVuelo> planes = new ArrayList<>();
@@ -1165,16 +1763,17 @@ public class PlanificadorController {
                 }
             }
 
-            // Procesar el archivo
-            planes = procesarArchivoVuelos(scanner, fechaBase);
+            // Procesar el archivo: solo se guardan las rutas, los vuelos se instancian al consultar
+            ArrayList<RutaVuelo> rutas = procesarArchivoVuelos(scanner);
 
-            System.out.println("📊 Vuelos procesados del archivo: " + planes.size());
+            System.out.println("📊 Rutas procesadas del archivo: " + rutas.size());
 
-            // Guardar todos los vuelos en la base de datos
-            if (!planes.isEmpty()) {
-                planDeVueloService.insertarListaPlanesDeVuelo(planes);
-                System.out.println("✅ Se generaron " + planes.size() + " vuelos para 7 días (desde " + fechaBase
-                        + " hasta " + fechaBase.plusDays(6) + ")");
+            if (!rutas.isEmpty()) {
+                planDeVueloService.registrarRutasVuelo(rutas);
+                planes = planDeVueloService.obtenerVuelosEnRango(fechaBase.atStartOfDay(), "0",
+                        fechaBase.plusDays(7).atStartOfDay(), "0");
+                System.out.println("✅ " + rutas.size() + " rutas registradas: " + planes.size()
+                        + " vuelos para 7 días (desde " + fechaBase + " hasta " + fechaBase.plusDays(6) + ")");
             } else {
                 System.err.println(
                         "⚠️  El archivo se leyó pero no se generaron vuelos. Verifique el formato del archivo.");
@@ -1204,14 +1803,13 @@ public class PlanificadorController {
     }
 
     /**
-     * Procesa el archivo de vuelos y genera planes de vuelo para 7 días
+     * Procesa el archivo de vuelos y genera una plantilla por cada vuelo diario
      *
-     * @param scanner   Scanner del archivo
-     * @param fechaBase Fecha base (primer día de la semana)
-     * @return Lista de planes de vuelo generados
+     * @param scanner Scanner del archivo
+     * @return Lista de rutas de vuelo (sin persistir)
      */
-    private ArrayList<PlanDeVuelo> procesarArchivoVuelos(Scanner scanner, LocalDate fechaBase) {
-        ArrayList<PlanDeVuelo> planes = new ArrayList<>();
+    private ArrayList<RutaVuelo> procesarArchivoVuelos(Scanner scanner) {
+        ArrayList<RutaVuelo> rutas = new ArrayList<>();
 
         while (scanner.hasNextLine()) {
             String row = scanner.nextLine().trim();
@@ -1228,62 +1826,12 @@ public class PlanificadorController {
                 Optional<Aeropuerto> aeropuertoOptionalDest = aeropuertoService.obtenerAeropuertoPorCodigo(data[1]);
 
                 if (aeropuertoOptionalOrig.isPresent() && aeropuertoOptionalDest.isPresent()) {
-                    Aeropuerto aeropuertoOrigen = aeropuertoOptionalOrig.get();
-                    Aeropuerto aeropuertoDest = aeropuertoOptionalDest.get();
-
-                    Integer ciudadOrigen = aeropuertoOrigen.getId();
-                    Integer ciudadDestino = aeropuertoDest.getId();
-                    String husoOrigen = aeropuertoOrigen.getHusoHorario();
-                    String husoDestino = aeropuertoDest.getHusoHorario();
-
-                    LocalTime hI = LocalTime.parse(data[2]);
-                    LocalTime hF = LocalTime.parse(data[3]);
-                    Integer capacidad = Integer.parseInt(data[4]);
-
-                    // Generar vuelos para los 7 días de la semana
-                    for (int diaOffset = 0; diaOffset < 7; diaOffset++) {
-                        LocalDate fechaVuelo = fechaBase.plusDays(diaOffset);
-
-                        LocalDateTime fechaInicio = LocalDateTime.of(fechaVuelo, hI);
-                        LocalDateTime fechaFin;
-
-                        // Calcular si el vuelo acaba en el mismo o diferente día
-                        Integer cantDias = planDeVueloService.planAcabaAlSiguienteDia(
-                                data[2], data[3], husoOrigen, husoDestino,
-                                fechaVuelo.getYear(), fechaVuelo.getMonthValue(), fechaVuelo.getDayOfMonth());
-
-                        fechaFin = LocalDateTime.of(fechaVuelo, hF).plusDays(cantDias);
-
-                        // Verificar si mismo continente
-                        Integer contOrig = aeropuertoOrigen.getPais() != null
-                                ? aeropuertoOrigen.getPais().getIdContinente()
-                                : null;
-                        Integer contDest = aeropuertoDest.getPais() != null
-                                ? aeropuertoDest.getPais().getIdContinente()
-                                : null;
-                        Boolean mismoContinente = (contOrig != null && contDest != null)
-                                ? contOrig.equals(contDest)
-                                : null;
-
-                        PlanDeVuelo plan = PlanDeVuelo.builder()
-                                .ciudadOrigen(ciudadOrigen)
-                                .ciudadDestino(ciudadDestino)
-                                .horaOrigen(fechaInicio)
-                                .horaDestino(fechaFin)
-                                .husoHorarioOrigen(husoOrigen)
-                                .husoHorarioDestino(husoDestino)
-                                .capacidadMaxima(capacidad)
-                                .mismoContinente(mismoContinente)
-                                .capacidadOcupada(0)
-                                .estado(1)
-                                .build();
-
-                        planes.add(plan);
-                    }
+                    rutas.add(RutaVuelo.crear(aeropuertoOptionalOrig.get(), aeropuertoOptionalDest.get(),
+                            LocalTime.parse(data[2]), LocalTime.parse(data[3]), Integer.parseInt(data[4])));
                 }
             }
         }
 
-        return planes;
+        return rutas;
     }
 }
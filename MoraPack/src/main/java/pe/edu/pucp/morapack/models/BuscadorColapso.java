@@ -0,0 +1,286 @@
+package pe.edu.pucp.morapack.models;
+
+import pe.edu.pucp.morapack.services.servicesImp.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Busca el punto de colapso de la red: el menor multiplicador de demanda con
+ * el que algún pedido se queda sin ruta.
+ *
+ * Cada evaluación es una simulación acelerada en modo COLAPSO (reloj virtual)
+ * en su propia sesión aislada, así que varias corren en paralelo sin tocar la
+ * simulación principal. Primero se evalúa una rejilla de multiplicadores y
+ * luego el intervalo [seguro, colapso] se estrecha evaluando varios puntos
+ * interiores por ronda hasta la tolerancia pedida.
+ *
+ * Una evaluación solo cuenta como segura si la simulación llegó a su fecha
+ * límite sin colapsar. Las que terminan por timeout o error (las de demanda
+ * alta son las que más tardan) no son concluyentes: no acotan el intervalo y
+ * el resultado lo indica, porque el umbral real podría estar por debajo.
+ */
+public class BuscadorColapso {
+    public static final double[] MULTIPLICADORES_POR_DEFECTO = { 1.0, 2.0, 4.0, 8.0 };
+    public static final double TOLERANCIA_POR_DEFECTO = 0.05;
+    public static final int MAX_RONDAS = 4;
+    public static final int MAX_MULTIPLICADORES = 8;
+    private static final int TOP_CUELLOS_DE_BOTELLA = 5;
+    private static final int TIMEOUT_MINUTOS = 30;
+
+    // Cada evaluación crea su propio Planificador: el pool acota cuántas corren a la vez
+    private static final int THREADS_COLAPSO = Math.max(1,
+            Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService POOL_COLAPSO = Executors.newFixedThreadPool(THREADS_COLAPSO,
+            new ThreadFactory() {
+                private final AtomicInteger contador = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread hilo = new Thread(r, "colapso-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }
+            });
+
+    private final AeropuertoServiceImp aeropuertoService;
+    private final ContinenteServiceImp continenteService;
+    private final PaisServiceImp paisService;
+    private final EnvioServiceImp envioService;
+    private final PlanDeVueloServiceImp planDeVueloService;
+    private final PlanificacionWebSocketServiceImp webSocketService;
+
+    private final String idBusqueda = Long.toString(System.currentTimeMillis(), 36);
+    // Resultado de cada multiplicador ya evaluado (ordenado por multiplicador)
+    private final Map<Double, Map<String, Object>> evaluaciones = new ConcurrentSkipListMap<>();
+
+    public BuscadorColapso(AeropuertoServiceImp aeropuertoService, ContinenteServiceImp continenteService,
+            PaisServiceImp paisService, EnvioServiceImp envioService, PlanDeVueloServiceImp planDeVueloService,
+            PlanificacionWebSocketServiceImp webSocketService) {
+        this.aeropuertoService = aeropuertoService;
+        this.continenteService = continenteService;
+        this.paisService = paisService;
+        this.envioService = envioService;
+        this.planDeVueloService = planDeVueloService;
+        this.webSocketService = webSocketService;
+    }
+
+    /**
+     * Ejecuta la búsqueda completa.
+     *
+     * @param fechaFin        límite de la simulación (null = límite de seguridad del modo COLAPSO)
+     * @param multiplicadores rejilla inicial (null = {1, 2, 4, 8})
+     * @param tolerancia      ancho relativo del intervalo final (hi - lo) / hi
+     */
+    public Map<String, Object> buscar(LocalDateTime fechaInicio, LocalDateTime fechaFin, List<Double> multiplicadores,
+            double tolerancia) {
+        long inicioReal = System.currentTimeMillis();
+        List<Double> rejilla = new ArrayList<>();
+        if (multiplicadores == null || multiplicadores.isEmpty()) {
+            for (double m : MULTIPLICADORES_POR_DEFECTO) {
+                rejilla.add(m);
+            }
+        } else {
+            multiplicadores.stream().filter(m -> m != null && m > 0).distinct().sorted()
+                    .limit(MAX_MULTIPLICADORES).forEach(rejilla::add);
+        }
+
+        System.out.printf("🧪 [Colapso %s] Evaluando multiplicadores %s desde %s%n", idBusqueda, rejilla, fechaInicio);
+        evaluar(rejilla, fechaInicio, fechaFin);
+
+        Double hi = null;
+        for (Map.Entry<Double, Map<String, Object>> entrada : evaluaciones.entrySet()) {
+            if (colapso(entrada.getValue())) {
+                hi = entrada.getKey();
+                break;
+            }
+        }
+
+        Map<String, Object> resultado = new HashMap<>();
+        if (hi == null) {
+            double seguro = mayorSeguroBajo(Double.MAX_VALUE);
+            List<Double> noConcluyentes = noConcluyentesEntre(seguro, Double.MAX_VALUE);
+            resultado.put("estado", "éxito");
+            resultado.put("colapsoEncontrado", false);
+            resultado.put("concluyente", noConcluyentes.isEmpty());
+            resultado.put("noConcluyentes", noConcluyentes);
+            resultado.put("mensaje", noConcluyentes.isEmpty()
+                    ? "Ningún multiplicador evaluado provocó el colapso"
+                    : "Ningún multiplicador evaluado provocó el colapso, pero " + noConcluyentes
+                            + " no terminaron (timeout o error): el colapso podría estar en ellos");
+            resultado.put("factorSeguro", seguro);
+            resultado.put("evaluaciones", new ArrayList<>(evaluaciones.values()));
+            resultado.put("tiempoTotalMs", System.currentTimeMillis() - inicioReal);
+            return resultado;
+        }
+
+        double lo = mayorSeguroBajo(hi);
+        int rondas = 0;
+        // Cada ronda divide (lo, hi) en THREADS + 1 tramos y evalúa los puntos interiores en paralelo
+        while ((hi - lo) / hi > tolerancia && rondas < MAX_RONDAS) {
+            List<Double> puntos = new ArrayList<>();
+            double paso = (hi - lo) / (THREADS_COLAPSO + 1);
+            for (int i = 1; i <= THREADS_COLAPSO; i++) {
+                puntos.add(redondear(lo + paso * i));
+            }
+            puntos.removeIf(evaluaciones::containsKey);
+            if (puntos.isEmpty()) {
+                break;
+            }
+            evaluar(puntos, fechaInicio, fechaFin);
+            rondas++;
+            for (double p : puntos) {
+                if (colapso(evaluaciones.get(p)) && p < hi) {
+                    hi = p;
+                }
+            }
+            lo = mayorSeguroBajo(hi);
+            System.out.printf("🔧 [Colapso %s] Ronda %d: intervalo [%.3f, %.3f]%n", idBusqueda, rondas, lo, hi);
+        }
+
+        Map<String, Object> evaluacionColapso = evaluaciones.get(hi);
+        List<Double> noConcluyentes = noConcluyentesEntre(lo, hi);
+        resultado.put("estado", "éxito");
+        resultado.put("colapsoEncontrado", true);
+        resultado.put("concluyente", noConcluyentes.isEmpty());
+        resultado.put("noConcluyentes", noConcluyentes);
+        if (!noConcluyentes.isEmpty()) {
+            resultado.put("mensaje", "Los multiplicadores " + noConcluyentes + " no terminaron (timeout o error): "
+                    + "el umbral de colapso podría ser menor que x" + hi);
+        }
+        resultado.put("factorColapso", hi);
+        resultado.put("factorSeguro", lo);
+        resultado.put("rondasRefinamiento", rondas);
+        resultado.put("fechaColapso", evaluacionColapso.get("finSimulado"));
+        resultado.put("horizonteColapso", evaluacionColapso.get("ultimoHorizontePlanificado"));
+        resultado.put("cuellosDeBotella", evaluacionColapso.get("cuellosDeBotella"));
+        resultado.put("evaluaciones", new ArrayList<>(evaluaciones.values()));
+        resultado.put("tiempoTotalMs", System.currentTimeMillis() - inicioReal);
+
+        System.out.printf("✅ [Colapso %s] Colapso con x%.3f (seguro x%.3f) en %s, %d ms%n", idBusqueda, hi, lo,
+                evaluacionColapso.get("finSimulado"), System.currentTimeMillis() - inicioReal);
+        return resultado;
+    }
+
+    private void evaluar(List<Double> factores, LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        List<Callable<Map<String, Object>>> tareas = new ArrayList<>();
+        for (double factor : factores) {
+            tareas.add(() -> evaluarFactor(factor, fechaInicio, fechaFin));
+        }
+        try {
+            List<Future<Map<String, Object>>> futuros = POOL_COLAPSO.invokeAll(tareas, TIMEOUT_MINUTOS,
+                    TimeUnit.MINUTES);
+            for (int i = 0; i < futuros.size(); i++) {
+                Map<String, Object> evaluacion;
+                try {
+                    evaluacion = futuros.get(i).get();
+                } catch (CancellationException | ExecutionException e) {
+                    evaluacion = new HashMap<>();
+                    evaluacion.put("multiplicador", factores.get(i));
+                    evaluacion.put("estado", "error");
+                    evaluacion.put("mensaje", e instanceof CancellationException ? "Tiempo agotado"
+                            : String.valueOf(e.getCause()));
+                }
+                evaluacion.put("resultado", clasificar(evaluacion));
+                evaluaciones.put(factores.get(i), evaluacion);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Búsqueda de colapso interrumpida", e);
+        }
+    }
+
+    /**
+     * Simulación acelerada en modo COLAPSO con la demanda multiplicada. Las partes
+     * que persiste la sesión se borran al terminar.
+     */
+    private Map<String, Object> evaluarFactor(double factor, LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        String idSesion = String.format(Locale.ROOT, "colapso-%s-%.3f", idBusqueda, factor);
+        try {
+            Grasp grasp = new Grasp();
+            grasp.setAeropuertos(aeropuertoService.obtenerTodosAeropuertos());
+            grasp.setContinentes(continenteService.obtenerTodosContinentes());
+            grasp.setPaises(paisService.obtenerTodosPaises());
+            grasp.setEnvios(new ArrayList<>());
+            grasp.setPlanesDeVuelo(new ArrayList<>());
+            grasp.setHubsPropio();
+
+            Planificador planificador = new Planificador(grasp, webSocketService, envioService, planDeVueloService,
+                    aeropuertoService);
+            planificador.configurarSesion(idSesion);
+            planificador.setFactorDemanda(factor);
+
+            Map<String, Object> resultado = planificador.ejecutarSimulacionAcelerada(
+                    Planificador.ModoSimulacion.COLAPSO, fechaInicio, fechaFin);
+            Map<String, Object> evaluacion = new HashMap<>();
+            evaluacion.put("multiplicador", factor);
+            evaluacion.put("estado", resultado.get("estado"));
+            evaluacion.put("colapso", resultado.get("colapso"));
+            evaluacion.put("motivoFin", resultado.get("motivoFin"));
+            evaluacion.put("finSimulado", resultado.get("finSimulado"));
+            evaluacion.put("ultimoHorizontePlanificado", resultado.get("ultimoHorizontePlanificado"));
+            evaluacion.put("ciclosEjecutados", resultado.get("ciclosEjecutados"));
+            evaluacion.put("tiempoRealMs", resultado.get("tiempoRealMs"));
+            if (Boolean.TRUE.equals(resultado.get("colapso"))) {
+                evaluacion.put("cuellosDeBotella", planificador.diagnosticarCuellosDeBotella(TOP_CUELLOS_DE_BOTELLA));
+            }
+            System.out.printf("🧪 [Colapso %s] x%.3f → %s (%s)%n", idBusqueda, factor, resultado.get("motivoFin"),
+                    resultado.get("finSimulado"));
+            return evaluacion;
+        } finally {
+            try {
+                envioService.eliminarDatosDeSesion(idSesion);
+            } catch (Exception e) {
+                System.err.printf("❌ Error al limpiar la sesión %s: %s%n", idSesion, e.getMessage());
+            }
+        }
+    }
+
+    private boolean colapso(Map<String, Object> evaluacion) {
+        return evaluacion != null && "colapso".equals(evaluacion.get("resultado"));
+    }
+
+    /**
+     * "colapso" si algún pedido quedó sin ruta, "seguro" si la simulación llegó a
+     * su límite sin colapsar y "no_concluyente" en otro caso (timeout, error o
+     * GRASP sin solución: no se sabe si la demanda cabía).
+     */
+    private static String clasificar(Map<String, Object> evaluacion) {
+        if (Boolean.TRUE.equals(evaluacion.get("colapso"))) {
+            return "colapso";
+        }
+        if ("éxito".equals(evaluacion.get("estado")) && "fecha_fin_alcanzada".equals(evaluacion.get("motivoFin"))) {
+            return "seguro";
+        }
+        return "no_concluyente";
+    }
+
+    // Mayor multiplicador evaluado como seguro por debajo de hi (0 si no hay ninguno)
+    private double mayorSeguroBajo(double hi) {
+        double lo = 0;
+        for (Map.Entry<Double, Map<String, Object>> entrada : evaluaciones.entrySet()) {
+            if (entrada.getKey() < hi && "seguro".equals(entrada.getValue().get("resultado"))) {
+                lo = entrada.getKey();
+            }
+        }
+        return lo;
+    }
+
+    // Multiplicadores entre lo y hi cuya evaluación no fue concluyente (por debajo
+    // de un seguro no importan)
+    private List<Double> noConcluyentesEntre(double lo, double hi) {
+        List<Double> noConcluyentes = new ArrayList<>();
+        for (Map.Entry<Double, Map<String, Object>> entrada : evaluaciones.entrySet()) {
+            if (entrada.getKey() > lo && entrada.getKey() < hi && "no_concluyente".equals(entrada.getValue().get("resultado"))) {
+                noConcluyentes.add(entrada.getKey());
+            }
+        }
+        return noConcluyentes;
+    }
+
+    private static double redondear(double valor) {
+        return Math.round(valor * 1000.0) / 1000.0;
+    }
+}
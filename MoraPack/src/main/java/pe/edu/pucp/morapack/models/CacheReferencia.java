@@ -0,0 +1,118 @@
+package pe.edu.pucp.morapack.models;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caché en memoria de datos de referencia (aeropuertos, países, continentes):
+ * pocas filas que se consultan constantemente por ID o por código. Se llena
+ * completa en la primera consulta, los fallos se leen de BD y cada escritura
+ * del servicio actualiza la entrada (invalidar() la descarta entera).
+ *
+ * copia se aplica a lo que se devuelve, para que quien modifique el objeto
+ * (p. ej. la capacidad ocupada) no altere la caché antes de guardarlo.
+ */
+public class CacheReferencia<T> {
+    private final Function<T, Integer> obtenerId;
+    private final Function<T, String> obtenerClave;
+    private final UnaryOperator<T> copia;
+
+    private final Map<Integer, T> porId = new ConcurrentHashMap<>();
+    private final Map<String, T> porClave = new ConcurrentHashMap<>();
+    private volatile boolean completa = false;
+
+    public CacheReferencia(Function<T, Integer> obtenerId, Function<T, String> obtenerClave, UnaryOperator<T> copia) {
+        this.obtenerId = obtenerId;
+        this.obtenerClave = obtenerClave;
+        this.copia = copia;
+    }
+
+    /**
+     * Todos los elementos, cargándolos de BD la primera vez.
+     */
+    public ArrayList<T> todos(Supplier<Iterable<T>> cargarTodos) {
+        asegurarCompleta(cargarTodos);
+        // En orden de ID, como los devuelve findAll()
+        ArrayList<T> resultado = new ArrayList<>(porId.size());
+        for (T elemento : new TreeMap<>(porId).values()) {
+            resultado.add(copia.apply(elemento));
+        }
+        return resultado;
+    }
+
+    public Optional<T> porId(Integer id, Supplier<Iterable<T>> cargarTodos, Function<Integer, Optional<T>> leer) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        asegurarCompleta(cargarTodos);
+        T elemento = porId.get(id);
+        if (elemento == null) {
+            elemento = leer.apply(id).map(this::guardar).orElse(null);
+        }
+        return Optional.ofNullable(elemento).map(copia);
+    }
+
+    public Optional<T> porClave(String clave, Supplier<Iterable<T>> cargarTodos, Function<String, Optional<T>> leer) {
+        if (clave == null) {
+            return Optional.empty();
+        }
+        asegurarCompleta(cargarTodos);
+        T elemento = porClave.get(clave);
+        if (elemento == null) {
+            elemento = leer.apply(clave).map(this::guardar).orElse(null);
+        }
+        return Optional.ofNullable(elemento).map(copia);
+    }
+
+    /**
+     * Registra el estado recién guardado en BD.
+     */
+    public T guardar(T elemento) {
+        Integer id = obtenerId.apply(elemento);
+        if (id == null) {
+            return elemento;
+        }
+        T anterior = porId.put(id, elemento);
+        if (anterior != null && obtenerClave.apply(anterior) != null) {
+            porClave.remove(obtenerClave.apply(anterior));
+        }
+        String clave = obtenerClave.apply(elemento);
+        if (clave != null) {
+            porClave.put(clave, elemento);
+        }
+        return elemento;
+    }
+
+    public void guardarTodos(Iterable<T> elementos) {
+        for (T elemento : elementos) {
+            guardar(elemento);
+        }
+    }
+
+    /**
+     * Descarta todo (p. ej. tras un UPDATE nativo): la siguiente consulta recarga.
+     */
+    public synchronized void invalidar() {
+        completa = false;
+        porId.clear();
+        porClave.clear();
+    }
+
+    private void asegurarCompleta(Supplier<Iterable<T>> cargarTodos) {
+        if (completa) {
+            return;
+        }
+        synchronized (this) {
+            if (!completa) {
+                guardarTodos(cargarTodos.get());
+                completa = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package pe.edu.pucp.morapack.models;
+
+import pe.edu.pucp.morapack.services.EnvioService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ⚡ Carga de archivos de pedidos en tubería.
+ *
+ * El archivo se parte en trozos alineados a línea; varios hilos decodifican
+ * trozos en paralelo (LectorPedidos) y dejan los envíos en una cola acotada de
+ * la que uno o más escritores los insertan en lotes. La cola acota la memoria:
+ * si la BD va más lenta, los lectores esperan.
+ *
+ * La posición de reanudación es el fin del mayor prefijo de trozos ya
+ * escritos por completo. Si la carga falla, lo escrito detrás de ese prefijo
+ * (a lo sumo un trozo por escritor) se vuelve a insertar al reanudar.
+ */
+public class CargadorPedidos {
+    public static final String[] CODIGOS_HUBS = { "SPIM", "EBCI", "UBBB" };
+    private static final int BYTES_POR_TROZO = 1024 * 1024; // ~25 000 pedidos
+    private static final int MAX_LONGITUD_LINEA = 4096;
+    private static final int LOTE_INSERCION = 5000;
+    private static final int ESCRITORES = 2;
+
+    private static final int THREADS_LECTURA = Math.max(1,
+            Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService POOL_LECTURA = Executors.newFixedThreadPool(THREADS_LECTURA,
+            crearFabrica("pedidos-lector-"));
+    // Pool aparte: si compartieran hilos, lectores bloqueados en la cola llena podrían dejar sin escritores
+    private static final ExecutorService POOL_ESCRITURA = Executors.newFixedThreadPool(ESCRITORES,
+            crearFabrica("pedidos-escritor-"));
+
+    private final EnvioService envioService;
+    private final Map<Integer, Aeropuerto> aeropuertosPorCodigo;
+    private final List<Aeropuerto> hubs;
+
+    private final AtomicLong registros = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+    private final AtomicLong sinDestino = new AtomicLong();
+    private final AtomicLong enviosGuardados = new AtomicLong();
+    private final AtomicLong nanosLectura = new AtomicLong();
+    private final AtomicLong nanosEscritura = new AtomicLong();
+
+    @FunctionalInterface
+    private interface FuenteBytes {
+        ByteBuffer ventana(long inicio, int longitud) throws IOException;
+    }
+
+    private record Trozo(int indice, List<Envio> envios) {
+    }
+
+    /**
+     * @param aeropuertos todos los aeropuertos; los destinos se resuelven por
+     *                    código y los hubs se toman de CODIGOS_HUBS
+     */
+    public CargadorPedidos(EnvioService envioService, List<Aeropuerto> aeropuertos) {
+        this.envioService = envioService;
+        this.aeropuertosPorCodigo = new HashMap<>();
+        for (Aeropuerto a : aeropuertos) {
+            aeropuertosPorCodigo.put(LectorPedidos.empaquetarCodigo(a.getCodigo()), a);
+        }
+        this.hubs = new ArrayList<>();
+        for (String codigo : CODIGOS_HUBS) {
+            Aeropuerto hub = aeropuertosPorCodigo.get(LectorPedidos.empaquetarCodigo(codigo));
+            if (hub != null) {
+                hubs.add(hub);
+            } else {
+                System.out.println("⚠️ Hub " + codigo + " no encontrado!");
+            }
+        }
+    }
+
+    /**
+     * Carga el archivo mapeándolo en memoria desde el byte indicado (0 = inicio).
+     */
+    public Map<String, Object> cargarArchivo(Path ruta, long desdeByte) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            return cargar((inicio, longitud) -> canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud),
+                    canal.size(), desdeByte);
+        }
+    }
+
+    /**
+     * Carga un contenido ya en memoria (archivo subido o recurso dentro del JAR).
+     */
+    public Map<String, Object> cargarBytes(byte[] contenido, long desdeByte) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(contenido);
+        return cargar((inicio, longitud) -> buffer.slice((int) inicio, longitud), contenido.length, desdeByte);
+    }
+
+    private Map<String, Object> cargar(FuenteBytes fuente, long tamanio, long desdeByte) throws IOException {
+        long inicioReal = System.nanoTime();
+        long[] limites = partirEnTrozos(fuente, Math.max(0, Math.min(desdeByte, tamanio)), tamanio);
+        int totalTrozos = limites.length - 1;
+        System.out.printf("📂 Cargando %.1f MB en %d trozos (%d lectores, %d escritores) desde el byte %d%n",
+                (tamanio - limites[0]) / 1048576.0, totalTrozos, THREADS_LECTURA, ESCRITORES, limites[0]);
+
+        BlockingQueue<Trozo> cola = new ArrayBlockingQueue<>(2 * ESCRITORES);
+        AtomicBoolean abortar = new AtomicBoolean(false);
+        AtomicInteger trozosPorEscribir = new AtomicInteger(totalTrozos);
+        boolean[] escritos = new boolean[totalTrozos];
+        int[] prefijoEscrito = { 0 }; // Trozos [0, prefijo) ya escritos
+
+        List<Future<?>> lectores = new ArrayList<>(totalTrozos);
+        for (int i = 0; i < totalTrozos; i++) {
+            int indice = i;
+            lectores.add(POOL_LECTURA.submit(() -> {
+                if (abortar.get()) {
+                    return null;
+                }
+                try {
+                    long t0 = System.nanoTime();
+                    Trozo trozo = new Trozo(indice, decodificar(fuente.ventana(limites[indice],
+                            (int) (limites[indice + 1] - limites[indice]))));
+                    nanosLectura.addAndGet(System.nanoTime() - t0);
+                    // Espera con reintentos: si los escritores abortan, nadie vaciará la cola
+                    while (!cola.offer(trozo, 100, TimeUnit.MILLISECONDS)) {
+                        if (abortar.get()) {
+                            return null;
+                        }
+                    }
+                    return null;
+                } catch (Exception e) {
+                    abortar.set(true);
+                    throw e;
+                }
+            }));
+        }
+
+        List<Future<?>> escritores = new ArrayList<>(ESCRITORES);
+        for (int i = 0; i < ESCRITORES; i++) {
+            escritores.add(POOL_ESCRITURA.submit(() -> {
+                try {
+                    while (!abortar.get() && trozosPorEscribir.get() > 0) {
+                        Trozo trozo = cola.poll(100, TimeUnit.MILLISECONDS);
+                        if (trozo == null) {
+                            continue;
+                        }
+                        escribir(trozo.envios());
+                        trozosPorEscribir.decrementAndGet();
+                        synchronized (escritos) {
+                            escritos[trozo.indice()] = true;
+                            while (prefijoEscrito[0] < totalTrozos && escritos[prefijoEscrito[0]]) {
+                                prefijoEscrito[0]++;
+                            }
+                        }
+                    }
+                    return null;
+                } catch (Exception e) {
+                    abortar.set(true);
+                    throw e;
+                }
+            }));
+        }
+
+        // Si una etapa falla marca "abortar" y las demás terminan por su cuenta
+        Throwable fallo = null;
+        for (Future<?> futuro : concatenar(lectores, escritores)) {
+            try {
+                futuro.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abortar.set(true);
+                fallo = e;
+                break;
+            } catch (ExecutionException e) {
+                if (fallo == null) {
+                    fallo = e.getCause();
+                }
+            }
+        }
+
+        long posicionReanudacion;
+        synchronized (escritos) {
+            posicionReanudacion = limites[prefijoEscrito[0]];
+        }
+        double segundos = (System.nanoTime() - inicioReal) / 1e9;
+        double megabytes = (posicionReanudacion - limites[0]) / 1048576.0;
+
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("estado", fallo == null ? "éxito" : "error");
+        resultado.put("mensaje", fallo == null ? "Envíos cargados correctamente" : "Error: " + fallo.getMessage());
+        resultado.put("enviosCargados", enviosGuardados.get());
+        resultado.put("registrosLeidos", registros.get());
+        resultado.put("errores", errores.get());
+        resultado.put("destinosDesconocidos", sinDestino.get());
+        resultado.put("desdeByte", limites[0]);
+        resultado.put("posicionFinal", posicionReanudacion);
+        resultado.put("tamanioArchivo", tamanio);
+        if (posicionReanudacion < tamanio) {
+            resultado.put("continuarCon", "desdeByte=" + posicionReanudacion);
+        }
+        resultado.put("tiempoEjecucionSegundos", segundos);
+        resultado.put("enviosPorSegundo", segundos > 0 ? enviosGuardados.get() / segundos : 0);
+        resultado.put("megabytesPorSegundo", segundos > 0 ? megabytes / segundos : 0);
+        // Tiempo acumulado de todos los hilos de cada etapa: indica cuál limita la carga
+        resultado.put("segundosLectura", nanosLectura.get() / 1e9);
+        resultado.put("segundosEscritura", nanosEscritura.get() / 1e9);
+
+        if (fallo != null) {
+            System.err.println("❌ Error en la carga de pedidos: " + fallo.getMessage());
+            fallo.printStackTrace();
+        }
+        System.out.printf("✅ %d envíos en %.2f s (%.0f envíos/s, %.1f MB/s) | lectura %.2f s, escritura %.2f s%n",
+                enviosGuardados.get(), segundos, resultado.get("enviosPorSegundo"),
+                resultado.get("megabytesPorSegundo"), nanosLectura.get() / 1e9, nanosEscritura.get() / 1e9);
+        return resultado;
+    }
+
+    /**
+     * Límites de los trozos: cada uno termina justo después de un salto de línea
+     * (o al final del archivo).
+     */
+    private long[] partirEnTrozos(FuenteBytes fuente, long desde, long tamanio) throws IOException {
+        List<Long> limites = new ArrayList<>();
+        limites.add(desde);
+        long inicio = desde;
+        while (inicio < tamanio) {
+            long nominal = inicio + BYTES_POR_TROZO;
+            if (nominal >= tamanio) {
+                break;
+            }
+            int longitud = (int) Math.min(MAX_LONGITUD_LINEA, tamanio - nominal);
+            ByteBuffer ventana = fuente.ventana(nominal, longitud);
+            int i = 0;
+            while (i < longitud && ventana.get(i) != '\n') {
+                i++;
+            }
+            if (i == longitud && nominal + longitud < tamanio) {
+                throw new IOException("Línea demasiado larga cerca del byte " + nominal);
+            }
+            inicio = Math.min(tamanio, nominal + i + 1);
+            limites.add(inicio);
+        }
+        if (limites.get(limites.size() - 1) < tamanio) {
+            limites.add(tamanio);
+        }
+        return limites.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private List<Envio> decodificar(ByteBuffer trozo) {
+        List<Envio> envios = new ArrayList<>(trozo.remaining() / 40);
+        LectorPedidos.Resultado lectura = LectorPedidos.leer(trozo, registro -> {
+            Envio envio = crearEnvio(registro);
+            if (envio != null) {
+                envios.add(envio);
+            } else {
+                sinDestino.incrementAndGet();
+            }
+        });
+        registros.addAndGet(lectura.getRegistros());
+        errores.addAndGet(lectura.getErrores());
+        return envios;
+    }
+
+    private void escribir(List<Envio> envios) {
+        long t0 = System.nanoTime();
+        for (int desde = 0; desde < envios.size(); desde += LOTE_INSERCION) {
+            List<Envio> lote = envios.subList(desde, Math.min(desde + LOTE_INSERCION, envios.size()));
+            envioService.insertarEnviosMasivo(lote);
+            long total = enviosGuardados.addAndGet(lote.size());
+            if (total / 100000 != (total - lote.size()) / 100000) {
+                System.out.println("💾 Guardados " + total + " envíos...");
+            }
+        }
+        nanosEscritura.addAndGet(System.nanoTime() - t0);
+    }
+
+    /**
+     * Crea el envío de un registro ya decodificado, o null si su destino no es un
+     * aeropuerto conocido.
+     */
+    private Envio crearEnvio(LectorPedidos.RegistroPedido registro) {
+        Aeropuerto aeropuertoDestino = aeropuertosPorCodigo.get(registro.getCodigoDestino());
+        if (aeropuertoDestino == null) {
+            return null;
+        }
+        Envio envio = new Envio(registro.getIdEnvioPorAeropuerto(), registro.getFechaIngreso(),
+                aeropuertoDestino.getHusoHorario(), aeropuertoDestino, registro.getNumProductos(),
+                registro.getClienteTexto());
+        if (!hubs.isEmpty()) {
+            envio.setAeropuertosOrigen(new ArrayList<>(hubs));
+        }
+        return envio;
+    }
+
+    private static List<Future<?>> concatenar(List<Future<?>> a, List<Future<?>> b) {
+        List<Future<?>> todos = new ArrayList<>(a);
+        todos.addAll(b);
+        return todos;
+    }
+
+    private static ThreadFactory crearFabrica(String prefijo) {
+        return new ThreadFactory() {
+            private final AtomicInteger contador = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package pe.edu.pucp.morapack.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Punto de control compacto del estado en memoria de un Planificador:
+ * horizonte, reloj, eventos temporales pendientes, contadores de capacidad de
+ * la sesión, cola de liberación y caché de vuelos (solo IDs).
+ * Se guarda comprimido en un archivo local para poder reanudar una simulación
+ * larga tras reiniciar la JVM.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class CheckpointPlanificador implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final String DIRECTORIO_CHECKPOINTS = "checkpoints";
+
+    @Getter
+    @AllArgsConstructor
+    public static class EventoPendiente implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String tipo;
+        private final ZonedDateTime tiempoEvento;
+        private final Integer vueloId;
+        private final Integer cantidad;
+        private final Integer aeropuertoId;
+        private final boolean primerVuelo;
+        private final boolean ultimoVuelo;
+        private final Integer envioId;
+    }
+
+    private String idSesion;
+    private String modo;
+    private LocalDateTime creado;
+    private int ciclo;
+    private double factorAceleracion;
+
+    // Horizonte y reloj
+    private LocalDateTime fechaInicioSimulacion;
+    private LocalDateTime fechaFinSimulacion;
+    private LocalDateTime tiempoInicioSimulacion;
+    private LocalDateTime ultimoHorizontePlanificado;
+    private LocalDateTime tiempoSimuladoActual;
+    private LocalDateTime ultimoTiempoEjecucion;
+    private LocalDateTime tiempoReloj;
+
+    // Eventos temporales aún no ejecutados
+    private List<EventoPendiente> eventosPendientes = new ArrayList<>();
+
+    // Capacidad de la sesión aislada (la sesión principal la tiene en BD)
+    private Map<Integer, Integer> ocupacionAeropuertos = new HashMap<>();
+    private Map<Integer, Integer> ocupacionVuelos = new HashMap<>();
+    private Map<Integer, String> estadosEnvio = new HashMap<>();
+
+    // Cola de liberación
+    private List<ColaLiberacion.LiberacionPendiente> liberacionesPendientes = new ArrayList<>();
+    private Map<Integer, Set<Integer>> partesPendientesPorEnvio = new HashMap<>();
+    private Set<Integer> partesRegistradas = new HashSet<>();
+
+    // Caché de vuelos (ventana deslizante)
+    private List<Integer> idsVentanaVuelos = new ArrayList<>();
+    private LocalDateTime cacheVuelosInicio;
+    private LocalDateTime cacheVuelosFin;
+
+    public static Path rutaArchivo(String idSesion) {
+        return Paths.get(DIRECTORIO_CHECKPOINTS, "checkpoint-" + idSesion + ".bin.gz");
+    }
+
+    /**
+     * Escribe el checkpoint en un archivo temporal y lo mueve al destino para que
+     * un fallo a mitad de escritura no corrompa el checkpoint anterior.
+     */
+    public long guardar() throws IOException {
+        Path destino = rutaArchivo(idSesion);
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal))))) {
+            out.writeObject(this);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(destino);
+    }
+
+    public static Optional<CheckpointPlanificador> cargar(String idSesion) {
+        Path origen = rutaArchivo(idSesion);
+        if (!Files.exists(origen)) {
+            return Optional.empty();
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(origen))))) {
+            return Optional.of((CheckpointPlanificador) in.readObject());
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.printf("❌ Error al leer checkpoint de la sesión %s: %s%n", idSesion, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public Map<String, Object> resumen() {
+        Map<String, Object> resumen = new HashMap<>();
+        resumen.put("idSesion", idSesion);
+        resumen.put("modo", modo);
+        resumen.put("creado", creado != null ? creado.toString() : null);
+        resumen.put("ciclo", ciclo);
+        resumen.put("ultimoHorizontePlanificado",
+                ultimoHorizontePlanificado != null ? ultimoHorizontePlanificado.toString() : null);
+        resumen.put("tiempoSimuladoActual", tiempoSimuladoActual != null ? tiempoSimuladoActual.toString() : null);
+        resumen.put("eventosPendientes", eventosPendientes.size());
+        resumen.put("liberacionesPendientes", liberacionesPendientes.size());
+        resumen.put("vuelosEnCache", idsVentanaVuelos.size());
+        return resumen;
+    }
+}
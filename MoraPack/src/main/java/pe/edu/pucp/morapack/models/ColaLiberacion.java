@@ -0,0 +1,157 @@
+package pe.edu.pucp.morapack.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Cola indexada de liberaciones pendientes en aeropuertos destino.
+ * Cada parte planificada que termina en el destino final de su envío se encola
+ * con su tiempo de liberación (llegadaFinal + 2h). En cada ciclo solo se extraen
+ * las partes vencidas, sin volver a consultar ni recorrer todos los envíos del
+ * rango de simulación.
+ */
+public class ColaLiberacion {
+    public static final int HORAS_PERMANENCIA_DESTINO = 2;
+
+    @Getter
+    @AllArgsConstructor
+    public static class LiberacionPendiente implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Integer parteId;
+        private final Integer envioId;
+        private final Integer aeropuertoDestinoId;
+        private final int cantidad;
+        private final LocalDateTime tiempoLiberacion;
+    }
+
+    private final PriorityQueue<LiberacionPendiente> cola = new PriorityQueue<>(
+            Comparator.comparing(LiberacionPendiente::getTiempoLiberacion));
+    // Partes ya registradas (encoladas o no liberables) para no duplicarlas entre ciclos
+    private final Set<Integer> partesRegistradas = new HashSet<>();
+    // Partes aún no entregadas de cada envío: cuando queda vacío, el envío está ENTREGADO
+    private final Map<Integer, Set<Integer>> partesPendientesPorEnvio = new HashMap<>();
+
+    /**
+     * Registra una parte del envío. Si la parte llega al destino final se encola
+     * para liberación; si no, solo cuenta como pendiente del envío.
+     *
+     * @return true si la parte quedó encolada
+     */
+    public synchronized boolean registrar(ParteAsignada parte, Integer envioId, Integer aeropuertoDestinoId,
+            boolean llegaADestinoFinal) {
+        if (parte == null || parte.getId() == null || envioId == null) {
+            return false;
+        }
+        if (!partesRegistradas.add(parte.getId())) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(parte.getEntregado())) {
+            return false;
+        }
+        partesPendientesPorEnvio.computeIfAbsent(envioId, k -> new HashSet<>()).add(parte.getId());
+
+        if (!llegaADestinoFinal || parte.getLlegadaFinal() == null || parte.getCantidad() == null) {
+            return false;
+        }
+        LocalDateTime tiempoLiberacion = parte.getLlegadaFinal().toLocalDateTime()
+                .plusHours(HORAS_PERMANENCIA_DESTINO);
+        cola.add(new LiberacionPendiente(parte.getId(), envioId, aeropuertoDestinoId, parte.getCantidad(),
+                tiempoLiberacion));
+        return true;
+    }
+
+    /**
+     * Extrae todas las liberaciones con tiempo de liberación menor o igual al
+     * tiempo simulado.
+     */
+    public synchronized List<LiberacionPendiente> extraerVencidas(LocalDateTime tiempoSimulado) {
+        List<LiberacionPendiente> vencidas = new ArrayList<>();
+        while (!cola.isEmpty() && !cola.peek().getTiempoLiberacion().isAfter(tiempoSimulado)) {
+            vencidas.add(cola.poll());
+        }
+        return vencidas;
+    }
+
+    /**
+     * Marca la parte como entregada dentro del envío.
+     *
+     * @return true si era la última parte pendiente (el envío quedó entregado)
+     */
+    public synchronized boolean marcarEntregada(Integer envioId, Integer parteId) {
+        Set<Integer> pendientes = partesPendientesPorEnvio.get(envioId);
+        if (pendientes == null) {
+            return false;
+        }
+        pendientes.remove(parteId);
+        if (pendientes.isEmpty()) {
+            partesPendientesPorEnvio.remove(envioId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Descarta partes que fueron reemplazadas (p. ej. al reparar el plan ante una
+     * disrupción): salen de la cola y dejan de contar como pendientes del envío.
+     */
+    public synchronized void descartar(Integer envioId, Collection<Integer> parteIds) {
+        if (parteIds == null || parteIds.isEmpty()) {
+            return;
+        }
+        cola.removeIf(liberacion -> parteIds.contains(liberacion.getParteId()));
+        partesRegistradas.removeAll(parteIds);
+        Set<Integer> pendientes = partesPendientesPorEnvio.get(envioId);
+        if (pendientes != null) {
+            pendientes.removeAll(parteIds);
+            if (pendientes.isEmpty()) {
+                partesPendientesPorEnvio.remove(envioId);
+            }
+        }
+    }
+
+    public synchronized LocalDateTime proximaLiberacion() {
+        LiberacionPendiente siguiente = cola.peek();
+        return siguiente != null ? siguiente.getTiempoLiberacion() : null;
+    }
+
+    public synchronized int tamanio() {
+        return cola.size();
+    }
+
+    /**
+     * Copia del estado de la cola para guardarlo en un checkpoint.
+     */
+    public synchronized void exportarA(CheckpointPlanificador checkpoint) {
+        checkpoint.setLiberacionesPendientes(new ArrayList<>(cola));
+        Map<Integer, Set<Integer>> pendientes = new HashMap<>();
+        partesPendientesPorEnvio.forEach((envioId, partes) -> pendientes.put(envioId, new HashSet<>(partes)));
+        checkpoint.setPartesPendientesPorEnvio(pendientes);
+        checkpoint.setPartesRegistradas(new HashSet<>(partesRegistradas));
+    }
+
+    public synchronized void restaurarDesde(CheckpointPlanificador checkpoint) {
+        limpiar();
+        cola.addAll(checkpoint.getLiberacionesPendientes());
+        checkpoint.getPartesPendientesPorEnvio()
+                .forEach((envioId, partes) -> partesPendientesPorEnvio.put(envioId, new HashSet<>(partes)));
+        partesRegistradas.addAll(checkpoint.getPartesRegistradas());
+    }
+
+    public synchronized void limpiar() {
+        cola.clear();
+        partesRegistradas.clear();
+        partesPendientesPorEnvio.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package pe.edu.pucp.morapack.models;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores de envíos por estado de cada sesión de simulación, mantenidos en
+ * memoria a partir de las transiciones que hace el planificador. Consultarlos
+ * es O(1); la reconciliación periódica los reemplaza por un conteo real.
+ *
+ * Las sesiones con cambios sin persistir se marcan como modificadas hasta que
+ * se toman con tomarModificadas(); si el guardado falla se vuelven a marcar
+ * con marcarModificadas().
+ */
+public class ContadoresEstadoEnvio {
+    // Clave de los envíos sin estado (aún no planificados), igual que COALESCE(estado, 'NULL')
+    public static final String SIN_ESTADO = "NULL";
+
+    private final Map<String, Map<String, AtomicLong>> conteosPorSesion = new ConcurrentHashMap<>();
+    private final Set<String> sesionesModificadas = ConcurrentHashMap.newKeySet();
+
+    public static String clave(Envio.EstadoEnvio estado) {
+        return estado != null ? estado.name() : SIN_ESTADO;
+    }
+
+    /**
+     * Reemplaza los conteos de la sesión.
+     *
+     * @return los conteos que había antes (null si la sesión no tenía)
+     */
+    public Map<String, Long> reiniciar(String idSesion, Map<String, Long> conteos) {
+        Map<String, AtomicLong> nuevos = new ConcurrentHashMap<>();
+        conteos.forEach((estado, cantidad) -> nuevos.put(estado, new AtomicLong(cantidad)));
+        Map<String, AtomicLong> anteriores = conteosPorSesion.put(idSesion, nuevos);
+        sesionesModificadas.add(idSesion);
+        return anteriores != null ? copiar(anteriores) : null;
+    }
+
+    /**
+     * Mueve cantidad envíos de un estado a otro. Se ignora si la sesión no tiene
+     * conteos iniciados (la siguiente reconciliación los calculará).
+     */
+    public void registrarTransicion(String idSesion, Envio.EstadoEnvio anterior, Envio.EstadoEnvio nuevo,
+            long cantidad) {
+        Map<String, AtomicLong> conteos = conteosPorSesion.get(idSesion);
+        if (conteos == null || cantidad <= 0 || anterior == nuevo) {
+            return;
+        }
+        conteos.computeIfAbsent(clave(anterior), k -> new AtomicLong()).addAndGet(-cantidad);
+        conteos.computeIfAbsent(clave(nuevo), k -> new AtomicLong()).addAndGet(cantidad);
+        sesionesModificadas.add(idSesion);
+    }
+
+    /**
+     * Copia de los conteos de la sesión, o null si no tiene.
+     */
+    public Map<String, Long> obtener(String idSesion) {
+        Map<String, AtomicLong> conteos = conteosPorSesion.get(idSesion);
+        return conteos != null ? copiar(conteos) : null;
+    }
+
+    public boolean contiene(String idSesion) {
+        return conteosPorSesion.containsKey(idSesion);
+    }
+
+    public void eliminar(String idSesion) {
+        conteosPorSesion.remove(idSesion);
+        sesionesModificadas.remove(idSesion);
+    }
+
+    /**
+     * Sesiones con cambios desde la última llamada (y las deja como limpias).
+     */
+    public List<String> tomarModificadas() {
+        List<String> modificadas = List.copyOf(sesionesModificadas);
+        sesionesModificadas.removeAll(modificadas);
+        return modificadas;
+    }
+
+    /**
+     * Vuelve a marcar sesiones tomadas con tomarModificadas() cuyo guardado
+     * falló, para que el siguiente intento las incluya.
+     */
+    public void marcarModificadas(Collection<String> idsSesion) {
+        for (String idSesion : idsSesion) {
+            if (conteosPorSesion.containsKey(idSesion)) {
+                sesionesModificadas.add(idSesion);
+            }
+        }
+    }
+
+    private static Map<String, Long> copiar(Map<String, AtomicLong> conteos) {
+        Map<String, Long> copia = new HashMap<>();
+        conteos.forEach((estado, cantidad) -> copia.put(estado, cantidad.get()));
+        return copia;
+    }
+}
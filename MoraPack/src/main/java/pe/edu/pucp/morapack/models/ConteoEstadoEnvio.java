@@ -0,0 +1,31 @@
+package pe.edu.pucp.morapack.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cantidad de envíos en un estado para una sesión de simulación. Es la copia
+ * persistida de ContadoresEstadoEnvio (una fila por sesión y estado), para que
+ * los resúmenes no tengan que hacer COUNT sobre toda la tabla envio.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "conteo_estado_envio", uniqueConstraints = @UniqueConstraint(columnNames = { "id_sesion",
+        "estado" }))
+public class ConteoEstadoEnvio {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Integer id;
+
+    private String idSesion;
+    private String estado; // Nombre de Envio.EstadoEnvio o ContadoresEstadoEnvio.SIN_ESTADO
+    private Long cantidad;
+    private LocalDateTime actualizado;
+}
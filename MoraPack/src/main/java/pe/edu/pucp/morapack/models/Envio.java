@@ -3,6 +3,7 @@ package pe.edu.pucp.morapack.models;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.*;
 import java.util.ArrayList;
@@ -14,7 +15,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "envio")
+@Table(name = "envio", indexes = @Index(name = "idx_envio_ingreso_epoch", columnList = "ingreso_epoch_minutos"))
 public class Envio {
     /**
      * Estados del envío durante su ciclo de vida
@@ -41,13 +42,19 @@ public class Envio {
     // ⚡ CAMBIO CRÍTICO: LAZY loading para evitar cargar 40K envíos con todas sus
     // relaciones
     // Las queries que necesiten parteAsignadas deben usar JOIN FETCH explícitamente
+    // (al recorrer muchos envíos, sus partes se cargan de a lotes)
     @OneToMany(mappedBy = "envio", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @BatchSize(size = 100)
     @JsonManagedReference
     private List<ParteAsignada> parteAsignadas = new ArrayList<>();
 
     private LocalDateTime fechaIngreso;
     private String husoHorarioDestino;
 
+    // ⚡ Instante real de ingreso (minutos epoch UTC): las consultas por rango lo usan
+    // directamente en lugar de ampliar ±14h la fecha local y filtrar en memoria
+    private Long ingresoEpochMinutos;
+
     @Transient
     private List<Aeropuerto> aeropuertosOrigen = new ArrayList<>(); // Multihub
 
@@ -119,6 +126,19 @@ public class Envio {
         return esMismoContinente(origen) ? Duration.ofDays(2) : Duration.ofDays(3);
     }
 
+    /**
+     * Recalcula el instante UTC de ingreso a partir de la fecha local y el huso
+     * del destino. La inserción masiva por JDBC lo llama explícitamente.
+     */
+    @PrePersist
+    @PreUpdate
+    public void actualizarInstantesUtc() {
+        if (fechaIngreso != null && husoHorarioDestino != null) {
+            this.ingresoEpochMinutos = fechaIngreso.atZone(ZoneOffset.ofHours(Integer.parseInt(husoHorarioDestino)))
+                    .toEpochSecond() / 60;
+        }
+    }
+
     @PostLoad
     private void cargarZonedDateTime() {
         Integer offsetDestino = Integer.parseInt(husoHorarioDestino);
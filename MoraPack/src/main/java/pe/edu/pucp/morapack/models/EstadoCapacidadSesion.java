@@ -0,0 +1,123 @@
+package pe.edu.pucp.morapack.models;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de capacidad propio de una sesión de simulación aislada.
+ * En lugar de escribir la capacidad ocupada directamente en las tablas
+ * compartidas aeropuerto/plan_de_vuelo (y el estado en envio), la sesión
+ * mantiene aquí su propia ocupación y la superpone sobre los datos cargados
+ * de BD. Así varias simulaciones pueden correr a la vez sin pisarse.
+ */
+@Getter
+public class EstadoCapacidadSesion {
+    private final String idSesion;
+    private final LocalDateTime creada = LocalDateTime.now();
+    private final Map<Integer, Integer> ocupacionAeropuertos = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> ocupacionVuelos = new ConcurrentHashMap<>();
+    private final Map<Integer, Envio.EstadoEnvio> estadosEnvio = new ConcurrentHashMap<>();
+    // Disrupciones aplicadas solo a esta sesión (no se escriben en las tablas compartidas)
+    private final Set<Integer> vuelosCancelados = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Integer> capacidadMaximaAeropuertos = new ConcurrentHashMap<>();
+
+    public EstadoCapacidadSesion(String idSesion) {
+        this.idSesion = idSesion;
+    }
+
+    /**
+     * Reemplaza la ocupación leída de BD por la de la sesión (0 si la sesión aún
+     * no ha usado el aeropuerto).
+     */
+    public void aplicarAAeropuertos(List<Aeropuerto> aeropuertos) {
+        if (aeropuertos == null)
+            return;
+        for (Aeropuerto aeropuerto : aeropuertos) {
+            if (aeropuerto.getId() != null) {
+                aeropuerto.setCapacidadOcupada(ocupacionAeropuertos.getOrDefault(aeropuerto.getId(), 0));
+                Integer capacidadMaxima = capacidadMaximaAeropuertos.get(aeropuerto.getId());
+                if (capacidadMaxima != null) {
+                    aeropuerto.setCapacidadMaxima(capacidadMaxima);
+                }
+            }
+        }
+    }
+
+    public void aplicarAVuelos(List<PlanDeVuelo> vuelos) {
+        if (vuelos == null)
+            return;
+        for (PlanDeVuelo vuelo : vuelos) {
+            if (vuelo.getId() != null) {
+                vuelo.setCapacidadOcupada(ocupacionVuelos.getOrDefault(vuelo.getId(), 0));
+                if (vuelosCancelados.contains(vuelo.getId())) {
+                    vuelo.setEstado(PlanDeVuelo.ESTADO_CANCELADO);
+                }
+            }
+        }
+    }
+
+    public void fijarOcupacionAeropuerto(Integer aeropuertoId, int ocupacion) {
+        ocupacionAeropuertos.put(aeropuertoId, Math.max(0, ocupacion));
+    }
+
+    public void sumarOcupacionAeropuerto(Integer aeropuertoId, int cantidad) {
+        ocupacionAeropuertos.merge(aeropuertoId, cantidad, (actual, delta) -> Math.max(0, actual + delta));
+    }
+
+    public int getOcupacionAeropuerto(Integer aeropuertoId) {
+        return ocupacionAeropuertos.getOrDefault(aeropuertoId, 0);
+    }
+
+    public void fijarOcupacionVuelo(Integer vueloId, int ocupacion) {
+        ocupacionVuelos.put(vueloId, Math.max(0, ocupacion));
+    }
+
+    public void sumarOcupacionVuelo(Integer vueloId, int cantidad) {
+        ocupacionVuelos.merge(vueloId, cantidad, (actual, delta) -> Math.max(0, actual + delta));
+    }
+
+    public int getOcupacionVuelo(Integer vueloId) {
+        return ocupacionVuelos.getOrDefault(vueloId, 0);
+    }
+
+    public void cancelarVuelo(Integer vueloId) {
+        vuelosCancelados.add(vueloId);
+    }
+
+    public void fijarCapacidadMaximaAeropuerto(Integer aeropuertoId, int capacidadMaxima) {
+        capacidadMaximaAeropuertos.put(aeropuertoId, Math.max(0, capacidadMaxima));
+    }
+
+    public void fijarEstadoEnvio(Integer envioId, Envio.EstadoEnvio estado) {
+        if (envioId != null && estado != null) {
+            estadosEnvio.put(envioId, estado);
+        }
+    }
+
+    public Envio.EstadoEnvio getEstadoEnvio(Integer envioId) {
+        return estadosEnvio.get(envioId);
+    }
+
+    public Map<String, Object> resumen() {
+        Map<String, Object> resumen = new HashMap<>();
+        Map<String, Long> enviosPorEstado = new HashMap<>();
+        for (Envio.EstadoEnvio estado : estadosEnvio.values()) {
+            enviosPorEstado.merge(estado.name(), 1L, Long::sum);
+        }
+        resumen.put("idSesion", idSesion);
+        resumen.put("creada", creada.toString());
+        resumen.put("aeropuertosConOcupacion", ocupacionAeropuertos.size());
+        resumen.put("productosEnAeropuertos", ocupacionAeropuertos.values().stream().mapToInt(Integer::intValue).sum());
+        resumen.put("vuelosConCarga", ocupacionVuelos.size());
+        resumen.put("enviosPorEstado", enviosPorEstado);
+        resumen.put("vuelosCancelados", vuelosCancelados.size());
+        resumen.put("aeropuertosConCapacidadReducida", capacidadMaximaAeropuertos.size());
+        return resumen;
+    }
+}
@@ -6,7 +6,8 @@ import org.springframework.stereotype.Component;
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Getter
@@ -22,6 +23,23 @@ public class Grasp {
     private static final int MAX_SIN_MEJORA = 2; // Antes: 3
     private static final int DIAS_A_INSTANCIAR = 3;
 
+    // ⚡ DESCOMPOSICIÓN: horizontes con muchos pedidos se dividen en subproblemas
+    // (franjas de ingreso o continentes destino) que se resuelven en paralelo
+    public static final int MIN_ENVIOS_POR_FRANJA = 150;
+    private static final int THREADS_DESCOMPOSICION = Math.max(1,
+            Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService POOL_DESCOMPOSICION = Executors.newFixedThreadPool(THREADS_DESCOMPOSICION,
+            new ThreadFactory() {
+                private final AtomicInteger contador = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread hilo = new Thread(r, "grasp-particion-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }
+            });
+
     private ArrayList<Aeropuerto> aeropuertos;
     private ArrayList<PlanDeVuelo> planesDeVuelo;
     private ArrayList<Pais> paises;
@@ -33,8 +51,8 @@ public class Grasp {
 
     // Campos para manejo de rutas (antes en RutasDiarias)
     private Map<String, ArrayList<CandidatoRuta>> rutas = new HashMap<>();
-    private Map<String, List<PlanDeVuelo>> vuelosPorOrigenCache;
-    private Map<String, List<PlanDeVuelo>> vuelosPorOrigenYFecha;
+    // Vuelos por ID de aeropuerto de origen, cada lista en orden de despegue
+    private Map<Integer, List<PlanDeVuelo>> vuelosPorOrigenCache;
     private Map<Integer, Aeropuerto> aeropuertoById;
     private Map<String, Duration> deadlineCache = new HashMap<>();
 
@@ -44,7 +62,12 @@ public class Grasp {
     // Las asignaciones reales se harán cuando los vuelos lleguen (eventos
     // temporales)
     private Map<Integer, Integer> reservasVuelos = new HashMap<>(); // vueloId -> cantidad reservada
-    private Map<Integer, Integer> reservasAeropuertos = new HashMap<>(); // aeropuertoId -> cantidad reservada
+    // Reservas de almacén por aeropuerto en el tiempo: cada parte ocupa el
+    // aeropuerto solo entre su llegada y la salida del siguiente tramo (o la
+    // liberación en destino)
+    private Map<Integer, LineaTiempoOcupacion> reservasAeropuertos = new HashMap<>(); // aeropuertoId -> línea de tiempo
+    private long inicioLineaTiempo; // epoch-minutos de la primera ranura
+    private int ranurasLineaTiempo = 1;
 
     // Definir fabricas principales
     public void setHubsPropio() {
@@ -97,35 +120,66 @@ public class Grasp {
         // Limpiar cache de rutas anteriores
         this.rutas.clear();
         this.deadlineCache.clear();
+        inicializarAeropuertoById();
+
+        // Filtrar vuelos por ventana temporal relevante para los envíos
+        ArrayList<PlanDeVuelo> vuelosFiltrados = filtrarVuelosPorVentanaTemporal(todosLosVuelos, envios);
+
+        // Precomputar vuelos por aeropuerto origen, en orden de despegue
+        this.vuelosPorOrigenCache = new HashMap<>();
+        if (vuelosFiltrados != null && !vuelosFiltrados.isEmpty()) {
+            for (PlanDeVuelo v : vuelosFiltrados) {
+                if (v.getCiudadOrigen() != null) {
+                    this.vuelosPorOrigenCache.computeIfAbsent(v.getCiudadOrigen(), k -> new ArrayList<>()).add(v);
+                }
+            }
+            for (List<PlanDeVuelo> salidas : this.vuelosPorOrigenCache.values()) {
+                salidas.sort(Comparator.comparing(PlanDeVuelo::getZonedHoraOrigen));
+            }
 
-        // Inicializar mapa de aeropuertos por ID
+            // Ventana de las líneas de tiempo de almacén: de la primera salida a la
+            // última llegada más la permanencia en destino
+            long primeraSalida = Long.MAX_VALUE;
+            long ultimaLlegada = Long.MIN_VALUE;
+            for (PlanDeVuelo v : vuelosFiltrados) {
+                primeraSalida = Math.min(primeraSalida, v.getZonedHoraOrigen().toEpochSecond() / 60);
+                ultimaLlegada = Math.max(ultimaLlegada, v.getZonedHoraDestino().toEpochSecond() / 60);
+            }
+            ajustarLineaTiempo(primeraSalida, ultimaLlegada);
+        }
+    }
+
+    /**
+     * ⚡ Prepara los cachés del ciclo sobre un índice por origen que el
+     * planificador mantiene al deslizar la ventana: no filtra ni reagrupa los
+     * vuelos, solo limpia las rutas del ciclo anterior y ajusta la ventana de las
+     * líneas de tiempo. Los vuelos que salen después del plazo de un envío se
+     * descartan al expandir sus rutas.
+     */
+    public void inicializarCachesParaVuelos(IndiceVuelosPorOrigen indice) {
+        this.rutas.clear();
+        this.deadlineCache.clear();
+        inicializarAeropuertoById();
+
+        this.vuelosPorOrigenCache = indice.getVuelosPorOrigen();
+        if (!indice.estaVacio()) {
+            ajustarLineaTiempo(indice.getPrimeraSalida(), indice.getUltimaLlegada());
+        }
+    }
+
+    private void inicializarAeropuertoById() {
         this.aeropuertoById = new HashMap<>();
         if (this.aeropuertos != null) {
             for (Aeropuerto a : this.aeropuertos) {
                 this.aeropuertoById.put(a.getId(), a);
             }
         }
+    }
 
-        // Filtrar vuelos por ventana temporal relevante para los envíos
-        ArrayList<PlanDeVuelo> vuelosFiltrados = filtrarVuelosPorVentanaTemporal(todosLosVuelos, envios);
-
-        // Precomputar vuelos por código de aeropuerto origen
-        if (vuelosFiltrados != null && !vuelosFiltrados.isEmpty()) {
-            this.vuelosPorOrigenCache = vuelosFiltrados.stream()
-                    .collect(Collectors.groupingBy(v -> {
-                        Aeropuerto origen = this.aeropuertoById.get(v.getCiudadOrigen());
-                        return origen != null ? origen.getCodigo() : "";
-                    }));
-            this.vuelosPorOrigenYFecha = vuelosFiltrados.stream()
-                    .collect(Collectors.groupingBy(v -> {
-                        Aeropuerto origen = this.aeropuertoById.get(v.getCiudadOrigen());
-                        String codigoOrigen = origen != null ? origen.getCodigo() : "";
-                        return codigoOrigen + "_" + v.getZonedHoraOrigen().toLocalDate();
-                    }));
-        } else {
-            this.vuelosPorOrigenCache = new HashMap<>();
-            this.vuelosPorOrigenYFecha = new HashMap<>();
-        }
+    private void ajustarLineaTiempo(long primeraSalida, long ultimaLlegada) {
+        this.inicioLineaTiempo = primeraSalida;
+        this.ranurasLineaTiempo = LineaTiempoOcupacion.ranurasEntre(primeraSalida,
+                ultimaLlegada + ColaLiberacion.HORAS_PERMANENCIA_DESTINO * 60L);
     }
 
     /**
@@ -305,57 +359,72 @@ public class Grasp {
     }
 
     /**
-     * Obtiene la capacidad libre de un aeropuerto considerando reservas
+     * Obtiene la capacidad libre de un aeropuerto en el intervalo [desde, hasta)
+     * considerando la ocupación actual y el pico de reservas del intervalo
      */
-    private int getCapacidadLibreAeropuertoConReservas(Aeropuerto aeropuerto) {
+    private int getCapacidadLibreAeropuertoConReservas(Aeropuerto aeropuerto, ZonedDateTime desde,
+            ZonedDateTime hasta) {
         int capacidadOcupada = aeropuerto.getCapacidadOcupada() != null ? aeropuerto.getCapacidadOcupada() : 0;
-        int reservas = reservasAeropuertos.getOrDefault(aeropuerto.getId(), 0);
+        LineaTiempoOcupacion linea = reservasAeropuertos.get(aeropuerto.getId());
+        int reservas = linea != null ? Math.max(0, linea.maximo(desde, hasta)) : 0;
         return aeropuerto.getCapacidadMaxima() - capacidadOcupada - reservas;
     }
 
     /**
-     * Reserva capacidad en un vuelo (sin asignar realmente)
+     * Reserva (cantidad > 0) o libera (cantidad < 0) almacén en un aeropuerto
+     * durante [desde, hasta)
      */
-    private void reservarVuelo(PlanDeVuelo vuelo, Integer cantidad) {
-        if (vuelo.getId() != null) {
-            reservasVuelos.put(vuelo.getId(), reservasVuelos.getOrDefault(vuelo.getId(), 0) + cantidad);
+    private void reservarAeropuerto(Aeropuerto aeropuerto, ZonedDateTime desde, ZonedDateTime hasta,
+            int cantidad) {
+        if (aeropuerto.getId() != null) {
+            reservasAeropuertos
+                    .computeIfAbsent(aeropuerto.getId(),
+                            k -> new LineaTiempoOcupacion(inicioLineaTiempo, ranurasLineaTiempo))
+                    .sumar(desde, hasta, cantidad);
         }
     }
 
     /**
-     * Libera reserva de capacidad en un vuelo
+     * Fin de la estancia en el aeropuerto donde aterriza el tramo i de la ruta:
+     * la salida del tramo siguiente o, en el último tramo, la liberación en
+     * destino (llegada + HORAS_PERMANENCIA_DESTINO)
      */
-    private void liberarReservaVuelo(PlanDeVuelo vuelo, Integer cantidad) {
-        if (vuelo.getId() != null) {
-            int reservaActual = reservasVuelos.getOrDefault(vuelo.getId(), 0);
-            reservasVuelos.put(vuelo.getId(), Math.max(0, reservaActual - cantidad));
-        }
+    private ZonedDateTime finEstancia(List<PlanDeVuelo> tramos, int i) {
+        return i + 1 < tramos.size() ? tramos.get(i + 1).getZonedHoraOrigen()
+                : tramos.get(i).getZonedHoraDestino().plusHours(ColaLiberacion.HORAS_PERMANENCIA_DESTINO);
     }
 
     /**
-     * Reserva capacidad en un aeropuerto (sin asignar realmente)
+     * Capacidad libre mínima de los aeropuertos donde aterriza la ruta, cada uno
+     * en el intervalo exacto de su estancia
      */
-    private void reservarAeropuerto(Aeropuerto aeropuerto, Integer cantidad) {
-        if (aeropuerto.getId() != null) {
-            reservasAeropuertos.put(aeropuerto.getId(),
-                    reservasAeropuertos.getOrDefault(aeropuerto.getId(), 0) + cantidad);
+    private int getCapacidadLibreEstancias(List<PlanDeVuelo> tramos) {
+        int capacidad = Integer.MAX_VALUE;
+        for (int i = 0; i < tramos.size(); i++) {
+            Aeropuerto destinoAeropuerto = getAeropuertoById(tramos.get(i).getCiudadDestino());
+            if (destinoAeropuerto != null) {
+                capacidad = Math.min(capacidad, getCapacidadLibreAeropuertoConReservas(destinoAeropuerto,
+                        tramos.get(i).getZonedHoraDestino(), finEstancia(tramos, i)));
+            }
         }
+        return capacidad;
     }
 
     /**
-     * Libera reserva de capacidad en un aeropuerto
+     * Reserva (cantidad > 0) o libera (cantidad < 0) las estancias de la ruta en
+     * los aeropuertos donde aterriza
      */
-    private void liberarReservaAeropuerto(Aeropuerto aeropuerto, Integer cantidad) {
-        if (aeropuerto.getId() != null) {
-            int reservaActual = reservasAeropuertos.getOrDefault(aeropuerto.getId(), 0);
-            reservasAeropuertos.put(aeropuerto.getId(), Math.max(0, reservaActual - cantidad));
+    private void reservarEstancias(List<PlanDeVuelo> tramos, int cantidad) {
+        for (int i = 0; i < tramos.size(); i++) {
+            Aeropuerto destinoAeropuerto = getAeropuertoById(tramos.get(i).getCiudadDestino());
+            if (destinoAeropuerto != null) {
+                reservarAeropuerto(destinoAeropuerto, tramos.get(i).getZonedHoraDestino(), finEstancia(tramos, i),
+                        cantidad);
+            }
         }
     }
 
     public Solucion ejecutarGrasp(List<Envio> envios, ArrayList<PlanDeVuelo> planesDeVuelo) {
-        Solucion mejor = null;
-        int iteracionesSinMejora = 0;
-
         // ArrayList<PlanDeVuelo> vuelos = rutasDiarias.getVuelos();
 
         Map<PlanDeVuelo, Integer> capacidadBaseVuelos = planesDeVuelo.stream()
@@ -366,11 +435,7 @@ public class Grasp {
                                 a -> a.getCapacidadOcupada() != null ? a.getCapacidadOcupada() : 0))
                 : Collections.emptyMap();
 
-        for (int i = 0; i < MAX_ITERACIONES && iteracionesSinMejora < MAX_SIN_MEJORA; i++) {
-            // ⚡ Reset reservas al inicio de cada iteración
-            reservasVuelos.clear();
-            reservasAeropuertos.clear();
-
+        return iterarGrasp(envios, planesDeVuelo, () -> {
             // Reset capacidades (solo para verificación, no se asignan realmente)
             planesDeVuelo.forEach(v -> v.setCapacidadOcupada(capacidadBaseVuelos.getOrDefault(v, 0))); // Se reinicia
                                                                                                        // respetando
@@ -382,6 +447,34 @@ public class Grasp {
                                                                                                                    // ocupación
                                                                                                                    // base
             }
+        });
+    }
+
+    /**
+     * Iteraciones GRASP (construcción + búsqueda local) sobre las reservas de
+     * esta instancia. "restaurarOcupacion" se ejecuta al inicio de cada
+     * iteración; los subproblemas paralelos pasan null porque no deben escribir en
+     * los vuelos y aeropuertos compartidos.
+     */
+    private Solucion iterarGrasp(List<Envio> envios, ArrayList<PlanDeVuelo> planesDeVuelo,
+            Runnable restaurarOcupacion) {
+        Solucion mejor = null;
+        // Cada iteración vacía las partes de los envíos: se guarda una copia de las
+        // de la mejor iteración para devolver esa y no la última
+        List<List<ParteAsignada>> partesMejor = null;
+        int iteracionesSinMejora = 0;
+
+        for (int i = 0; i < MAX_ITERACIONES && iteracionesSinMejora < MAX_SIN_MEJORA; i++) {
+            // Si el ciclo se canceló por timeout, no seguir iterando
+            if (mejor != null && Thread.currentThread().isInterrupted())
+                break;
+
+            // ⚡ Reset reservas al inicio de cada iteración
+            reservasVuelos.clear();
+            reservasAeropuertos.clear();
+
+            if (restaurarOcupacion != null)
+                restaurarOcupacion.run();
             envios.forEach(e -> e.getParteAsignadas().clear()); // Se elimina cualquier asignacion que tenga un envio
 
             faseConstruccion(envios, planesDeVuelo);
@@ -391,16 +484,184 @@ public class Grasp {
 
             if (mejor == null || esMejor(cur, mejor)) {
                 mejor = cur;
+                partesMejor = new ArrayList<>(envios.size());
+                for (Envio envio : envios) {
+                    partesMejor.add(new ArrayList<>(envio.getParteAsignadas()));
+                }
                 iteracionesSinMejora = 0;
             } else {
                 iteracionesSinMejora++;
             }
         }
 
-        Objects.requireNonNull(mejor).recomputar();
+        Objects.requireNonNull(mejor);
+        for (int i = 0; i < envios.size(); i++) {
+            envios.get(i).getParteAsignadas().clear();
+            envios.get(i).getParteAsignadas().addAll(partesMejor.get(i));
+        }
+        mejor.recomputar();
         return mejor;
     }
 
+    /**
+     * Forma de dividir un horizonte grande en subproblemas que se resuelven en
+     * paralelo (ver ejecutarGraspDescompuesto).
+     */
+    public enum Descomposicion {
+        NINGUNA, // Un solo GRASP con todos los envíos
+        FRANJAS, // Franjas contiguas por hora de ingreso
+        CONTINENTE // Un subproblema por continente destino
+    }
+
+    /**
+     * ⚡ GRASP descompuesto. Los envíos se reparten en subproblemas (franjas de
+     * tiempo o continentes destino) que se resuelven en paralelo, cada uno con
+     * sus propias reservas sobre la ocupación base (los vuelos de la ventana son
+     * compartidos y solo se leen).
+     *
+     * Luego se concilia la capacidad sobre la mejor solución de cada subproblema
+     * en una ronda de reservas por prioridad: los envíos que ingresaron antes
+     * confirman sus partes primero y una parte que
+     * ya no cabe en algún vuelo o aeropuerto (p. ej. un vuelo intercontinental
+     * usado por dos continentes) se descarta. Por último, una pasada de
+     * reparación intenta rutear lo descartado con la capacidad que quedó.
+     *
+     * Si el horizonte es chico o queda un solo subproblema equivale a ejecutarGrasp.
+     */
+    public Solucion ejecutarGraspDescompuesto(List<Envio> envios, ArrayList<PlanDeVuelo> planesDeVuelo,
+            Descomposicion modo) {
+        if (modo == null || modo == Descomposicion.NINGUNA || envios.size() < 2 * MIN_ENVIOS_POR_FRANJA) {
+            return ejecutarGrasp(envios, planesDeVuelo);
+        }
+
+        List<Envio> ordenados = new ArrayList<>(envios);
+        ordenados.sort(Comparator.comparing(Envio::getZonedFechaIngreso));
+
+        List<List<Envio>> particiones = new ArrayList<>();
+        if (modo == Descomposicion.CONTINENTE) {
+            Map<Integer, List<Envio>> porContinente = new LinkedHashMap<>();
+            for (Envio envio : ordenados) {
+                Pais pais = envio.getAeropuertoDestino().getPais();
+                Integer continente = pais != null ? pais.getIdContinente() : null;
+                porContinente.computeIfAbsent(continente, k -> new ArrayList<>()).add(envio);
+            }
+            particiones.addAll(porContinente.values());
+        } else {
+            int numFranjas = Math.min(THREADS_DESCOMPOSICION, envios.size() / MIN_ENVIOS_POR_FRANJA);
+            int tamanio = (ordenados.size() + numFranjas - 1) / numFranjas;
+            for (int desde = 0; desde < ordenados.size(); desde += tamanio) {
+                particiones.add(ordenados.subList(desde, Math.min(desde + tamanio, ordenados.size())));
+            }
+        }
+        if (particiones.size() < 2) {
+            return ejecutarGrasp(envios, planesDeVuelo);
+        }
+
+        // 1. Resolver los subproblemas en paralelo (capacidad base optimista)
+        List<Callable<Solucion>> tareas = new ArrayList<>();
+        for (List<Envio> particion : particiones) {
+            tareas.add(() -> crearGraspParticion().iterarGrasp(particion, planesDeVuelo, null));
+        }
+        List<Future<Solucion>> futuros;
+        try {
+            futuros = POOL_DESCOMPOSICION.invokeAll(tareas);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("GRASP descompuesto interrumpido", e);
+        }
+
+        // Partes de la mejor solución de cada subproblema
+        Map<Envio, List<ParteAsignada>> partesSubproblemas = new IdentityHashMap<>();
+        for (int p = 0; p < particiones.size(); p++) {
+            try {
+                for (Envio envio : futuros.get(p).get().getEnvios()) {
+                    partesSubproblemas.put(envio, new ArrayList<>(envio.getParteAsignadas()));
+                }
+            } catch (CancellationException | ExecutionException e) {
+                System.err.printf("❌ Error en subproblema %d del GRASP (%s): %s%n", p, modo, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("GRASP descompuesto interrumpido", e);
+            }
+        }
+
+        // 2. Ronda de reservas: los envíos que ingresaron antes tienen prioridad
+        reservasVuelos.clear();
+        reservasAeropuertos.clear();
+        int partesEnConflicto = 0;
+        for (Envio envio : ordenados) {
+            List<ParteAsignada> partes = partesSubproblemas.get(envio);
+            envio.getParteAsignadas().clear();
+            if (partes == null) {
+                // Subproblema con error: se reintenta completo en la pasada de reparación
+                continue;
+            }
+            for (ParteAsignada parte : partes) {
+                if (cabeEnRuta(parte.getRuta(), parte.getCantidad())) {
+                    reservarRuta(parte.getRuta(), parte.getCantidad());
+                    envio.getParteAsignadas().add(parte);
+                } else {
+                    partesEnConflicto++;
+                }
+            }
+        }
+
+        // 3. Reparación: rutear lo que quedó pendiente con las reservas ya confirmadas
+        List<Envio> incompletos = ordenados.stream().filter(e -> !e.estaCompleto()).collect(Collectors.toList());
+        if (!incompletos.isEmpty()) {
+            faseConstruccion(incompletos, planesDeVuelo);
+        }
+        long reparados = incompletos.stream().filter(Envio::estaCompleto).count();
+
+        System.out.printf("⚡ GRASP descompuesto (%s): %d subproblemas, %d partes en conflicto, %d/%d envíos reparados%n",
+                modo, particiones.size(), partesEnConflicto, reparados, incompletos.size());
+
+        return new Solucion(new ArrayList<>(envios), planesDeVuelo);
+    }
+
+    /**
+     * Instancia de trabajo para un subproblema: comparte los catálogos y los cachés
+     * de vuelos (solo lectura) y tiene sus propias reservas y rutas cacheadas.
+     */
+    private Grasp crearGraspParticion() {
+        Grasp particion = new Grasp();
+        particion.aeropuertos = this.aeropuertos;
+        particion.paises = this.paises;
+        particion.continentes = this.continentes;
+        particion.hubs = this.hubs;
+        particion.planesDeVuelo = this.planesDeVuelo;
+        particion.aeropuertoById = this.aeropuertoById;
+        particion.vuelosPorOrigenCache = this.vuelosPorOrigenCache;
+        particion.inicioLineaTiempo = this.inicioLineaTiempo;
+        particion.ranurasLineaTiempo = this.ranurasLineaTiempo;
+        return particion;
+    }
+
+    /**
+     * Verifica que la cantidad quepa en todos los vuelos de la ruta y en los
+     * aeropuertos durante cada estancia, considerando las reservas actuales.
+     */
+    private boolean cabeEnRuta(List<PlanDeVuelo> tramos, int cantidad) {
+        if (tramos == null || tramos.isEmpty()) {
+            return false;
+        }
+        for (PlanDeVuelo vuelo : tramos) {
+            if (getCapacidadLibreConReservas(vuelo) < cantidad)
+                return false;
+        }
+        return getCapacidadLibreEstancias(tramos) >= cantidad;
+    }
+
+    /**
+     * Reserva la ruta igual que la fase de construcción: vuelos completos y
+     * estancias en los aeropuertos donde aterriza.
+     */
+    private void reservarRuta(List<PlanDeVuelo> tramos, int cantidad) {
+        for (PlanDeVuelo vuelo : tramos)
+            reservarVuelo(vuelo, cantidad);
+        reservarEstancias(tramos, cantidad);
+    }
+
     public Boolean esMejor(Solucion a, Solucion b) {
         if (b == null)
             return true;
@@ -415,6 +676,132 @@ public class Grasp {
         return a.getLlegadaMediaPonderada().minus(b.getLlegadaMediaPonderada()).isNegative();
     }
 
+    /**
+     * ⚡ REPARACIÓN INCREMENTAL ante una disrupción (vuelo cancelado o aeropuerto
+     * con capacidad reducida). Solo se re-enrutan las partes afectadas: se
+     * conserva el tramo ya volado (o en el aire) y se busca una nueva ruta desde
+     * el aeropuerto donde estarán los productos, sin volver a ejecutar el GRASP.
+     *
+     * Los vuelos cancelados deben tener estado {@link PlanDeVuelo#ESTADO_CANCELADO}
+     * en la ventana de vuelos antes de llamar a este método, y los cachés deben
+     * estar inicializados con inicializarCachesParaVuelos.
+     *
+     * @return parte original -> partes que la reemplazan. Una parte cuya ruta
+     *         sigue siendo válida y no pudo re-enrutarse completa no aparece (se
+     *         mantiene como estaba); una parte con un vuelo cancelado siempre
+     *         aparece, aunque la lista de reemplazos cubra solo parte de su cantidad
+     */
+    public Map<ParteAsignada, List<ParteAsignada>> repararPartes(List<ParteAsignada> afectadas,
+            Set<Integer> aeropuertosEvitados, ZonedDateTime ahora) {
+        reservasVuelos.clear();
+        reservasAeropuertos.clear();
+
+        Map<Integer, PlanDeVuelo> vueloPorId = new HashMap<>();
+        if (this.planesDeVuelo != null) {
+            for (PlanDeVuelo vuelo : this.planesDeVuelo) {
+                vueloPorId.put(vuelo.getId(), vuelo);
+            }
+        }
+
+        Map<ParteAsignada, List<ParteAsignada>> reemplazos = new LinkedHashMap<>();
+        for (ParteAsignada parte : afectadas) {
+            Envio envio = parte.getEnvio();
+            List<PlanDeVuelo> ruta = parte.getRuta() != null ? parte.getRuta() : Collections.emptyList();
+            if (envio == null || parte.getCantidad() == null || parte.getAeropuertoOrigen() == null) {
+                continue;
+            }
+
+            // Primer tramo que aún no despega: desde ahí se reemplaza la ruta
+            int desde = primerTramoPendiente(ruta, ahora);
+            List<PlanDeVuelo> tramoVolado = ruta.subList(0, desde);
+            List<PlanDeVuelo> tramoPendiente = ruta.subList(desde, ruta.size());
+            boolean rutaInvalida = tramoPendiente.stream()
+                    .anyMatch(v -> PlanDeVuelo.ESTADO_CANCELADO.equals(v.getEstado())
+                            || (vueloPorId.containsKey(v.getId())
+                                    && PlanDeVuelo.ESTADO_CANCELADO.equals(vueloPorId.get(v.getId()).getEstado())));
+
+            Aeropuerto ubicacion = desde == 0 ? getAeropuertoById(parte.getAeropuertoOrigen().getId())
+                    : getAeropuertoById(ruta.get(desde - 1).getCiudadDestino());
+            if (ubicacion == null || tramoPendiente.isEmpty()) {
+                continue;
+            }
+
+            // Liberar la carga del tramo que se reemplaza
+            ajustarOcupacion(tramoPendiente, vueloPorId, -parte.getCantidad());
+
+            ZonedDateTime salidaMinima = envio.getZonedFechaIngreso().isAfter(ahora) ? envio.getZonedFechaIngreso()
+                    : ahora;
+            ZonedDateTime llegadaPrevia = desde == 0 ? null : ruta.get(desde - 1).getZonedHoraDestino();
+            Instant limite = envio.getZonedFechaIngreso().toInstant()
+                    .plus(envio.deadlineDesde(parte.getAeropuertoOrigen()));
+
+            List<CandidatoRuta> candidatos = new ArrayList<>();
+            expandirRutas(envio, ubicacion, parte.getAeropuertoOrigen(), salidaMinima, llegadaPrevia, limite,
+                    aeropuertosEvitados != null ? aeropuertosEvitados : Collections.emptySet(), candidatos);
+            candidatos.sort(Comparator.comparingLong(CandidatoRuta::getScore));
+
+            List<ParteAsignada> nuevas = new ArrayList<>();
+            int restante = parte.getCantidad();
+            for (CandidatoRuta candidato : candidatos) {
+                if (restante <= 0 || nuevas.size() >= 3) {
+                    break;
+                }
+                int capacidad = Integer.MAX_VALUE;
+                for (PlanDeVuelo vuelo : candidato.getTramos()) {
+                    capacidad = Math.min(capacidad, getCapacidadLibreConReservas(vuelo));
+                }
+                int cant = Math.min(restante, capacidad);
+                if (cant <= 0) {
+                    continue;
+                }
+                ajustarOcupacion(candidato.getTramos(), vueloPorId, cant);
+
+                List<PlanDeVuelo> nuevaRuta = new ArrayList<>(tramoVolado);
+                nuevaRuta.addAll(candidato.getTramos());
+                ParteAsignada nueva = new ParteAsignada(nuevaRuta, candidato.getLlegada(), cant,
+                        parte.getAeropuertoOrigen());
+                nueva.setEnvio(envio);
+                nuevas.add(nueva);
+                restante -= cant;
+            }
+
+            if (restante > 0 && !rutaInvalida) {
+                // La ruta original sigue siendo válida: mejor conservarla que dejar productos sin ruta
+                for (ParteAsignada nueva : nuevas) {
+                    ajustarOcupacion(nueva.getRuta().subList(desde, nueva.getRuta().size()), vueloPorId,
+                            -nueva.getCantidad());
+                }
+                ajustarOcupacion(tramoPendiente, vueloPorId, parte.getCantidad());
+                continue;
+            }
+
+            // Invalidar rutas cacheadas del envío (cambió la red de vuelos)
+            rutas.remove(generarClave(envio));
+            reemplazos.put(parte, nuevas);
+        }
+        return reemplazos;
+    }
+
+    /**
+     * Índice del primer vuelo de la ruta que aún no despega en el instante dado
+     * (ruta.size() si ya despegaron todos).
+     */
+    public static int primerTramoPendiente(List<PlanDeVuelo> ruta, ZonedDateTime ahora) {
+        int indice = 0;
+        while (indice < ruta.size() && !ruta.get(indice).getZonedHoraOrigen().isAfter(ahora)) {
+            indice++;
+        }
+        return indice;
+    }
+
+    private void ajustarOcupacion(List<PlanDeVuelo> tramos, Map<Integer, PlanDeVuelo> vueloPorId, int cantidad) {
+        for (PlanDeVuelo tramo : tramos) {
+            PlanDeVuelo vuelo = vueloPorId.getOrDefault(tramo.getId(), tramo);
+            int ocupada = vuelo.getCapacidadOcupada() != null ? vuelo.getCapacidadOcupada() : 0;
+            vuelo.setCapacidadOcupada(Math.max(0, ocupada + cantidad));
+        }
+    }
+
     private void faseConstruccion(List<Envio> envios, ArrayList<PlanDeVuelo> planesDeVuelo) {
 
         List<Envio> enviosCopia = new ArrayList<>(envios);
@@ -451,19 +838,10 @@ public class Grasp {
                     capacidadReal = Math.min(capacidadReal, getCapacidadLibreConReservas(v));
                 }
 
-                // Verificar también capacidad de aeropuertos intermedios y destino
-                // (considerando reservas)
-                for (int i = 0; i < escogido.getTramos().size(); i++) {
-                    PlanDeVuelo vuelo = escogido.getTramos().get(i);
-                    Aeropuerto destinoAeropuerto = getAeropuertoById(vuelo.getCiudadDestino());
-                    if (destinoAeropuerto != null) {
-                        // Los productos llegan al aeropuerto destino cuando el vuelo llega
-                        // Verificar capacidad disponible en el aeropuerto destino (considerando
-                        // reservas)
-                        int capacidadLibreAeropuerto = getCapacidadLibreAeropuertoConReservas(destinoAeropuerto);
-                        capacidadReal = Math.min(capacidadReal, capacidadLibreAeropuerto);
-                    }
-                }
+                // Verificar también capacidad de aeropuertos intermedios y destino: los
+                // productos ocupan cada aeropuerto desde que el vuelo aterriza hasta que
+                // sale el siguiente tramo (o hasta su liberación en destino)
+                capacidadReal = Math.min(capacidadReal, getCapacidadLibreEstancias(escogido.getTramos()));
 
                 Integer cant = Math.min(envio.cantidadRestante(), capacidadReal);
                 if (cant <= 0)
@@ -475,32 +853,9 @@ public class Grasp {
                 for (PlanDeVuelo v : escogido.getTramos())
                     reservarVuelo(v, cant);
 
-                // ⚡ RESERVAR capacidad en aeropuertos (NO asignar realmente)
-                // Para cada vuelo en la ruta:
-                // - Si NO es el primer vuelo: liberar reserva del aeropuerto de origen
-                // (los productos salen cuando el vuelo despega)
-                // - Siempre: reservar capacidad en el aeropuerto de destino
-                // (los productos llegan cuando el vuelo aterriza)
-                for (int i = 0; i < escogido.getTramos().size(); i++) {
-                    PlanDeVuelo vuelo = escogido.getTramos().get(i);
-
-                    // Si NO es el primer vuelo, liberar reserva del aeropuerto de origen
-                    // (los productos salen del aeropuerto cuando el vuelo despega)
-                    if (i > 0) {
-                        Aeropuerto origenAeropuerto = getAeropuertoById(vuelo.getCiudadOrigen());
-                        if (origenAeropuerto != null) {
-                            liberarReservaAeropuerto(origenAeropuerto, cant);
-                        }
-                    }
-
-                    // Reservar capacidad en el aeropuerto de destino (los productos llegan cuando
-                    // el
-                    // vuelo aterriza)
-                    Aeropuerto destinoAeropuerto = getAeropuertoById(vuelo.getCiudadDestino());
-                    if (destinoAeropuerto != null) {
-                        reservarAeropuerto(destinoAeropuerto, cant);
-                    }
-                }
+                // ⚡ RESERVAR almacén en aeropuertos (NO asignar realmente) solo durante
+                // cada estancia: de la llegada del tramo a la salida del siguiente
+                reservarEstancias(escogido.getTramos(), cant);
 
                 // Crear la parte asignada y vincularla al envio para mantener la relación
                 // bidireccional
@@ -555,102 +910,136 @@ public class Grasp {
                     origen.getCodigo() + "_" + envio.getAeropuertoDestino().getCodigo(),
                     k -> envio.deadlineDesde(origen)); // Se ve si es tramo intercontinente o intracontinente
             Instant limite = envio.getZonedFechaIngreso().toInstant().plus(deadline); // Fecha limite de llegada
-            List<PathState> beam = new ArrayList<>(); // Estado inicial
-
-            // Estamos en el aeropuerto de origen, sin vuelos tomados y espacio infinito
-            beam.add(new PathState(origen, null, new ArrayList<>(), null, Integer.MAX_VALUE));
-
-            // ⚡ OPTIMIZADO: Reducir niveles de búsqueda de 5 a 3 para acelerar
-            for (int nivel = 0; nivel < 3; nivel++) {
-                List<PathState> nuevosEstados = new ArrayList<>();
-
-                for (PathState ps : beam) { // Iteramos en cada estado
-                    // Para cada estado, se seleccionan los vuelos que salen del aeropuerto en donde
-                    // se encuentra ese estado
-                    Aeropuerto aeropuertoActual = ps.getUbicacion();
-                    List<PlanDeVuelo> salidas = this.vuelosPorOrigenCache.getOrDefault(aeropuertoActual.getCodigo(),
-                            Collections.emptyList());
-
-                    for (PlanDeVuelo v : salidas) {
-                        // El vuelo sale antes de que aparezca el pedido
-                        if (v.getZonedHoraOrigen().isBefore(envio.getZonedFechaIngreso()))
-                            continue;
-
-                        // La hora de llegada del ultimo estado es diferente de null
-                        // Y la salida del vuelo es antes que la llegada del ultimo vuelo del estado
-                        // actual
-                        if (ps.getLlegadaUltimoVuelo() != null && v.getZonedHoraOrigen()
-                                .isBefore(ps.getLlegadaUltimoVuelo().plus(Duration.ofMinutes(30))))
-                            continue;
-
-                        // La llegada del vuelo es luego del plazo limite
-                        if (v.getZonedHoraDestino().toInstant().isAfter(limite))
-                            continue;
-
-                        // ⚡ Verificar capacidad libre considerando reservas
-                        int capLibre = getCapacidadLibreConReservas(v);
-                        if (capLibre <= 0)
-                            continue; // Verificar capacidad libre
-
-                        ArrayList<PlanDeVuelo> ruta = new ArrayList<>(ps.getTramos());
-                        ruta.add(v); // Se agrega el vuelo a la ruta
-                        int capRuta = Math.min(ps.getCapacidadRuta(), capLibre); // Minima cantidad disponible de algun
-                                                                                 // avion de la ruta
-
-                        Aeropuerto destinoAeropuerto = getAeropuertoById(v.getCiudadDestino());
-                        if (destinoAeropuerto == null)
-                            continue;
-
-                        // ⚡ Verificar capacidad del aeropuerto destino considerando reservas
-                        // El aeropuerto debe tener espacio suficiente para recibir la cantidad de
-                        // productos
-                        int capacidadLibreAeropuerto = getCapacidadLibreAeropuertoConReservas(destinoAeropuerto);
-                        if (capacidadLibreAeropuerto < envio.getNumProductos()) {
-                            // Si el aeropuerto destino no tiene capacidad suficiente para todo el envio
-                            // verificamos si al menos puede recibir la capacidad mínima de la ruta
-                            if (capacidadLibreAeropuerto < Math.min(ps.getCapacidadRuta(), capLibre)) {
-                                continue; // No hay espacio suficiente en el aeropuerto destino
-                            }
-                            // Ajustar la capacidad de la ruta al espacio disponible en el aeropuerto
-                            capRuta = Math.min(capRuta, capacidadLibreAeropuerto);
-                        }
+            expandirRutas(envio, origen, origen, envio.getZonedFechaIngreso(), null, limite,
+                    Collections.emptySet(), candidatos);
+        }
+
+        // Se ordena por score
+        candidatos.sort(Comparator.comparingLong(CandidatoRuta::getScore));
+        return candidatos;
+    }
 
-                        PathState nuevo = new PathState(destinoAeropuerto, v.getZonedHoraDestino(), ruta, v, capRuta);
-
-                        // Verificar si llegamos al destino
-                        if (destinoAeropuerto.getCodigo().equals(envio.getAeropuertoDestino().getCodigo())) {
-                            long score = scoreRuta(ruta, v.getZonedHoraDestino(), envio, origen); // Se calcula el score
-                                                                                                  // de la ruta
-                            candidatos.add(new CandidatoRuta(ruta, v.getZonedHoraDestino(), score, capRuta, origen)); // Se
-                                                                                                                      // agrega
-                                                                                                                      // la
-                                                                                                                      // ruta
-                                                                                                                      // a
-                                                                                                                      // los
-                                                                                                                      // candidatos
-                        } else {
-                            nuevosEstados.add(nuevo); // Se sigue expandiendo
+    /**
+     * Búsqueda en haz de rutas hacia el destino del envío partiendo de
+     * "ubicacion". En la planificación normal la ubicación es el origen del envío;
+     * al reparar una parte puede ser una escala intermedia, con la llegada del
+     * último vuelo ya volado como "llegadaPrevia". El score y el plazo se
+     * calculan siempre respecto al origen del envío.
+     */
+    private void expandirRutas(Envio envio, Aeropuerto ubicacion, Aeropuerto origen, ZonedDateTime salidaMinima,
+            ZonedDateTime llegadaPrevia, Instant limite, Set<Integer> aeropuertosEvitados,
+            List<CandidatoRuta> candidatos) {
+        List<PathState> beam = new ArrayList<>(); // Estado inicial
+
+        // Estamos en la ubicación inicial, sin vuelos nuevos tomados y espacio infinito
+        beam.add(new PathState(ubicacion, llegadaPrevia, new ArrayList<>(), null, Integer.MAX_VALUE));
+
+        // ⚡ OPTIMIZADO: Reducir niveles de búsqueda de 5 a 3 para acelerar
+        for (int nivel = 0; nivel < 3; nivel++) {
+            List<PathState> nuevosEstados = new ArrayList<>();
+
+            for (PathState ps : beam) { // Iteramos en cada estado
+                // Para cada estado, se seleccionan los vuelos que salen del aeropuerto en donde
+                // se encuentra ese estado
+                Aeropuerto aeropuertoActual = ps.getUbicacion();
+                List<PlanDeVuelo> salidas = this.vuelosPorOrigenCache.getOrDefault(aeropuertoActual.getId(),
+                        Collections.emptyList());
+
+                for (PlanDeVuelo v : salidas) {
+                    // Las salidas están en orden de despegue: desde aquí ninguna llega a tiempo
+                    if (v.getZonedHoraOrigen().toInstant().isAfter(limite))
+                        break;
+
+                    // El vuelo sale antes de que aparezca el pedido (o antes del mínimo indicado)
+                    if (v.getZonedHoraOrigen().isBefore(salidaMinima))
+                        continue;
+
+                    // Vuelo cancelado
+                    if (PlanDeVuelo.ESTADO_CANCELADO.equals(v.getEstado()))
+                        continue;
+
+                    // Aeropuerto que se debe evitar como escala (salvo que sea el destino final)
+                    if (!aeropuertosEvitados.isEmpty() && aeropuertosEvitados.contains(v.getCiudadDestino())
+                            && !v.getCiudadDestino().equals(envio.getAeropuertoDestino().getId()))
+                        continue;
+
+                    // La hora de llegada del ultimo estado es diferente de null
+                    // Y la salida del vuelo es antes que la llegada del ultimo vuelo del estado
+                    // actual
+                    if (ps.getLlegadaUltimoVuelo() != null && v.getZonedHoraOrigen()
+                            .isBefore(ps.getLlegadaUltimoVuelo().plus(Duration.ofMinutes(30))))
+                        continue;
+
+                    // La llegada del vuelo es luego del plazo limite
+                    if (v.getZonedHoraDestino().toInstant().isAfter(limite))
+                        continue;
+
+                    // ⚡ Verificar capacidad libre considerando reservas
+                    int capLibre = getCapacidadLibreConReservas(v);
+                    if (capLibre <= 0)
+                        continue; // Verificar capacidad libre
+
+                    ArrayList<PlanDeVuelo> ruta = new ArrayList<>(ps.getTramos());
+                    ruta.add(v); // Se agrega el vuelo a la ruta
+                    int capRuta = Math.min(ps.getCapacidadRuta(), capLibre); // Minima cantidad disponible de algun
+                                                                             // avion de la ruta
+
+                    Aeropuerto destinoAeropuerto = getAeropuertoById(v.getCiudadDestino());
+                    if (destinoAeropuerto == null)
+                        continue;
+
+                    // ⚡ Verificar capacidad del aeropuerto destino considerando reservas
+                    // El aeropuerto debe tener espacio suficiente para recibir la cantidad de
+                    // productos
+                    // Estancia mínima en ese aeropuerto: la conexión de 30 min o, en el
+                    // destino final, hasta la liberación
+                    boolean esDestinoFinal = destinoAeropuerto.getId().equals(envio.getAeropuertoDestino().getId());
+                    ZonedDateTime finEstanciaMinima = esDestinoFinal
+                            ? v.getZonedHoraDestino().plusHours(ColaLiberacion.HORAS_PERMANENCIA_DESTINO)
+                            : v.getZonedHoraDestino().plusMinutes(30);
+                    int capacidadLibreAeropuerto = getCapacidadLibreAeropuertoConReservas(destinoAeropuerto,
+                            v.getZonedHoraDestino(), finEstanciaMinima);
+                    if (capacidadLibreAeropuerto < envio.getNumProductos()) {
+                        // Si el aeropuerto destino no tiene capacidad suficiente para todo el envio
+                        // verificamos si al menos puede recibir la capacidad mínima de la ruta
+                        if (capacidadLibreAeropuerto < Math.min(ps.getCapacidadRuta(), capLibre)) {
+                            continue; // No hay espacio suficiente en el aeropuerto destino
                         }
+                        // Ajustar la capacidad de la ruta al espacio disponible en el aeropuerto
+                        capRuta = Math.min(capRuta, capacidadLibreAeropuerto);
+                    }
+
+                    PathState nuevo = new PathState(destinoAeropuerto, v.getZonedHoraDestino(), ruta, v, capRuta);
+
+                    // Verificar si llegamos al destino
+                    if (destinoAeropuerto.getCodigo().equals(envio.getAeropuertoDestino().getCodigo())) {
+                        long score = scoreRuta(ruta, v.getZonedHoraDestino(), envio, origen); // Se calcula el score
+                                                                                              // de la ruta
+                        candidatos.add(new CandidatoRuta(ruta, v.getZonedHoraDestino(), score, capRuta, origen)); // Se
+                                                                                                                  // agrega
+                                                                                                                  // la
+                                                                                                                  // ruta
+                                                                                                                  // a
+                                                                                                                  // los
+                                                                                                                  // candidatos
+                    } else {
+                        nuevosEstados.add(nuevo); // Se sigue expandiendo
                     }
                 }
+            }
 
-                // Se ordena por scoreRuta
-                nuevosEstados.sort(Comparator
-                        .comparingLong(ps -> scoreRuta(ps.getTramos(), ps.getLlegadaUltimoVuelo(), envio, origen)));
-                // ⚡ OPTIMIZADO: Reducir beam size de 10 a 5 para acelerar
-                if (nuevosEstados.size() > 5)
-                    nuevosEstados = nuevosEstados.subList(0, 5);
+            // Se ordena por scoreRuta
+            nuevosEstados.sort(Comparator
+                    .comparingLong(ps -> scoreRuta(ps.getTramos(), ps.getLlegadaUltimoVuelo(), envio, origen)));
+            // ⚡ OPTIMIZADO: Reducir beam size de 10 a 5 para acelerar
+            if (nuevosEstados.size() > 5)
+                nuevosEstados = nuevosEstados.subList(0, 5);
 
-                beam = nuevosEstados;
+            beam = nuevosEstados;
 
-                if (beam.isEmpty())
-                    break;
-            }
+            if (beam.isEmpty())
+                break;
         }
-
-        // Se ordena por score
-        candidatos.sort(Comparator.comparingLong(CandidatoRuta::getScore));
-        return candidatos;
     }
 
     private Aeropuerto getAeropuertoById(Integer id) {
@@ -691,30 +1080,8 @@ public class Grasp {
                     for (PlanDeVuelo vuelo : rutaActual)
                         liberarReservaVuelo(vuelo, parte.getCantidad());
 
-                    // Liberar/restaurar reservas de aeropuertos
-                    // Para cada vuelo en la ruta (en orden inverso para restaurar correctamente):
-                    // - Liberar reserva del aeropuerto de destino (los productos ya no llegarán
-                    // ahí)
-                    // - Si NO es el primer vuelo: restaurar reserva del aeropuerto de origen (los
-                    // productos vuelven a estar ahí)
-                    for (int i = rutaActual.size() - 1; i >= 0; i--) {
-                        PlanDeVuelo vuelo = rutaActual.get(i);
-
-                        // Liberar reserva del aeropuerto de destino
-                        Aeropuerto destinoAeropuerto = getAeropuertoById(vuelo.getCiudadDestino());
-                        if (destinoAeropuerto != null) {
-                            liberarReservaAeropuerto(destinoAeropuerto, parte.getCantidad());
-                        }
-
-                        // Si NO es el primer vuelo, restaurar reserva del aeropuerto de origen
-                        // (los productos vuelven a estar en ese aeropuerto)
-                        if (i > 0) {
-                            Aeropuerto origenAeropuerto = getAeropuertoById(vuelo.getCiudadOrigen());
-                            if (origenAeropuerto != null) {
-                                reservarAeropuerto(origenAeropuerto, parte.getCantidad());
-                            }
-                        }
-                    }
+                    // Liberar las estancias de la ruta en los aeropuertos
+                    reservarEstancias(rutaActual, -parte.getCantidad());
                 }
 
                 // Se elimina esta parte de la ruta
@@ -727,16 +1094,8 @@ public class Grasp {
                                 if (getCapacidadLibreConReservas(v) < parte.getCantidad())
                                     return false;
                             }
-                            // ⚡ Verificar capacidad de aeropuertos destino considerando reservas
-                            for (PlanDeVuelo v : c.getTramos()) {
-                                Aeropuerto destinoAeropuerto = getAeropuertoById(v.getCiudadDestino());
-                                if (destinoAeropuerto != null
-                                        && getCapacidadLibreAeropuertoConReservas(destinoAeropuerto) < parte
-                                                .getCantidad()) {
-                                    return false;
-                                }
-                            }
-                            return true;
+                            // ⚡ Verificar almacén de los aeropuertos durante cada estancia
+                            return getCapacidadLibreEstancias(c.getTramos()) >= parte.getCantidad();
                         }) // Se verifica que el nuevo candidato de ruta, llegue antes que la ruta actual
                         .filter(c -> c.getLlegada().toInstant().isBefore(parte.getLlegadaFinal().toInstant()))
                         .collect(Collectors.toList());
@@ -748,32 +1107,8 @@ public class Grasp {
                     for (PlanDeVuelo v : c.getTramos())
                         reservarVuelo(v, parte.getCantidad());
 
-                    // ⚡ RESERVAR capacidad en aeropuertos (NO asignar realmente)
-                    // Para cada vuelo en la ruta:
-                    // - Si NO es el primer vuelo: liberar reserva del aeropuerto de origen
-                    // (los productos salen cuando el vuelo despega)
-                    // - Siempre: reservar capacidad en el aeropuerto de destino
-                    // (los productos llegan cuando el vuelo aterriza)
-                    for (int i = 0; i < c.getTramos().size(); i++) {
-                        PlanDeVuelo vuelo = c.getTramos().get(i);
-
-                        // Si NO es el primer vuelo, liberar reserva del aeropuerto de origen
-                        // (los productos salen del aeropuerto cuando el vuelo despega)
-                        if (i > 0) {
-                            Aeropuerto origenAeropuerto = getAeropuertoById(vuelo.getCiudadOrigen());
-                            if (origenAeropuerto != null) {
-                                liberarReservaAeropuerto(origenAeropuerto, parte.getCantidad());
-                            }
-                        }
-
-                        // Reservar capacidad en el aeropuerto de destino (los productos llegan cuando
-                        // el
-                        // vuelo aterriza)
-                        Aeropuerto destinoAeropuerto = getAeropuertoById(vuelo.getCiudadDestino());
-                        if (destinoAeropuerto != null) {
-                            reservarAeropuerto(destinoAeropuerto, parte.getCantidad());
-                        }
-                    }
+                    // ⚡ RESERVAR almacén en aeropuertos (NO asignar realmente) durante cada estancia
+                    reservarEstancias(c.getTramos(), parte.getCantidad());
 
                     // Se asigna la cantidad de productos a cada vuelo de la ruta
                     ParteAsignada nuevaParte = new ParteAsignada(c.getTramos(), c.getLlegada(), parte.getCantidad(),
@@ -789,30 +1124,8 @@ public class Grasp {
                         for (PlanDeVuelo v : rutaActual)
                             reservarVuelo(v, parte.getCantidad());
 
-                        // ⚡ Restaurar reservas en aeropuertos (NO asignar realmente)
-                        // Para cada vuelo en la ruta:
-                        // - Restaurar reserva del aeropuerto de destino (los productos vuelven a
-                        // estar ahí)
-                        // - Si NO es el primer vuelo: liberar reserva del aeropuerto de origen
-                        // (los productos salen cuando el vuelo despega)
-                        for (int i = 0; i < rutaActual.size(); i++) {
-                            PlanDeVuelo vuelo = rutaActual.get(i);
-
-                            // Restaurar reserva del aeropuerto de destino
-                            Aeropuerto destinoAeropuerto = getAeropuertoById(vuelo.getCiudadDestino());
-                            if (destinoAeropuerto != null) {
-                                reservarAeropuerto(destinoAeropuerto, parte.getCantidad());
-                            }
-
-                            // Si NO es el primer vuelo, liberar reserva del aeropuerto de origen
-                            // (los productos salen del aeropuerto cuando el vuelo despega)
-                            if (i > 0) {
-                                Aeropuerto origenAeropuerto = getAeropuertoById(vuelo.getCiudadOrigen());
-                                if (origenAeropuerto != null) {
-                                    liberarReservaAeropuerto(origenAeropuerto, parte.getCantidad());
-                                }
-                            }
-                        }
+                        // ⚡ Restaurar las estancias en aeropuertos (NO asignar realmente)
+                        reservarEstancias(rutaActual, parte.getCantidad());
                     }
                     // Asegurar que la parte restaurada tenga la referencia al envio
                     parte.setEnvio(envio);
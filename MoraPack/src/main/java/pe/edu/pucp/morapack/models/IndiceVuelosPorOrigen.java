@@ -0,0 +1,103 @@
+package pe.edu.pucp.morapack.models;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ⚡ Vuelos de la ventana de planificación agrupados por aeropuerto de origen,
+ * cada lista en orden de despegue. Se mantiene de forma incremental mientras la
+ * ventana se desliza: el tramo nuevo se agrega al final de cada lista y los
+ * vuelos que ya despegaron se recortan por la cabeza, sin reagrupar la ventana
+ * completa en cada ciclo.
+ */
+public class IndiceVuelosPorOrigen {
+    private final Map<Integer, List<PlanDeVuelo>> vuelosPorOrigen = new HashMap<>();
+    private long ultimaLlegada = Long.MIN_VALUE; // epoch-minutos
+    private int cantidadVuelos;
+
+    /**
+     * Agrega vuelos ordenados por despegue que salen después (o a la vez) que
+     * los ya indexados.
+     */
+    public void agregar(List<PlanDeVuelo> vuelos) {
+        for (PlanDeVuelo vuelo : vuelos) {
+            if (vuelo.getCiudadOrigen() == null) {
+                continue;
+            }
+            vuelosPorOrigen.computeIfAbsent(vuelo.getCiudadOrigen(), k -> new ArrayList<>()).add(vuelo);
+            ultimaLlegada = Math.max(ultimaLlegada, vuelo.getZonedHoraDestino().toEpochSecond() / 60);
+            cantidadVuelos++;
+        }
+    }
+
+    /**
+     * Descarta los vuelos que despegan antes de "inicio". Como cada lista está
+     * ordenada, solo se recorre el prefijo descartado de cada origen.
+     *
+     * @return cantidad de vuelos descartados
+     */
+    public int descartarAntesDe(ZonedDateTime inicio) {
+        int descartados = 0;
+        Iterator<List<PlanDeVuelo>> iterador = vuelosPorOrigen.values().iterator();
+        while (iterador.hasNext()) {
+            List<PlanDeVuelo> salidas = iterador.next();
+            int despegados = 0;
+            while (despegados < salidas.size() && salidas.get(despegados).getZonedHoraOrigen().isBefore(inicio)) {
+                despegados++;
+            }
+            if (despegados == salidas.size()) {
+                iterador.remove();
+            } else if (despegados > 0) {
+                salidas.subList(0, despegados).clear();
+            }
+            descartados += despegados;
+        }
+        cantidadVuelos -= descartados;
+        return descartados;
+    }
+
+    public void limpiar() {
+        vuelosPorOrigen.clear();
+        ultimaLlegada = Long.MIN_VALUE;
+        cantidadVuelos = 0;
+    }
+
+    public boolean estaVacio() {
+        return cantidadVuelos == 0;
+    }
+
+    public int getCantidadVuelos() {
+        return cantidadVuelos;
+    }
+
+    /**
+     * Vuelos por ID de aeropuerto de origen. Las listas son las del índice: se
+     * leen durante el ciclo y no se deben modificar fuera de esta clase.
+     */
+    public Map<Integer, List<PlanDeVuelo>> getVuelosPorOrigen() {
+        return vuelosPorOrigen;
+    }
+
+    /**
+     * Primer despegue indexado (epoch-minutos): la cabeza de alguna de las listas.
+     */
+    public long getPrimeraSalida() {
+        long primeraSalida = Long.MAX_VALUE;
+        for (List<PlanDeVuelo> salidas : vuelosPorOrigen.values()) {
+            primeraSalida = Math.min(primeraSalida, salidas.get(0).getZonedHoraOrigen().toEpochSecond() / 60);
+        }
+        return primeraSalida;
+    }
+
+    /**
+     * Última llegada de los vuelos agregados (epoch-minutos). No baja al descartar
+     * la cabeza, así que la ventana que cubre puede quedar algo holgada.
+     */
+    public long getUltimaLlegada() {
+        return ultimaLlegada;
+    }
+}
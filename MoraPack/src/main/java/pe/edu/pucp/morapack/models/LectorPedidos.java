@@ -0,0 +1,324 @@
+package pe.edu.pucp.morapack.models;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * ⚡ Lector de archivos de pedidos directamente desde bytes.
+ *
+ * Decodifica registros "NNNNNNNNN-YYYYMMDD-HH-MM-XXXX-PPP-CCCCCCC" de un
+ * ByteBuffer (mapeado en memoria o en heap) a primitivos, sin crear Strings
+ * intermedios ni hacer split/substring por línea. Cada registro se entrega en
+ * la misma instancia de RegistroPedido, que el consumidor no debe retener.
+ *
+ * Las líneas mal formadas se cuentan como error y se saltan; se aceptan finales
+ * de línea \n y \r\n.
+ */
+public final class LectorPedidos {
+    // Ventana máxima de mapeo: un MappedByteBuffer no puede superar 2 GB
+    private static final long BYTES_POR_VENTANA = 256L * 1024 * 1024;
+    private static final byte SEPARADOR = '-';
+    private static final byte FIN_LINEA = '\n';
+
+    private LectorPedidos() {
+    }
+
+    @FunctionalInterface
+    public interface ConsumidorPedido {
+        void aceptar(RegistroPedido registro);
+    }
+
+    /**
+     * Campos de un registro ya decodificados. La instancia se reutiliza entre
+     * líneas.
+     */
+    @Getter
+    public static final class RegistroPedido {
+        private long idEnvioPorAeropuerto;
+        private int anho;
+        private int mes;
+        private int dia;
+        private int hora;
+        private int minuto;
+        private int codigoDestino; // Código OACI empaquetado (ver empaquetarCodigo)
+        private int numProductos;
+        private int cliente;
+        private int digitosCliente;
+        private long posicion; // Byte donde empieza la línea en el archivo
+
+        public LocalDateTime getFechaIngreso() {
+            return LocalDateTime.of(anho, mes, dia, hora, minuto);
+        }
+
+        /**
+         * Cliente como texto, con los ceros a la izquierda del archivo.
+         */
+        public String getClienteTexto() {
+            String valor = Integer.toString(cliente);
+            return valor.length() >= digitosCliente ? valor : "0".repeat(digitosCliente - valor.length()) + valor;
+        }
+    }
+
+    /**
+     * Resultado de una lectura: líneas vistas, registros válidos, errores y
+     * posición (en bytes) donde empieza la primera línea no leída.
+     */
+    @Getter
+    public static final class Resultado {
+        private long lineas;
+        private long registros;
+        private long errores;
+        private long posicionFinal;
+    }
+
+    /**
+     * Empaqueta un código de aeropuerto de hasta 4 caracteres ASCII en un int,
+     * igual que lo hace el lector con los bytes del archivo.
+     */
+    public static int empaquetarCodigo(String codigo) {
+        int empaquetado = 0;
+        for (int i = 0; i < Math.min(4, codigo.length()); i++) {
+            empaquetado = (empaquetado << 8) | (codigo.charAt(i) & 0xFF);
+        }
+        return empaquetado;
+    }
+
+    /**
+     * Lee el archivo mapeándolo en memoria por ventanas alineadas a línea, desde
+     * el byte indicado (0 = inicio). Devuelve la posición final para continuar
+     * una carga interrumpida.
+     */
+    public static Resultado leerArchivo(Path ruta, long desdeByte, ConsumidorPedido consumidor) throws IOException {
+        Resultado resultado = new Resultado();
+        RegistroPedido registro = new RegistroPedido();
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            long inicio = Math.max(0, desdeByte);
+            while (inicio < tamanio) {
+                long longitud = Math.min(BYTES_POR_VENTANA, tamanio - inicio);
+                MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud);
+                boolean ultimaVentana = inicio + longitud >= tamanio;
+                int consumidos = leerLineas(ventana, inicio, ultimaVentana, registro, resultado, consumidor);
+                if (consumidos == 0) {
+                    // Una sola línea más larga que la ventana: no es un archivo de pedidos
+                    throw new IOException("Línea demasiado larga en " + ruta + " (byte " + inicio + ")");
+                }
+                inicio += consumidos;
+            }
+            resultado.posicionFinal = inicio;
+        }
+        return resultado;
+    }
+
+    /**
+     * Posición (en bytes) donde empieza la línea siguiente a las primeras
+     * "lineas" del archivo, o su tamaño si tiene menos. Traduce el antiguo
+     * parámetro skip (líneas ya cargadas) a una posición de reanudación.
+     */
+    public static long posicionTrasLineas(Path ruta, long lineas) throws IOException {
+        if (lineas <= 0) {
+            return 0;
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            long restantes = lineas;
+            for (long inicio = 0; inicio < tamanio; inicio += BYTES_POR_VENTANA) {
+                int longitud = (int) Math.min(BYTES_POR_VENTANA, tamanio - inicio);
+                MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud);
+                for (int i = 0; i < longitud; i++) {
+                    if (ventana.get(i) == FIN_LINEA && --restantes == 0) {
+                        return inicio + i + 1;
+                    }
+                }
+            }
+            return tamanio;
+        }
+    }
+
+    /**
+     * Igual que posicionTrasLineas(Path, long) para un buffer ya cargado.
+     */
+    public static long posicionTrasLineas(ByteBuffer buffer, long lineas) {
+        long restantes = lineas;
+        for (int i = buffer.position(); i < buffer.limit() && restantes > 0; i++) {
+            if (buffer.get(i) == FIN_LINEA && --restantes == 0) {
+                return i + 1;
+            }
+        }
+        return lineas <= 0 ? buffer.position() : buffer.limit();
+    }
+
+    /**
+     * Lee todas las líneas de un buffer ya cargado (p. ej. un archivo subido).
+     */
+    public static Resultado leer(ByteBuffer buffer, ConsumidorPedido consumidor) {
+        Resultado resultado = new Resultado();
+        int consumidos = leerLineas(buffer, 0, true, new RegistroPedido(), resultado, consumidor);
+        resultado.posicionFinal = consumidos;
+        return resultado;
+    }
+
+    /**
+     * Decodifica las líneas completas del buffer (desde su posición actual).
+     * Si no es la última ventana, la línea final sin salto se deja para la
+     * siguiente.
+     *
+     * @return bytes consumidos desde la posición actual del buffer
+     */
+    private static int leerLineas(ByteBuffer buffer, long desplazamiento, boolean ultimaVentana,
+            RegistroPedido registro, Resultado resultado, ConsumidorPedido consumidor) {
+        int inicio = buffer.position();
+        int limite = buffer.limit();
+        int pos = inicio;
+        while (pos < limite) {
+            int finLinea = pos;
+            while (finLinea < limite && buffer.get(finLinea) != FIN_LINEA) {
+                finLinea++;
+            }
+            if (finLinea == limite && !ultimaVentana) {
+                break;
+            }
+            int fin = finLinea;
+            if (fin > pos && buffer.get(fin - 1) == '\r') {
+                fin--;
+            }
+            if (fin > pos) {
+                resultado.lineas++;
+                registro.posicion = desplazamiento + pos;
+                if (decodificar(buffer, pos, fin, registro)) {
+                    resultado.registros++;
+                    consumidor.aceptar(registro);
+                } else {
+                    resultado.errores++;
+                }
+            }
+            pos = Math.min(finLinea + 1, limite);
+        }
+        return pos - inicio;
+    }
+
+    /**
+     * Decodifica la línea [pos, fin) en el registro.
+     *
+     * @return false si la línea no tiene el formato esperado
+     */
+    private static boolean decodificar(ByteBuffer b, int pos, int fin, RegistroPedido r) {
+        // NNNNNNNNN
+        long id = 0;
+        int p = pos;
+        int digitos = 0;
+        while (p < fin && b.get(p) != SEPARADOR) {
+            int d = b.get(p++) - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            id = id * 10 + d;
+            digitos++;
+        }
+        if (digitos == 0 || p >= fin) {
+            return false;
+        }
+        p++;
+
+        // YYYYMMDD
+        if (p + 9 > fin || b.get(p + 8) != SEPARADOR) {
+            return false;
+        }
+        int anho = numeroFijo(b, p, 4);
+        int mes = numeroFijo(b, p + 4, 2);
+        int dia = numeroFijo(b, p + 6, 2);
+        // El día se valida contra el mes (p. ej. 20250231 es una línea con error, no
+        // una excepción al armar la fecha)
+        if (anho < 0 || mes < 1 || mes > 12 || dia < 1 || dia > Month.of(mes).length(Year.isLeap(anho))) {
+            return false;
+        }
+        p += 9;
+
+        // HH-MM
+        int finHora = siguienteSeparador(b, p, fin);
+        int hora = numero(b, p, finHora);
+        if (finHora >= fin || hora < 0 || hora > 23) {
+            return false;
+        }
+        p = finHora + 1;
+        int finMinuto = siguienteSeparador(b, p, fin);
+        int minuto = numero(b, p, finMinuto);
+        if (finMinuto >= fin || minuto < 0 || minuto > 59) {
+            return false;
+        }
+        p = finMinuto + 1;
+
+        // XXXX
+        int finCodigo = siguienteSeparador(b, p, fin);
+        if (finCodigo >= fin || finCodigo == p || finCodigo - p > 4) {
+            return false;
+        }
+        int codigo = 0;
+        for (int i = p; i < finCodigo; i++) {
+            codigo = (codigo << 8) | (b.get(i) & 0xFF);
+        }
+        p = finCodigo + 1;
+
+        // PPP
+        int finProductos = siguienteSeparador(b, p, fin);
+        int productos = numero(b, p, finProductos);
+        if (finProductos >= fin || productos < 0) {
+            return false;
+        }
+        p = finProductos + 1;
+
+        // CCCCCCC
+        int cliente = numero(b, p, fin);
+        if (cliente < 0) {
+            return false;
+        }
+
+        r.idEnvioPorAeropuerto = id;
+        r.anho = anho;
+        r.mes = mes;
+        r.dia = dia;
+        r.hora = hora;
+        r.minuto = minuto;
+        r.codigoDestino = codigo;
+        r.numProductos = productos;
+        r.cliente = cliente;
+        r.digitosCliente = fin - p;
+        return true;
+    }
+
+    private static int siguienteSeparador(ByteBuffer b, int p, int fin) {
+        while (p < fin && b.get(p) != SEPARADOR) {
+            p++;
+        }
+        return p;
+    }
+
+    // Entero no negativo en [desde, hasta); -1 si está vacío o tiene otro carácter
+    private static int numero(ByteBuffer b, int desde, int hasta) {
+        if (hasta <= desde || hasta - desde > 9) {
+            return -1;
+        }
+        int valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            int d = b.get(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            valor = valor * 10 + d;
+        }
+        return valor;
+    }
+
+    private static int numeroFijo(ByteBuffer b, int desde, int digitos) {
+        return numero(b, desde, desde + digitos);
+    }
+}
@@ -0,0 +1,98 @@
+package pe.edu.pucp.morapack.models;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Ocupación de un aeropuerto a lo largo del tiempo, discretizada en ranuras de
+ * MINUTOS_POR_RANURA minutos. Es un árbol de segmentos con propagación
+ * perezosa: sumar una cantidad en un intervalo [desde, hasta) y consultar la
+ * ocupación máxima de un intervalo cuestan O(log n).
+ *
+ * Un intervalo toca todas las ranuras con las que se solapa aunque sea en
+ * parte, así que la consulta nunca subestima la ocupación. Los instantes fuera
+ * de la ventana se recortan a la primera o última ranura.
+ */
+public class LineaTiempoOcupacion {
+    public static final int MINUTOS_POR_RANURA = 10;
+
+    private final long inicioEpochMinutos;
+    private final int ranuras;
+    private final int[] maximo;
+    private final int[] pendiente;
+
+    public LineaTiempoOcupacion(long inicioEpochMinutos, int ranuras) {
+        this.inicioEpochMinutos = inicioEpochMinutos;
+        this.ranuras = Math.max(1, ranuras);
+        this.maximo = new int[4 * this.ranuras];
+        this.pendiente = new int[4 * this.ranuras];
+    }
+
+    /**
+     * Cantidad de ranuras necesarias para cubrir [inicio, fin].
+     */
+    public static int ranurasEntre(long inicioEpochMinutos, long finEpochMinutos) {
+        return (int) Math.max(1, (finEpochMinutos - inicioEpochMinutos) / MINUTOS_POR_RANURA + 1);
+    }
+
+    public void sumar(ZonedDateTime desde, ZonedDateTime hasta, int cantidad) {
+        if (cantidad == 0) {
+            return;
+        }
+        sumar(1, 0, ranuras - 1, ranuraInicial(desde), ranuraFinal(desde, hasta), cantidad);
+    }
+
+    public int maximo(ZonedDateTime desde, ZonedDateTime hasta) {
+        return maximo(1, 0, ranuras - 1, ranuraInicial(desde), ranuraFinal(desde, hasta));
+    }
+
+    private int ranuraInicial(ZonedDateTime instante) {
+        long minutos = instante.toEpochSecond() / 60 - inicioEpochMinutos;
+        return (int) Math.max(0, Math.min(ranuras - 1, Math.floorDiv(minutos, MINUTOS_POR_RANURA)));
+    }
+
+    // Última ranura que toca [desde, hasta): la del minuto anterior a "hasta"
+    private int ranuraFinal(ZonedDateTime desde, ZonedDateTime hasta) {
+        long minutos = hasta.toEpochSecond() / 60 - 1 - inicioEpochMinutos;
+        int ranura = (int) Math.max(0, Math.min(ranuras - 1, Math.floorDiv(minutos, MINUTOS_POR_RANURA)));
+        return Math.max(ranura, ranuraInicial(desde));
+    }
+
+    private void sumar(int nodo, int izq, int der, int desde, int hasta, int cantidad) {
+        if (hasta < izq || der < desde) {
+            return;
+        }
+        if (desde <= izq && der <= hasta) {
+            maximo[nodo] += cantidad;
+            pendiente[nodo] += cantidad;
+            return;
+        }
+        propagar(nodo);
+        int medio = (izq + der) >>> 1;
+        sumar(2 * nodo, izq, medio, desde, hasta, cantidad);
+        sumar(2 * nodo + 1, medio + 1, der, desde, hasta, cantidad);
+        maximo[nodo] = Math.max(maximo[2 * nodo], maximo[2 * nodo + 1]);
+    }
+
+    private int maximo(int nodo, int izq, int der, int desde, int hasta) {
+        if (hasta < izq || der < desde) {
+            return Integer.MIN_VALUE;
+        }
+        if (desde <= izq && der <= hasta) {
+            return maximo[nodo];
+        }
+        propagar(nodo);
+        int medio = (izq + der) >>> 1;
+        return Math.max(maximo(2 * nodo, izq, medio, desde, hasta),
+                maximo(2 * nodo + 1, medio + 1, der, desde, hasta));
+    }
+
+    private void propagar(int nodo) {
+        if (pendiente[nodo] != 0) {
+            for (int hijo = 2 * nodo; hijo <= 2 * nodo + 1; hijo++) {
+                maximo[hijo] += pendiente[nodo];
+                pendiente[hijo] += pendiente[nodo];
+            }
+            pendiente[nodo] = 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package pe.edu.pucp.morapack.models;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Métricas del planificador programado: duración de cada fase del ciclo,
+ * sobrecargas (ciclos que duran más que su periodo real) y retraso del
+ * horizonte planificado respecto al tiempo simulado del reloj.
+ */
+@Getter
+public class MetricasCiclos {
+    private long ciclosMedidos = 0;
+    private long ciclosConSobrecarga = 0;
+    private long horizontesFusionados = 0;
+    private long horizontesReducidos = 0;
+    private long liberacionesOmitidas = 0;
+    private long duracionUltimoCicloMs = 0;
+    private long duracionMaximaCicloMs = 0;
+    private long periodoCicloMs = 0;
+    private long retrasoActualMinutos = 0;
+    private long retrasoMaximoMinutos = 0;
+    private long minutosUltimoHorizonte = 0;
+    private String ajusteUltimoHorizonte = "NORMAL";
+    private final Map<String, Long> fasesUltimoCicloMs = new LinkedHashMap<>();
+    private final Map<String, Long> fasesAcumuladasMs = new HashMap<>();
+
+    public synchronized void iniciarCiclo() {
+        fasesUltimoCicloMs.clear();
+    }
+
+    public synchronized void registrarFase(String fase, long duracionMs) {
+        fasesUltimoCicloMs.merge(fase, duracionMs, Long::sum);
+        fasesAcumuladasMs.merge(fase, duracionMs, Long::sum);
+    }
+
+    /**
+     * Registra la duración total de un ciclo.
+     *
+     * @return true si el ciclo excedió su periodo real (sobrecarga)
+     */
+    public synchronized boolean registrarCiclo(long duracionMs, long periodoMs) {
+        ciclosMedidos++;
+        duracionUltimoCicloMs = duracionMs;
+        duracionMaximaCicloMs = Math.max(duracionMaximaCicloMs, duracionMs);
+        periodoCicloMs = periodoMs;
+        boolean sobrecarga = periodoMs > 0 && duracionMs > periodoMs;
+        if (sobrecarga) {
+            ciclosConSobrecarga++;
+        }
+        return sobrecarga;
+    }
+
+    public synchronized void registrarRetraso(long minutos) {
+        retrasoActualMinutos = Math.max(0, minutos);
+        retrasoMaximoMinutos = Math.max(retrasoMaximoMinutos, retrasoActualMinutos);
+    }
+
+    public synchronized void registrarHorizonte(long minutos, String ajuste) {
+        minutosUltimoHorizonte = minutos;
+        ajusteUltimoHorizonte = ajuste;
+        if ("FUSIONADO".equals(ajuste)) {
+            horizontesFusionados++;
+        } else if ("REDUCIDO".equals(ajuste)) {
+            horizontesReducidos++;
+        }
+    }
+
+    public synchronized void registrarLiberacionOmitida() {
+        liberacionesOmitidas++;
+    }
+
+    public synchronized boolean ultimoCicloConSobrecarga() {
+        return periodoCicloMs > 0 && duracionUltimoCicloMs > periodoCicloMs;
+    }
+
+    public synchronized Map<String, Object> resumen() {
+        Map<String, Object> resumen = new HashMap<>();
+        resumen.put("ciclosMedidos", ciclosMedidos);
+        resumen.put("ciclosConSobrecarga", ciclosConSobrecarga);
+        resumen.put("horizontesFusionados", horizontesFusionados);
+        resumen.put("horizontesReducidos", horizontesReducidos);
+        resumen.put("liberacionesOmitidas", liberacionesOmitidas);
+        resumen.put("duracionUltimoCicloMs", duracionUltimoCicloMs);
+        resumen.put("duracionMaximaCicloMs", duracionMaximaCicloMs);
+        resumen.put("periodoCicloMs", periodoCicloMs);
+        resumen.put("retrasoActualMinutos", retrasoActualMinutos);
+        resumen.put("retrasoMaximoMinutos", retrasoMaximoMinutos);
+        resumen.put("minutosUltimoHorizonte", minutosUltimoHorizonte);
+        resumen.put("ajusteUltimoHorizonte", ajusteUltimoHorizonte);
+        resumen.put("fasesUltimoCicloMs", new LinkedHashMap<>(fasesUltimoCicloMs));
+        resumen.put("fasesAcumuladasMs", new HashMap<>(fasesAcumuladasMs));
+        return resumen;
+    }
+}
@@ -2,6 +2,8 @@ package pe.edu.pucp.morapack.models;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
@@ -17,7 +19,25 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 @Entity
 @Table(name = "parte_asignada")
+// ⚡ Grafos por caso de uso (EnvioRepository): cada consulta trae solo lo que usa
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = ParteAsignada.GRAFO_RESUMEN, attributeNodes = @NamedAttributeNode("aeropuertoOrigen")),
+        @NamedEntityGraph(name = ParteAsignada.GRAFO_RUTAS, attributeNodes = {
+                @NamedAttributeNode("aeropuertoOrigen"),
+                @NamedAttributeNode(value = "vuelosRuta", subgraph = "tramos") },
+                subgraphs = @NamedSubgraph(name = "tramos", attributeNodes = @NamedAttributeNode("planDeVuelo"))),
+        @NamedEntityGraph(name = ParteAsignada.GRAFO_LIBERACION,
+                attributeNodes = @NamedAttributeNode(value = "envio", subgraph = "envio"),
+                subgraphs = @NamedSubgraph(name = "envio", attributeNodes = @NamedAttributeNode("aeropuertoDestino")))
+})
 public class ParteAsignada {
+    // Cantidad, entrega y origen (catálogo y resúmenes)
+    public static final String GRAFO_RESUMEN = "ParteAsignada.resumen";
+    // Además los tramos con sus vuelos (rutas en el mapa)
+    public static final String GRAFO_RUTAS = "ParteAsignada.rutas";
+    // Envío y su destino (liberaciones y reparación del plan)
+    public static final String GRAFO_LIBERACION = "ParteAsignada.liberacion";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(unique = true, nullable = false)
@@ -32,8 +52,16 @@ public class ParteAsignada {
     @Transient
     private List<PlanDeVuelo> ruta;
 
-    // Relación persistente con PlanDeVuelo a través de tabla intermedia
-    @OneToMany(mappedBy = "parteAsignada", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // ⚡ Ruta persistida en una sola columna: IDs de los vuelos en orden (ver RutaCodificada)
+    @Column(name = "ruta_vuelos", length = 512)
+    private String rutaVuelos;
+
+    // Relación persistente con PlanDeVuelo a través de tabla intermedia: índice
+    // "qué partes van en el vuelo X" (la ruta se lee de rutaVuelos; las partes
+    // guardadas antes de rutaVuelos la leen de aquí)
+    // ⚡ LAZY (solo el grafo GRAFO_RUTAS lo trae); fuera de él se carga de a lotes
+    @OneToMany(mappedBy = "parteAsignada", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     @JsonManagedReference
     @Builder.Default
     private List<ParteAsignadaPlanDeVuelo> vuelosRuta = new ArrayList<>();
@@ -48,6 +76,10 @@ public class ParteAsignada {
     // Indica si el producto ya fue entregado al cliente (liberado del aeropuerto destino)
     private Boolean entregado = false;
 
+    // Sesión de simulación que generó esta parte (null = sesión principal)
+    @Column(name = "id_sesion", length = 40)
+    private String idSesion;
+
     public ParteAsignada(List<PlanDeVuelo> ruta, ZonedDateTime llegadaFinal, Integer cantidad, Aeropuerto aeropuertoOrigen) {
         this.ruta = ruta;
         this.llegadaFinal = llegadaFinal;
@@ -61,6 +93,7 @@ public class ParteAsignada {
      * Debe llamarse antes de persistir para guardar la relación en BD
      */
     public void sincronizarRutaConBD() {
+        this.rutaVuelos = RutaCodificada.codificar(this.ruta);
         if (this.ruta == null) {
             this.vuelosRuta.clear();
             return;
@@ -80,9 +113,45 @@ public class ParteAsignada {
         }
     }
 
+    /**
+     * IDs de los vuelos de la ruta en orden, desde la columna codificada o, en
+     * partes antiguas, desde las filas por tramo.
+     */
+    public List<Integer> getIdsRuta() {
+        if (this.rutaVuelos != null) {
+            return RutaCodificada.decodificar(this.rutaVuelos);
+        }
+        if (this.ruta != null && !this.ruta.isEmpty()) {
+            return this.ruta.stream().map(PlanDeVuelo::getId).collect(Collectors.toList());
+        }
+        if (!tieneTramosCargados()) {
+            return new ArrayList<>();
+        }
+        return this.vuelosRuta.stream()
+                .sorted((a, b) -> Integer.compare(a.getOrden(), b.getOrden()))
+                .map(vr -> vr.getPlanDeVuelo().getId())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Indica si la ruta persistida aún no se convirtió en vuelos (la columna
+     * codificada solo tiene IDs: EnvioService.cargarRutas los resuelve).
+     */
+    public boolean tieneRutaSinCargar() {
+        return this.rutaVuelos != null && (this.ruta == null || this.ruta.isEmpty());
+    }
+
+    /**
+     * Indica si las filas por tramo ya están en memoria (vuelosRuta es LAZY).
+     */
+    public boolean tieneTramosCargados() {
+        return this.vuelosRuta != null && Hibernate.isInitialized(this.vuelosRuta);
+    }
+
     /**
      * Carga la ruta transient desde la relación persistente
-     * Debe llamarse después de cargar desde BD
+     * Debe llamarse después de cargar desde BD (con los tramos cargados o la
+     * sesión abierta); EnvioService.cargarRutas lo hace por lotes
      */
     public void cargarRutaDesdeBD() {
         if (this.vuelosRuta == null || this.vuelosRuta.isEmpty()) {
@@ -96,12 +165,4 @@ public class ParteAsignada {
                 .map(ParteAsignadaPlanDeVuelo::getPlanDeVuelo)
                 .collect(Collectors.toList());
     }
-
-    /**
-     * Se ejecuta automáticamente después de cargar el entity desde BD
-     */
-    @PostLoad
-    private void postLoad() {
-        cargarRutaDesdeBD();
-    }
 }
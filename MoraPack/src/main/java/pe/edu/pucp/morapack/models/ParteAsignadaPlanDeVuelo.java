@@ -10,19 +10,20 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "parte_asignada_plan_de_vuelo")
+@Table(name = "parte_asignada_plan_de_vuelo", indexes = @Index(name = "idx_parte_plan_de_vuelo_vuelo", columnList = "id_plan_de_vuelo"))
 public class ParteAsignadaPlanDeVuelo {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(unique = true, nullable = false)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_parte_asignada", nullable = false)
     @JsonBackReference
     private ParteAsignada parteAsignada;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    // ⚡ LAZY: el grafo ParteAsignada.rutas lo trae cuando hace falta
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_plan_de_vuelo", nullable = false)
     private PlanDeVuelo planDeVuelo;
 
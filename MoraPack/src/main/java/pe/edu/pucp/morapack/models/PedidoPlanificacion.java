@@ -0,0 +1,98 @@
+package pe.edu.pucp.morapack.models;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pedido compacto e inmutable usado para planificar un ciclo.
+ * Se carga con una consulta de proyección (sin entidades gestionadas ni proxies
+ * de Hibernate) y solo guarda lo que necesita el GRASP: ids enteros, fecha de
+ * ingreso en minutos epoch UTC, cantidad y aeropuerto destino.
+ */
+public record PedidoPlanificacion(
+        int id,
+        Long idEnvioPorAeropuerto,
+        long ingresoEpochMinutos,
+        int offsetDestinoHoras,
+        int cantidad,
+        int aeropuertoDestinoId,
+        String cliente) {
+
+    /**
+     * Constructor usado por la proyección JPQL (SELECT new ...).
+     */
+    public PedidoPlanificacion(Integer id, Long idEnvioPorAeropuerto, LocalDateTime fechaIngreso,
+            String husoHorarioDestino, Integer numProductos, Integer aeropuertoDestinoId, String cliente) {
+        this(id, idEnvioPorAeropuerto, fechaIngreso, parsearOffset(husoHorarioDestino), numProductos,
+                aeropuertoDestinoId, cliente);
+    }
+
+    private PedidoPlanificacion(Integer id, Long idEnvioPorAeropuerto, LocalDateTime fechaIngreso,
+            int offsetDestinoHoras, Integer numProductos, Integer aeropuertoDestinoId, String cliente) {
+        this(id, idEnvioPorAeropuerto,
+                fechaIngreso.atZone(ZoneOffset.ofHours(offsetDestinoHoras)).toEpochSecond() / 60,
+                offsetDestinoHoras,
+                numProductos != null ? numProductos : 0,
+                aeropuertoDestinoId != null ? aeropuertoDestinoId : -1,
+                cliente);
+    }
+
+    /**
+     * Modo legacy: construye el pedido a partir de un envío ya cargado en memoria.
+     */
+    public static PedidoPlanificacion desde(Envio envio) {
+        return new PedidoPlanificacion(envio.getId(), envio.getIdEnvioPorAeropuerto(), envio.getFechaIngreso(),
+                envio.getHusoHorarioDestino(), envio.getNumProductos(),
+                envio.getAeropuertoDestino() != null ? envio.getAeropuertoDestino().getId() : null,
+                envio.getCliente());
+    }
+
+    public static long aEpochMinutos(LocalDateTime fechaUTC) {
+        return fechaUTC.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    public ZonedDateTime zonedFechaIngreso() {
+        return Instant.ofEpochSecond(ingresoEpochMinutos * 60).atZone(ZoneOffset.ofHours(offsetDestinoHoras));
+    }
+
+    /**
+     * Copia del pedido con la cantidad multiplicada por un factor de demanda
+     * (mínimo 1 producto). La usa la búsqueda del punto de colapso.
+     */
+    public PedidoPlanificacion escalado(double factor) {
+        return new PedidoPlanificacion(id, idEnvioPorAeropuerto, ingresoEpochMinutos, offsetDestinoHoras,
+                Math.max(1, (int) Math.ceil(cantidad * factor)), aeropuertoDestinoId, cliente);
+    }
+
+    /**
+     * Crea el envío de trabajo (no gestionado por JPA) que recorre el GRASP en este
+     * ciclo. La lista de hubs se comparte entre todos los pedidos del ciclo.
+     */
+    public Envio aEnvio(Aeropuerto aeropuertoDestino, List<Aeropuerto> hubs) {
+        ZonedDateTime zonedIngreso = zonedFechaIngreso();
+        Envio envio = new Envio();
+        envio.setId(id);
+        envio.setIdEnvioPorAeropuerto(idEnvioPorAeropuerto);
+        envio.setFechaIngreso(zonedIngreso.toLocalDateTime());
+        envio.setZonedFechaIngreso(zonedIngreso);
+        envio.setHusoHorarioDestino(String.valueOf(offsetDestinoHoras));
+        envio.setNumProductos(cantidad);
+        envio.setCliente(cliente);
+        envio.setAeropuertoDestino(aeropuertoDestino);
+        envio.setAeropuertosOrigen(hubs);
+        envio.setParteAsignadas(new ArrayList<>());
+        return envio;
+    }
+
+    private static int parsearOffset(String husoHorario) {
+        try {
+            return husoHorario != null ? Integer.parseInt(husoHorario.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
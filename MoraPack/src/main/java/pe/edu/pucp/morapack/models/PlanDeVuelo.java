@@ -1,7 +1,9 @@
 package pe.edu.pucp.morapack.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -14,8 +16,13 @@ import java.util.ArrayList;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "plan_de_vuelo")
+@Table(name = "plan_de_vuelo", indexes = @Index(name = "idx_plan_de_vuelo_salida_epoch", columnList = "salida_epoch_minutos"))
+// ⚡ Los tramos lo referencian en LAZY: los proxies se inicializan de a lotes
+@BatchSize(size = 100)
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class PlanDeVuelo {
+    public static final Integer ESTADO_CANCELADO = 0; // Los vuelos cargados se crean con estado 1 (activo)
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(unique = true, nullable = false)
@@ -27,12 +34,17 @@ public class PlanDeVuelo {
     private LocalDateTime horaDestino;
     private String husoHorarioOrigen;
     private String husoHorarioDestino;
+    // ⚡ Instante real de despegue (minutos epoch UTC) para consultas por rango exactas
+    private Long salidaEpochMinutos;
     private Integer capacidadMaxima;
     private Integer capacidadOcupada;
     private Boolean mismoContinente;
 
     private Integer estado;
 
+    // Plantilla de la que se instanció el vuelo (null en vuelos cargados fila por fila)
+    private Integer idRutaVuelo;
+
     @Transient
     private ZonedDateTime zonedHoraOrigen;
 
@@ -65,6 +77,19 @@ public class PlanDeVuelo {
         }
     }
 
+    /**
+     * Recalcula el instante UTC de despegue a partir de la hora local y el huso
+     * del origen. La inserción masiva por JDBC lo llama explícitamente.
+     */
+    @PrePersist
+    @PreUpdate
+    public void actualizarInstantesUtc() {
+        if (horaOrigen != null && husoHorarioOrigen != null) {
+            this.salidaEpochMinutos = horaOrigen.atZone(ZoneOffset.ofHours(Integer.parseInt(husoHorarioOrigen)))
+                    .toEpochSecond() / 60;
+        }
+    }
+
     @PostLoad
     private void cargarZonedDateTime() {
         Integer offsetOrigen = Integer.parseInt(this.husoHorarioOrigen);
@@ -36,16 +36,53 @@ public class Planificador {
     private static final int K_COLAPSO = 240; // Factor de consumo - planificar 480 minutos adelante (modo colapso)
     private static final int TA_SEGUNDOS = 70; // ⚡ OPTIMIZADO: Tiempo máximo GRASP - ~1 minuto (antes 100s)
 
+    // ⏱️ Reloj de la simulación: define cuánto tiempo real corresponde a cada
+    // intervalo simulado (ciclos, liberación y eventos). Se elige al iniciar.
+    private RelojSimulacion reloj = new RelojEscalado(RelojEscalado.FACTOR_POR_DEFECTO);
+    private static final long PERIODO_MINIMO_LIBERACION_MS = 1000; // Evitar sobrecarga con factores muy altos
+    // Horas simuladas que avanza cada ejecución de la tarea de liberación: a la
+    // velocidad por defecto (x120) son 90 s reales, el periodo histórico de la tarea
+    private static final int HORAS_SIMULADAS_POR_LIBERACION = 3;
+
+    // ⏱️ PROGRAMACIÓN ADAPTATIVA: cada ciclo se programa al terminar el anterior.
+    // Si el horizonte se queda atrás del reloj se fusionan los horizontes perdidos
+    // en una sola planificación; si el ciclo anterior se excedió de su periodo se
+    // reduce el siguiente horizonte.
+    private static final int MAX_FACTOR_FUSION_HORIZONTE = 3; // Hasta 3 horizontes en un solo ciclo
+    private static final double FACTOR_MINIMO_REDUCCION_HORIZONTE = 0.5; // No bajar de medio horizonte
+    private MetricasCiclos metricasCiclos = new MetricasCiclos();
+    private int liberacionesPendientes = 0; // Ticks de liberación omitidos por un ciclo en curso
+
+    // 🧪 SESIONES: cada simulación aislada tiene su id, su estado de capacidad y sus
+    // propios schedulers. La sesión principal escribe en las tablas compartidas.
+    public static final String SESION_PRINCIPAL = "principal";
+    private static final int MAX_THREADS_EVENTOS_SESION = 2; // Presupuesto de threads por sesión aislada
+    private String idSesion = SESION_PRINCIPAL;
+    private EstadoCapacidadSesion estadoSesion; // null en la sesión principal
+    // Ocupación de aeropuertos de la sesión al cargar el ciclo (para guardar solo
+    // la diferencia)
+    private Map<Integer, Integer> ocupacionAeropuertosInicioCiclo = new HashMap<>();
+    private double factorDemanda = 1.0; // Multiplicador de la cantidad de cada pedido (búsqueda de colapso)
+    private Grasp.Descomposicion descomposicionGrasp = Grasp.Descomposicion.FRANJAS; // Subproblemas paralelos por ciclo
+
     // Método para obtener el valor de K según el modo de simulación
     private int obtenerK() {
         return modoSimulacion == ModoSimulacion.COLAPSO ? K_COLAPSO : K_NORMAL;
     }
 
+    // Minutos de pedidos que cubre un horizonte en el modo indicado (Sa * K)
+    public static long minutosHorizonte(ModoSimulacion modo) {
+        return (long) SA_MINUTOS * (modo == ModoSimulacion.COLAPSO ? K_COLAPSO : K_NORMAL);
+    }
+
     // Estado del planificador
     private AtomicInteger cicloActual = new AtomicInteger(0);
     private LocalDateTime ultimaEjecucion;
     private LocalDateTime proximaEjecucion;
     private Solucion ultimaSolucion;
+    // Motivo por el que GRASP no devolvió solución en el último ciclo ("timeout" o
+    // "error"); null si terminó
+    private volatile String falloGrasp;
     private Map<String, Object> estadisticas = new HashMap<>();
     private List<Map<String, Object>> historicoCiclos = new ArrayList<>();
 
@@ -62,6 +99,11 @@ public class Planificador {
     private ArrayList<PlanDeVuelo> vuelosCacheados;
     private LocalDateTime cacheVuelosInicio;
     private LocalDateTime cacheVuelosFin;
+    // Ventana ordenada por hora de despegue (UTC) e IDs para no duplicar vuelos en el borde
+    private final ArrayDeque<PlanDeVuelo> ventanaVuelos = new ArrayDeque<>();
+    private final Set<Integer> idsVentanaVuelos = new HashSet<>();
+    // Los mismos vuelos agrupados por origen para GRASP, mantenidos junto con la ventana
+    private final IndiceVuelosPorOrigen indiceVuelos = new IndiceVuelosPorOrigen();
 
     // ⚡ SISTEMA DE EVENTOS TEMPORALES: Separar planificación (GRASP) de ejecución
     // temporal
@@ -75,6 +117,34 @@ public class Planificador {
     // desde múltiples threads (crearEventosTemporales y limpiarEventosEjecutados)
     private final List<ScheduledFuture<?>> eventosProgramados = Collections.synchronizedList(new ArrayList<>());
 
+    // ⚡ MODO ACELERADO (headless): los eventos no se programan en el scheduler,
+    // se encolan ordenados por tiempo simulado y se procesan al avanzar el reloj
+    // virtual
+    private static final int MAX_DIAS_SIMULACION_ACELERADA = 90; // Límite de seguridad para COLAPSO sin fecha fin
+    private final PriorityQueue<EventoTemporal> colaEventosVirtual = new PriorityQueue<>(
+            Comparator.comparing((EventoTemporal e) -> e.getTiempoEvento().toLocalDateTime()));
+    private int eventosVirtualesProcesados = 0;
+
+    // ⚡ Cola indexada de liberaciones pendientes (llegadaFinal + 2h)
+    private final ColaLiberacion colaLiberacion = new ColaLiberacion();
+
+    // 💾 CHECKPOINTS: eventos programados aún no ejecutados y cada cuántos ciclos
+    // se guarda el estado en disco
+    private static final int CICLOS_ENTRE_CHECKPOINTS = 5;
+
+    // 🔢 CONTADORES POR ESTADO: se mueven con cada transición de los envíos, se
+    // guardan al terminar cada ciclo y cada tantos ciclos se reconcilian con un
+    // conteo real (por si algún cambio no pasó por el planificador)
+    private static final int CICLOS_ENTRE_RECONCILIACIONES = 30;
+    private final Set<EventoTemporal> eventosPendientes = ConcurrentHashMap.newKeySet();
+    private LocalDateTime ultimoCheckpoint;
+
+    // ⚡ REPARACIÓN INCREMENTAL: eventos anulados por una reparación (el scheduler
+    // ya los tiene programados, se descartan al dispararse) y candado para que una
+    // reparación no corra a la vez que un ciclo sobre el mismo Grasp
+    private final Set<EventoTemporal> eventosCancelados = ConcurrentHashMap.newKeySet();
+    private final Object bloqueoGrasp = new Object();
+
     /**
      * Clase interna para representar eventos temporales (llegada/salida de vuelos)
      */
@@ -172,13 +242,28 @@ public class Planificador {
     }
 
     public void iniciarPlanificacionProgramada(ModoSimulacion modo, LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        iniciarPlanificacionProgramada(modo, fechaInicio, fechaFin,
+                new RelojEscalado(RelojEscalado.FACTOR_POR_DEFECTO));
+    }
+
+    public void iniciarPlanificacionProgramada(ModoSimulacion modo, LocalDateTime fechaInicio, LocalDateTime fechaFin,
+            RelojSimulacion relojSimulacion) {
         if (enEjecucion) {
             System.out.println("⚠️ El planificador ya está en ejecución");
             return;
         }
+        if (relojSimulacion == null || relojSimulacion.esVirtual()) {
+            // El reloj virtual no tiene esperas reales: usar ejecutarSimulacionAcelerada
+            System.err.println("❌ Error: la planificación programada requiere un reloj real o escalado");
+            return;
+        }
+        this.reloj = relojSimulacion;
 
         enEjecucion = true;
         cicloActual.set(0);
+        colaLiberacion.limpiar();
+        metricasCiclos = new MetricasCiclos();
+        liberacionesPendientes = 0;
         scheduler = Executors.newScheduledThreadPool(1);
         if (scheduler == null) {
             System.err.println("❌ Error crítico: No se pudo crear el ScheduledExecutorService");
@@ -191,13 +276,16 @@ public class Planificador {
         this.fechaFinSimulacion = fechaFin;
 
         // ✅ ENVIAR ESTADO INICIAL VÍA WEBSOCKET
-        webSocketService.enviarEstadoPlanificador(true, cicloActual.get(), "inmediato");
+        if (publicarWebSocket()) {
+            webSocketService.enviarEstadoPlanificador(true, cicloActual.get(), "inmediato");
+        }
 
-        System.out.println("🚀 INICIANDO PLANIFICADOR PROGRAMADO");
+        System.out.printf("🚀 INICIANDO PLANIFICADOR PROGRAMADO (sesión %s)%n", idSesion);
         int kActual = obtenerK();
         System.out.printf("⚙️ Configuración: Sa=%d min, K=%d, Ta=%d seg, Sc=%d min%n", SA_MINUTOS, kActual, TA_SEGUNDOS,
                 SA_MINUTOS * kActual);
         System.out.printf("📋 Modo de simulación: %s%n", modo);
+        System.out.printf("⏱️ Reloj: %s (x%.1f)%n", reloj.getClass().getSimpleName(), reloj.getFactorAceleracion());
 
         // ⚡ OPTIMIZACIÓN CRÍTICA: No cargar todos los envíos en memoria
         // En su lugar, cargaremos solo los envíos del horizonte actual en cada ciclo
@@ -262,25 +350,53 @@ public class Planificador {
             return;
         }
 
+        arrancarEjecucionProgramada(tiempoInicioSimulacion, tiempoInicioSimulacion, Collections.emptyList());
+    }
+
+    /**
+     * Arranca el scheduler de eventos, el primer ciclo, la programación de ciclos
+     * y la tarea de liberación. Lo usan el inicio normal y la reanudación desde un
+     * checkpoint (que además reprograma los eventos pendientes guardados).
+     */
+    private void arrancarEjecucionProgramada(LocalDateTime tiempoReloj, LocalDateTime tiempoPrimerCiclo,
+            List<EventoTemporal> eventosRestaurados) {
         // ⚡ Inicializar scheduler dedicado para eventos temporales
         // ✅ OPTIMIZADO: Ajustar threads según núcleos disponibles para reducir context
         // switching
         if (schedulerEventos == null) {
             int numCores = Runtime.getRuntime().availableProcessors();
             int numThreadsEventos = numCores <= 2 ? 2 : Math.min(4, numCores);
+            if (esSesionAislada()) {
+                numThreadsEventos = Math.min(numThreadsEventos, MAX_THREADS_EVENTOS_SESION);
+            }
             schedulerEventos = Executors.newScheduledThreadPool(numThreadsEventos);
             System.out.printf("⏰ Scheduler de eventos temporales inicializado con %d threads (para %d núcleos)%n",
                     numThreadsEventos, numCores);
         }
 
+        // ⏱️ El reloj arranca en el tiempo de inicio de la simulación (o en el del
+        // checkpoint al reanudar)
+        reloj.sincronizar(tiempoReloj);
+
+        // 🔢 Contadores por estado del rango simulado (también tras un checkpoint)
+        inicializarConteosEstado();
+
+        // 💾 Reprogramar eventos pendientes restaurados desde un checkpoint
+        for (EventoTemporal evento : eventosRestaurados) {
+            long minutosSimulados = Math.max(0,
+                    Duration.between(tiempoSimuladoActual, evento.getTiempoEvento().toLocalDateTime()).toMinutes());
+            programarEvento(evento, reloj.aMilisegundosReales(Duration.ofMinutes(minutosSimulados)));
+        }
+
         // ✅ INICIALIZAR ultimoTiempoEjecucion antes del primer ciclo
         if (ultimoTiempoEjecucion == null) {
             ultimoTiempoEjecucion = tiempoInicioSimulacion;
         }
 
         // Ejecutar el primer ciclo inmediatamente
+        long duracionPrimerCicloMs = 0;
         try {
-            ejecutarCicloPlanificacion(tiempoInicioSimulacion);
+            duracionPrimerCicloMs = ejecutarCicloMedido(tiempoPrimerCiclo);
             // ✅ Asegurar que ultimoTiempoEjecucion esté inicializado después del primer
             // ciclo
             if (ultimoTiempoEjecucion == null) {
@@ -296,50 +412,47 @@ public class Planificador {
             // Continuar con la programación aunque haya error en el primer ciclo
         }
 
-        // Programar ejecuciones posteriores cada SA_MINUTOS minutos
+        // Programar ejecuciones posteriores: cada ciclo avanza SA_MINUTOS * K minutos
+        // simulados, el reloj determina a cuánto tiempo real equivale
         if (scheduler != null) {
-            tareaProgramada = scheduler.scheduleAtFixedRate(() -> {
-                try {
-                    // ✅ Verificar que ultimoTiempoEjecucion no sea null
-                    if (ultimoTiempoEjecucion == null) {
-                        System.err.println(
-                                "⚠️ ADVERTENCIA: ultimoTiempoEjecucion es null, usando tiempoInicioSimulacion");
-                        ultimoTiempoEjecucion = tiempoInicioSimulacion != null ? tiempoInicioSimulacion
-                                : LocalDateTime.now();
-                    }
-                    LocalDateTime tiempoActual = obtenerTiempoActualSimulacion();
-                    ejecutarCicloPlanificacion(tiempoActual);
-                } catch (Exception e) {
-                    System.err.printf("❌ Error crítico en tarea programada (ciclo %d): %s%n",
-                            cicloActual.get() + 1, e.getMessage());
-                    e.printStackTrace();
-                    // ✅ NO detener automáticamente, solo registrar el error
-                    // El planificador continuará intentando en el siguiente ciclo
-                }
-            }, SA_MINUTOS, SA_MINUTOS, TimeUnit.MINUTES);
-
-            // ✅ Programar tarea separada para verificar liberación de productos cada hora
-            // simulada
-            // Esta tarea se ejecuta más frecuentemente para verificar liberaciones
-            // exactamente cuando pasen 2 horas
-            // Mapeo: 1 hora simulada = 30 segundos reales (ajustable según necesidad)
+            long periodoCicloMs = Math.max(1, periodoCicloReal().toMillis());
+            long periodoLiberacionMs = Math.max(PERIODO_MINIMO_LIBERACION_MS,
+                    reloj.aMilisegundosReales(Duration.ofHours(HORAS_SIMULADAS_POR_LIBERACION)));
+            System.out.printf("⏱️ Periodo real: ciclo cada %d ms, liberación cada %d ms%n", periodoCicloMs,
+                    periodoLiberacionMs);
+
+            // ⏱️ El siguiente ciclo se programa al terminar el actual (no a tasa fija),
+            // así un ciclo largo no deja ciclos encolados uno tras otro
+            programarSiguienteCiclo(Math.max(0, periodoCicloMs - duracionPrimerCicloMs));
+
+            // ✅ Programar tarea separada para verificar liberación de productos cada
+            // HORAS_SIMULADAS_POR_LIBERACION horas simuladas
+            // Mapeo: el tiempo real de esas horas lo indica el reloj (90 s a x120)
             tareaLiberacionProductos = scheduler.scheduleAtFixedRate(() -> {
                 if (!enEjecucion)
                     return;
 
                 // ⚡ OPTIMIZACIÓN: No ejecutar si hay un ciclo GRASP en proceso
-                // Esto evita competir por recursos de BD y CPU
+                // Esto evita competir por recursos de BD y CPU. Las horas omitidas se
+                // recuperan en la siguiente ejecución
                 if (cicloEnEjecucion) {
+                    liberacionesPendientes++;
+                    metricasCiclos.registrarLiberacionOmitida();
                     return;
                 }
 
-                // Avanzar el tiempo simulado en 1 hora para verificaciones
-                LocalDateTime nuevoTiempoSimulado = tiempoSimuladoActual.plusHours(1);
+                // Avanzar el tiempo simulado del periodo más el de las ejecuciones omitidas
+                LocalDateTime nuevoTiempoSimulado = tiempoSimuladoActual
+                        .plusHours((long) HORAS_SIMULADAS_POR_LIBERACION * (1 + liberacionesPendientes));
 
                 // No avanzar más allá del horizonte actual de planificación
                 // Esto asegura que no verificamos tiempos futuros que aún no han sido
                 // planificados
                 if (nuevoTiempoSimulado.isAfter(ultimoHorizontePlanificado)) {
+                    nuevoTiempoSimulado = ultimoHorizontePlanificado;
+                }
+                liberacionesPendientes = 0;
+                if (!nuevoTiempoSimulado.isAfter(tiempoSimuladoActual)) {
                     // Si el tiempo simulado alcanzó el horizonte, no avanzar más
                     // La verificación se hará cuando el horizonte avance en el siguiente ciclo
                     return;
@@ -349,7 +462,7 @@ public class Planificador {
 
                 // Verificar y liberar productos que llegaron hace más de 2 horas
                 liberarProductosEntregados(tiempoSimuladoActual);
-            }, 90, 90, TimeUnit.SECONDS); // ⚡ Ejecutar cada 90 segundos (antes 30s) para reducir overhead
+            }, periodoLiberacionMs, periodoLiberacionMs, TimeUnit.MILLISECONDS);
         } else {
             System.err.println("❌ Error: scheduler es null, no se puede programar la tarea");
             enEjecucion = false;
@@ -381,6 +494,7 @@ public class Planificador {
                     }
                 }
                 eventosProgramados.clear();
+                eventosPendientes.clear();
                 if (eventosCancelados > 0) {
                     System.out.printf("🛑 Cancelados %d eventos temporales pendientes%n", eventosCancelados);
                 }
@@ -419,9 +533,17 @@ public class Planificador {
         vuelosCacheados = null;
         cacheVuelosInicio = null;
         cacheVuelosFin = null;
+        ventanaVuelos.clear();
+        idsVentanaVuelos.clear();
+        indiceVuelos.limpiar();
+
+        // 🔢 Guardar los contadores por estado con las últimas transiciones
+        guardarConteosEstado();
 
         // ✅ ENVIAR ESTADO DE DETENCIÓN VÍA WEBSOCKET
-        webSocketService.enviarEstadoPlanificador(false, cicloActual.get(), "detenido");
+        if (publicarWebSocket()) {
+            webSocketService.enviarEstadoPlanificador(false, cicloActual.get(), "detenido");
+        }
         System.out.println("🛑 Planificador detenido");
     }
 
@@ -429,6 +551,294 @@ public class Planificador {
         return enEjecucion;
     }
 
+    /**
+     * Convierte este planificador en una sesión aislada: la capacidad ocupada y los
+     * estados de los envíos se llevan en memoria por sesión y las partes asignadas
+     * se persisten etiquetadas con el id de sesión.
+     */
+    public void configurarSesion(String idSesion) {
+        if (enEjecucion) {
+            throw new IllegalStateException("No se puede cambiar la sesión de un planificador en ejecución");
+        }
+        if (idSesion == null || SESION_PRINCIPAL.equals(idSesion)) {
+            this.idSesion = SESION_PRINCIPAL;
+            this.estadoSesion = null;
+        } else {
+            this.idSesion = idSesion;
+            this.estadoSesion = new EstadoCapacidadSesion(idSesion);
+        }
+    }
+
+    public boolean esSesionAislada() {
+        return estadoSesion != null;
+    }
+
+    // Valor de id_sesion que se persiste en las partes (null en la sesión principal)
+    private String idSesionPersistida() {
+        return esSesionAislada() ? idSesion : null;
+    }
+
+    private boolean perteneceASesion(ParteAsignada parte) {
+        return Objects.equals(parte.getIdSesion(), idSesionPersistida());
+    }
+
+    // Las sesiones aisladas no publican en los tópicos compartidos del frontend
+    private boolean publicarWebSocket() {
+        return !esSesionAislada();
+    }
+
+    /**
+     * ⚡ SIMULACIÓN ACELERADA (headless): ejecuta la misma lógica de ciclos, eventos
+     * temporales y liberación de productos que la simulación programada, pero
+     * conducida por un reloj virtual. No se espera SA_MINUTOS reales entre ciclos
+     * ni 90 segundos entre liberaciones: el tiempo simulado salta directamente al
+     * siguiente evento o al límite del ciclo.
+     *
+     * @param modo        SEMANAL o COLAPSO
+     * @param fechaInicio Inicio de la simulación (UTC)
+     * @param fechaFin    Fin de la simulación. En COLAPSO es opcional y actúa como
+     *                    límite si el sistema no colapsa antes
+     * @return Resumen con el intervalo simulado y el tiempo real empleado
+     */
+    public Map<String, Object> ejecutarSimulacionAcelerada(ModoSimulacion modo, LocalDateTime fechaInicio,
+            LocalDateTime fechaFin) {
+        Map<String, Object> resultado = new HashMap<>();
+
+        if (enEjecucion) {
+            resultado.put("estado", "error");
+            resultado.put("mensaje", "El planificador ya está en ejecución");
+            return resultado;
+        }
+        if (modo == ModoSimulacion.NORMAL || fechaInicio == null
+                || (modo == ModoSimulacion.SEMANAL && fechaFin == null)) {
+            resultado.put("estado", "error");
+            resultado.put("mensaje", "La simulación acelerada requiere modo SEMANAL (con fecha fin) o COLAPSO");
+            return resultado;
+        }
+
+        long inicioReal = System.currentTimeMillis();
+        LocalDateTime limite = fechaFin != null ? fechaFin : fechaInicio.plusDays(MAX_DIAS_SIMULACION_ACELERADA);
+        String motivoFin = "fecha_fin_alcanzada";
+
+        enEjecucion = true;
+        reloj = new RelojVirtual(fechaInicio);
+        cicloActual.set(0);
+        colaEventosVirtual.clear();
+        colaLiberacion.limpiar();
+        metricasCiclos = new MetricasCiclos();
+        eventosVirtualesProcesados = 0;
+        falloGrasp = null;
+        this.modoSimulacion = modo;
+        this.fechaInicioSimulacion = fechaInicio;
+        this.fechaFinSimulacion = modo == ModoSimulacion.SEMANAL ? fechaFin : null;
+        this.enviosOriginales = null;
+        this.tiempoInicioSimulacion = fechaInicio;
+        this.ultimoHorizontePlanificado = fechaInicio;
+        this.tiempoSimuladoActual = fechaInicio;
+        ultimoTiempoEjecucion = fechaInicio;
+
+        inicializarConteosEstado();
+
+        System.out.printf("🚀 INICIANDO SIMULACIÓN ACELERADA (%s): %s → %s%n", modo,
+                fechaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                limite.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+
+        try {
+            LocalDateTime tiempoEjecucion = fechaInicio;
+            while (enEjecucion) {
+                LocalDateTime horizonteAnterior = ultimoHorizontePlanificado;
+                ejecutarCicloPlanificacion(tiempoEjecucion);
+                mantenerConteosEstado();
+
+                // Avanzar el reloj virtual hasta el horizonte ya planificado
+                avanzarRelojVirtual(ultimoHorizontePlanificado);
+
+                // Sin solución el horizonte queda sin planificar: no cuenta como
+                // fecha fin alcanzada ni como ausencia de colapso
+                if (falloGrasp != null) {
+                    motivoFin = falloGrasp;
+                    break;
+                }
+                if (!enEjecucion) {
+                    motivoFin = hayPedidosSinRuta(ultimaSolucion) ? "colapso" : "fecha_fin_alcanzada";
+                    break;
+                }
+                if (!ultimoHorizontePlanificado.isBefore(limite)) {
+                    break;
+                }
+                // Si el ciclo falló, el horizonte no avanza: evitar un bucle infinito
+                if (!ultimoHorizontePlanificado.isAfter(horizonteAnterior)) {
+                    System.err.println("❌ [SimulacionAcelerada] El horizonte no avanzó, deteniendo simulación");
+                    motivoFin = "error";
+                    break;
+                }
+                // El siguiente ciclo se ejecuta en el instante ya planificado (el reloj
+                // virtual no avanza por sí solo como el de la ejecución programada)
+                tiempoEjecucion = ultimoHorizontePlanificado;
+            }
+
+            // Procesar los eventos restantes de los vuelos ya planificados
+            vaciarEventosVirtuales();
+        } catch (Exception e) {
+            System.err.printf("❌ Error en simulación acelerada: %s%n", e.getMessage());
+            e.printStackTrace();
+            motivoFin = "error";
+            resultado.put("mensajeError", e.getMessage());
+        } finally {
+            if (enEjecucion) {
+                detenerPlanificacion();
+            }
+            colaEventosVirtual.clear();
+        }
+
+        long tiempoRealMs = System.currentTimeMillis() - inicioReal;
+        long minutosSimulados = Duration.between(fechaInicio, tiempoSimuladoActual).toMinutes();
+        double segundosReales = Math.max(tiempoRealMs, 1) / 1000.0;
+
+        System.out.printf("🏁 SIMULACIÓN ACELERADA COMPLETADA: %d ciclos, %.1f h simuladas en %.1f s reales (%s)%n",
+                cicloActual.get(), minutosSimulados / 60.0, segundosReales, motivoFin);
+
+        resultado.put("estado", "error".equals(motivoFin) ? "error" : "éxito");
+        resultado.put("modo", modo.name());
+        resultado.put("idSesion", idSesion);
+        resultado.put("motivoFin", motivoFin);
+        resultado.put("colapso", "colapso".equals(motivoFin));
+        resultado.put("inicioSimulado", fechaInicio.toString());
+        resultado.put("finSimulado", tiempoSimuladoActual.toString());
+        resultado.put("ultimoHorizontePlanificado", ultimoHorizontePlanificado.toString());
+        resultado.put("horasSimuladas", minutosSimulados / 60.0);
+        resultado.put("ciclosEjecutados", cicloActual.get());
+        resultado.put("eventosProcesados", eventosVirtualesProcesados);
+        resultado.put("tiempoRealMs", tiempoRealMs);
+        resultado.put("factorAceleracion", (minutosSimulados * 60.0) / segundosReales);
+        if (esSesionAislada()) {
+            resultado.put("estadoSesion", estadoSesion.resumen());
+        }
+        return resultado;
+    }
+
+    /**
+     * Avanza el reloj virtual hasta el instante indicado, replicando la tarea de
+     * liberación (pasos de 1 hora simulada) y procesando en orden los eventos que
+     * vencen en cada paso.
+     */
+    private void avanzarRelojVirtual(LocalDateTime hasta) {
+        while (!tiempoSimuladoActual.plusHours(1).isAfter(hasta)) {
+            LocalDateTime siguientePaso = tiempoSimuladoActual.plusHours(1);
+            procesarEventosVirtualesHasta(siguientePaso);
+            reloj.sincronizar(siguientePaso);
+            tiempoSimuladoActual = siguientePaso;
+            liberarProductosEntregados(tiempoSimuladoActual);
+        }
+    }
+
+    /**
+     * Procesa todos los eventos pendientes de la cola virtual y libera los
+     * productos que lleguen al final (2 horas después del último evento).
+     */
+    private void vaciarEventosVirtuales() {
+        if (colaEventosVirtual.isEmpty()) {
+            return;
+        }
+        LocalDateTime ultimoEvento = colaEventosVirtual.stream()
+                .map(e -> e.getTiempoEvento().toLocalDateTime())
+                .max(LocalDateTime::compareTo)
+                .orElse(tiempoSimuladoActual);
+        avanzarRelojVirtual(ultimoEvento.plusHours(3));
+    }
+
+    private void procesarEventosVirtualesHasta(LocalDateTime tiempo) {
+        while (!colaEventosVirtual.isEmpty()
+                && !colaEventosVirtual.peek().getTiempoEvento().toLocalDateTime().isAfter(tiempo)) {
+            procesarEvento(colaEventosVirtual.poll());
+            eventosVirtualesProcesados++;
+        }
+    }
+
+    private boolean hayPedidosSinRuta(Solucion solucion) {
+        if (solucion == null || solucion.getEnvios() == null) {
+            return false;
+        }
+        return solucion.getEnvios().stream().anyMatch(e -> !e.estaCompleto());
+    }
+
+    /**
+     * 🔍 Cuellos de botella en el estado actual: aeropuertos y vuelos (desde el
+     * último horizonte) con mayor ocupación relativa, y destinos de los pedidos
+     * que quedaron sin ruta en el último ciclo.
+     */
+    public Map<String, Object> diagnosticarCuellosDeBotella(int top) {
+        Map<String, Object> diagnostico = new HashMap<>();
+
+        List<Map<String, Object>> aeropuertos = new ArrayList<>();
+        if (grasp.getAeropuertos() != null) {
+            grasp.getAeropuertos().stream()
+                    .filter(a -> a.getCapacidadMaxima() != null && a.getCapacidadMaxima() > 0)
+                    .sorted(Comparator.comparingDouble(this::ocupacionRelativa).reversed())
+                    .limit(top)
+                    .forEach(a -> {
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("codigo", a.getCodigo());
+                        item.put("ciudad", a.getCiudad());
+                        item.put("capacidadOcupada", a.getCapacidadOcupada());
+                        item.put("capacidadMaxima", a.getCapacidadMaxima());
+                        item.put("ocupacion", ocupacionRelativa(a));
+                        aeropuertos.add(item);
+                    });
+        }
+
+        List<Map<String, Object>> vuelos = new ArrayList<>();
+        if (grasp.getPlanesDeVuelo() != null) {
+            ZonedDateTime desde = (inicioHorizonteUltimoCiclo != null ? inicioHorizonteUltimoCiclo
+                    : tiempoSimuladoActual).atZone(ZoneOffset.UTC);
+            grasp.getPlanesDeVuelo().stream()
+                    .filter(v -> v.getCapacidadMaxima() != null && v.getCapacidadMaxima() > 0
+                            && !v.getZonedHoraOrigen().isBefore(desde))
+                    .sorted(Comparator.comparingDouble(this::ocupacionRelativa).reversed())
+                    .limit(top)
+                    .forEach(v -> {
+                        Aeropuerto origen = obtenerAeropuertoPorId(v.getCiudadOrigen());
+                        Aeropuerto destino = obtenerAeropuertoPorId(v.getCiudadDestino());
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("id", v.getId());
+                        item.put("origen", origen != null ? origen.getCodigo() : v.getCiudadOrigen());
+                        item.put("destino", destino != null ? destino.getCodigo() : v.getCiudadDestino());
+                        item.put("salida", v.getZonedHoraOrigen().toString());
+                        item.put("capacidadOcupada", v.getCapacidadOcupada());
+                        item.put("capacidadMaxima", v.getCapacidadMaxima());
+                        item.put("ocupacion", ocupacionRelativa(v));
+                        vuelos.add(item);
+                    });
+        }
+
+        Map<String, Integer> destinosSinRuta = new HashMap<>();
+        int productosSinRuta = 0;
+        if (ultimaSolucion != null && ultimaSolucion.getEnvios() != null) {
+            for (Envio envio : ultimaSolucion.getEnvios()) {
+                if (!envio.estaCompleto()) {
+                    destinosSinRuta.merge(envio.getAeropuertoDestino().getCodigo(), 1, Integer::sum);
+                    productosSinRuta += envio.cantidadRestante();
+                }
+            }
+        }
+
+        diagnostico.put("aeropuertos", aeropuertos);
+        diagnostico.put("vuelos", vuelos);
+        diagnostico.put("destinosSinRuta", destinosSinRuta);
+        diagnostico.put("productosSinRuta", productosSinRuta);
+        return diagnostico;
+    }
+
+    private double ocupacionRelativa(Aeropuerto aeropuerto) {
+        int ocupada = aeropuerto.getCapacidadOcupada() != null ? aeropuerto.getCapacidadOcupada() : 0;
+        return (double) ocupada / aeropuerto.getCapacidadMaxima();
+    }
+
+    private double ocupacionRelativa(PlanDeVuelo vuelo) {
+        int ocupada = vuelo.getCapacidadOcupada() != null ? vuelo.getCapacidadOcupada() : 0;
+        return (double) ocupada / vuelo.getCapacidadMaxima();
+    }
+
     private LocalDateTime obtenerPrimerPedidoTiempo() {
         if (grasp.getEnvios() == null || grasp.getEnvios().isEmpty()) {
             return LocalDateTime.now();
@@ -452,12 +862,120 @@ public class Planificador {
     }
 
     private LocalDateTime obtenerUltimaEjecucionTiempo() {
-        // Aqui llevarias registro del ultimo tiempo de ejecucion
-        // Por simplicidad, usamos una variable estatica
         return ultimoTiempoEjecucion;
     }
 
-    private static LocalDateTime ultimoTiempoEjecucion;
+    // Tiempo de la última ejecución (por instancia, para no compartirlo entre
+    // simulaciones)
+    private LocalDateTime ultimoTiempoEjecucion;
+
+    /**
+     * Ejecuta un ciclo programado, registra su duración y programa el siguiente
+     * descontando lo que tardó (sin ciclos encolados si hubo sobrecarga).
+     */
+    private void ejecutarCicloProgramado() {
+        long duracionMs = 0;
+        try {
+            // ✅ Verificar que ultimoTiempoEjecucion no sea null
+            if (ultimoTiempoEjecucion == null) {
+                System.err.println(
+                        "⚠️ ADVERTENCIA: ultimoTiempoEjecucion es null, usando tiempoInicioSimulacion");
+                ultimoTiempoEjecucion = tiempoInicioSimulacion != null ? tiempoInicioSimulacion
+                        : reloj.ahora();
+            }
+            LocalDateTime tiempoActual = obtenerTiempoActualSimulacion();
+            duracionMs = ejecutarCicloMedido(tiempoActual);
+
+            // 💾 Checkpoint periódico (en el mismo hilo que los ciclos: estado consistente)
+            if (enEjecucion && cicloActual.get() % CICLOS_ENTRE_CHECKPOINTS == 0) {
+                guardarCheckpoint();
+            }
+            mantenerConteosEstado();
+        } catch (Exception e) {
+            System.err.printf("❌ Error crítico en tarea programada (ciclo %d): %s%n",
+                    cicloActual.get() + 1, e.getMessage());
+            e.printStackTrace();
+            // ✅ NO detener automáticamente, solo registrar el error
+            // El planificador continuará intentando en el siguiente ciclo
+        }
+        programarSiguienteCiclo(Math.max(0, Math.max(1, periodoCicloReal().toMillis()) - duracionMs));
+    }
+
+    private void programarSiguienteCiclo(long retrasoMs) {
+        if (!enEjecucion || scheduler == null || scheduler.isShutdown()) {
+            return;
+        }
+        try {
+            tareaProgramada = scheduler.schedule(this::ejecutarCicloProgramado, retrasoMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            System.err.printf("⚠️ No se pudo programar el siguiente ciclo: %s%n", e.getMessage());
+        }
+    }
+
+    /**
+     * Ejecuta un ciclo y registra su duración real frente al periodo del reloj.
+     *
+     * @return duración del ciclo en milisegundos reales
+     */
+    private long ejecutarCicloMedido(LocalDateTime tiempoEjecucion) {
+        long inicio = System.currentTimeMillis();
+        synchronized (bloqueoGrasp) {
+            ejecutarCicloPlanificacion(tiempoEjecucion);
+        }
+        long duracionMs = System.currentTimeMillis() - inicio;
+
+        long periodoMs = Math.max(1, periodoCicloReal().toMillis());
+        if (metricasCiclos.registrarCiclo(duracionMs, periodoMs)) {
+            System.out.printf("⏱️ SOBRECARGA: el ciclo %d tardó %d ms (periodo %d ms), retraso %d min simulados%n",
+                    cicloActual.get(), duracionMs, periodoMs, metricasCiclos.getRetrasoActualMinutos());
+        }
+        return duracionMs;
+    }
+
+    /**
+     * Minutos simulados del siguiente horizonte. Con reloj virtual siempre es
+     * SA_MINUTOS * K; con reloj real o escalado se fusionan horizontes si el
+     * planificador va retrasado respecto al reloj, o se reduce el horizonte si el
+     * ciclo anterior excedió su periodo.
+     */
+    private long calcularMinutosHorizonte(LocalDateTime inicioHorizonte, int kActual) {
+        long minutosBase = (long) SA_MINUTOS * kActual;
+        if (reloj.esVirtual()) {
+            return minutosBase;
+        }
+
+        long retrasoMinutos = Duration.between(inicioHorizonte, reloj.ahora()).toMinutes();
+        metricasCiclos.registrarRetraso(retrasoMinutos);
+
+        if (retrasoMinutos >= minutosBase) {
+            long minutosFusionados = Math.min(minutosBase + retrasoMinutos, minutosBase * MAX_FACTOR_FUSION_HORIZONTE);
+            metricasCiclos.registrarHorizonte(minutosFusionados, "FUSIONADO");
+            System.out.printf("⏱️ Planificador retrasado %d min simulados: fusionando horizontes (%d min)%n",
+                    retrasoMinutos, minutosFusionados);
+            return minutosFusionados;
+        }
+
+        if (metricasCiclos.ultimoCicloConSobrecarga()) {
+            double factor = Math.max(FACTOR_MINIMO_REDUCCION_HORIZONTE,
+                    (double) metricasCiclos.getPeriodoCicloMs() / metricasCiclos.getDuracionUltimoCicloMs());
+            long minutosReducidos = Math.max(SA_MINUTOS, Math.round(minutosBase * factor));
+            metricasCiclos.registrarHorizonte(minutosReducidos, "REDUCIDO");
+            System.out.printf("⏱️ Ciclo anterior excedido: reduciendo horizonte a %d min%n", minutosReducidos);
+            return minutosReducidos;
+        }
+
+        metricasCiclos.registrarHorizonte(minutosBase, "NORMAL");
+        return minutosBase;
+    }
+
+    // Tiempo real que separa dos ciclos según el reloj de la simulación: el ciclo
+    // avanza SA_MINUTOS * K minutos simulados, así que a la velocidad por defecto
+    // (x120) son 2 min reales en modo normal/semanal (240 min) y 4 min reales en
+    // COLAPSO (480 min). Antes del reloj, COLAPSO también corría cada 2 min y su
+    // horizonte se adelantaba al tiempo de los eventos.
+    private Duration periodoCicloReal() {
+        return Duration.ofMillis(reloj.aMilisegundosReales(Duration.ofMinutes((long) SA_MINUTOS * obtenerK())));
+    }
 
     private void ejecutarCicloPlanificacion(LocalDateTime tiempoEjecucion) {
         if (!enEjecucion)
@@ -469,8 +987,8 @@ public class Planificador {
 
         long inicioCiclo = System.currentTimeMillis();
         int ciclo = cicloActual.incrementAndGet();
-        ultimaEjecucion = LocalDateTime.now();
-        proximaEjecucion = ultimaEjecucion.plusMinutes(SA_MINUTOS);
+        ultimaEjecucion = reloj.marcaTiempo();
+        proximaEjecucion = ultimaEjecucion.plus(periodoCicloReal());
 
         System.out.printf("%n=== CICLO %d INICIADO ===%n", ciclo);
         System.out.printf("🕒 Ejecución: %s%n",
@@ -490,7 +1008,7 @@ public class Planificador {
             // 2. Calcular horizonte temporal (Sc)
             LocalDateTime inicioHorizonte = this.ultimoHorizontePlanificado;
             int kActual = obtenerK();
-            LocalDateTime finHorizonte = inicioHorizonte.plusMinutes(SA_MINUTOS * kActual);
+            LocalDateTime finHorizonte = inicioHorizonte.plusMinutes(calcularMinutosHorizonte(inicioHorizonte, kActual));
 
             // En modo SEMANAL, limitar el horizonte a la fecha fin
             if (modoSimulacion == ModoSimulacion.SEMANAL && fechaFinSimulacion != null) {
@@ -504,9 +1022,12 @@ public class Planificador {
                     finHorizonte.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
 
             // 3. Obtener pedidos dentro del horizonte actual
-            List<Envio> pedidosParaPlanificar = obtenerPedidosEnVentana(inicioHorizonte, finHorizonte);
+            metricasCiclos.iniciarCiclo();
+            long inicioFase = System.currentTimeMillis();
+            List<PedidoPlanificacion> pedidosEnVentana = obtenerPedidosEnVentana(inicioHorizonte, finHorizonte);
+            metricasCiclos.registrarFase("pedidos", System.currentTimeMillis() - inicioFase);
 
-            System.out.printf("📦 Pedidos a planificar en el ciclo %d: %d%n", ciclo, pedidosParaPlanificar.size());
+            System.out.printf("📦 Pedidos a planificar en el ciclo %d: %d%n", ciclo, pedidosEnVentana.size());
 
             this.inicioHorizonteUltimoCiclo = inicioHorizonte;
             this.finHorizonteUltimoCiclo = finHorizonte;
@@ -521,7 +1042,7 @@ public class Planificador {
             // (cada 90 segundos) para no bloquear el ciclo GRASP
             // No llamar a liberarProductosEntregados aquí - se maneja automáticamente
 
-            if (pedidosParaPlanificar.isEmpty()) {
+            if (pedidosEnVentana.isEmpty()) {
                 System.out.println("✅ No hay pedidos pendientes en este horizonte");
 
                 // ⚡ Los eventos temporales se ejecutan individualmente cuando les toca
@@ -551,15 +1072,27 @@ public class Planificador {
             }
 
             // ✅ Recargar estado actual de vuelos y aeropuertos para este ciclo
+            inicioFase = System.currentTimeMillis();
             recargarDatosBase(inicioHorizonte, finHorizonte);
+            List<Envio> pedidosParaPlanificar = construirEnviosPlanificacion(pedidosEnVentana);
+            metricasCiclos.registrarFase("recarga", System.currentTimeMillis() - inicioFase);
 
             // 4. Ejecutar GRASP con timeout
             System.out.println("🚀 [ANTES] Ejecutando GRASP...");
             long inicioGrasp = System.currentTimeMillis();
             Solucion solucion = ejecutarGRASPConTimeout(pedidosParaPlanificar, tiempoEjecucion);
             long tiempoGrasp = System.currentTimeMillis() - inicioGrasp;
+            metricasCiclos.registrarFase("grasp", tiempoGrasp);
             System.out.printf("✅ [DESPUÉS] GRASP terminado en %d ms. Solución con %d envíos%n",
                     tiempoGrasp, solucion != null && solucion.getEnvios() != null ? solucion.getEnvios().size() : 0);
+            if (falloGrasp != null && reloj.esVirtual()) {
+                // En la simulación acelerada el horizonte no se da por planificado: la
+                // simulación termina informando el fallo en lugar de perder sus pedidos
+                System.err.printf("❌ CICLO %d - GRASP sin solución (%s): %d pedidos sin planificar%n", ciclo,
+                        falloGrasp, pedidosParaPlanificar.size());
+                cicloEnEjecucion = false;
+                return;
+            }
             this.ultimaSolucion = solucion;
             actualizarEstadisticas(solucion, ciclo, System.currentTimeMillis() - inicioCiclo);
 
@@ -589,6 +1122,7 @@ public class Planificador {
                     long inicioPersistir = System.currentTimeMillis();
                     persistirCambios(solucion);
                     long tiempoPersistir = System.currentTimeMillis() - inicioPersistir;
+                    metricasCiclos.registrarFase("persistencia", tiempoPersistir);
                     System.out.printf("💾 [DESPUÉS] persistirCambios terminado en %d ms%n", tiempoPersistir);
                     System.out.println("💾 Cambios persistidos en la base de datos");
                 } catch (Exception e) {
@@ -597,7 +1131,9 @@ public class Planificador {
                 }
 
                 // ✅ ENVIAR ACTUALIZACIÓN VÍA WEBSOCKET
-                webSocketService.enviarActualizacionCiclo(solucion, ciclo);
+                if (publicarWebSocket()) {
+                    webSocketService.enviarActualizacionCiclo(solucion, ciclo);
+                }
 
                 // Mostrar resultados
                 mostrarResultadosCiclo(solucion, pedidosParaPlanificar, ciclo);
@@ -609,10 +1145,12 @@ public class Planificador {
 
             // ⚡ CREAR EVENTOS TEMPORALES: Convertir las rutas planificadas en eventos
             // que se procesarán cuando el tiempo avance
+            inicioFase = System.currentTimeMillis();
             crearEventosTemporales(solucion, inicioHorizonte);
 
             // ✅ LIMPIAR EVENTOS EJECUTADOS para liberar memoria
             limpiarEventosEjecutados();
+            metricasCiclos.registrarFase("eventos", System.currentTimeMillis() - inicioFase);
 
             // ✅ PERSISTIR CAMBIOS EN LA BASE DE DATOS
             try {
@@ -620,6 +1158,7 @@ public class Planificador {
                 long inicioPersistir = System.currentTimeMillis();
                 persistirCambios(solucion);
                 long tiempoPersistir = System.currentTimeMillis() - inicioPersistir;
+                metricasCiclos.registrarFase("persistencia", tiempoPersistir);
                 System.out.printf("💾 [DESPUÉS] persistirCambios terminado en %d ms%n", tiempoPersistir);
                 System.out.println("💾 Cambios persistidos en la base de datos");
             } catch (Exception e) {
@@ -634,7 +1173,9 @@ public class Planificador {
             this.ultimoHorizontePlanificado = finHorizonte;
 
             // ✅ ENVIAR ACTUALIZACIÓN VÍA WEBSOCKET
-            webSocketService.enviarActualizacionCiclo(solucion, ciclo);
+            if (publicarWebSocket()) {
+                webSocketService.enviarActualizacionCiclo(solucion, ciclo);
+            }
 
             // 6. Mostrar resultados
             mostrarResultadosCiclo(solucion, pedidosParaPlanificar, ciclo);
@@ -654,7 +1195,9 @@ public class Planificador {
             // actualizarEstadisticasTimeout(ciclo);
         } catch (Exception e) {
             // ✅ ENVIAR ERROR VÍA WEBSOCKET
-            webSocketService.enviarError("Error: " + e.getMessage(), ciclo);
+            if (publicarWebSocket()) {
+                webSocketService.enviarError("Error: " + e.getMessage(), ciclo);
+            }
             System.err.printf("❌ CICLO %d - ERROR: %s%n", ciclo, e.getMessage());
             actualizarEstadisticasError(ciclo, e.getMessage());
             // ⚡ Marcar ciclo como terminado incluso en error
@@ -662,163 +1205,109 @@ public class Planificador {
         }
     }
 
-    private List<Envio> obtenerPedidosEnVentana(LocalDateTime inicio, LocalDateTime fin) {
-        List<Envio> pedidosNuevos = new ArrayList<>();
-
-        // ⚡ OPTIMIZACIÓN CRÍTICA: Cargar envíos desde BD solo del rango actual
-        // Esto evita mantener todos los envíos en memoria
-        List<Envio> enviosEnRango;
+    /**
+     * ⚡ Obtiene los pedidos del horizonte como proyección inmutable
+     * (PedidoPlanificacion): no se cargan entidades Envio gestionadas ni se
+     * tocan proxies de Hibernate.
+     */
+    private List<PedidoPlanificacion> obtenerPedidosEnVentana(LocalDateTime inicio, LocalDateTime fin) {
+        List<PedidoPlanificacion> pedidosEnRango;
         if (enviosOriginales != null && !enviosOriginales.isEmpty()) {
             // Si hay envíos en memoria (modo legacy), usarlos
-            enviosEnRango = enviosOriginales;
+            pedidosEnRango = enviosOriginales.stream()
+                    .map(PedidoPlanificacion::desde)
+                    .collect(Collectors.toList());
         } else {
-            // Cargar solo envíos del rango actual desde BD
-            System.out.printf("📦 [obtenerPedidosEnVentana] Cargando envíos desde BD: %s hasta %s%n",
+            // Cargar solo pedidos del rango actual desde BD
+            System.out.printf("📦 [obtenerPedidosEnVentana] Cargando pedidos desde BD: %s hasta %s%n",
                     inicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
                     fin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
 
             try {
-                enviosEnRango = envioService.obtenerEnviosEnRango(inicio, "0", fin, "0");
-                System.out.printf("✅ [obtenerPedidosEnVentana] Envíos cargados: %d%n", enviosEnRango.size());
-
-                // ⚡ Configurar hubs para los envíos cargados
-                ArrayList<Aeropuerto> hubs = grasp.getHubs();
-                if (hubs != null && !hubs.isEmpty()) {
-                    ArrayList<Aeropuerto> uniqHubs = new ArrayList<>(new LinkedHashSet<>(hubs));
-                    for (Envio e : enviosEnRango) {
-                        e.setAeropuertosOrigen(new ArrayList<>(uniqHubs));
-                    }
-                    System.out.printf("⚙️ [obtenerPedidosEnVentana] Hubs configurados para %d envíos%n",
-                            enviosEnRango.size());
-                }
+                pedidosEnRango = envioService.obtenerPedidosPlanificacionEnRango(inicio, fin);
+                System.out.printf("✅ [obtenerPedidosEnVentana] Pedidos cargados: %d%n", pedidosEnRango.size());
             } catch (Exception e) {
                 System.err.printf("❌ Error al cargar envíos desde BD: %s%n", e.getMessage());
                 return new ArrayList<>();
             }
         }
 
-        // Convertir los límites del horizonte a ZonedDateTime en UTC para comparar
-        // correctamente
-        ZonedDateTime inicioUTC = inicio.atZone(ZoneOffset.UTC);
-        ZonedDateTime finUTC = fin.atZone(ZoneOffset.UTC);
-
-        ZonedDateTime fechaInicioSimulacionUTC = null;
-        ZonedDateTime fechaFinSimulacionUTC = null;
-        if (fechaInicioSimulacion != null) {
-            fechaInicioSimulacionUTC = fechaInicioSimulacion.atZone(ZoneOffset.UTC);
-        }
-        if (fechaFinSimulacion != null) {
-            fechaFinSimulacionUTC = fechaFinSimulacion.atZone(ZoneOffset.UTC);
-        }
+        // Límites del horizonte (UTC) en minutos epoch
+        long inicioMin = PedidoPlanificacion.aEpochMinutos(inicio);
+        long finMin = PedidoPlanificacion.aEpochMinutos(fin);
+        Long inicioSimulacionMin = fechaInicioSimulacion != null
+                ? PedidoPlanificacion.aEpochMinutos(fechaInicioSimulacion)
+                : null;
+        Long finSimulacionMin = fechaFinSimulacion != null
+                ? PedidoPlanificacion.aEpochMinutos(fechaFinSimulacion)
+                : null;
 
-        for (Envio envio : enviosEnRango) {
-            // Convertir la fecha de ingreso del pedido a UTC para comparar correctamente
-            ZonedDateTime tiempoPedidoUTC = envio.getZonedFechaIngreso()
-                    .withZoneSameInstant(ZoneOffset.UTC);
+        List<PedidoPlanificacion> pedidosNuevos = new ArrayList<>();
+        for (PedidoPlanificacion pedido : pedidosEnRango) {
+            long ingreso = pedido.ingresoEpochMinutos();
+            boolean enHorizonte = ingreso >= inicioMin && ingreso < finMin;
 
             // Filtrar según el modo de simulación
-            boolean incluirPedido = false;
-
+            boolean incluirPedido;
             if (modoSimulacion == ModoSimulacion.SEMANAL) {
                 // En modo semanal, solo incluir pedidos dentro del rango fechaInicioSimulacion
-                // - fechaFinSimulacion
-                if (fechaInicioSimulacionUTC != null && fechaFinSimulacionUTC != null) {
-                    if (!tiempoPedidoUTC.isBefore(fechaInicioSimulacionUTC) &&
-                            !tiempoPedidoUTC.isAfter(fechaFinSimulacionUTC)) {
-                        // Y además deben estar en el horizonte actual
-                        if (!tiempoPedidoUTC.isBefore(inicioUTC) && tiempoPedidoUTC.isBefore(finUTC)) {
-                            incluirPedido = true;
-                        }
-                    }
-                }
+                // - fechaFinSimulacion (y además en el horizonte actual)
+                incluirPedido = inicioSimulacionMin != null && finSimulacionMin != null
+                        && ingreso >= inicioSimulacionMin && ingreso <= finSimulacionMin && enHorizonte;
             } else if (modoSimulacion == ModoSimulacion.COLAPSO) {
                 // En modo colapso, solo incluir pedidos desde fechaInicioSimulacion en adelante
-                if (fechaInicioSimulacionUTC != null) {
-                    if (!tiempoPedidoUTC.isBefore(fechaInicioSimulacionUTC)) {
-                        // Y además deben estar en el horizonte actual
-                        if (!tiempoPedidoUTC.isBefore(inicioUTC) && tiempoPedidoUTC.isBefore(finUTC)) {
-                            incluirPedido = true;
-                        }
-                    }
-                }
+                incluirPedido = inicioSimulacionMin != null && ingreso >= inicioSimulacionMin && enHorizonte;
             } else {
                 // Modo normal - comportamiento original
-                if (!tiempoPedidoUTC.isBefore(inicioUTC) && tiempoPedidoUTC.isBefore(finUTC)) {
-                    incluirPedido = true;
-                }
+                incluirPedido = enHorizonte;
             }
 
             if (incluirPedido) {
-                // ✅ Crear COPIA del envío para este ciclo específico
-                pedidosNuevos.add(crearCopiaEnvio(envio));
+                pedidosNuevos.add(pedido);
             }
         }
 
         return pedidosNuevos;
     }
 
-    private Envio crearCopiaEnvio(Envio original) {
-        Envio copia = new Envio();
-        copia.setId(original.getId());
-        copia.setCliente(original.getCliente());
-        copia.setAeropuertosOrigen(new ArrayList<>(original.getAeropuertosOrigen()));
-        copia.setAeropuertoDestino(original.getAeropuertoDestino());
-        copia.setZonedFechaIngreso(original.getZonedFechaIngreso());
-        copia.setIdEnvioPorAeropuerto(original.getIdEnvioPorAeropuerto());
-        copia.setNumProductos(original.getNumProductos());
-
-        copia.setParteAsignadas(new ArrayList<>()); // ← Lista VACIA para este ciclo
-
-        // Si necesitas las partes asignadas previas, cópialas manualmente
-        // ⚡ Proteger acceso a parteAsignadas para evitar LazyInitializationException
-        try {
-            List<ParteAsignada> partesOriginales = original.getParteAsignadas();
-            if (partesOriginales != null && !partesOriginales.isEmpty()) {
-                for (ParteAsignada parteOriginal : partesOriginales) {
-                    ParteAsignada parteCopia = crearCopiaParteAsignada(parteOriginal);
-                    parteCopia.setEnvio(copia);
-                    copia.getParteAsignadas().add(parteCopia);
-                }
+    /**
+     * Construye los envíos de trabajo del GRASP a partir de los pedidos del
+     * ciclo, usando los aeropuertos recién recargados y una única lista de hubs
+     * compartida.
+     */
+    private List<Envio> construirEnviosPlanificacion(List<PedidoPlanificacion> pedidos) {
+        Map<Integer, Aeropuerto> aeropuertosPorId = new HashMap<>();
+        if (grasp.getAeropuertos() != null) {
+            for (Aeropuerto aeropuerto : grasp.getAeropuertos()) {
+                aeropuertosPorId.put(aeropuerto.getId(), aeropuerto);
             }
-        } catch (org.hibernate.LazyInitializationException e) {
-            // Si hay error de lazy loading, simplemente no copiar las partes previas
-            // (la copia ya tiene una lista vacía, que es lo que queremos para el nuevo
-            // ciclo)
         }
+        List<Aeropuerto> hubs = grasp.getHubs() != null
+                ? List.copyOf(new LinkedHashSet<>(grasp.getHubs()))
+                : List.of();
 
-        return copia;
-    }
-
-    private ParteAsignada crearCopiaParteAsignada(ParteAsignada original) {
-        ParteAsignada copia = new ParteAsignada();
-        copia.setId(original.getId());
-        copia.setCantidad(original.getCantidad());
-        copia.setLlegadaFinal(original.getLlegadaFinal());
-        copia.setAeropuertoOrigen(original.getAeropuertoOrigen());
-        copia.setEntregado(original.getEntregado());
-
-        // Copiar la ruta (vuelos instanciados)
-        if (original.getRuta() != null) {
-            List<PlanDeVuelo> rutaCopia = new ArrayList<>();
-            for (PlanDeVuelo vuelo : original.getRuta()) {
-                rutaCopia.add(crearCopiaVuelo(vuelo));
+        List<Envio> envios = new ArrayList<>(pedidos.size());
+        for (PedidoPlanificacion pedido : pedidos) {
+            Aeropuerto destino = aeropuertosPorId.get(pedido.aeropuertoDestinoId());
+            if (destino == null) {
+                System.err.printf("⚠️ Pedido %d sin aeropuerto destino válido (%d), se omite%n",
+                        pedido.id(), pedido.aeropuertoDestinoId());
+                continue;
             }
-            copia.setRuta(rutaCopia);
+            PedidoPlanificacion pedidoCiclo = factorDemanda != 1.0 ? pedido.escalado(factorDemanda) : pedido;
+            envios.add(pedidoCiclo.aEnvio(destino, hubs));
         }
-
-        return copia;
-    }
-
-    private PlanDeVuelo crearCopiaVuelo(PlanDeVuelo original) {
-        PlanDeVuelo copia = new PlanDeVuelo();
-        copia.setId(original.getId());
-        copia.setZonedHoraOrigen(original.getZonedHoraOrigen());
-        copia.setZonedHoraDestino(original.getZonedHoraDestino());
-        copia.setCapacidadOcupada(original.getCapacidadOcupada());
-        return copia;
+        return envios;
     }
 
+    /**
+     * Ejecuta GRASP con el límite de TA_SEGUNDOS reales. Con reloj virtual no hay
+     * ciclo en tiempo real que respetar, así que se espera a que termine. Si no
+     * hay solución (timeout o error) se devuelve una vacía y falloGrasp indica
+     * el motivo.
+     */
     private Solucion ejecutarGRASPConTimeout(List<Envio> pedidos, LocalDateTime tiempoEjecucion) {
+        falloGrasp = null;
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<Solucion> future = executor.submit(() -> {
             // Preparar GRASP para este ciclo específico
@@ -830,13 +1319,15 @@ public class Planificador {
         });
 
         try {
-            return future.get(TA_SEGUNDOS, TimeUnit.SECONDS);
+            return reloj.esVirtual() ? future.get() : future.get(TA_SEGUNDOS, TimeUnit.SECONDS);
         } catch (TimeoutException e) {
             System.out.println("⏰ TIMEOUT: GRASP excedió el tiempo máximo de " + TA_SEGUNDOS + " segundos");
             future.cancel(true);
+            falloGrasp = "timeout";
             return crearSolucionVacia();
         } catch (Exception e) {
             System.err.println("❌ Error en ejecución de GRASP: " + e.getMessage());
+            falloGrasp = "error";
             return crearSolucionVacia();
         } finally {
             executor.shutdownNow();
@@ -861,12 +1352,13 @@ public class Planificador {
 
         ArrayList<Envio> enviosParaProgramar = grasp.getEnvios();
 
-        // Inicializar los caches necesarios para trabajar con estos vuelos
-        // Pasar los envíos para filtrar por ventana temporal
-        grasp.inicializarCachesParaVuelos(planesDeVuelo, enviosParaProgramar);
+        // Inicializar los caches sobre el índice por origen de la ventana, que
+        // recargarDatosBase mantiene al deslizarla (sin reagrupar los 6 días)
+        grasp.inicializarCachesParaVuelos(indiceVuelos);
 
-        // Ejecutar GRASP para este día
-        Solucion solucionDia = grasp.ejecutarGrasp(enviosParaProgramar, planesDeVuelo);
+        // Ejecutar GRASP para este día (descompuesto en paralelo si el horizonte trae muchos pedidos)
+        Solucion solucionDia = grasp.ejecutarGraspDescompuesto(enviosParaProgramar, planesDeVuelo,
+                descomposicionGrasp);
 
         if (mejorSolucion == null || grasp.esMejor(solucionDia, mejorSolucion)) {
             mejorSolucion = solucionDia;
@@ -927,7 +1419,7 @@ public class Planificador {
     private void actualizarEstadisticas(Solucion solucion, int ciclo, long duracionMs) {
         Map<String, Object> statsCiclo = new HashMap<>();
         statsCiclo.put("ciclo", ciclo);
-        statsCiclo.put("timestamp", LocalDateTime.now().toString());
+        statsCiclo.put("timestamp", reloj.marcaTiempo().toString());
         statsCiclo.put("duracionSegundos", duracionMs / 1000.0);
         statsCiclo.put("totalEnvios", solucion.getEnvios().size());
         statsCiclo.put("enviosCompletados", solucion.getEnviosCompletados());
@@ -946,7 +1438,7 @@ public class Planificador {
         // Actualizar estadísticas globales
         this.estadisticas.put("totalCiclosCompletados", ciclo);
         this.estadisticas.put("ultimoCicloExitoso", true);
-        this.estadisticas.put("ultimaEjecucion", LocalDateTime.now().toString());
+        this.estadisticas.put("ultimaEjecucion", reloj.marcaTiempo().toString());
         this.estadisticas.put("promedioEjecucionSegundos", calcularPromedioEjecucion());
 
         // ⚡ OPTIMIZACIÓN: Las estadísticas por estado se calculan de forma diferida
@@ -962,7 +1454,7 @@ public class Planificador {
     private void actualizarEstadisticasVacio(int ciclo) {
         Map<String, Object> statsCiclo = new HashMap<>();
         statsCiclo.put("ciclo", ciclo);
-        statsCiclo.put("timestamp", LocalDateTime.now().toString());
+        statsCiclo.put("timestamp", reloj.marcaTiempo().toString());
         statsCiclo.put("duracionSegundos", 0.0);
         statsCiclo.put("totalEnvios", 0);
         statsCiclo.put("enviosCompletados", 0);
@@ -975,7 +1467,7 @@ public class Planificador {
     private void actualizarEstadisticasTimeout(int ciclo) {
         Map<String, Object> statsCiclo = new HashMap<>();
         statsCiclo.put("ciclo", ciclo);
-        statsCiclo.put("timestamp", LocalDateTime.now().toString());
+        statsCiclo.put("timestamp", reloj.marcaTiempo().toString());
         statsCiclo.put("duracionSegundos", TA_SEGUNDOS);
         statsCiclo.put("totalEnvios", 0);
         statsCiclo.put("enviosCompletados", 0);
@@ -991,7 +1483,7 @@ public class Planificador {
     private void actualizarEstadisticasError(int ciclo, String error) {
         Map<String, Object> statsCiclo = new HashMap<>();
         statsCiclo.put("ciclo", ciclo);
-        statsCiclo.put("timestamp", LocalDateTime.now().toString());
+        statsCiclo.put("timestamp", reloj.marcaTiempo().toString());
         statsCiclo.put("duracionSegundos", 0.0);
         statsCiclo.put("totalEnvios", 0);
         statsCiclo.put("enviosCompletados", 0);
@@ -1041,14 +1533,20 @@ public class Planificador {
     }
 
     /**
-     * ⚡ OPTIMIZADO: Calcula el total de envíos por estado desde la base de datos.
-     * Usa COUNT directamente en la BD en lugar de cargar todos los envíos en
-     * memoria.
-     * Esto previene OutOfMemoryError cuando hay muchos envíos.
+     * ⚡ OPTIMIZADO: Total de envíos por estado desde los contadores de la sesión
+     * (O(1)); solo si aún no existen se hace COUNT en la BD.
+     *
+     * Cuenta solo los envíos del rango de la simulación (fechaInicioSimulacion a
+     * fechaFinSimulacion), como el resumen de planificación: antes contaba todos
+     * los envíos de la tabla.
      */
     private int calcularTotalEnviosPorEstado(Envio.EstadoEnvio estado) {
         try {
-            return (int) envioService.contarEnviosPorEstado(estado);
+            Map<String, Long> conteos = envioService.obtenerConteosEstado(idSesion);
+            if (conteos == null) {
+                conteos = envioService.contarEnviosPorEstadoEnRango(fechaInicioSimulacion, fechaFinSimulacion);
+            }
+            return conteos.getOrDefault(ContadoresEstadoEnvio.clave(estado), 0L).intValue();
         } catch (Exception e) {
             System.err.printf("❌ Error al calcular envíos por estado %s: %s%n", estado, e.getMessage());
             e.printStackTrace();
@@ -1173,14 +1671,234 @@ public class Planificador {
     // Metodo para ver el estado actual del horizonte
     public Map<String, Object> getEstadoHorizonte() {
         Map<String, Object> estado = new HashMap<>();
+        estado.put("idSesion", idSesion);
         estado.put("tiempoInicioSimulacion", tiempoInicioSimulacion);
         estado.put("ultimoHorizontePlanificado", ultimoHorizontePlanificado);
         int kActual = obtenerK();
         estado.put("proximoHorizonte", ultimoHorizontePlanificado.plusMinutes(SA_MINUTOS * kActual));
+        estado.put("metricasCiclos", metricasCiclos.resumen());
         // estado.put("pedidosYaPlanificados", pedidosYaPlanificados.size());
+        estado.put("ultimoCheckpoint", ultimoCheckpoint);
         return estado;
     }
 
+    /**
+     * 🔢 Calcula con un conteo real los envíos por estado del rango simulado y
+     * reemplaza los contadores de la sesión. En una sesión aislada los estados
+     * son los de la sesión: la BD solo aporta el total de envíos del rango.
+     */
+    private void inicializarConteosEstado() {
+        try {
+            Map<String, Long> conteos = envioService.contarEnviosPorEstadoEnRango(fechaInicioSimulacion,
+                    fechaFinSimulacion);
+            if (esSesionAislada()) {
+                long total = conteos.values().stream().mapToLong(Long::longValue).sum();
+                conteos = new HashMap<>();
+                for (Envio.EstadoEnvio estado : estadoSesion.getEstadosEnvio().values()) {
+                    conteos.merge(estado.name(), 1L, Long::sum);
+                }
+                conteos.put(ContadoresEstadoEnvio.SIN_ESTADO,
+                        Math.max(0, total - estadoSesion.getEstadosEnvio().size()));
+            }
+            envioService.reiniciarConteosEstado(idSesion, conteos);
+        } catch (Exception e) {
+            System.err.printf("❌ Error al iniciar contadores por estado de la sesión %s: %s%n", idSesion,
+                    e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 🔢 Al terminar un ciclo: guarda los contadores y, cada
+     * CICLOS_ENTRE_RECONCILIACIONES, los reconcilia con un conteo real.
+     */
+    private void mantenerConteosEstado() {
+        if (cicloActual.get() % CICLOS_ENTRE_RECONCILIACIONES == 0) {
+            inicializarConteosEstado();
+        } else {
+            guardarConteosEstado();
+        }
+    }
+
+    /**
+     * 🔢 Guarda los contadores modificados; si falla quedan pendientes para el
+     * siguiente ciclo.
+     */
+    private void guardarConteosEstado() {
+        try {
+            envioService.persistirConteosEstado();
+        } catch (Exception e) {
+            System.err.printf("❌ Error al guardar contadores por estado (se reintentará): %s%n", e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 💾 Construye un checkpoint compacto del estado en memoria: horizonte, reloj,
+     * eventos pendientes, capacidad de la sesión, cola de liberación y la ventana
+     * de vuelos cacheados (solo IDs).
+     */
+    public CheckpointPlanificador crearCheckpoint() {
+        CheckpointPlanificador checkpoint = new CheckpointPlanificador();
+        checkpoint.setIdSesion(idSesion);
+        checkpoint.setModo(modoSimulacion != null ? modoSimulacion.name() : ModoSimulacion.NORMAL.name());
+        checkpoint.setCreado(LocalDateTime.now());
+        checkpoint.setCiclo(cicloActual.get());
+        checkpoint.setFactorAceleracion(reloj.getFactorAceleracion());
+        checkpoint.setFechaInicioSimulacion(fechaInicioSimulacion);
+        checkpoint.setFechaFinSimulacion(fechaFinSimulacion);
+        checkpoint.setTiempoInicioSimulacion(tiempoInicioSimulacion);
+        checkpoint.setUltimoHorizontePlanificado(ultimoHorizontePlanificado);
+        checkpoint.setTiempoSimuladoActual(tiempoSimuladoActual);
+        checkpoint.setUltimoTiempoEjecucion(ultimoTiempoEjecucion);
+        checkpoint.setTiempoReloj(reloj.ahora());
+
+        List<CheckpointPlanificador.EventoPendiente> eventos = new ArrayList<>();
+        for (EventoTemporal evento : eventosPendientes) {
+            eventos.add(new CheckpointPlanificador.EventoPendiente(
+                    evento.getTipo().name(),
+                    evento.getTiempoEvento(),
+                    evento.getVuelo() != null ? evento.getVuelo().getId() : null,
+                    evento.getCantidad(),
+                    evento.getAeropuertoId(),
+                    evento.isPrimerVuelo(),
+                    evento.isUltimoVuelo(),
+                    evento.getEnvio() != null ? evento.getEnvio().getId() : null));
+        }
+        checkpoint.setEventosPendientes(eventos);
+
+        if (esSesionAislada()) {
+            checkpoint.setOcupacionAeropuertos(new HashMap<>(estadoSesion.getOcupacionAeropuertos()));
+            checkpoint.setOcupacionVuelos(new HashMap<>(estadoSesion.getOcupacionVuelos()));
+            Map<Integer, String> estados = new HashMap<>();
+            estadoSesion.getEstadosEnvio().forEach((envioId, estado) -> estados.put(envioId, estado.name()));
+            checkpoint.setEstadosEnvio(estados);
+        }
+
+        colaLiberacion.exportarA(checkpoint);
+
+        List<Integer> idsVuelos = new ArrayList<>();
+        for (PlanDeVuelo vuelo : new ArrayList<>(ventanaVuelos)) {
+            if (vuelo.getId() != null) {
+                idsVuelos.add(vuelo.getId());
+            }
+        }
+        checkpoint.setIdsVentanaVuelos(idsVuelos);
+        checkpoint.setCacheVuelosInicio(cacheVuelosInicio);
+        checkpoint.setCacheVuelosFin(cacheVuelosFin);
+        return checkpoint;
+    }
+
+    /**
+     * 💾 Guarda el checkpoint en disco. Devuelve el resumen, o null si falló.
+     */
+    public Map<String, Object> guardarCheckpoint() {
+        try {
+            long inicio = System.currentTimeMillis();
+            CheckpointPlanificador checkpoint = crearCheckpoint();
+            long bytes = checkpoint.guardar();
+            ultimoCheckpoint = checkpoint.getCreado();
+            System.out.printf("💾 Checkpoint de la sesión %s guardado (ciclo %d, %d eventos, %d bytes, %d ms)%n",
+                    idSesion, checkpoint.getCiclo(), checkpoint.getEventosPendientes().size(), bytes,
+                    System.currentTimeMillis() - inicio);
+            Map<String, Object> resumen = checkpoint.resumen();
+            resumen.put("bytes", bytes);
+            return resumen;
+        } catch (Exception e) {
+            System.err.printf("❌ Error al guardar checkpoint de la sesión %s: %s%n", idSesion, e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 💾 Restaura el estado guardado en un checkpoint y continúa la planificación
+     * programada desde el último horizonte planificado.
+     */
+    public boolean reanudarDesdeCheckpoint(CheckpointPlanificador checkpoint, RelojSimulacion relojSimulacion) {
+        if (enEjecucion) {
+            System.out.println("⚠️ El planificador ya está en ejecución");
+            return false;
+        }
+        if (relojSimulacion == null || relojSimulacion.esVirtual()) {
+            System.err.println("❌ Error: la reanudación requiere un reloj real o escalado");
+            return false;
+        }
+        if (checkpoint.getUltimoHorizontePlanificado() == null || checkpoint.getTiempoSimuladoActual() == null) {
+            System.err.println("❌ Error: checkpoint incompleto (sin horizonte o tiempo simulado)");
+            return false;
+        }
+
+        this.reloj = relojSimulacion;
+        configurarSesion(checkpoint.getIdSesion());
+        if (esSesionAislada()) {
+            checkpoint.getOcupacionAeropuertos().forEach(estadoSesion::fijarOcupacionAeropuerto);
+            checkpoint.getOcupacionVuelos().forEach(estadoSesion::fijarOcupacionVuelo);
+            checkpoint.getEstadosEnvio().forEach(
+                    (envioId, estado) -> estadoSesion.fijarEstadoEnvio(envioId, Envio.EstadoEnvio.valueOf(estado)));
+        }
+
+        this.modoSimulacion = ModoSimulacion.valueOf(checkpoint.getModo());
+        this.fechaInicioSimulacion = checkpoint.getFechaInicioSimulacion();
+        this.fechaFinSimulacion = checkpoint.getFechaFinSimulacion();
+        this.tiempoInicioSimulacion = checkpoint.getTiempoInicioSimulacion();
+        this.ultimoHorizontePlanificado = checkpoint.getUltimoHorizontePlanificado();
+        this.tiempoSimuladoActual = checkpoint.getTiempoSimuladoActual();
+        this.ultimoTiempoEjecucion = checkpoint.getUltimoTiempoEjecucion() != null
+                ? checkpoint.getUltimoTiempoEjecucion()
+                : checkpoint.getUltimoHorizontePlanificado();
+        this.enviosOriginales = null;
+        cicloActual.set(checkpoint.getCiclo());
+        colaLiberacion.restaurarDesde(checkpoint);
+        metricasCiclos = new MetricasCiclos();
+        liberacionesPendientes = 0;
+
+        // Caché de vuelos: recargar por IDs (sin volver a consultar el rango completo)
+        ventanaVuelos.clear();
+        idsVentanaVuelos.clear();
+        indiceVuelos.limpiar();
+        vuelosCacheados = null;
+        if (!checkpoint.getIdsVentanaVuelos().isEmpty() && checkpoint.getCacheVuelosInicio() != null) {
+            List<PlanDeVuelo> vuelos = new ArrayList<>(
+                    planDeVueloService.obtenerPlanesDeVueloPorIds(checkpoint.getIdsVentanaVuelos()));
+            vuelos.sort(Comparator.comparing(PlanDeVuelo::getZonedHoraOrigen));
+            agregarAVentanaVuelos(vuelos);
+            vuelosCacheados = new ArrayList<>(ventanaVuelos);
+            cacheVuelosInicio = checkpoint.getCacheVuelosInicio();
+            cacheVuelosFin = checkpoint.getCacheVuelosFin();
+        }
+
+        // Eventos pendientes: basta con los IDs (procesarEvento recarga desde BD)
+        List<EventoTemporal> eventos = new ArrayList<>();
+        for (CheckpointPlanificador.EventoPendiente pendiente : checkpoint.getEventosPendientes()) {
+            PlanDeVuelo vuelo = new PlanDeVuelo();
+            vuelo.setId(pendiente.getVueloId());
+            Envio envio = null;
+            if (pendiente.getEnvioId() != null) {
+                envio = new Envio();
+                envio.setId(pendiente.getEnvioId());
+            }
+            eventos.add(new EventoTemporal(pendiente.getTiempoEvento(),
+                    EventoTemporal.TipoEvento.valueOf(pendiente.getTipo()), vuelo, null, pendiente.getCantidad(),
+                    pendiente.getAeropuertoId(), pendiente.isPrimerVuelo(), pendiente.isUltimoVuelo(), envio));
+        }
+
+        enEjecucion = true;
+        scheduler = Executors.newScheduledThreadPool(1);
+        if (publicarWebSocket()) {
+            webSocketService.enviarEstadoPlanificador(true, cicloActual.get(), "reanudado");
+        }
+
+        System.out.printf("💾 REANUDANDO sesión %s desde checkpoint del %s: ciclo %d, horizonte %s, %d eventos%n",
+                idSesion, checkpoint.getCreado(), checkpoint.getCiclo(),
+                ultimoHorizontePlanificado.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")), eventos.size());
+
+        LocalDateTime tiempoReloj = checkpoint.getTiempoReloj() != null ? checkpoint.getTiempoReloj()
+                : ultimoHorizontePlanificado;
+        arrancarEjecucionProgramada(tiempoReloj, obtenerTiempoActualSimulacion(), eventos);
+        return true;
+    }
+
     private String formatDuracion(Duration duration) {
         if (duration == null)
             return "N/A";
@@ -1268,236 +1986,388 @@ public class Planificador {
     }
 
     /**
-     * Libera la capacidad ocupada en aeropuertos destino final para productos
-     * que llegaron hace más de 2 horas (simulando que el cliente recogió el
-     * producto).
-     * Solo aplica para productos que llegaron al aeropuerto destino final del
-     * envío.
+     * ⚡ REPARACIÓN INCREMENTAL ante disrupciones: cancela vuelos y/o reduce la
+     * capacidad máxima de aeropuertos y re-enruta solo las partes afectadas, sin
+     * esperar al siguiente ciclo completo. En la sesión principal los cambios se
+     * escriben en BD; en una sesión aislada quedan en su estado de capacidad.
+     *
+     * @param vuelosCancelados     IDs de los vuelos cancelados
+     * @param capacidadAeropuertos aeropuertoId -> nueva capacidad máxima
      */
-    private void liberarProductosEntregados(LocalDateTime tiempoSimulado) {
-        try {
-            // ⚡ OPTIMIZACIÓN: Reducir rango de consulta a solo envíos candidatos a
-            // liberación
-            // Solo necesitamos envíos cuya llegadaFinal sea >= 2 horas antes del tiempo
-            // simulado
-            LocalDateTime fechaInicio = this.tiempoInicioSimulacion != null ? this.tiempoInicioSimulacion
-                    : tiempoSimulado.minusDays(1);
-            // Solo consultar hasta el tiempo simulado actual (no futuro)
-            LocalDateTime fechaFin = tiempoSimulado;
-
-            // Usar el método con JOIN FETCH para cargar las partes asignadas
-            List<Envio> enviosConPartes;
-            try {
-                enviosConPartes = new ArrayList<>(envioService.obtenerEnviosEnRangoConPartes(
-                        fechaInicio, "0", fechaFin, "0"));
-            } catch (Exception e) {
-                // Fallback silencioso: usar envíos en memoria
-                enviosConPartes = this.enviosOriginales != null ? new ArrayList<>(this.enviosOriginales)
-                        : new ArrayList<>();
-            }
-
-            // Filtrar solo envíos con partes asignadas no vacías
-            List<Envio> envios = enviosConPartes.stream()
-                    .filter(e -> {
-                        try {
-                            return e.getParteAsignadas() != null && !e.getParteAsignadas().isEmpty()
-                                    && e.getAeropuertoDestino() != null;
-                        } catch (Exception ex) {
-                            return false; // Si hay error de lazy loading, ignorar este envío
-                        }
-                    })
-                    .collect(java.util.stream.Collectors.toList());
-
-            System.out.printf("🔍 [LiberarProductos] Envíos con partes asignadas: %d (de %d consultados)%n",
-                    envios.size(),
-                    enviosConPartes.size());
-
-            Map<Integer, Aeropuerto> aeropuertosActualizados = new HashMap<>();
-            List<ParteAsignada> partesParaActualizar = new ArrayList<>();
-            int productosLiberados = 0;
-            int partesEntregadas = 0;
+    public Map<String, Object> repararDisrupcion(Set<Integer> vuelosCancelados,
+            Map<Integer, Integer> capacidadAeropuertos) {
+        Map<String, Object> resultado = new HashMap<>();
+        if (!enEjecucion || tiempoSimuladoActual == null || grasp.getPlanesDeVuelo() == null) {
+            resultado.put("estado", "error");
+            resultado.put("mensaje", "El planificador no está en ejecución");
+            return resultado;
+        }
+
+        long inicio = System.currentTimeMillis();
+        synchronized (bloqueoGrasp) {
+            ZonedDateTime ahora = tiempoSimuladoActual.atZone(ZoneOffset.UTC);
+            ArrayList<PlanDeVuelo> vuelosVentana = grasp.getPlanesDeVuelo();
+
+            // 1. Aplicar la disrupción en memoria y en su almacenamiento (BD o sesión)
+            Set<Integer> vuelosConsultados = new HashSet<>(vuelosCancelados);
+            for (PlanDeVuelo vuelo : vuelosVentana) {
+                if (vuelosCancelados.contains(vuelo.getId())) {
+                    vuelo.setEstado(PlanDeVuelo.ESTADO_CANCELADO);
+                } else if (capacidadAeropuertos.containsKey(vuelo.getCiudadDestino())
+                        && vuelo.getZonedHoraOrigen().isAfter(ahora)) {
+                    vuelosConsultados.add(vuelo.getId());
+                }
+            }
+            if (grasp.getAeropuertos() != null) {
+                for (Aeropuerto aeropuerto : grasp.getAeropuertos()) {
+                    Integer capacidad = capacidadAeropuertos.get(aeropuerto.getId());
+                    if (capacidad != null) {
+                        aeropuerto.setCapacidadMaxima(capacidad);
+                    }
+                }
+            }
+            registrarDisrupcion(vuelosCancelados, capacidadAeropuertos);
+
+            // 2. Partes afectadas: su tramo pendiente usa un vuelo cancelado o hace
+            // escala en un aeropuerto con capacidad reducida
+            List<ParteAsignada> afectadas = new ArrayList<>();
+            for (ParteAsignada parte : envioService.obtenerPartesPendientesPorVuelos(
+                    new ArrayList<>(vuelosConsultados))) {
+                if (perteneceASesion(parte)
+                        && esParteAfectada(parte, vuelosCancelados, capacidadAeropuertos.keySet(), ahora)) {
+                    afectadas.add(parte);
+                }
+            }
 
-            for (Envio envio : envios) {
-                // Ya filtrados: tienen partes asignadas y aeropuerto destino
-                Integer aeropuertoDestinoId = envio.getAeropuertoDestino().getId();
+            // 3. Re-enrutar solo esas partes
+            Map<ParteAsignada, List<ParteAsignada>> reemplazos = new LinkedHashMap<>();
+            if (!afectadas.isEmpty()) {
+                List<Envio> enviosAfectados = afectadas.stream().map(ParteAsignada::getEnvio).distinct()
+                        .collect(Collectors.toList());
+                grasp.inicializarCachesParaVuelos(vuelosVentana, enviosAfectados);
+                reemplazos = grasp.repararPartes(afectadas, capacidadAeropuertos.keySet(), ahora);
+            }
 
-                for (ParteAsignada parte : envio.getParteAsignadas()) {
-                    // Evitar procesar partes que ya fueron liberadas del aeropuerto
-                    // (ya marcadas como entregadas al cliente en un ciclo anterior)
-                    if (parte.getEntregado() != null && parte.getEntregado()) {
-                        continue;
-                    }
+            // 4. Persistir el delta y reprogramar los eventos del tramo nuevo
+            int[] eventos = reemplazos.isEmpty() ? new int[] { 0, 0 } : aplicarReparacion(reemplazos, ahora);
 
-                    // Verificar que la parte tenga llegada final
-                    if (parte.getLlegadaFinal() == null) {
-                        continue;
-                    }
+            int productosSinRuta = 0;
+            for (Map.Entry<ParteAsignada, List<ParteAsignada>> entrada : reemplazos.entrySet()) {
+                productosSinRuta += entrada.getKey().getCantidad()
+                        - entrada.getValue().stream().mapToInt(ParteAsignada::getCantidad).sum();
+            }
 
-                    // Cargar la ruta desde BD si no está cargada
-                    if (parte.getRuta() == null || parte.getRuta().isEmpty()) {
-                        parte.cargarRutaDesdeBD();
-                    }
+            long duracionMs = System.currentTimeMillis() - inicio;
+            System.out.printf("🔧 [Reparación] %d vuelos cancelados, %d aeropuertos reducidos: %d/%d partes " +
+                    "re-enrutadas, %d productos sin ruta, %d eventos anulados, %d programados (%d ms)%n",
+                    vuelosCancelados.size(), capacidadAeropuertos.size(), reemplazos.size(), afectadas.size(),
+                    productosSinRuta, eventos[0], eventos[1], duracionMs);
+
+            resultado.put("estado", "éxito");
+            resultado.put("mensaje", "Disrupción reparada");
+            resultado.put("idSesion", idSesion);
+            resultado.put("tiempoSimulado", tiempoSimuladoActual.toString());
+            resultado.put("partesAfectadas", afectadas.size());
+            resultado.put("partesReenrutadas", reemplazos.size());
+            resultado.put("partesConservadas", afectadas.size() - reemplazos.size());
+            resultado.put("productosSinRuta", productosSinRuta);
+            resultado.put("eventosAnulados", eventos[0]);
+            resultado.put("eventosProgramados", eventos[1]);
+            resultado.put("duracionMs", duracionMs);
+        }
+        return resultado;
+    }
 
-                    // Verificar que la ruta termine en el aeropuerto destino final del envío
-                    boolean llegoADestinoFinal = false;
-                    if (parte.getRuta() != null && !parte.getRuta().isEmpty()) {
-                        PlanDeVuelo ultimoVuelo = parte.getRuta().get(parte.getRuta().size() - 1);
-                        if (ultimoVuelo.getCiudadDestino() != null &&
-                                ultimoVuelo.getCiudadDestino().equals(aeropuertoDestinoId)) {
-                            llegoADestinoFinal = true;
-                        }
-                    }
+    private void registrarDisrupcion(Set<Integer> vuelosCancelados, Map<Integer, Integer> capacidadAeropuertos) {
+        if (esSesionAislada()) {
+            vuelosCancelados.forEach(estadoSesion::cancelarVuelo);
+            capacidadAeropuertos.forEach(estadoSesion::fijarCapacidadMaximaAeropuerto);
+            return;
+        }
+        if (!vuelosCancelados.isEmpty()) {
+            List<PlanDeVuelo> vuelos = planDeVueloService.materializarPlanesDeVuelo(new ArrayList<>(vuelosCancelados));
+            vuelos.forEach(vuelo -> vuelo.setEstado(PlanDeVuelo.ESTADO_CANCELADO));
+            planDeVueloService.insertarListaPlanesDeVuelo(new ArrayList<>(vuelos));
+        }
+        if (!capacidadAeropuertos.isEmpty()) {
+            List<Aeropuerto> aeropuertos = aeropuertoService
+                    .obtenerAeropuertosPorIds(new ArrayList<>(capacidadAeropuertos.keySet()));
+            aeropuertos.forEach(aeropuerto -> aeropuerto.setCapacidadMaxima(capacidadAeropuertos.get(aeropuerto.getId())));
+            aeropuertoService.insertarListaAeropuertos(new ArrayList<>(aeropuertos));
+        }
+    }
 
-                    // Solo procesar si llegó al destino final
-                    if (!llegoADestinoFinal) {
-                        continue;
-                    }
+    private boolean esParteAfectada(ParteAsignada parte, Set<Integer> vuelosCancelados, Set<Integer> aeropuertos,
+            ZonedDateTime ahora) {
+        if (parte.getRuta() == null || parte.getEnvio() == null || parte.getEnvio().getAeropuertoDestino() == null) {
+            return false;
+        }
+        Integer destinoFinal = parte.getEnvio().getAeropuertoDestino().getId();
+        List<PlanDeVuelo> ruta = parte.getRuta();
+        for (int i = Grasp.primerTramoPendiente(ruta, ahora); i < ruta.size(); i++) {
+            PlanDeVuelo vuelo = ruta.get(i);
+            if (vuelosCancelados.contains(vuelo.getId())) {
+                return true;
+            }
+            if (aeropuertos.contains(vuelo.getCiudadDestino()) && !vuelo.getCiudadDestino().equals(destinoFinal)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                    // Convertir tiempoSimulado a ZonedDateTime para comparar con llegadaFinal
-                    // Usar el mismo timezone que la llegada final
-                    ZonedDateTime tiempoSimuladoZoned;
-                    try {
-                        // Obtener la zona horaria de la llegada final
-                        java.time.ZoneId zonaLlegada = parte.getLlegadaFinal().getZone();
-                        // Convertir tiempoSimulado a la misma zona horaria
-                        tiempoSimuladoZoned = tiempoSimulado.atZone(zonaLlegada);
-                    } catch (Exception e) {
-                        // Si hay problema con el timezone, usar UTC y luego convertir
-                        tiempoSimuladoZoned = tiempoSimulado.atZone(java.time.ZoneOffset.UTC)
-                                .withZoneSameInstant(parte.getLlegadaFinal().getZone());
-                    }
+    /**
+     * Escribe el resultado de una reparación: borra las partes reemplazadas,
+     * crea las nuevas, ajusta la carga de los vuelos de ambos tramos y cambia los
+     * eventos del tramo reemplazado por los del tramo nuevo.
+     *
+     * @return {eventos anulados, eventos programados}
+     */
+    private int[] aplicarReparacion(Map<ParteAsignada, List<ParteAsignada>> reemplazos, ZonedDateTime ahora) {
+        Map<Integer, int[]> deltaVuelos = new HashMap<>();
+        Map<Integer, List<Integer>> partesEliminadasPorEnvio = new HashMap<>();
+        Set<Integer> idsVuelos = new HashSet<>();
+        int eventosAnulados = 0;
+
+        for (Map.Entry<ParteAsignada, List<ParteAsignada>> entrada : reemplazos.entrySet()) {
+            ParteAsignada original = entrada.getKey();
+            List<PlanDeVuelo> ruta = original.getRuta();
+            int desde = Grasp.primerTramoPendiente(ruta, ahora);
+            for (PlanDeVuelo vuelo : ruta.subList(desde, ruta.size())) {
+                deltaVuelos.computeIfAbsent(vuelo.getId(), k -> new int[1])[0] -= original.getCantidad();
+            }
+            for (ParteAsignada nueva : entrada.getValue()) {
+                List<PlanDeVuelo> nuevaRuta = nueva.getRuta();
+                for (PlanDeVuelo vuelo : nuevaRuta.subList(desde, nuevaRuta.size())) {
+                    deltaVuelos.computeIfAbsent(vuelo.getId(), k -> new int[1])[0] += nueva.getCantidad();
+                }
+                nuevaRuta.forEach(vuelo -> idsVuelos.add(vuelo.getId()));
+            }
+            eventosAnulados += cancelarEventosPendientes(original, desde);
+            partesEliminadasPorEnvio.computeIfAbsent(original.getEnvio().getId(), k -> new ArrayList<>())
+                    .add(original.getId());
+        }
+        idsVuelos.addAll(deltaVuelos.keySet());
 
-                    // Verificar si han pasado más de 2 horas desde la llegada final
-                    // Usar toInstant() para comparar correctamente independientemente de la zona
-                    // horaria
-                    // tiempoSimulado debe ser POSTERIOR a llegadaFinal para que las horas sean
-                    // positivas
-                    long horasTranscurridas = java.time.Duration.between(
-                            parte.getLlegadaFinal().toInstant(), tiempoSimuladoZoned.toInstant()).toHours();
-
-                    // System.out.printf(
-                    // "🔍 [LiberarProductos] Parte ID %d - Envío ID %d - Llegada: %s - Horas
-                    // transcurridas: %d%n",
-                    // parte.getId(), envio.getId(),
-                    // parte.getLlegadaFinal().format(DateTimeFormatter.ofPattern("yyyy-MM-dd
-                    // HH:mm")),
-                    // horasTranscurridas);
-
-                    if (horasTranscurridas >= 2) {
-                        // Liberar capacidad del aeropuerto destino
-                        // Obtener el aeropuerto desde el mapa si ya fue actualizado, o desde la BD
-                        Aeropuerto aeropuertoParaActualizar;
-                        if (aeropuertosActualizados.containsKey(aeropuertoDestinoId)) {
-                            // Usar la instancia del mapa si ya existe, para mantener los cambios acumulados
-                            aeropuertoParaActualizar = aeropuertosActualizados.get(aeropuertoDestinoId);
-                        } else {
-                            // Obtener desde la BD
-                            Optional<Aeropuerto> aeropuertoOpt = aeropuertoService
-                                    .obtenerAeropuertoPorId(aeropuertoDestinoId);
-                            if (!aeropuertoOpt.isPresent()) {
-                                System.err.printf("⚠️  Aeropuerto ID %d no encontrado para liberar productos%n",
-                                        aeropuertoDestinoId);
-                                continue;
-                            }
-                            aeropuertoParaActualizar = aeropuertoOpt.get();
-                            aeropuertosActualizados.put(aeropuertoDestinoId, aeropuertoParaActualizar);
-                        }
+        // Partes: borrar las reemplazadas y crearlas de nuevo sobre las entidades reales
+        List<Integer> idsEliminadas = partesEliminadasPorEnvio.values().stream().flatMap(List::stream)
+                .collect(Collectors.toList());
+        envioService.eliminarPartesAsignadas(idsEliminadas);
+        partesEliminadasPorEnvio.forEach(colaLiberacion::descartar);
 
-                        // Desasignar capacidad
-                        aeropuertoParaActualizar.desasignarCapacidad(parte.getCantidad());
+        Map<Integer, PlanDeVuelo> vuelosMap = new HashMap<>();
+        for (PlanDeVuelo vuelo : planDeVueloService.materializarPlanesDeVuelo(new ArrayList<>(idsVuelos))) {
+            vuelosMap.put(vuelo.getId(), vuelo);
+        }
+        Map<Integer, Envio> enviosMap = new HashMap<>();
+        for (Envio envio : envioService.obtenerEnviosPorIdsConPartes(
+                new ArrayList<>(partesEliminadasPorEnvio.keySet()))) {
+            enviosMap.put(envio.getId(), envio);
+        }
 
-                        // ⚡ OPTIMIZACIÓN: Reducir logging (solo contadores, resumen al final)
+        for (Map.Entry<ParteAsignada, List<ParteAsignada>> entrada : reemplazos.entrySet()) {
+            Envio envioReal = enviosMap.get(entrada.getKey().getEnvio().getId());
+            if (envioReal == null) {
+                continue;
+            }
+            envioReal.getParteAsignadas().removeIf(parte -> idsEliminadas.contains(parte.getId()));
+            for (ParteAsignada nueva : entrada.getValue()) {
+                ParteAsignada parteReal = new ParteAsignada();
+                parteReal.setEnvio(envioReal);
+                parteReal.setIdSesion(idSesionPersistida());
+                parteReal.setCantidad(nueva.getCantidad());
+                parteReal.setLlegadaFinal(nueva.getLlegadaFinal());
+                parteReal.setAeropuertoOrigen(entrada.getKey().getAeropuertoOrigen());
+                parteReal.setRuta(nueva.getRuta().stream().map(vuelo -> vuelosMap.getOrDefault(vuelo.getId(), vuelo))
+                        .collect(Collectors.toList()));
+                parteReal.sincronizarRutaConBD();
+                envioReal.getParteAsignadas().add(parteReal);
+            }
+        }
+        List<Envio> enviosGuardados = guardarPartesNuevas(new ArrayList<>(enviosMap.values()));
+        encolarLiberaciones(enviosGuardados);
 
-                        productosLiberados += parte.getCantidad();
-                        parte.setEntregado(true);
-                        partesParaActualizar.add(parte);
-                        partesEntregadas++;
-                    }
+        // Carga de los vuelos de ambos tramos
+        if (esSesionAislada()) {
+            deltaVuelos.forEach((vueloId, delta) -> estadoSesion.sumarOcupacionVuelo(vueloId, delta[0]));
+        } else {
+            List<PlanDeVuelo> vuelosActualizados = new ArrayList<>();
+            deltaVuelos.forEach((vueloId, delta) -> {
+                PlanDeVuelo vuelo = vuelosMap.get(vueloId);
+                if (vuelo != null && delta[0] != 0) {
+                    int ocupada = vuelo.getCapacidadOcupada() != null ? vuelo.getCapacidadOcupada() : 0;
+                    vuelo.setCapacidadOcupada(Math.max(0, ocupada + delta[0]));
+                    vuelosActualizados.add(vuelo);
                 }
+            });
+            if (!vuelosActualizados.isEmpty()) {
+                planDeVueloService.insertarListaPlanesDeVuelo(new ArrayList<>(vuelosActualizados));
             }
+        }
 
-            // ⚡ Solo log resumen si hay partes para procesar
-            if (partesEntregadas > 0) {
-                System.out.printf("✅ [LiberarProductos] Liberadas %d partes, %d productos de %d aeropuertos%n",
-                        partesEntregadas, productosLiberados, aeropuertosActualizados.size());
+        // Eventos del tramo nuevo (el tramo ya volado conserva los suyos)
+        int eventosProgramados = 0;
+        for (Map.Entry<ParteAsignada, List<ParteAsignada>> entrada : reemplazos.entrySet()) {
+            int desde = Grasp.primerTramoPendiente(entrada.getKey().getRuta(), ahora);
+            for (ParteAsignada nueva : entrada.getValue()) {
+                eventosProgramados += programarEventosParte(entrada.getKey().getEnvio(), nueva, desde,
+                        tiempoSimuladoActual);
             }
+        }
+        return new int[] { eventosAnulados, eventosProgramados };
+    }
 
-            // Persistir los cambios
-            if (!partesParaActualizar.isEmpty()) {
-                // Agrupar partes por envío para actualizar eficientemente
-                Map<Integer, Envio> enviosParaActualizar = new HashMap<>();
-                Map<Integer, ParteAsignada> partesPorId = new HashMap<>();
-
-                for (ParteAsignada parte : partesParaActualizar) {
-                    partesPorId.put(parte.getId(), parte);
-                    Integer envioId = parte.getEnvio() != null ? parte.getEnvio().getId() : null;
-                    if (envioId == null)
-                        continue;
-
-                    if (!enviosParaActualizar.containsKey(envioId)) {
-                        // ⚡ Usar método que carga partes asignadas dentro de transacción
-                        // para evitar LazyInitializationException
-                        Optional<Envio> envioOpt = envioService.obtenerEnvioPorIdConPartesInicializadas(envioId);
-                        if (envioOpt.isPresent()) {
-                            Envio envio = envioOpt.get();
+    /**
+     * Anula los eventos aún no ejecutados del tramo reemplazado de una parte.
+     * Los eventos restaurados de un checkpoint no guardan la parte, así que se
+     * identifican por envío, vuelo y cantidad.
+     */
+    private int cancelarEventosPendientes(ParteAsignada parte, int desdeTramo) {
+        Integer envioId = parte.getEnvio().getId();
+        List<Integer> idsRuta = parte.getRuta().stream().map(PlanDeVuelo::getId).collect(Collectors.toList());
+        Set<Integer> idsReemplazados = new HashSet<>(idsRuta.subList(desdeTramo, idsRuta.size()));
+
+        int anulados = 0;
+        Iterator<EventoTemporal> it = reloj.esVirtual() ? colaEventosVirtual.iterator() : eventosPendientes.iterator();
+        while (it.hasNext()) {
+            EventoTemporal evento = it.next();
+            boolean mismoTramo = evento.getEnvio() != null && envioId.equals(evento.getEnvio().getId())
+                    && evento.getVuelo() != null && idsReemplazados.contains(evento.getVuelo().getId())
+                    && parte.getCantidad().equals(evento.getCantidad())
+                    && (evento.getParte() == null || evento.getParte().getRuta() == null
+                            || idsRuta.equals(evento.getParte().getRuta().stream().map(PlanDeVuelo::getId)
+                                    .collect(Collectors.toList())));
+            if (mismoTramo) {
+                it.remove();
+                if (!reloj.esVirtual()) {
+                    eventosCancelados.add(evento);
+                }
+                anulados++;
+            }
+        }
+        return anulados;
+    }
 
-                            // Actualizar las partes del envío con el estado entregado
-                            if (envio.getParteAsignadas() != null) {
-                                for (ParteAsignada parteEnvio : envio.getParteAsignadas()) {
-                                    if (partesPorId.containsKey(parteEnvio.getId())) {
-                                        parteEnvio.setEntregado(true);
-                                    }
-                                }
-                            }
+    /**
+     * Libera la capacidad ocupada en aeropuertos destino final para productos
+     * que llegaron hace más de 2 horas (simulando que el cliente recogió el
+     * producto).
+     * Solo aplica para productos que llegaron al aeropuerto destino final del
+     * envío.
+     * ⚡ Las partes se toman de la cola de liberación (min-heap por
+     * llegadaFinal + 2h), alimentada en persistirCambios: solo se procesan las
+     * partes vencidas, sin re-consultar el rango de envíos en cada ciclo.
+     */
+    private void liberarProductosEntregados(LocalDateTime tiempoSimulado) {
+        try {
+            List<ColaLiberacion.LiberacionPendiente> vencidas = colaLiberacion.extraerVencidas(tiempoSimulado);
+            if (vencidas.isEmpty()) {
+                return;
+            }
 
-                            // ⚡ CAMBIAR ESTADO: Verificar si todas las partes están entregadas (después de
-                            // marcar las nuevas)
-                            if (envio.getParteAsignadas() != null && !envio.getParteAsignadas().isEmpty()) {
-                                boolean todasEntregadas = envio.getParteAsignadas().stream()
-                                        .allMatch(p -> p.getEntregado() != null && p.getEntregado());
-
-                                if (todasEntregadas && envio.getEstado() != Envio.EstadoEnvio.ENTREGADO) {
-                                    envio.setEstado(Envio.EstadoEnvio.ENTREGADO);
-                                    // 💾 PERSISTIR inmediatamente el cambio de estado
-                                    try {
-                                        envioService.insertarEnvio(envio);
-                                        // System.out.printf(" ✅ [Estado] Envío %d cambió a ENTREGADO (todas las partes
-                                        // entregadas) [💾 Persistido]%n", envio.getId());
-                                    } catch (Exception e) {
-                                        System.err.printf("❌ Error al persistir cambio de estado ENTREGADO: %s%n",
-                                                e.getMessage());
-                                    }
-                                }
-                            }
+            // ⚡ Agregar por aeropuerto y recolectar IDs para actualizar en lote
+            Map<Integer, Integer> productosPorAeropuerto = new HashMap<>();
+            List<Integer> partesEntregadas = new ArrayList<>();
+            List<Integer> enviosEntregados = new ArrayList<>();
+            int productosLiberados = 0;
 
-                            enviosParaActualizar.put(envioId, envio);
-                        }
-                    }
+            for (ColaLiberacion.LiberacionPendiente liberacion : vencidas) {
+                productosPorAeropuerto.merge(liberacion.getAeropuertoDestinoId(), liberacion.getCantidad(),
+                        Integer::sum);
+                productosLiberados += liberacion.getCantidad();
+                partesEntregadas.add(liberacion.getParteId());
+                if (colaLiberacion.marcarEntregada(liberacion.getEnvioId(), liberacion.getParteId())) {
+                    enviosEntregados.add(liberacion.getEnvioId());
                 }
+            }
 
-                // Actualizar envíos (las partes se actualizarán por cascade)
-                for (Envio envio : enviosParaActualizar.values()) {
-                    envioService.insertarEnvio(envio);
+            if (esSesionAislada()) {
+                // 🧪 Sesión aislada: liberar en el estado de la sesión
+                for (Map.Entry<Integer, Integer> entry : productosPorAeropuerto.entrySet()) {
+                    estadoSesion.sumarOcupacionAeropuerto(entry.getKey(), -entry.getValue());
                 }
-
-                // Actualizar aeropuertos con capacidad liberada
-                if (!aeropuertosActualizados.isEmpty()) {
-                    aeropuertoService.insertarListaAeropuertos(
-                            new ArrayList<>(aeropuertosActualizados.values()));
+                for (Integer envioId : enviosEntregados) {
+                    cambiarEstadoEnvioSesion(envioId, Envio.EstadoEnvio.ENTREGADO);
                 }
-
-                System.out.printf("✅ Liberación de productos: %d partes entregadas, " +
-                        "%d productos liberados de aeropuertos%n", partesEntregadas, productosLiberados);
             } else {
-                System.out.printf("ℹ️  [LiberarProductos] No se encontraron partes para liberar en este ciclo%n");
+                // Liberar capacidad de los aeropuertos destino (una sola lectura y escritura)
+                List<Aeropuerto> aeropuertos = aeropuertoService
+                        .obtenerAeropuertosPorIds(new ArrayList<>(productosPorAeropuerto.keySet()));
+                for (Aeropuerto aeropuerto : aeropuertos) {
+                    aeropuerto.desasignarCapacidad(productosPorAeropuerto.get(aeropuerto.getId()));
+                }
+                if (aeropuertos.size() < productosPorAeropuerto.size()) {
+                    System.err.printf("⚠️  %d aeropuertos no encontrados para liberar productos%n",
+                            productosPorAeropuerto.size() - aeropuertos.size());
+                }
+                if (!aeropuertos.isEmpty()) {
+                    aeropuertoService.insertarListaAeropuertos(new ArrayList<>(aeropuertos));
+                }
+
+                // 💾 Cambio de estado ENTREGADO en lote
+                envioService.actualizarEstadoEnvios(enviosEntregados, Envio.EstadoEnvio.ENTREGADO, idSesion);
             }
 
+            // 💾 Marcar partes entregadas en lote (también en sesiones aisladas: las partes son propias)
+            envioService.marcarPartesEntregadas(partesEntregadas);
+
+            System.out.printf("✅ Liberación de productos: %d partes entregadas, %d productos liberados de " +
+                    "%d aeropuertos, %d envíos entregados (%d pendientes en cola)%n",
+                    partesEntregadas.size(), productosLiberados, productosPorAeropuerto.size(),
+                    enviosEntregados.size(), colaLiberacion.tamanio());
+
         } catch (Exception e) {
             System.err.printf("❌ Error al liberar productos entregados: %s%n", e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Registra en la cola de liberación las partes de esta sesión que se acaban
+     * de persistir (ya con ID asignado).
+     */
+    private void encolarLiberaciones(List<Envio> enviosGuardados) {
+        if (enviosGuardados == null) {
+            return;
+        }
+        // Las partes devueltas por saveAll no conservan la ruta transient: resolverla
+        // desde la ruta codificada en una sola consulta
+        List<ParteAsignada> partesSesion = new ArrayList<>();
+        for (Envio envio : enviosGuardados) {
+            if (envio.getParteAsignadas() != null) {
+                envio.getParteAsignadas().stream().filter(this::perteneceASesion).forEach(partesSesion::add);
+            }
+        }
+        envioService.cargarRutas(partesSesion);
+
+        int encoladas = 0;
+        for (Envio envio : enviosGuardados) {
+            if (envio.getId() == null || envio.getParteAsignadas() == null || envio.getAeropuertoDestino() == null) {
+                continue;
+            }
+            Integer aeropuertoDestinoId = envio.getAeropuertoDestino().getId();
+            for (ParteAsignada parte : envio.getParteAsignadas()) {
+                if (!perteneceASesion(parte)) {
+                    continue;
+                }
+                // Verificar que la ruta termine en el aeropuerto destino final del envío
+                boolean llegaADestinoFinal = false;
+                if (parte.getRuta() != null && !parte.getRuta().isEmpty()) {
+                    PlanDeVuelo ultimoVuelo = parte.getRuta().get(parte.getRuta().size() - 1);
+                    llegaADestinoFinal = ultimoVuelo != null && ultimoVuelo.getCiudadDestino() != null
+                            && ultimoVuelo.getCiudadDestino().equals(aeropuertoDestinoId);
+                }
+                if (colaLiberacion.registrar(parte, envio.getId(), aeropuertoDestinoId, llegaADestinoFinal)) {
+                    encoladas++;
+                }
+            }
+        }
+        if (encoladas > 0) {
+            System.out.printf("📥 [ColaLiberacion] %d partes encoladas (%d pendientes, próxima: %s)%n",
+                    encoladas, colaLiberacion.tamanio(), colaLiberacion.proximaLiberacion());
+        }
+    }
+
     /**
      * Recarga desde la base de datos el estado actual de planes de vuelo y
      * aeropuertos.
@@ -1511,50 +2381,67 @@ public class Planificador {
         // múltiples ciclos sin necesidad de recargar, ya que cada ciclo avanza 4h
         LocalDateTime finConsultaVuelos = inicioHorizonte.plusDays(6);
 
-        // ⚡ CACHÉ DE VUELOS: Reusar vuelos si el rango solapa significativamente con el
-        // caché
-        // Solo recargar si no hay caché o si el nuevo finConsultaVuelos excede el
-        // cacheFin
-        boolean usarCache = false;
-        if (vuelosCacheados != null && cacheVuelosInicio != null && cacheVuelosFin != null) {
-            // Verificar si el nuevo rango está cubierto por el caché
-            // El caché cubre el rango si: inicioHorizonte >= cacheInicio Y
-            // finConsultaVuelos <= cacheFin
-            boolean inicioCubierto = !inicioHorizonte.isBefore(cacheVuelosInicio);
-            boolean finCubierto = !finConsultaVuelos.isAfter(cacheVuelosFin);
-            usarCache = inicioCubierto && finCubierto;
-
-            // DEBUG: Mostrar por qué no se usa el caché (solo si no se usa)
-            if (!usarCache) {
-                long horasFaltantesFin = java.time.Duration.between(cacheVuelosFin, finConsultaVuelos).toHours();
-                System.out.printf("⚠️ [CACHÉ] No usado: inicioCubierto=%s, finCubierto=%s (falta %dh)%n",
-                        inicioCubierto, finCubierto, horasFaltantesFin);
-            }
-        }
+        // ⚡ CACHÉ DE VUELOS COMO VENTANA DESLIZANTE: al avanzar el horizonte solo
+        // se consulta el tramo final que falta y se descartan por la cabeza los
+        // vuelos que ya despegaron, en lugar de recargar los 6 días completos
+        ZonedDateTime inicioVentana = inicioHorizonte.atZone(ZoneOffset.UTC);
+        boolean ventanaDeslizable = vuelosCacheados != null && cacheVuelosInicio != null && cacheVuelosFin != null
+                && !inicioHorizonte.isBefore(cacheVuelosInicio) && inicioHorizonte.isBefore(cacheVuelosFin);
 
         ArrayList<PlanDeVuelo> planesActualizados;
 
-        if (usarCache) {
-            System.out.printf("⚡ [recargarDatosBase] USANDO CACHÉ de vuelos (%d vuelos, ahorrando consulta BD)%n",
-                    vuelosCacheados.size());
-            planesActualizados = vuelosCacheados;
-        } else {
+        if (!ventanaDeslizable) {
             System.out.printf(
                     "📊 [recargarDatosBase] Cargando vuelos desde %s hasta %s (6 días para caché)%n",
                     inicioHorizonte.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
                     finConsultaVuelos.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
 
-            planesActualizados = planDeVueloService.obtenerVuelosEnRango(
+            ArrayList<PlanDeVuelo> vuelosCargados = planDeVueloService.obtenerVuelosEnRango(
                     inicioHorizonte, "0", finConsultaVuelos, "0");
+            vuelosCargados.sort(Comparator.comparing(PlanDeVuelo::getZonedHoraOrigen));
+
+            ventanaVuelos.clear();
+            idsVentanaVuelos.clear();
+            indiceVuelos.limpiar();
+            agregarAVentanaVuelos(vuelosCargados);
 
             System.out.printf("✅ [recargarDatosBase] Vuelos cargados: %d (en lugar de 2+ millones)%n",
-                    planesActualizados.size());
+                    ventanaVuelos.size());
 
-            // Guardar en caché para los próximos ciclos
-            vuelosCacheados = planesActualizados;
+            vuelosCacheados = new ArrayList<>(ventanaVuelos);
             cacheVuelosInicio = inicioHorizonte;
             cacheVuelosFin = finConsultaVuelos;
+        } else {
+            // Descartar por la cabeza los vuelos que ya despegaron
+            int descartados = 0;
+            while (!ventanaVuelos.isEmpty()
+                    && ventanaVuelos.peekFirst().getZonedHoraOrigen().isBefore(inicioVentana)) {
+                idsVentanaVuelos.remove(ventanaVuelos.pollFirst().getId());
+                descartados++;
+            }
+            indiceVuelos.descartarAntesDe(inicioVentana);
+
+            // Consultar solo el tramo final que falta
+            int agregados = 0;
+            if (finConsultaVuelos.isAfter(cacheVuelosFin)) {
+                ArrayList<PlanDeVuelo> tramoNuevo = planDeVueloService.obtenerVuelosEnRango(
+                        cacheVuelosFin, "0", finConsultaVuelos, "0");
+                tramoNuevo.sort(Comparator.comparing(PlanDeVuelo::getZonedHoraOrigen));
+                agregados = agregarAVentanaVuelos(tramoNuevo);
+                cacheVuelosFin = finConsultaVuelos;
+            }
+            cacheVuelosInicio = inicioHorizonte;
+
+            if (descartados > 0 || agregados > 0) {
+                vuelosCacheados = new ArrayList<>(ventanaVuelos);
+                System.out.printf("⚡ [recargarDatosBase] Ventana de vuelos deslizada: -%d despegados, +%d nuevos " +
+                        "(%d vuelos)%n", descartados, agregados, vuelosCacheados.size());
+            } else {
+                System.out.printf("⚡ [recargarDatosBase] USANDO CACHÉ de vuelos (%d vuelos, ahorrando consulta BD)%n",
+                        vuelosCacheados.size());
+            }
         }
+        planesActualizados = vuelosCacheados;
 
         ArrayList<Aeropuerto> aeropuertosActualizados = aeropuertoService.obtenerTodosAeropuertos();
 
@@ -1575,11 +2462,38 @@ public class Planificador {
 
         this.vuelosUltimoCiclo = planesFiltrados;
 
+        // 🧪 Sesión aislada: la ocupación viene del estado de la sesión, no de la BD
+        if (esSesionAislada()) {
+            estadoSesion.aplicarAVuelos(planesActualizados);
+            estadoSesion.aplicarAAeropuertos(aeropuertosActualizados);
+            Map<Integer, Integer> ocupacionInicio = new HashMap<>();
+            for (Aeropuerto aeropuerto : aeropuertosActualizados) {
+                ocupacionInicio.put(aeropuerto.getId(), aeropuerto.getCapacidadOcupada());
+            }
+            ocupacionAeropuertosInicioCiclo = ocupacionInicio;
+        }
+
         grasp.setPlanesDeVuelo(planesActualizados);
         grasp.setAeropuertos(aeropuertosActualizados);
         grasp.setHubsPropio();
     }
 
+    /**
+     * Agrega al final de la ventana (y de su índice por origen) los vuelos, ya
+     * ordenados por despegue, que aún no estén en ella.
+     */
+    private int agregarAVentanaVuelos(List<PlanDeVuelo> vuelos) {
+        List<PlanDeVuelo> nuevos = new ArrayList<>();
+        for (PlanDeVuelo vuelo : vuelos) {
+            if (vuelo.getId() == null || idsVentanaVuelos.add(vuelo.getId())) {
+                ventanaVuelos.addLast(vuelo);
+                nuevos.add(vuelo);
+            }
+        }
+        indiceVuelos.agregar(nuevos);
+        return nuevos.size();
+    }
+
     /**
      * ⚡ OPTIMIZADO: Persiste los cambios en la base de datos después de ejecutar
      * GRASP
@@ -1592,6 +2506,7 @@ public class Planificador {
      * - Carga todos los vuelos de una vez (batch)
      * - Carga todos los aeropuertos de una vez (batch)
      * - Guarda envíos en lotes en lugar de uno por uno
+     * - Solo guarda vuelos y aeropuertos cuya ocupación cambió
      */
     private void persistirCambios(Solucion solucion) {
         if (solucion == null || solucion.getEnvios() == null || solucion.getEnvios().isEmpty()) {
@@ -1602,8 +2517,12 @@ public class Planificador {
         Set<Integer> envioIds = new HashSet<>();
         Set<Integer> vueloIds = new HashSet<>();
         Set<Integer> aeropuertoIds = new HashSet<>();
+        // ⚡ Carga asignada por vuelo acumulada en la misma pasada (int[] evita
+        // re-boxing en cada suma)
+        Map<Integer, int[]> cargaPorVuelo = new HashMap<>();
 
         for (Envio envioCopia : solucion.getEnvios()) {
+            acumularCargaPorVuelo(envioCopia, cargaPorVuelo);
             if (envioCopia.getId() == null) {
                 continue;
             }
@@ -1647,10 +2566,10 @@ public class Planificador {
             }
         }
 
-        // Cargar vuelos
+        // Cargar vuelos (las instancias de rutas con carga se guardan aquí por primera vez)
         Map<Integer, PlanDeVuelo> vuelosMap = new HashMap<>();
         if (!vueloIds.isEmpty()) {
-            List<PlanDeVuelo> vuelosCargados = planDeVueloService.obtenerPlanesDeVueloPorIds(new ArrayList<>(vueloIds));
+            List<PlanDeVuelo> vuelosCargados = planDeVueloService.materializarPlanesDeVuelo(new ArrayList<>(vueloIds));
             for (PlanDeVuelo vuelo : vuelosCargados) {
                 vuelosMap.put(vuelo.getId(), vuelo);
             }
@@ -1687,22 +2606,22 @@ public class Planificador {
 
             // Procesar cada parte asignada nueva
             if (envioCopia.getParteAsignadas() != null) {
-                for (ParteAsignada parteCopia : envioCopia.getParteAsignadas()) {
-                    // Verificar si esta parte ya existe
-                    boolean parteExiste = false;
-                    if (envioReal.getParteAsignadas() != null) {
-                        for (ParteAsignada parteExistente : envioReal.getParteAsignadas()) {
-                            if (parteExistente.getId() != null && parteExistente.getId().equals(parteCopia.getId())) {
-                                parteExiste = true;
-                                break;
-                            }
+                // ⚡ IDs de partes ya persistidas del envío (una sola pasada)
+                Set<Integer> idsPartesExistentes = new HashSet<>();
+                if (envioReal.getParteAsignadas() != null) {
+                    for (ParteAsignada parteExistente : envioReal.getParteAsignadas()) {
+                        if (parteExistente.getId() != null) {
+                            idsPartesExistentes.add(parteExistente.getId());
                         }
                     }
+                }
 
+                for (ParteAsignada parteCopia : envioCopia.getParteAsignadas()) {
                     // Si la parte es nueva, crearla
-                    if (parteCopia.getId() == null || !parteExiste) {
+                    if (parteCopia.getId() == null || !idsPartesExistentes.contains(parteCopia.getId())) {
                         ParteAsignada nuevaParte = new ParteAsignada();
                         nuevaParte.setEnvio(envioReal);
+                        nuevaParte.setIdSesion(idSesionPersistida());
                         nuevaParte.setCantidad(parteCopia.getCantidad());
                         nuevaParte.setLlegadaFinal(parteCopia.getLlegadaFinal());
 
@@ -1747,22 +2666,26 @@ public class Planificador {
 
             // Cambiar estado a PLANIFICADO si tiene partes
             if (envioReal.getParteAsignadas() != null && !envioReal.getParteAsignadas().isEmpty()) {
-                if (envioReal.getEstado() == null || envioReal.getEstado() != Envio.EstadoEnvio.PLANIFICADO) {
-                    envioReal.setEstado(Envio.EstadoEnvio.PLANIFICADO);
+                if (esSesionAislada()) {
+                    cambiarEstadoEnvioSesion(envioReal.getId(), Envio.EstadoEnvio.PLANIFICADO);
+                } else if (envioReal.getEstado() == null || envioReal.getEstado() != Envio.EstadoEnvio.PLANIFICADO) {
+                    cambiarEstadoEnvio(envioReal, Envio.EstadoEnvio.PLANIFICADO);
                 }
             }
 
             enviosParaActualizar.add(envioReal);
         }
 
-        // ⚡ PASO 4: Actualizar capacidades de vuelos y aeropuertos (usar mapas)
+        // ⚡ PASO 4: Actualizar capacidades de vuelos y aeropuertos (usar mapas),
+        // solo las que cambian
         List<PlanDeVuelo> planesParaActualizar = new ArrayList<>();
         for (Integer planId : planesDeVueloModificados) {
             PlanDeVuelo planReal = vuelosMap.get(planId);
             if (planReal != null) {
-                Integer capacidadAsignada = calcularCapacidadAsignada(planId, solucion.getEnvios());
-                if (capacidadAsignada != null) {
-                    planReal.setCapacidadOcupada(capacidadAsignada);
+                int[] capacidadAsignada = cargaPorVuelo.get(planId);
+                int nuevaCapacidad = capacidadAsignada != null ? capacidadAsignada[0] : 0;
+                if (esSesionAislada() || !Integer.valueOf(nuevaCapacidad).equals(planReal.getCapacidadOcupada())) {
+                    planReal.setCapacidadOcupada(nuevaCapacidad);
                     planesParaActualizar.add(planReal);
                 }
             }
@@ -1773,7 +2696,8 @@ public class Planificador {
             Aeropuerto aeropuertoReal = aeropuertosMap.get(aeropuertoId);
             if (aeropuertoReal != null) {
                 Aeropuerto aeropuertoGrasp = obtenerAeropuertoPorId(aeropuertoId);
-                if (aeropuertoGrasp != null && aeropuertoGrasp.getCapacidadOcupada() != null) {
+                if (aeropuertoGrasp != null && aeropuertoGrasp.getCapacidadOcupada() != null && (esSesionAislada()
+                        || !aeropuertoGrasp.getCapacidadOcupada().equals(aeropuertoReal.getCapacidadOcupada()))) {
                     aeropuertoReal.setCapacidadOcupada(aeropuertoGrasp.getCapacidadOcupada());
                     aeropuertosParaActualizar.add(aeropuertoReal);
                 }
@@ -1784,7 +2708,24 @@ public class Planificador {
         try {
             // Guardar envíos en lote (esto guardará las partes asignadas por cascade)
             if (!enviosParaActualizar.isEmpty()) {
-                envioService.insertarListaEnvios(new ArrayList<>(enviosParaActualizar));
+                List<Envio> enviosGuardados = guardarPartesNuevas(new ArrayList<>(enviosParaActualizar));
+                encolarLiberaciones(enviosGuardados);
+            }
+
+            // 🧪 Sesión aislada: la capacidad se guarda en el estado de la sesión. Solo se
+            // suman diferencias: los eventos de la sesión también la mueven mientras
+            // corre el ciclo y un valor absoluto pisaría esos incrementos
+            if (esSesionAislada()) {
+                for (PlanDeVuelo plan : planesParaActualizar) {
+                    int[] cargaAsignada = cargaPorVuelo.get(plan.getId());
+                    estadoSesion.sumarOcupacionVuelo(plan.getId(), cargaAsignada != null ? cargaAsignada[0] : 0);
+                }
+                for (Aeropuerto aeropuerto : aeropuertosParaActualizar) {
+                    int inicio = ocupacionAeropuertosInicioCiclo.getOrDefault(aeropuerto.getId(), 0);
+                    estadoSesion.sumarOcupacionAeropuerto(aeropuerto.getId(),
+                            aeropuerto.getCapacidadOcupada() - inicio);
+                }
+                return;
             }
 
             // Guardar planes de vuelo en lote
@@ -1803,6 +2744,33 @@ public class Planificador {
         }
     }
 
+    /**
+     * Guarda las partes nuevas de los envíos. La sesión principal guarda los
+     * envíos (las partes van por cascade); una sesión aislada inserta solo sus
+     * partes, para no escribir las filas de envio que comparte con la simulación
+     * principal (su estado vive en EstadoCapacidadSesion).
+     */
+    private List<Envio> guardarPartesNuevas(List<Envio> envios) {
+        if (!esSesionAislada()) {
+            return envioService.insertarListaEnvios(envios);
+        }
+        List<ParteAsignada> partesNuevas = new ArrayList<>();
+        for (Envio envio : envios) {
+            if (envio.getParteAsignadas() == null) {
+                continue;
+            }
+            for (ParteAsignada parte : envio.getParteAsignadas()) {
+                if (parte.getId() == null) {
+                    partesNuevas.add(parte);
+                }
+            }
+        }
+        if (!partesNuevas.isEmpty()) {
+            envioService.insertarPartesAsignadasMasivo(partesNuevas);
+        }
+        return envios;
+    }
+
     /**
      * ⚡ Crea y programa eventos temporales individualmente.
      * Cada evento se ejecutará exactamente cuando le toca usando
@@ -1810,9 +2778,11 @@ public class Planificador {
      *
      * NOTA: Los eventos se programan basándose en el tiempo simulado.
      * El delay se calcula desde el tiempo simulado actual hasta el tiempo del
-     * evento.
-     * Como estamos en una simulación acelerada, usamos un factor de conversión:
-     * - 1 minuto simulado = 1 segundo real (configurable)
+     * evento y el reloj de la simulación lo convierte a tiempo real
+     * (reloj.aMilisegundosReales):
+     * - RelojEscalado (por defecto x120): 1 hora simulada = 30 segundos reales
+     * - RelojVirtual (simulación acelerada): no hay delay, el evento se encola
+     * por tiempo simulado y se procesa al avanzar el reloj
      */
     private void crearEventosTemporales(Solucion solucion, LocalDateTime tiempoReferencia) {
         long inicioCreacion = System.currentTimeMillis();
@@ -1821,14 +2791,13 @@ public class Planificador {
             return;
         }
 
-        if (schedulerEventos == null) {
+        if (!reloj.esVirtual() && schedulerEventos == null) {
             System.err.println("⚠️ Scheduler de eventos no inicializado, no se pueden programar eventos");
             return;
         }
 
-        // Factor de conversión: 1 segundo real = 2 minutos simulados
-        // Esto significa que la simulación corre 120x más rápido que el tiempo real
-        final double FACTOR_CONVERSION = 2.0; // minutos simulados por segundo real
+        // ⏱️ La conversión de tiempo simulado a delay real la hace el reloj
+        // (antes: factor fijo de 2 minutos simulados por segundo real)
 
         LocalDateTime tiempoSimuladoActual = this.tiempoSimuladoActual != null
                 ? this.tiempoSimuladoActual
@@ -1841,127 +2810,124 @@ public class Planificador {
             }
 
             for (ParteAsignada parte : envio.getParteAsignadas()) {
-                if (parte.getRuta() == null || parte.getRuta().isEmpty()) {
-                    continue;
-                }
+                contadorEventos += programarEventosParte(envio, parte, 0, tiempoSimuladoActual);
+            }
+        }
 
-                Integer cantidad = parte.getCantidad();
-                if (cantidad == null || cantidad <= 0) {
-                    continue;
-                }
+        long tiempoCreacion = System.currentTimeMillis() - inicioCreacion;
+        System.out.printf("📅 [crearEventosTemporales] Programados %d eventos temporales desde %s (en %d ms)%n",
+                contadorEventos, tiempoReferencia.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                tiempoCreacion);
+    }
 
-                // Crear y programar eventos para cada vuelo en la ruta
-                int totalVuelos = parte.getRuta().size();
-                for (int i = 0; i < totalVuelos; i++) {
-                    PlanDeVuelo vuelo = parte.getRuta().get(i);
-                    boolean esPrimerVuelo = (i == 0);
-                    boolean esUltimoVuelo = (i == totalVuelos - 1);
-
-                    // Evento: Llegada del vuelo al destino
-                    ZonedDateTime llegada = vuelo.getZonedHoraDestino();
-                    if (llegada != null) {
-                        LocalDateTime llegadaLocal = llegada.toLocalDateTime();
-
-                        // Calcular delay en segundos reales
-                        long minutosSimulados = Duration.between(tiempoSimuladoActual, llegadaLocal).toMinutes();
-                        if (minutosSimulados >= 0) { // Solo programar eventos futuros
-                            long delaySegundos = (long) (minutosSimulados / FACTOR_CONVERSION);
-
-                            EventoTemporal eventoLlegada = new EventoTemporal(
-                                    llegada,
-                                    EventoTemporal.TipoEvento.LLEGADA_VUELO,
-                                    vuelo,
-                                    parte,
-                                    cantidad,
-                                    vuelo.getCiudadDestino(),
-                                    esPrimerVuelo,
-                                    esUltimoVuelo,
-                                    envio);
-
-                            // Programar el evento para ejecutarse después del delay calculado
-                            try {
-                                ScheduledFuture<?> futuro = schedulerEventos.schedule(
-                                        () -> procesarEvento(eventoLlegada),
-                                        delaySegundos,
-                                        TimeUnit.SECONDS);
-
-                                eventosProgramados.add(futuro);
-                                contadorEventos++;
-                            } catch (RejectedExecutionException e) {
-                                System.err.printf(
-                                        "⚠️ Scheduler de eventos saturado, evento de llegada rechazado (Vuelo %d). Threads activos: %d%n",
-                                        vuelo.getId() != null ? vuelo.getId() : -1,
-                                        schedulerEventos instanceof ThreadPoolExecutor
-                                                ? ((ThreadPoolExecutor) schedulerEventos).getActiveCount()
-                                                : -1);
-                                // Continuar con el siguiente evento en lugar de fallar completamente
-                            }
+    /**
+     * Programa los eventos de salida y llegada de los vuelos de una parte a partir
+     * del tramo indicado (0 = toda la ruta). Solo se programan eventos futuros.
+     *
+     * @return cantidad de eventos programados
+     */
+    private int programarEventosParte(Envio envio, ParteAsignada parte, int desdeTramo,
+            LocalDateTime tiempoSimuladoActual) {
+        int programados = 0;
+        if (parte.getRuta() == null || parte.getRuta().isEmpty()) {
+            return 0;
+        }
+
+        Integer cantidad = parte.getCantidad();
+        if (cantidad == null || cantidad <= 0) {
+            return 0;
+        }
 
-                            // System.out.printf(" 📅 Evento programado: Vuelo %d llegará a %s en %d min sim
-                            // (%d seg real) - %s%n", vuelo.getId(),
-                            // llegadaLocal.format(DateTimeFormatter.ofPattern("HH:mm")), minutosSimulados,
-                            // delaySegundos, llegadaLocal.format(DateTimeFormatter.ofPattern("yyyy-MM-dd
-                            // HH:mm")));
+        // Crear y programar eventos para cada vuelo en la ruta
+        int totalVuelos = parte.getRuta().size();
+        for (int i = desdeTramo; i < totalVuelos; i++) {
+            PlanDeVuelo vuelo = parte.getRuta().get(i);
+            boolean esPrimerVuelo = (i == 0);
+            boolean esUltimoVuelo = (i == totalVuelos - 1);
+
+            // Evento: Llegada del vuelo al destino
+            ZonedDateTime llegada = vuelo.getZonedHoraDestino();
+            if (llegada != null) {
+                LocalDateTime llegadaLocal = llegada.toLocalDateTime();
+
+                // Calcular delay en segundos reales
+                long minutosSimulados = Duration.between(tiempoSimuladoActual, llegadaLocal).toMinutes();
+                if (minutosSimulados >= 0) { // Solo programar eventos futuros
+                    long delayMs = reloj.aMilisegundosReales(Duration.ofMinutes(minutosSimulados));
+
+                    EventoTemporal eventoLlegada = new EventoTemporal(
+                            llegada,
+                            EventoTemporal.TipoEvento.LLEGADA_VUELO,
+                            vuelo,
+                            parte,
+                            cantidad,
+                            vuelo.getCiudadDestino(),
+                            esPrimerVuelo,
+                            esUltimoVuelo,
+                            envio);
+
+                    // ⚡ Modo acelerado: encolar por tiempo simulado (reloj virtual)
+                    if (reloj.esVirtual()) {
+                        colaEventosVirtual.add(eventoLlegada);
+                        programados++;
+                    } else {
+                        // Programar el evento para ejecutarse después del delay calculado
+                        if (programarEvento(eventoLlegada, delayMs)) {
+                            programados++;
                         }
                     }
 
-                    // Evento: Salida del vuelo desde el origen
-                    // Para el primer vuelo: cambia estado a EN_RUTA
-                    // Para vuelos intermedios: solo desasigna capacidad
-                    ZonedDateTime salida = vuelo.getZonedHoraOrigen();
-                    if (salida != null) {
-                        LocalDateTime salidaLocal = salida.toLocalDateTime();
-
-                        // Calcular delay en segundos reales
-                        long minutosSimulados = Duration.between(tiempoSimuladoActual, salidaLocal).toMinutes();
-                        if (minutosSimulados >= 0) { // Solo programar eventos futuros
-                            long delaySegundos = (long) (minutosSimulados / FACTOR_CONVERSION);
-
-                            EventoTemporal eventoSalida = new EventoTemporal(
-                                    salida,
-                                    EventoTemporal.TipoEvento.SALIDA_VUELO,
-                                    vuelo,
-                                    parte,
-                                    cantidad,
-                                    vuelo.getCiudadOrigen(),
-                                    esPrimerVuelo,
-                                    esUltimoVuelo,
-                                    envio);
-
-                            // Programar el evento para ejecutarse después del delay calculado
-                            try {
-                                ScheduledFuture<?> futuro = schedulerEventos.schedule(
-                                        () -> procesarEvento(eventoSalida),
-                                        delaySegundos,
-                                        TimeUnit.SECONDS);
-
-                                eventosProgramados.add(futuro);
-                                contadorEventos++;
-                            } catch (RejectedExecutionException e) {
-                                System.err.printf(
-                                        "⚠️ Scheduler de eventos saturado, evento de salida rechazado (Vuelo %d). Threads activos: %d%n",
-                                        vuelo.getId() != null ? vuelo.getId() : -1,
-                                        schedulerEventos instanceof ThreadPoolExecutor
-                                                ? ((ThreadPoolExecutor) schedulerEventos).getActiveCount()
-                                                : -1);
-                                // Continuar con el siguiente evento en lugar de fallar completamente
-                            }
+                    // System.out.printf(" 📅 Evento programado: Vuelo %d llegará a %s en %d min sim
+                    // (%d ms real) - %s%n", vuelo.getId(),
+                    // llegadaLocal.format(DateTimeFormatter.ofPattern("HH:mm")), minutosSimulados,
+                    // delayMs, llegadaLocal.format(DateTimeFormatter.ofPattern("yyyy-MM-dd
+                    // HH:mm")));
+                }
+            }
 
-                            // System.out.printf(" 📅 Evento programado: Vuelo %d saldrá de %s en %d min sim
-                            // (%d seg real) - %s%n", vuelo.getId(),
-                            // salidaLocal.format(DateTimeFormatter.ofPattern("HH:mm")), minutosSimulados,
-                            // delaySegundos, salidaLocal.format(DateTimeFormatter.ofPattern("yyyy-MM-dd
-                            // HH:mm")));
+            // Evento: Salida del vuelo desde el origen
+            // Para el primer vuelo: cambia estado a EN_RUTA
+            // Para vuelos intermedios: solo desasigna capacidad
+            ZonedDateTime salida = vuelo.getZonedHoraOrigen();
+            if (salida != null) {
+                LocalDateTime salidaLocal = salida.toLocalDateTime();
+
+                // Calcular delay en segundos reales
+                long minutosSimulados = Duration.between(tiempoSimuladoActual, salidaLocal).toMinutes();
+                if (minutosSimulados >= 0) { // Solo programar eventos futuros
+                    long delayMs = reloj.aMilisegundosReales(Duration.ofMinutes(minutosSimulados));
+
+                    EventoTemporal eventoSalida = new EventoTemporal(
+                            salida,
+                            EventoTemporal.TipoEvento.SALIDA_VUELO,
+                            vuelo,
+                            parte,
+                            cantidad,
+                            vuelo.getCiudadOrigen(),
+                            esPrimerVuelo,
+                            esUltimoVuelo,
+                            envio);
+
+                    // ⚡ Modo acelerado: encolar por tiempo simulado (reloj virtual)
+                    if (reloj.esVirtual()) {
+                        colaEventosVirtual.add(eventoSalida);
+                        programados++;
+                    } else {
+                        // Programar el evento para ejecutarse después del delay calculado
+                        if (programarEvento(eventoSalida, delayMs)) {
+                            programados++;
                         }
                     }
+
+                    // System.out.printf(" 📅 Evento programado: Vuelo %d saldrá de %s en %d min sim
+                    // (%d ms real) - %s%n", vuelo.getId(),
+                    // salidaLocal.format(DateTimeFormatter.ofPattern("HH:mm")), minutosSimulados,
+                    // delayMs, salidaLocal.format(DateTimeFormatter.ofPattern("yyyy-MM-dd
+                    // HH:mm")));
                 }
             }
         }
-
-        long tiempoCreacion = System.currentTimeMillis() - inicioCreacion;
-        System.out.printf("📅 [crearEventosTemporales] Programados %d eventos temporales desde %s (en %d ms)%n",
-                contadorEventos, tiempoReferencia.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                tiempoCreacion);
+        return programados;
     }
 
     /**
@@ -2019,11 +2985,43 @@ public class Planificador {
         // Este método se mantiene por compatibilidad pero no debería llamarse
     }
 
+    /**
+     * Programa un evento en el scheduler de eventos y lo registra como pendiente
+     * (para poder guardarlo en un checkpoint).
+     */
+    private boolean programarEvento(EventoTemporal evento, long delayMs) {
+        try {
+            eventosPendientes.add(evento);
+            ScheduledFuture<?> futuro = schedulerEventos.schedule(
+                    () -> procesarEvento(evento),
+                    delayMs,
+                    TimeUnit.MILLISECONDS);
+
+            eventosProgramados.add(futuro);
+            return true;
+        } catch (RejectedExecutionException e) {
+            eventosPendientes.remove(evento);
+            System.err.printf(
+                    "⚠️ Scheduler de eventos saturado, evento de %s rechazado (Vuelo %d). Threads activos: %d%n",
+                    evento.getTipo() == EventoTemporal.TipoEvento.LLEGADA_VUELO ? "llegada" : "salida",
+                    evento.getVuelo() != null && evento.getVuelo().getId() != null ? evento.getVuelo().getId() : -1,
+                    schedulerEventos instanceof ThreadPoolExecutor
+                            ? ((ThreadPoolExecutor) schedulerEventos).getActiveCount()
+                            : -1);
+            // Continuar con el siguiente evento en lugar de fallar completamente
+            return false;
+        }
+    }
+
     /**
      * Procesa un evento temporal individual (llegada o salida de vuelo)
      * ⚡ PERSISTE los cambios en la base de datos inmediatamente
      */
     private void procesarEvento(EventoTemporal evento) {
+        eventosPendientes.remove(evento);
+        if (eventosCancelados.remove(evento)) {
+            return; // La parte fue re-enrutada por una reparación
+        }
         try {
             // ✅ Limpiar eventos ejecutados periódicamente (cada 100 eventos procesados
             // aproximadamente)
@@ -2032,6 +3030,10 @@ public class Planificador {
                     Math.random() < 0.1) { // 10% de probabilidad de limpiar
                 limpiarEventosEjecutados();
             }
+            if (esSesionAislada()) {
+                procesarEventoSesion(evento);
+                return;
+            }
             Optional<Aeropuerto> aeropuertoOpt = aeropuertoService.obtenerAeropuertoPorId(evento.getAeropuertoId());
             if (!aeropuertoOpt.isPresent()) {
                 System.err.printf("⚠️ Aeropuerto ID %d no encontrado para evento%n", evento.getAeropuertoId());
@@ -2070,7 +3072,7 @@ public class Planificador {
                         if (envioOpt.isPresent()) {
                             Envio envioReal = envioOpt.get();
                             if (envioReal.getEstado() != Envio.EstadoEnvio.FINALIZADO) {
-                                envioReal.setEstado(Envio.EstadoEnvio.FINALIZADO);
+                                cambiarEstadoEnvio(envioReal, Envio.EstadoEnvio.FINALIZADO);
                                 envioService.insertarEnvio(envioReal);
                                 // System.out.printf(" ✅ [Estado] Envío %d cambió a FINALIZADO (llegó a destino
                                 // final)%n", envio.getId());
@@ -2108,7 +3110,7 @@ public class Planificador {
                         if (envioOpt.isPresent()) {
                             Envio envioReal = envioOpt.get();
                             if (envioReal.getEstado() != Envio.EstadoEnvio.EN_RUTA) {
-                                envioReal.setEstado(Envio.EstadoEnvio.EN_RUTA);
+                                cambiarEstadoEnvio(envioReal, Envio.EstadoEnvio.EN_RUTA);
                                 envioService.insertarEnvio(envioReal);
                                 // System.out.printf(" ✅ [Estado] Envío %d cambió a EN_RUTA (primer vuelo
                                 // inició)%n", envio.getId());
@@ -2140,30 +3142,82 @@ public class Planificador {
     }
 
     /**
-     * Encuentra un plan de vuelo en el grasp por su ID
+     * 🧪 Versión de procesarEvento para sesiones aisladas: actualiza solo el estado
+     * en memoria de la sesión (sin escribir en las tablas compartidas).
      */
-    private Integer calcularCapacidadAsignada(Integer planId, List<Envio> envios) {
-        if (envios == null)
-            return null;
+    private void procesarEventoSesion(EventoTemporal evento) {
+        Envio envio = evento.getEnvio();
+        if (evento.getTipo() == EventoTemporal.TipoEvento.LLEGADA_VUELO) {
+            estadoSesion.sumarOcupacionAeropuerto(evento.getAeropuertoId(), evento.getCantidad());
+            // Como en procesarEvento: el vuelo lleva al menos la cantidad que llega
+            PlanDeVuelo vuelo = evento.getVuelo();
+            if (vuelo != null && vuelo.getId() != null) {
+                int cantidadFaltante = evento.getCantidad() - estadoSesion.getOcupacionVuelo(vuelo.getId());
+                if (cantidadFaltante > 0) {
+                    estadoSesion.sumarOcupacionVuelo(vuelo.getId(), cantidadFaltante);
+                }
+            }
+            if (evento.isUltimoVuelo() && envio != null) {
+                cambiarEstadoEnvioSesion(envio.getId(), Envio.EstadoEnvio.FINALIZADO);
+            }
+        } else if (evento.getTipo() == EventoTemporal.TipoEvento.SALIDA_VUELO) {
+            estadoSesion.sumarOcupacionAeropuerto(evento.getAeropuertoId(), -evento.getCantidad());
+            if (evento.isPrimerVuelo() && envio != null) {
+                cambiarEstadoEnvioSesion(envio.getId(), Envio.EstadoEnvio.EN_RUTA);
+            }
+        }
+    }
 
-        int total = 0;
-        for (Envio envio : envios) {
-            if (envio.getParteAsignadas() == null)
+    /**
+     * 🔢 Cambia el estado de un envío de la sesión principal (se persiste con el
+     * envío) y mueve los contadores por estado.
+     */
+    private void cambiarEstadoEnvio(Envio envio, Envio.EstadoEnvio estado) {
+        envioService.registrarCambioEstado(idSesion, envio.getEstado(), estado, 1);
+        envio.setEstado(estado);
+    }
+
+    /**
+     * 🔢 Cambia el estado de un envío en la sesión aislada y mueve sus contadores.
+     */
+    private void cambiarEstadoEnvioSesion(Integer envioId, Envio.EstadoEnvio estado) {
+        if (envioId == null) {
+            return;
+        }
+        Envio.EstadoEnvio anterior = estadoSesion.getEstadoEnvio(envioId);
+        estadoSesion.fijarEstadoEnvio(envioId, estado);
+        envioService.registrarCambioEstado(idSesion, anterior, estado, 1);
+    }
+
+    /**
+     * Suma la cantidad de cada parte del envío a los vuelos de su ruta.
+     * Una parte cuenta una sola vez por vuelo aunque la ruta lo repita.
+     */
+    private void acumularCargaPorVuelo(Envio envio, Map<Integer, int[]> cargaPorVuelo) {
+        if (envio.getParteAsignadas() == null)
+            return;
+
+        for (ParteAsignada parte : envio.getParteAsignadas()) {
+            List<PlanDeVuelo> ruta = parte.getRuta();
+            if (ruta == null || parte.getCantidad() == null)
                 continue;
 
-            for (ParteAsignada parte : envio.getParteAsignadas()) {
-                if (parte.getRuta() == null)
+            for (int i = 0; i < ruta.size(); i++) {
+                Integer vueloId = ruta.get(i).getId();
+                if (vueloId == null || vueloRepetidoEnRuta(ruta, i))
                     continue;
-
-                for (PlanDeVuelo vuelo : parte.getRuta()) {
-                    if (vuelo.getId() != null && vuelo.getId().equals(planId)) {
-                        total += parte.getCantidad();
-                        break;
-                    }
-                }
+                cargaPorVuelo.computeIfAbsent(vueloId, k -> new int[1])[0] += parte.getCantidad();
             }
         }
-        return total;
+    }
+
+    private boolean vueloRepetidoEnRuta(List<PlanDeVuelo> ruta, int indice) {
+        Integer vueloId = ruta.get(indice).getId();
+        for (int j = 0; j < indice; j++) {
+            if (vueloId.equals(ruta.get(j).getId()))
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -2248,9 +3302,6 @@ public class Planificador {
 
         productosSinAsignar = totalProductos - productosAsignados;
 
-        // ⚡ OPTIMIZACIÓN: Usar vuelos ya filtrados en memoria para estadísticas
-        List<PlanDeVuelo> vuelos = grasp.getPlanesDeVuelo() != null ? grasp.getPlanesDeVuelo()
-                : planDeVueloService.obtenerListaPlanesDeVuelo();
         Map<Integer, Integer> productosPorVuelo = new HashMap<>();
         int totalProductosEnVuelos = 0;
         int vuelosUtilizados = 0;
@@ -2258,15 +3309,12 @@ public class Planificador {
         for (Envio envio : envios) {
             if (envio.getParteAsignadas() != null) {
                 for (ParteAsignada parte : envio.getParteAsignadas()) {
-                    if (parte.getVuelosRuta() != null) {
-                        for (ParteAsignadaPlanDeVuelo vueloRuta : parte.getVuelosRuta()) {
-                            if (vueloRuta.getPlanDeVuelo() != null && vueloRuta.getPlanDeVuelo().getId() != null) {
-                                int vueloId = vueloRuta.getPlanDeVuelo().getId();
-                                int cantidad = parte.getCantidad();
-                                productosPorVuelo.put(vueloId,
-                                        productosPorVuelo.getOrDefault(vueloId, 0) + cantidad);
-                                totalProductosEnVuelos += cantidad;
-                            }
+                    for (Integer vueloId : parte.getIdsRuta()) {
+                        if (vueloId != null) {
+                            int cantidad = parte.getCantidad();
+                            productosPorVuelo.put(vueloId,
+                                    productosPorVuelo.getOrDefault(vueloId, 0) + cantidad);
+                            totalProductosEnVuelos += cantidad;
                         }
                     }
                 }
@@ -2275,6 +3323,11 @@ public class Planificador {
 
         vuelosUtilizados = productosPorVuelo.size();
 
+        // ⚡ OPTIMIZACIÓN: Usar vuelos ya filtrados en memoria para estadísticas; si no
+        // hay, solo los vuelos usados (guardados o instanciados desde sus rutas)
+        List<PlanDeVuelo> vuelos = grasp.getPlanesDeVuelo() != null ? grasp.getPlanesDeVuelo()
+                : planDeVueloService.obtenerPlanesDeVueloPorIds(new ArrayList<>(productosPorVuelo.keySet()));
+
         // Preparar resumen de vuelos con productos
         List<Map<String, Object>> resumenVuelos = new ArrayList<>();
         for (Map.Entry<Integer, Integer> entry : productosPorVuelo.entrySet()) {
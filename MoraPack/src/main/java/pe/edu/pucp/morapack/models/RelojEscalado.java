@@ -0,0 +1,61 @@
+package pe.edu.pucp.morapack.models;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Reloj acelerado: el tiempo simulado avanza factorAceleracion veces más
+ * rápido que el tiempo real desde la última sincronización.
+ */
+public class RelojEscalado implements RelojSimulacion {
+    // Velocidad histórica de los eventos (2 min simulados por segundo real): ciclo
+    // de 2 min reales en modo normal/semanal y de 4 min reales en COLAPSO
+    public static final double FACTOR_POR_DEFECTO = 120.0;
+
+    private final double factorAceleracion;
+    private LocalDateTime tiempoBase;
+    private long nanosBase;
+
+    public RelojEscalado(double factorAceleracion) {
+        if (factorAceleracion <= 0) {
+            throw new IllegalArgumentException("El factor de aceleración debe ser positivo: " + factorAceleracion);
+        }
+        this.factorAceleracion = factorAceleracion;
+        sincronizar(LocalDateTime.now());
+    }
+
+    @Override
+    public synchronized LocalDateTime ahora() {
+        long nanosReales = System.nanoTime() - nanosBase;
+        return tiempoBase.plusNanos((long) (nanosReales * factorAceleracion));
+    }
+
+    @Override
+    public synchronized void sincronizar(LocalDateTime tiempoSimulado) {
+        this.tiempoBase = tiempoSimulado;
+        this.nanosBase = System.nanoTime();
+    }
+
+    @Override
+    public long aMilisegundosReales(Duration duracionSimulada) {
+        if (duracionSimulada.isNegative()) {
+            return 0;
+        }
+        return (long) (duracionSimulada.toMillis() / factorAceleracion);
+    }
+
+    @Override
+    public LocalDateTime marcaTiempo() {
+        return LocalDateTime.now();
+    }
+
+    @Override
+    public double getFactorAceleracion() {
+        return factorAceleracion;
+    }
+
+    @Override
+    public boolean esVirtual() {
+        return false;
+    }
+}
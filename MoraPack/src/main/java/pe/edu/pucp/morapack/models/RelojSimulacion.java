@@ -0,0 +1,30 @@
+package pe.edu.pucp.morapack.models;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Reloj de la simulación. Toda la programación del planificador (ciclos,
+ * liberación de productos y eventos temporales) pasa por aquí, de modo que la
+ * misma lógica puede correr en tiempo real, acelerada (10x, 1000x...) o
+ * conducida por eventos (reloj virtual, sin esperas).
+ */
+public interface RelojSimulacion {
+    // Tiempo simulado actual (UTC)
+    LocalDateTime ahora();
+
+    // Fija el tiempo simulado actual (inicio de la simulación o avance virtual)
+    void sincronizar(LocalDateTime tiempoSimulado);
+
+    // Milisegundos reales que corresponden a una duración simulada
+    long aMilisegundosReales(Duration duracionSimulada);
+
+    // Marca de tiempo para estadísticas y logs (real o simulada según el reloj)
+    LocalDateTime marcaTiempo();
+
+    // Minutos simulados por minuto real (0 si el reloj es virtual)
+    double getFactorAceleracion();
+
+    // true si el tiempo solo avanza cuando se sincroniza (sin esperas reales)
+    boolean esVirtual();
+}
@@ -0,0 +1,10 @@
+package pe.edu.pucp.morapack.models;
+
+/**
+ * Reloj en tiempo real: un minuto simulado equivale a un minuto real.
+ */
+public class RelojTiempoReal extends RelojEscalado {
+    public RelojTiempoReal() {
+        super(1.0);
+    }
+}
@@ -0,0 +1,50 @@
+package pe.edu.pucp.morapack.models;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Reloj virtual (conducido por eventos): el tiempo solo avanza cuando el
+ * planificador salta al siguiente evento o límite de ciclo. No hay esperas
+ * reales y, con los mismos datos, la ejecución es reproducible.
+ */
+public class RelojVirtual implements RelojSimulacion {
+    private LocalDateTime tiempoActual;
+
+    public RelojVirtual(LocalDateTime tiempoInicial) {
+        this.tiempoActual = tiempoInicial;
+    }
+
+    @Override
+    public synchronized LocalDateTime ahora() {
+        return tiempoActual;
+    }
+
+    @Override
+    public synchronized void sincronizar(LocalDateTime tiempoSimulado) {
+        // El tiempo virtual nunca retrocede
+        if (tiempoActual == null || tiempoSimulado.isAfter(tiempoActual)) {
+            this.tiempoActual = tiempoSimulado;
+        }
+    }
+
+    @Override
+    public long aMilisegundosReales(Duration duracionSimulada) {
+        return 0;
+    }
+
+    @Override
+    public LocalDateTime marcaTiempo() {
+        return ahora();
+    }
+
+    @Override
+    public double getFactorAceleracion() {
+        return 0;
+    }
+
+    @Override
+    public boolean esVirtual() {
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package pe.edu.pucp.morapack.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ⚡ Codificación compacta de la ruta de una parte asignada: los IDs de sus
+ * vuelos en orden, en base 36 y separados por comas, con una coma también al
+ * inicio y al final (",k3f,-4ysk2o,"). Así la ruta se lee de una sola
+ * columna de parte_asignada; "¿qué partes van en el vuelo X?" se resuelve con
+ * el índice de parte_asignada_plan_de_vuelo.
+ *
+ * Los IDs negativos (instancias de RutaVuelo) se codifican con su signo.
+ */
+public final class RutaCodificada {
+    private static final int BASE = 36;
+    private static final char SEPARADOR = ',';
+
+    private RutaCodificada() {
+    }
+
+    public static String codificar(List<PlanDeVuelo> ruta) {
+        if (ruta == null || ruta.isEmpty()) {
+            return null;
+        }
+        List<Integer> ids = new ArrayList<>(ruta.size());
+        for (PlanDeVuelo vuelo : ruta) {
+            ids.add(vuelo.getId());
+        }
+        return codificarIds(ids);
+    }
+
+    public static String codificarIds(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(ids.size() * 7 + 1).append(SEPARADOR);
+        for (Integer id : ids) {
+            if (id == null) {
+                throw new IllegalArgumentException("La ruta tiene un vuelo sin ID");
+            }
+            sb.append(Integer.toString(id, BASE)).append(SEPARADOR);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * IDs de los vuelos en el orden de la ruta (lista vacía si no hay ruta).
+     */
+    public static List<Integer> decodificar(String codificada) {
+        List<Integer> ids = new ArrayList<>();
+        if (codificada == null) {
+            return ids;
+        }
+        int inicio = 0;
+        for (int i = 0; i <= codificada.length(); i++) {
+            if (i == codificada.length() || codificada.charAt(i) == SEPARADOR) {
+                if (i > inicio) {
+                    ids.add(Integer.parseInt(codificada, inicio, i, BASE));
+                }
+                inicio = i + 1;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,137 @@
+package pe.edu.pucp.morapack.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+/**
+ * Plantilla de un vuelo diario (una línea de vuelos.txt). Los vuelos con fecha
+ * (PlanDeVuelo) se instancian a partir de ella al consultar una ventana y solo
+ * se guardan en plan_de_vuelo cuando llevan carga o cambian de estado.
+ *
+ * El ID de una instancia es determinista y negativo: -(idRuta * DIAS_POR_RUTA +
+ * día epoch de salida), así la instancia virtual y la persistida comparten ID y
+ * las rutas de las partes asignadas no necesitan reasignarse.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "ruta_vuelo", uniqueConstraints = @UniqueConstraint(columnNames = { "ciudad_origen",
+        "ciudad_destino", "hora_salida" }))
+public class RutaVuelo {
+    // Días epoch representables por ruta (hasta el año 2243); admite hasta 21474 rutas
+    public static final int DIAS_POR_RUTA = 100000;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(unique = true, nullable = false)
+    private Integer id;
+
+    private Integer ciudadOrigen;
+    private Integer ciudadDestino;
+    private LocalTime horaSalida; // Hora local del origen
+    private LocalTime horaLlegada; // Hora local del destino
+    private Integer diasDuracion; // Días que se suman a la fecha de salida para la llegada
+    private String husoHorarioOrigen;
+    private String husoHorarioDestino;
+    private Integer capacidadMaxima;
+    private Boolean mismoContinente;
+
+    // Rango de fechas de salida en que opera la ruta (null = sin límite)
+    private LocalDate vigenteDesde;
+    private LocalDate vigenteHasta;
+
+    /**
+     * Crea la plantilla a partir de los aeropuertos y las horas locales del
+     * archivo de vuelos.
+     */
+    public static RutaVuelo crear(Aeropuerto origen, Aeropuerto destino, LocalTime salida, LocalTime llegada,
+            Integer capacidad) {
+        Integer contOrig = origen.getPais() != null ? origen.getPais().getIdContinente() : null;
+        Integer contDest = destino.getPais() != null ? destino.getPais().getIdContinente() : null;
+        return RutaVuelo.builder()
+                .ciudadOrigen(origen.getId())
+                .ciudadDestino(destino.getId())
+                .horaSalida(salida)
+                .horaLlegada(llegada)
+                .diasDuracion(diasDuracion(salida, llegada, origen.getHusoHorario(), destino.getHusoHorario()))
+                .husoHorarioOrigen(origen.getHusoHorario())
+                .husoHorarioDestino(destino.getHusoHorario())
+                .capacidadMaxima(capacidad)
+                .mismoContinente(contOrig != null && contDest != null ? contOrig.equals(contDest) : null)
+                .build();
+    }
+
+    /**
+     * Misma regla que PlanDeVueloService.planAcabaAlSiguienteDia; con husos de
+     * desfase fijo el resultado no depende de la fecha.
+     */
+    private static int diasDuracion(LocalTime salida, LocalTime llegada, String husoOrigen, String husoDestino) {
+        LocalDateTime salidaLocal = LocalDate.of(2000, 1, 1).atTime(salida);
+        LocalDateTime salidaEnDestino = salidaLocal.atOffset(ZoneOffset.ofHours(Integer.parseInt(husoOrigen)))
+                .atZoneSameInstant(ZoneOffset.ofHours(Integer.parseInt(husoDestino))).toLocalDateTime();
+        int dias = 0;
+        if (!salidaEnDestino.toLocalDate().isEqual(salidaLocal.toLocalDate())) {
+            dias++;
+        }
+        if (salidaEnDestino.toLocalTime().isAfter(llegada)) {
+            dias++;
+        }
+        return dias;
+    }
+
+    public boolean operaEn(LocalDate fechaSalida) {
+        return (vigenteDesde == null || !fechaSalida.isBefore(vigenteDesde))
+                && (vigenteHasta == null || !fechaSalida.isAfter(vigenteHasta));
+    }
+
+    public int idInstancia(LocalDate fechaSalida) {
+        return -(id * DIAS_POR_RUTA + (int) fechaSalida.toEpochDay());
+    }
+
+    public static boolean esIdInstancia(Integer idPlan) {
+        return idPlan != null && idPlan < 0;
+    }
+
+    public static int idRutaDeInstancia(int idInstancia) {
+        return -idInstancia / DIAS_POR_RUTA;
+    }
+
+    public static LocalDate fechaDeInstancia(int idInstancia) {
+        return LocalDate.ofEpochDay(-idInstancia % DIAS_POR_RUTA);
+    }
+
+    /**
+     * Vuelo de esta ruta que sale en la fecha indicada (hora local del origen),
+     * sin carga y sin persistir.
+     */
+    public PlanDeVuelo instanciar(LocalDate fechaSalida) {
+        LocalDateTime salida = fechaSalida.atTime(horaSalida);
+        LocalDateTime llegada = fechaSalida.atTime(horaLlegada).plusDays(diasDuracion);
+        PlanDeVuelo plan = PlanDeVuelo.builder()
+                .id(idInstancia(fechaSalida))
+                .idRutaVuelo(id)
+                .ciudadOrigen(ciudadOrigen)
+                .ciudadDestino(ciudadDestino)
+                .horaOrigen(salida)
+                .horaDestino(llegada)
+                .husoHorarioOrigen(husoHorarioOrigen)
+                .husoHorarioDestino(husoHorarioDestino)
+                .capacidadMaxima(capacidadMaxima)
+                .capacidadOcupada(0)
+                .mismoContinente(mismoContinente)
+                .estado(1)
+                .build();
+        plan.setZonedHoraOrigen(salida.atZone(ZoneOffset.ofHours(Integer.parseInt(husoHorarioOrigen))));
+        plan.setZonedHoraDestino(llegada.atZone(ZoneOffset.ofHours(Integer.parseInt(husoHorarioDestino))));
+        plan.actualizarInstantesUtc();
+        return plan;
+    }
+}
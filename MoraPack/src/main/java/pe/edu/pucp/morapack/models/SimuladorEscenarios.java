@@ -0,0 +1,371 @@
+package pe.edu.pucp.morapack.models;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pe.edu.pucp.morapack.services.servicesImp.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta escenarios "qué pasaría si" (vuelos cancelados, capacidad reducida
+ * de aeropuertos o vuelos) sobre una copia del estado actual, en paralelo y
+ * sin tocar la simulación en curso ni la BD.
+ *
+ * El estado base (vuelos, aeropuertos y pedidos de los próximos horizontes) se
+ * carga una sola vez y se comparte en modo solo lectura. Cada escenario trabaja
+ * en su propio sandbox: copia solo los objetos que el GRASP modifica (capacidad
+ * de vuelos y aeropuertos) y reutiliza el resto (países, continentes, pedidos,
+ * hubs).
+ */
+public class SimuladorEscenarios {
+    public static final String ESCENARIO_BASE = "BASE";
+    public static final int MAX_ESCENARIOS_POR_SOLICITUD = 16;
+    public static final int MAX_HORIZONTES = 6;
+    private static final int TIMEOUT_SEGUNDOS = 300;
+
+    // Pool acotado y compartido: nunca más escenarios en paralelo que núcleos libres
+    private static final int THREADS_ESCENARIOS = Math.max(1,
+            Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService POOL_ESCENARIOS = Executors.newFixedThreadPool(THREADS_ESCENARIOS,
+            new ThreadFactory() {
+                private final AtomicInteger contador = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread hilo = new Thread(r, "escenario-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                }
+            });
+
+    /**
+     * Modificaciones de un escenario. Los factores multiplican la capacidad
+     * máxima (0.8 = -20%).
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Escenario {
+        private String nombre;
+        private List<Integer> vuelosCancelados = new ArrayList<>();
+        private Map<String, Double> capacidadAeropuertos = new HashMap<>(); // código -> factor
+        private Double factorCapacidadVuelos;
+
+        /**
+         * Construye el escenario desde el JSON de la petición:
+         * {nombre, vuelosCancelados: [ids], capacidadAeropuertos: {codigo: factor},
+         * factorCapacidadVuelos}.
+         */
+        @SuppressWarnings("unchecked")
+        public static Escenario desdeMapa(Map<String, Object> datos) {
+            Escenario escenario = new Escenario();
+            escenario.setNombre((String) datos.get("nombre"));
+            if (datos.get("vuelosCancelados") instanceof List<?> ids) {
+                for (Object id : ids) {
+                    escenario.getVuelosCancelados().add(((Number) id).intValue());
+                }
+            }
+            if (datos.get("capacidadAeropuertos") instanceof Map<?, ?> factores) {
+                ((Map<String, Object>) factores).forEach((codigo, factor) -> escenario.getCapacidadAeropuertos()
+                        .put(codigo, ((Number) factor).doubleValue()));
+            }
+            if (datos.get("factorCapacidadVuelos") instanceof Number factor) {
+                escenario.setFactorCapacidadVuelos(factor.doubleValue());
+            }
+            return escenario;
+        }
+    }
+
+    private final AeropuertoServiceImp aeropuertoService;
+    private final PlanDeVueloServiceImp planDeVueloService;
+    private final EnvioServiceImp envioService;
+    private final ContinenteServiceImp continenteService;
+    private final PaisServiceImp paisService;
+
+    // Estado base compartido (solo lectura una vez preparado)
+    private List<Aeropuerto> aeropuertosBase;
+    private List<PlanDeVuelo> vuelosBase;
+    private List<PedidoPlanificacion> pedidosBase;
+    private ArrayList<Continente> continentes;
+    private ArrayList<Pais> paises;
+    private LocalDateTime inicio;
+    private long minutosHorizonte;
+    private int horizontes;
+
+    public SimuladorEscenarios(AeropuertoServiceImp aeropuertoService, PlanDeVueloServiceImp planDeVueloService,
+            EnvioServiceImp envioService, ContinenteServiceImp continenteService, PaisServiceImp paisService) {
+        this.aeropuertoService = aeropuertoService;
+        this.planDeVueloService = planDeVueloService;
+        this.envioService = envioService;
+        this.continenteService = continenteService;
+        this.paisService = paisService;
+    }
+
+    /**
+     * Carga el estado base desde BD. Si se pasa el estado de una sesión aislada,
+     * su ocupación reemplaza a la de BD (igual que en el planificador).
+     */
+    public void prepararBase(LocalDateTime inicio, long minutosHorizonte, int horizontes,
+            EstadoCapacidadSesion estadoSesion) {
+        this.inicio = inicio;
+        this.minutosHorizonte = minutosHorizonte;
+        this.horizontes = Math.max(1, Math.min(horizontes, MAX_HORIZONTES));
+        LocalDateTime finPedidos = inicio.plusMinutes(minutosHorizonte * this.horizontes);
+        // Mismo margen que el planificador: vuelos hasta 6 días después del inicio
+        LocalDateTime finVuelos = finPedidos.plusDays(3).isAfter(inicio.plusDays(6)) ? finPedidos.plusDays(3)
+                : inicio.plusDays(6);
+
+        this.aeropuertosBase = aeropuertoService.obtenerTodosAeropuertos();
+        this.vuelosBase = planDeVueloService.obtenerVuelosEnRango(inicio, "0", finVuelos, "0");
+        this.pedidosBase = envioService.obtenerPedidosPlanificacionEnRango(inicio, finPedidos);
+        this.continentes = continenteService.obtenerTodosContinentes();
+        this.paises = paisService.obtenerTodosPaises();
+
+        if (estadoSesion != null) {
+            estadoSesion.aplicarAAeropuertos(aeropuertosBase);
+            estadoSesion.aplicarAVuelos(vuelosBase);
+        }
+
+        System.out.printf("🧪 [Escenarios] Base preparada desde %s: %d horizontes de %d min, %d pedidos, %d vuelos%n",
+                inicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")), this.horizontes, minutosHorizonte,
+                pedidosBase.size(), vuelosBase.size());
+    }
+
+    /**
+     * Ejecuta el escenario base más los indicados en paralelo y devuelve los KPIs
+     * de cada uno con la diferencia respecto al base.
+     */
+    public Map<String, Object> ejecutar(List<Escenario> escenarios) {
+        Map<String, Object> resultado = new HashMap<>();
+        if (vuelosBase == null) {
+            resultado.put("estado", "error");
+            resultado.put("mensaje", "El estado base no fue preparado");
+            return resultado;
+        }
+
+        List<Escenario> todos = new ArrayList<>();
+        Escenario base = new Escenario();
+        base.setNombre(ESCENARIO_BASE);
+        todos.add(base);
+        todos.addAll(escenarios.subList(0, Math.min(escenarios.size(), MAX_ESCENARIOS_POR_SOLICITUD)));
+
+        long inicioReal = System.currentTimeMillis();
+        List<Callable<Map<String, Object>>> tareas = new ArrayList<>();
+        for (int i = 0; i < todos.size(); i++) {
+            Escenario escenario = todos.get(i);
+            if (escenario.getNombre() == null || escenario.getNombre().isBlank()) {
+                escenario.setNombre("escenario-" + i);
+            }
+            tareas.add(() -> ejecutarEscenario(escenario));
+        }
+
+        List<Map<String, Object>> kpis = new ArrayList<>();
+        try {
+            List<Future<Map<String, Object>>> futuros = POOL_ESCENARIOS.invokeAll(tareas, TIMEOUT_SEGUNDOS,
+                    TimeUnit.SECONDS);
+            for (int i = 0; i < futuros.size(); i++) {
+                Future<Map<String, Object>> futuro = futuros.get(i);
+                try {
+                    kpis.add(futuro.get());
+                } catch (CancellationException e) {
+                    kpis.add(Map.of("nombre", todos.get(i).getNombre(), "estado", "timeout"));
+                } catch (ExecutionException e) {
+                    System.err.printf("❌ [Escenarios] Error en %s: %s%n", todos.get(i).getNombre(),
+                            e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                    kpis.add(Map.of("nombre", todos.get(i).getNombre(), "estado", "error"));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado.put("estado", "error");
+            resultado.put("mensaje", "Ejecución de escenarios interrumpida");
+            return resultado;
+        }
+
+        agregarDiferenciasConBase(kpis);
+
+        resultado.put("estado", "éxito");
+        resultado.put("inicio", inicio.toString());
+        resultado.put("horizontes", horizontes);
+        resultado.put("minutosHorizonte", minutosHorizonte);
+        resultado.put("pedidos", pedidosBase.size());
+        resultado.put("threads", THREADS_ESCENARIOS);
+        resultado.put("tiempoTotalMs", System.currentTimeMillis() - inicioReal);
+        resultado.put("escenarios", kpis);
+        return resultado;
+    }
+
+    private Map<String, Object> ejecutarEscenario(Escenario escenario) {
+        long inicioEscenario = System.currentTimeMillis();
+
+        // Sandbox: copias propias de lo que el GRASP modifica
+        Map<Integer, Aeropuerto> aeropuertosPorId = new HashMap<>();
+        ArrayList<Aeropuerto> aeropuertos = new ArrayList<>(aeropuertosBase.size());
+        for (Aeropuerto original : aeropuertosBase) {
+            Aeropuerto copia = copiarAeropuerto(original);
+            Double factor = escenario.getCapacidadAeropuertos().get(original.getCodigo());
+            if (factor != null && copia.getCapacidadMaxima() != null) {
+                copia.setCapacidadMaxima((int) Math.floor(copia.getCapacidadMaxima() * factor));
+            }
+            aeropuertos.add(copia);
+            aeropuertosPorId.put(copia.getId(), copia);
+        }
+
+        Set<Integer> cancelados = new HashSet<>(escenario.getVuelosCancelados());
+        ArrayList<PlanDeVuelo> vuelos = new ArrayList<>(vuelosBase.size());
+        for (PlanDeVuelo original : vuelosBase) {
+            if (cancelados.contains(original.getId())) {
+                continue;
+            }
+            PlanDeVuelo copia = copiarVuelo(original);
+            if (escenario.getFactorCapacidadVuelos() != null && copia.getCapacidadMaxima() != null) {
+                copia.setCapacidadMaxima((int) Math.floor(copia.getCapacidadMaxima() * escenario.getFactorCapacidadVuelos()));
+            }
+            vuelos.add(copia);
+        }
+
+        Grasp grasp = new Grasp();
+        grasp.setAeropuertos(aeropuertos);
+        grasp.setContinentes(continentes);
+        grasp.setPaises(paises);
+        grasp.setPlanesDeVuelo(vuelos);
+        grasp.setHubsPropio();
+        List<Aeropuerto> hubs = grasp.getHubs();
+
+        int pedidos = 0;
+        int completados = 0;
+        long productos = 0;
+        long productosAsignados = 0;
+        long minutosPonderados = 0;
+
+        for (int h = 0; h < horizontes; h++) {
+            long inicioH = PedidoPlanificacion.aEpochMinutos(inicio.plusMinutes(minutosHorizonte * h));
+            long finH = inicioH + minutosHorizonte;
+
+            List<Envio> envios = new ArrayList<>();
+            for (PedidoPlanificacion pedido : pedidosBase) {
+                if (pedido.ingresoEpochMinutos() >= inicioH && pedido.ingresoEpochMinutos() < finH) {
+                    Aeropuerto destino = aeropuertosPorId.get(pedido.aeropuertoDestinoId());
+                    if (destino != null) {
+                        envios.add(pedido.aEnvio(destino, hubs));
+                    }
+                }
+            }
+            if (envios.isEmpty()) {
+                continue;
+            }
+
+            grasp.setEnvios(new ArrayList<>(envios));
+            grasp.setEnviosPorDiaPropio();
+            grasp.inicializarCachesParaVuelos(vuelos, envios);
+            Map<Integer, Integer> ocupacionInicial = new HashMap<>();
+            for (PlanDeVuelo vuelo : vuelos) {
+                ocupacionInicial.put(vuelo.getId(), vuelo.getCapacidadOcupada() != null ? vuelo.getCapacidadOcupada() : 0);
+            }
+
+            Solucion solucion = grasp.ejecutarGrasp(envios, vuelos);
+
+            // Fijar la ocupación de los vuelos para el siguiente horizonte
+            Map<Integer, Integer> carga = new HashMap<>();
+            for (Envio envio : solucion.getEnvios()) {
+                pedidos++;
+                productos += envio.getNumProductos();
+                if (envio.estaCompleto()) {
+                    completados++;
+                }
+                for (ParteAsignada parte : envio.getParteAsignadas()) {
+                    productosAsignados += parte.getCantidad();
+                    if (parte.getLlegadaFinal() != null) {
+                        minutosPonderados += Duration.between(envio.getZonedFechaIngreso(),
+                                parte.getLlegadaFinal()).toMinutes() * parte.getCantidad();
+                    }
+                    if (parte.getRuta() != null) {
+                        for (PlanDeVuelo vuelo : parte.getRuta()) {
+                            carga.merge(vuelo.getId(), parte.getCantidad(), Integer::sum);
+                        }
+                    }
+                }
+            }
+            for (PlanDeVuelo vuelo : vuelos) {
+                vuelo.setCapacidadOcupada(ocupacionInicial.get(vuelo.getId()) + carga.getOrDefault(vuelo.getId(), 0));
+            }
+        }
+
+        Map<String, Object> kpi = new LinkedHashMap<>();
+        kpi.put("nombre", escenario.getNombre());
+        kpi.put("estado", "éxito");
+        kpi.put("vuelosCancelados", vuelosBase.size() - vuelos.size());
+        kpi.put("pedidos", pedidos);
+        kpi.put("pedidosCompletados", completados);
+        kpi.put("tasaCompletado", pedidos > 0 ? (double) completados / pedidos : 1.0);
+        kpi.put("productos", productos);
+        kpi.put("productosAsignados", productosAsignados);
+        kpi.put("llegadaMediaPonderadaMin", productosAsignados > 0 ? minutosPonderados / productosAsignados : null);
+        kpi.put("tiempoMs", System.currentTimeMillis() - inicioEscenario);
+        System.out.printf("🧪 [Escenarios] %s: %d/%d pedidos completos (%d ms)%n", escenario.getNombre(),
+                completados, pedidos, kpi.get("tiempoMs"));
+        return kpi;
+    }
+
+    private void agregarDiferenciasConBase(List<Map<String, Object>> kpis) {
+        Map<String, Object> base = kpis.stream()
+                .filter(k -> ESCENARIO_BASE.equals(k.get("nombre")) && "éxito".equals(k.get("estado")))
+                .findFirst().orElse(null);
+        if (base == null) {
+            return;
+        }
+        for (Map<String, Object> kpi : kpis) {
+            if (kpi == base || !"éxito".equals(kpi.get("estado"))) {
+                continue;
+            }
+            kpi.put("deltaPedidosCompletados",
+                    (Integer) kpi.get("pedidosCompletados") - (Integer) base.get("pedidosCompletados"));
+            kpi.put("deltaTasaCompletado",
+                    (Double) kpi.get("tasaCompletado") - (Double) base.get("tasaCompletado"));
+            if (kpi.get("llegadaMediaPonderadaMin") != null && base.get("llegadaMediaPonderadaMin") != null) {
+                kpi.put("deltaLlegadaMediaPonderadaMin",
+                        (Long) kpi.get("llegadaMediaPonderadaMin") - (Long) base.get("llegadaMediaPonderadaMin"));
+            }
+        }
+    }
+
+    private Aeropuerto copiarAeropuerto(Aeropuerto original) {
+        return Aeropuerto.builder()
+                .id(original.getId())
+                .pais(original.getPais())
+                .codigo(original.getCodigo())
+                .husoHorario(original.getHusoHorario())
+                .capacidadMaxima(original.getCapacidadMaxima())
+                .capacidadOcupada(original.getCapacidadOcupada())
+                .ciudad(original.getCiudad())
+                .abreviatura(original.getAbreviatura())
+                .estado(original.getEstado())
+                .longitud(original.getLongitud())
+                .latitud(original.getLatitud())
+                .build();
+    }
+
+    private PlanDeVuelo copiarVuelo(PlanDeVuelo original) {
+        return PlanDeVuelo.builder()
+                .id(original.getId())
+                .ciudadOrigen(original.getCiudadOrigen())
+                .ciudadDestino(original.getCiudadDestino())
+                .horaOrigen(original.getHoraOrigen())
+                .horaDestino(original.getHoraDestino())
+                .husoHorarioOrigen(original.getHusoHorarioOrigen())
+                .husoHorarioDestino(original.getHusoHorarioDestino())
+                .capacidadMaxima(original.getCapacidadMaxima())
+                .capacidadOcupada(original.getCapacidadOcupada() != null ? original.getCapacidadOcupada() : 0)
+                .mismoContinente(original.getMismoContinente())
+                .estado(original.getEstado())
+                .zonedHoraOrigen(original.getZonedHoraOrigen())
+                .zonedHoraDestino(original.getZonedHoraDestino())
+                .build();
+    }
+}
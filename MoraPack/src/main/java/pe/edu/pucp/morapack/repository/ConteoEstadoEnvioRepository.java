@@ -0,0 +1,19 @@
+package pe.edu.pucp.morapack.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pe.edu.pucp.morapack.models.ConteoEstadoEnvio;
+
+import java.util.List;
+
+@Repository
+public interface ConteoEstadoEnvioRepository extends JpaRepository<ConteoEstadoEnvio, Integer> {
+    List<ConteoEstadoEnvio> findByIdSesion(String idSesion);
+
+    @Modifying
+    @Query("DELETE FROM ConteoEstadoEnvio c WHERE c.idSesion = :idSesion")
+    int eliminarPorSesion(@Param("idSesion") String idSesion);
+}
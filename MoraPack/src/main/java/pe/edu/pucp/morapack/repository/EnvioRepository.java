@@ -1,14 +1,18 @@
 package pe.edu.pucp.morapack.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import pe.edu.pucp.morapack.models.Envio;
 import pe.edu.pucp.morapack.models.ParteAsignada;
+import pe.edu.pucp.morapack.models.PedidoPlanificacion;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,39 +28,62 @@ public interface EnvioRepository extends JpaRepository<Envio, Integer> {
         ArrayList<Envio> findByAeropuertoDestino(@Param("idAeropuerto") Integer idAeropuerto);
 
         /**
-         * Obtiene envíos cuya fecha de ingreso está dentro del rango especificado.
-         * Esta consulta es optimizada para trabajar con índices en fechaIngreso.
+         * Obtiene envíos cuyo instante de ingreso (minutos epoch UTC) está dentro
+         * del rango. Usa el índice idx_envio_ingreso_epoch; el resultado ya es exacto.
          */
-        @Query("SELECT e FROM Envio e WHERE e.fechaIngreso >= :fechaInicio AND e.fechaIngreso <= :fechaFin")
-        ArrayList<Envio> findByFechaIngresoBetween(
-                        @Param("fechaInicio") LocalDateTime fechaInicio,
-                        @Param("fechaFin") LocalDateTime fechaFin);
+        @Query("SELECT e FROM Envio e WHERE e.ingresoEpochMinutos >= :inicio AND e.ingresoEpochMinutos <= :fin")
+        ArrayList<Envio> findByIngresoEpochMinutosBetween(
+                        @Param("inicio") long inicio,
+                        @Param("fin") long fin);
 
         /**
-         * Obtiene envíos cuya fecha de ingreso es igual o posterior a la fecha
-         * especificada.
-         * Esta consulta es optimizada para trabajar con índices en fechaIngreso.
+         * ⚡ Proyección ligera para planificación: solo los campos que usa el GRASP,
+         * sin cargar entidades gestionadas ni relaciones.
          */
-        @Query("SELECT e FROM Envio e WHERE e.fechaIngreso >= :fechaInicio")
-        ArrayList<Envio> findByFechaIngresoGreaterThanEqual(@Param("fechaInicio") LocalDateTime fechaInicio);
+        @Query("SELECT new pe.edu.pucp.morapack.models.PedidoPlanificacion(e.id, e.idEnvioPorAeropuerto, " +
+                        "e.fechaIngreso, e.husoHorarioDestino, e.numProductos, e.aeropuertoDestino.id, e.cliente) " +
+                        "FROM Envio e WHERE e.ingresoEpochMinutos >= :inicio AND e.ingresoEpochMinutos <= :fin")
+        List<PedidoPlanificacion> findPedidosPlanificacionByIngresoEpochMinutosBetween(
+                        @Param("inicio") long inicio,
+                        @Param("fin") long fin);
+
+        /**
+         * Obtiene envíos cuyo instante de ingreso (minutos epoch UTC) es igual o
+         * posterior al indicado.
+         */
+        @Query("SELECT e FROM Envio e WHERE e.ingresoEpochMinutos >= :inicio")
+        ArrayList<Envio> findByIngresoEpochMinutosGreaterThanEqual(@Param("inicio") long inicio);
 
         /**
          * Obtiene envíos CON sus parteAsignadas para inicialización del planificador.
          * Usa JOIN FETCH para cargar relaciones en una sola query.
          * ⚠️ Solo usar cuando realmente se necesiten las partes asignadas.
          */
-        @Query("SELECT DISTINCT e FROM Envio e LEFT JOIN FETCH e.parteAsignadas WHERE e.fechaIngreso >= :fechaInicio AND e.fechaIngreso <= :fechaFin")
-        ArrayList<Envio> findByFechaIngresoBetweenWithPartes(
-                        @Param("fechaInicio") LocalDateTime fechaInicio,
-                        @Param("fechaFin") LocalDateTime fechaFin);
+        @Query("SELECT DISTINCT e FROM Envio e LEFT JOIN FETCH e.parteAsignadas WHERE e.ingresoEpochMinutos >= :inicio AND e.ingresoEpochMinutos <= :fin")
+        ArrayList<Envio> findByIngresoEpochMinutosBetweenWithPartes(
+                        @Param("inicio") long inicio,
+                        @Param("fin") long fin);
 
         /**
          * Obtiene envíos CON sus parteAsignadas desde una fecha específica.
          * Usa JOIN FETCH para cargar relaciones en una sola query.
          * ⚠️ Solo usar cuando realmente se necesiten las partes asignadas.
          */
-        @Query("SELECT DISTINCT e FROM Envio e LEFT JOIN FETCH e.parteAsignadas WHERE e.fechaIngreso >= :fechaInicio")
-        ArrayList<Envio> findByFechaIngresoGreaterThanEqualWithPartes(@Param("fechaInicio") LocalDateTime fechaInicio);
+        @Query("SELECT DISTINCT e FROM Envio e LEFT JOIN FETCH e.parteAsignadas WHERE e.ingresoEpochMinutos >= :inicio")
+        ArrayList<Envio> findByIngresoEpochMinutosGreaterThanEqualWithPartes(@Param("inicio") long inicio);
+
+        /**
+         * ⚡ Completa por lotes el instante UTC de ingreso en filas anteriores a la
+         * columna ingreso_epoch_minutos (fecha local menos el huso del destino).
+         */
+        @Transactional(propagation = Propagation.REQUIRES_NEW)
+        @Modifying
+        @Query(value = "UPDATE envio SET ingreso_epoch_minutos = " +
+                        "TIMESTAMPDIFF(MINUTE, '1970-01-01 00:00:00', fecha_ingreso) - " +
+                        "CAST(huso_horario_destino AS SIGNED) * 60 " +
+                        "WHERE ingreso_epoch_minutos IS NULL AND fecha_ingreso IS NOT NULL " +
+                        "AND huso_horario_destino IS NOT NULL LIMIT :lote", nativeQuery = true)
+        int completarIngresoEpochMinutos(@Param("lote") int lote);
 
         /**
          * ⚡ OPTIMIZADO: Obtiene SOLO envíos que tienen partes asignadas (pendientes de
@@ -87,8 +114,8 @@ public interface EnvioRepository extends JpaRepository<Envio, Integer> {
          * ⚡ VERSIÓN LIGERA: Carga partes SIN los vuelos de la ruta.
          * Ideal para el catálogo del frontend donde no necesitamos los vuelos.
          */
+        @EntityGraph(ParteAsignada.GRAFO_RESUMEN)
         @Query("SELECT DISTINCT pa FROM ParteAsignada pa " +
-                        "LEFT JOIN FETCH pa.aeropuertoOrigen " +
                         "WHERE pa.envio.id IN :envioIds AND (pa.entregado IS NULL OR pa.entregado = false)")
         List<ParteAsignada> findPartesBasicasByEnvioIds(@Param("envioIds") List<Integer> envioIds);
 
@@ -99,9 +126,8 @@ public interface EnvioRepository extends JpaRepository<Envio, Integer> {
          * ⚠️ CUIDADO: Esta query puede cargar MUCHOS datos. Usar solo cuando sea
          * necesario.
          */
+        @EntityGraph(ParteAsignada.GRAFO_RUTAS)
         @Query("SELECT DISTINCT pa FROM ParteAsignada pa " +
-                        "LEFT JOIN FETCH pa.vuelosRuta vr " +
-                        "LEFT JOIN FETCH vr.planDeVuelo " +
                         "WHERE pa.envio.id IN :envioIds")
         ArrayList<ParteAsignada> findPartesConVuelosByEnvioIds(@Param("envioIds") List<Integer> envioIds);
 
@@ -118,6 +144,20 @@ public interface EnvioRepository extends JpaRepository<Envio, Integer> {
         @Query("SELECT COUNT(e) FROM Envio e WHERE e.estado IS NULL")
         long countByEstadoIsNull();
 
+        /**
+         * ⚡ Conteo de envíos por estado (null incluido) con ingreso en el rango de
+         * minutos epoch UTC. Se usa para iniciar y reconciliar los contadores.
+         */
+        @Query("SELECT e.estado, COUNT(e) FROM Envio e " +
+                        "WHERE e.ingresoEpochMinutos >= :inicio AND e.ingresoEpochMinutos <= :fin GROUP BY e.estado")
+        List<Object[]> contarPorEstadoEnRango(@Param("inicio") long inicio, @Param("fin") long fin);
+
+        /**
+         * ⚡ Conteo por estado de los envíos indicados (estado previo a un cambio en lote).
+         */
+        @Query("SELECT e.estado, COUNT(e) FROM Envio e WHERE e.id IN :ids GROUP BY e.estado")
+        List<Object[]> contarPorEstadoDeIds(@Param("ids") List<Integer> ids);
+
         /**
          * 🔍 Busca envíos por ID exacto, con límite de resultados.
          * Incluye envíos con partes asignadas para poder cargar sus rutas.
@@ -137,4 +177,52 @@ public interface EnvioRepository extends JpaRepository<Envio, Integer> {
                         "WHERE CAST(e.id AS CHAR) LIKE :patron " +
                         "LIMIT :limite", nativeQuery = true)
         List<Envio> buscarPorIdParcial(@Param("patron") String patron, @Param("limite") int limite);
+
+        /**
+         * ⚡ Marca en lote las partes asignadas como entregadas (liberadas del
+         * aeropuerto destino) sin cargar los envíos.
+         */
+        @Modifying
+        @Query("UPDATE ParteAsignada pa SET pa.entregado = true WHERE pa.id IN :ids")
+        int marcarPartesEntregadas(@Param("ids") List<Integer> ids);
+
+        /**
+         * ⚡ Actualiza en lote el estado de varios envíos.
+         */
+        @Modifying
+        @Query("UPDATE Envio e SET e.estado = :estado WHERE e.id IN :ids")
+        int actualizarEstadoEnvios(@Param("ids") List<Integer> ids, @Param("estado") Envio.EstadoEnvio estado);
+
+        /**
+         * ⚡ Partes no entregadas cuya ruta usa alguno de los vuelos indicados, con
+         * su envío (para reparar el plan ante una disrupción).
+         */
+        @EntityGraph(ParteAsignada.GRAFO_LIBERACION)
+        @Query("SELECT DISTINCT pa FROM ParteAsignada pa " +
+                        "JOIN pa.vuelosRuta vr " +
+                        "WHERE vr.planDeVuelo.id IN :vueloIds AND (pa.entregado IS NULL OR pa.entregado = false)")
+        List<ParteAsignada> findPartesPendientesByVueloIds(@Param("vueloIds") List<Integer> vueloIds);
+
+        /**
+         * ⚡ Borrado en lote de partes asignadas: primero sus tramos de ruta y luego
+         * las partes (un DELETE JPQL no aplica el cascade).
+         */
+        @Modifying
+        @Query("DELETE FROM ParteAsignadaPlanDeVuelo vr WHERE vr.parteAsignada.id IN :ids")
+        int eliminarRutasDePartes(@Param("ids") List<Integer> ids);
+
+        @Modifying
+        @Query("DELETE FROM ParteAsignada pa WHERE pa.id IN :ids")
+        int eliminarPartes(@Param("ids") List<Integer> ids);
+
+        /**
+         * ⚡ Borrado de todas las partes persistidas por una sesión aislada.
+         */
+        @Modifying
+        @Query("DELETE FROM ParteAsignadaPlanDeVuelo vr WHERE vr.parteAsignada.idSesion = :idSesion")
+        int eliminarRutasDeSesion(@Param("idSesion") String idSesion);
+
+        @Modifying
+        @Query("DELETE FROM ParteAsignada pa WHERE pa.idSesion = :idSesion")
+        int eliminarPartesDeSesion(@Param("idSesion") String idSesion);
 }
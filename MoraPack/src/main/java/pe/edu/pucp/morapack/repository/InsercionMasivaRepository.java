@@ -0,0 +1,253 @@
+package pe.edu.pucp.morapack.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pe.edu.pucp.morapack.models.Envio;
+import pe.edu.pucp.morapack.models.ParteAsignada;
+import pe.edu.pucp.morapack.models.PlanDeVuelo;
+import pe.edu.pucp.morapack.models.RutaCodificada;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.function.BiConsumer;
+
+/**
+ * ⚡ Inserción masiva por JDBC. Las entidades usan GenerationType.IDENTITY, así
+ * que saveAll inserta fila por fila; aquí cada sentencia es un INSERT de varias
+ * filas (VALUES (...), (...), ...) y los IDs generados se leen en bloque y se
+ * asignan a las entidades en el mismo orden.
+ *
+ * Los valores se enlazan igual que Hibernate: LocalDateTime como TIMESTAMP y
+ * ZonedDateTime en la zona de hibernate.jdbc.time_zone (sin configurar, la de
+ * la JVM). Como aquí no corren los @PrePersist, los
+ * instantes UTC (minutos epoch) se calculan antes de enlazar cada fila.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InsercionMasivaRepository {
+    // Filas por sentencia: con ~10 columnas queda lejos del límite de 65535 parámetros
+    private static final int FILAS_POR_SENTENCIA = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Zona con la que Hibernate enlaza los ZonedDateTime; vacía = zona de la JVM
+    @Value("${spring.jpa.properties.hibernate.jdbc.time_zone:}")
+    private String zonaHorariaJdbc;
+
+    @FunctionalInterface
+    private interface EnlaceFila<T> {
+        /**
+         * Enlaza los valores de la fila a partir del parámetro "desde" (base 1).
+         */
+        void enlazar(PreparedStatement ps, int desde, T fila) throws SQLException;
+    }
+
+    private static final String[] COLUMNAS_ENVIO = { "id_envio_por_aeropuerto", "fecha_ingreso",
+            "huso_horario_destino", "id_aeropuerto_destino", "id_aeropuerto_origen", "num_productos",
+            "fecha_llegada_max", "cliente", "estado", "ingreso_epoch_minutos" };
+
+    private static final String[] COLUMNAS_PLAN_DE_VUELO = { "ciudad_origen", "ciudad_destino", "hora_origen",
+            "hora_destino", "huso_horario_origen", "huso_horario_destino", "capacidad_maxima", "capacidad_ocupada",
+            "mismo_continente", "estado", "id_ruta_vuelo", "salida_epoch_minutos" };
+
+    private static final String[] COLUMNAS_INSTANCIA_VUELO = concatenar(new String[] { "id" },
+            COLUMNAS_PLAN_DE_VUELO);
+
+    private static final String[] COLUMNAS_PARTE_ASIGNADA = { "id_envio", "llegada_final", "cantidad",
+            "id_aeropuerto_origen", "entregado", "id_sesion", "ruta_vuelos" };
+
+    private static final String[] COLUMNAS_RUTA_PARTE = { "id_parte_asignada", "id_plan_de_vuelo", "orden" };
+
+    public int insertarEnvios(List<Envio> envios) {
+        return insertarEnLotes("envio", COLUMNAS_ENVIO, envios, (ps, i, e) -> {
+            setLong(ps, i, e.getIdEnvioPorAeropuerto());
+            setFecha(ps, i + 1, e.getFechaIngreso());
+            ps.setString(i + 2, e.getHusoHorarioDestino());
+            setEntero(ps, i + 3, e.getAeropuertoDestino() != null ? e.getAeropuertoDestino().getId() : null);
+            setEntero(ps, i + 4, e.getAeropuertoOrigen() != null ? e.getAeropuertoOrigen().getId() : null);
+            setEntero(ps, i + 5, e.getNumProductos());
+            setFecha(ps, i + 6, e.getFechaLlegadaMax());
+            ps.setString(i + 7, e.getCliente());
+            ps.setString(i + 8, e.getEstado() != null ? e.getEstado().name() : null);
+            e.actualizarInstantesUtc();
+            setLong(ps, i + 9, e.getIngresoEpochMinutos());
+        }, Envio::setId);
+    }
+
+    public int insertarPlanesDeVuelo(List<PlanDeVuelo> planes) {
+        return insertarEnLotes("plan_de_vuelo", COLUMNAS_PLAN_DE_VUELO, planes, this::enlazarPlanDeVuelo,
+                PlanDeVuelo::setId);
+    }
+
+    /**
+     * Guarda instancias de rutas de vuelo con su ID determinista (negativo). Usa
+     * INSERT IGNORE: si otra sesión ya guardó la misma instancia, se conserva la
+     * existente.
+     */
+    public int insertarInstanciasVuelo(List<PlanDeVuelo> instancias) {
+        return insertarEnLotes("INSERT IGNORE INTO", "plan_de_vuelo", COLUMNAS_INSTANCIA_VUELO, instancias,
+                (ps, i, p) -> {
+                    ps.setInt(i, p.getId());
+                    enlazarPlanDeVuelo(ps, i + 1, p);
+                }, null);
+    }
+
+    /**
+     * Inserta las partes (su envío debe tener ID) con su ruta transient
+     * codificada en ruta_vuelos, y sus tramos (índice por vuelo) con el orden
+     * 1..n igual que sincronizarRutaConBD.
+     */
+    public int insertarPartesAsignadas(List<ParteAsignada> partes) {
+        int insertadas = insertarEnLotes("parte_asignada", COLUMNAS_PARTE_ASIGNADA, partes, (ps, i, p) -> {
+            setEntero(ps, i, p.getEnvio() != null ? p.getEnvio().getId() : null);
+            setFechaZona(ps, i + 1, p.getLlegadaFinal());
+            setEntero(ps, i + 2, p.getCantidad());
+            setEntero(ps, i + 3, p.getAeropuertoOrigen() != null ? p.getAeropuertoOrigen().getId() : null);
+            ps.setBoolean(i + 4, Boolean.TRUE.equals(p.getEntregado()));
+            ps.setString(i + 5, p.getIdSesion());
+            p.setRutaVuelos(RutaCodificada.codificar(p.getRuta()));
+            ps.setString(i + 6, p.getRutaVuelos());
+        }, ParteAsignada::setId);
+
+        List<int[]> tramos = new ArrayList<>();
+        for (ParteAsignada parte : partes) {
+            if (parte.getRuta() == null) {
+                continue;
+            }
+            int orden = 1;
+            for (PlanDeVuelo vuelo : parte.getRuta()) {
+                tramos.add(new int[] { parte.getId(), vuelo.getId(), orden++ });
+            }
+        }
+        insertarEnLotes("parte_asignada_plan_de_vuelo", COLUMNAS_RUTA_PARTE, tramos, (ps, i, t) -> {
+            ps.setInt(i, t[0]);
+            ps.setInt(i + 1, t[1]);
+            ps.setInt(i + 2, t[2]);
+        }, null);
+        return insertadas;
+    }
+
+    private void enlazarPlanDeVuelo(PreparedStatement ps, int i, PlanDeVuelo p) throws SQLException {
+        setEntero(ps, i, p.getCiudadOrigen());
+        setEntero(ps, i + 1, p.getCiudadDestino());
+        setFecha(ps, i + 2, p.getHoraOrigen());
+        setFecha(ps, i + 3, p.getHoraDestino());
+        ps.setString(i + 4, p.getHusoHorarioOrigen());
+        ps.setString(i + 5, p.getHusoHorarioDestino());
+        setEntero(ps, i + 6, p.getCapacidadMaxima());
+        setEntero(ps, i + 7, p.getCapacidadOcupada());
+        if (p.getMismoContinente() != null) {
+            ps.setBoolean(i + 8, p.getMismoContinente());
+        } else {
+            ps.setNull(i + 8, Types.BOOLEAN);
+        }
+        setEntero(ps, i + 9, p.getEstado());
+        setEntero(ps, i + 10, p.getIdRutaVuelo());
+        p.actualizarInstantesUtc();
+        setLong(ps, i + 11, p.getSalidaEpochMinutos());
+    }
+
+    private <T> int insertarEnLotes(String tabla, String[] columnas, List<T> filas, EnlaceFila<T> enlace,
+            BiConsumer<T, Integer> asignarId) {
+        return insertarEnLotes("INSERT INTO", tabla, columnas, filas, enlace, asignarId);
+    }
+
+    private <T> int insertarEnLotes(String verbo, String tabla, String[] columnas, List<T> filas,
+            EnlaceFila<T> enlace, BiConsumer<T, Integer> asignarId) {
+        if (filas == null || filas.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            int total = 0;
+            for (int desde = 0; desde < filas.size(); desde += FILAS_POR_SENTENCIA) {
+                List<T> lote = filas.subList(desde, Math.min(desde + FILAS_POR_SENTENCIA, filas.size()));
+                String sql = sentenciaInsert(verbo, tabla, columnas, lote.size());
+                try (PreparedStatement ps = asignarId != null
+                        ? con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                        : con.prepareStatement(sql)) {
+                    int parametro = 1;
+                    for (T fila : lote) {
+                        enlace.enlazar(ps, parametro, fila);
+                        parametro += columnas.length;
+                    }
+                    total += ps.executeUpdate();
+
+                    if (asignarId != null) {
+                        try (ResultSet ids = ps.getGeneratedKeys()) {
+                            int i = 0;
+                            while (ids.next() && i < lote.size()) {
+                                asignarId.accept(lote.get(i++), ids.getInt(1));
+                            }
+                        }
+                    }
+                }
+            }
+            return total;
+        });
+    }
+
+    private static String sentenciaInsert(String verbo, String tabla, String[] columnas, int filas) {
+        String marcadores = "(" + "?,".repeat(columnas.length - 1) + "?)";
+        StringBuilder sql = new StringBuilder(64 + filas * (marcadores.length() + 1))
+                .append(verbo).append(' ').append(tabla)
+                .append(" (").append(String.join(", ", columnas)).append(") VALUES ");
+        for (int i = 0; i < filas; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(marcadores);
+        }
+        return sql.toString();
+    }
+
+    private static String[] concatenar(String[] a, String[] b) {
+        String[] todas = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, todas, a.length, b.length);
+        return todas;
+    }
+
+    private static void setEntero(PreparedStatement ps, int indice, Integer valor) throws SQLException {
+        if (valor != null) {
+            ps.setInt(indice, valor);
+        } else {
+            ps.setNull(indice, Types.INTEGER);
+        }
+    }
+
+    private static void setLong(PreparedStatement ps, int indice, Long valor) throws SQLException {
+        if (valor != null) {
+            ps.setLong(indice, valor);
+        } else {
+            ps.setNull(indice, Types.BIGINT);
+        }
+    }
+
+    private static void setFecha(PreparedStatement ps, int indice, LocalDateTime valor) throws SQLException {
+        if (valor != null) {
+            ps.setTimestamp(indice, Timestamp.valueOf(valor));
+        } else {
+            ps.setNull(indice, Types.TIMESTAMP);
+        }
+    }
+
+    private void setFechaZona(PreparedStatement ps, int indice, ZonedDateTime valor) throws SQLException {
+        if (valor == null) {
+            ps.setNull(indice, Types.TIMESTAMP);
+        } else if (zonaHorariaJdbc == null || zonaHorariaJdbc.isBlank()) {
+            ps.setTimestamp(indice, Timestamp.from(valor.toInstant()));
+        } else {
+            // Calendar no es thread-safe: uno por llamada (los lotes se insertan en paralelo)
+            ps.setTimestamp(indice, Timestamp.from(valor.toInstant()),
+                    Calendar.getInstance(TimeZone.getTimeZone(zonaHorariaJdbc)));
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package pe.edu.pucp.morapack.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pe.edu.pucp.morapack.models.ParteAsignadaPlanDeVuelo;
 
+import java.util.List;
+
 @Repository
 public interface ParteAsignadaPlanDeVueloRepository extends JpaRepository<ParteAsignadaPlanDeVuelo, Integer> {
+    /**
+     * ⚡ Tramos de varias partes con su vuelo, en orden de ruta (partes guardadas
+     * antes de la ruta codificada cuyos tramos no se cargaron).
+     */
+    @Query("SELECT vr FROM ParteAsignadaPlanDeVuelo vr JOIN FETCH vr.planDeVuelo " +
+            "WHERE vr.parteAsignada.id IN :parteIds ORDER BY vr.parteAsignada.id, vr.orden")
+    List<ParteAsignadaPlanDeVuelo> findTramosConVueloByParteIds(@Param("parteIds") List<Integer> parteIds);
 }
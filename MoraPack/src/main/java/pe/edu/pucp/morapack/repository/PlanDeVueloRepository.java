@@ -1,47 +1,38 @@
 package pe.edu.pucp.morapack.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import pe.edu.pucp.morapack.dtos.PlanDeVueloResponse;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import pe.edu.pucp.morapack.models.PlanDeVuelo;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 @Repository
 public interface PlanDeVueloRepository extends JpaRepository<PlanDeVuelo, Integer> {
-    @Query("SELECT new pe.edu.pucp.morapack.dtos.PlanDeVueloResponse(" +
-            "p.id, " +
-            "p.ciudadOrigen, " +
-            "CONCAT(CAST(FUNCTION('DATE_FORMAT', p.horaOrigen, '%Y-%m-%d %H:%i:%s') AS string),'Z',ao.husoHorario), " +
-            "ao.longitud, ao.latitud, " +
-            "p.ciudadDestino, " +
-            "CONCAT(CAST(FUNCTION('DATE_FORMAT', p.horaDestino, '%Y-%m-%d %H:%i:%s') AS string),'Z',ad.husoHorario), " +
-            "ad.longitud, ad.latitud, " +
-            "p.capacidadMaxima, " +
-            // "p.capacidadOcupada, " +
-            "p.estado) " +
-            "FROM PlanDeVuelo p " +
-            "JOIN Aeropuerto ao ON p.ciudadOrigen = ao.id " +
-            "JOIN Aeropuerto ad ON p.ciudadDestino = ad.id")
-    ArrayList<PlanDeVueloResponse> queryPlanDeVueloWithAeropuerto();
-
     /**
-     * Obtiene vuelos cuya hora de origen está dentro del rango especificado.
-     * Esta consulta es optimizada para trabajar con índices en horaOrigen.
+     * Obtiene vuelos cuyo despegue (minutos epoch UTC) está dentro del rango.
+     * Usa el índice idx_plan_de_vuelo_salida_epoch; el resultado ya es exacto.
      */
-    @Query("SELECT p FROM PlanDeVuelo p WHERE p.horaOrigen >= :fechaInicio AND p.horaOrigen <= :fechaFin")
-    ArrayList<PlanDeVuelo> findByHoraOrigenBetween(
-            @Param("fechaInicio") LocalDateTime fechaInicio,
-            @Param("fechaFin") LocalDateTime fechaFin
+    @Query("SELECT p FROM PlanDeVuelo p WHERE p.salidaEpochMinutos >= :inicio AND p.salidaEpochMinutos <= :fin")
+    ArrayList<PlanDeVuelo> findBySalidaEpochMinutosBetween(
+            @Param("inicio") long inicio,
+            @Param("fin") long fin
     );
 
     /**
-     * Obtiene vuelos cuya hora de origen es igual o posterior a la fecha especificada.
-     * Esta consulta es optimizada para trabajar con índices en horaOrigen.
+     * ⚡ Completa por lotes el instante UTC de despegue en filas anteriores a la
+     * columna salida_epoch_minutos (hora local menos el huso del origen).
      */
-    @Query("SELECT p FROM PlanDeVuelo p WHERE p.horaOrigen >= :fechaInicio")
-    ArrayList<PlanDeVuelo> findByHoraOrigenGreaterThanEqual(@Param("fechaInicio") LocalDateTime fechaInicio);
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE plan_de_vuelo SET salida_epoch_minutos = " +
+            "TIMESTAMPDIFF(MINUTE, '1970-01-01 00:00:00', hora_origen) - " +
+            "CAST(huso_horario_origen AS SIGNED) * 60 " +
+            "WHERE salida_epoch_minutos IS NULL AND hora_origen IS NOT NULL " +
+            "AND huso_horario_origen IS NOT NULL LIMIT :lote", nativeQuery = true)
+    int completarSalidaEpochMinutos(@Param("lote") int lote);
 }
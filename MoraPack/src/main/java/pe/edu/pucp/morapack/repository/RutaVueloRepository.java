@@ -0,0 +1,9 @@
+package pe.edu.pucp.morapack.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import pe.edu.pucp.morapack.models.RutaVuelo;
+
+@Repository
+public interface RutaVueloRepository extends JpaRepository<RutaVuelo, Integer> {
+}
@@ -2,10 +2,13 @@ package pe.edu.pucp.morapack.services;
 
 import pe.edu.pucp.morapack.models.Envio;
 import pe.edu.pucp.morapack.models.Pais;
+import pe.edu.pucp.morapack.models.ParteAsignada;
+import pe.edu.pucp.morapack.models.PedidoPlanificacion;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -74,4 +77,101 @@ public interface EnvioService {
          * Usa JOIN FETCH para cargar relaciones en una sola query.
          */
         List<Envio> obtenerEnviosPorIdsConPartes(List<Integer> envioIds);
+
+        /**
+         * ⚡ Marca en lote las partes indicadas como entregadas.
+         */
+        int marcarPartesEntregadas(List<Integer> parteIds);
+
+        /**
+         * ⚡ Cambia en lote el estado de los envíos indicados.
+         */
+        int actualizarEstadoEnvios(List<Integer> envioIds, Envio.EstadoEnvio estado);
+
+        /**
+         * ⚡ Igual que actualizarEstadoEnvios, pero registra las transiciones en los
+         * contadores por estado de la sesión indicada.
+         */
+        int actualizarEstadoEnvios(List<Integer> envioIds, Envio.EstadoEnvio estado, String idSesion);
+
+        /**
+         * ⚡ Conteo real por estado de los envíos con ingreso en el rango (fechas en
+         * UTC, null = sin límite). Clave SIN_ESTADO para los envíos sin estado.
+         */
+        Map<String, Long> contarEnviosPorEstadoEnRango(LocalDateTime fechaInicioUTC, LocalDateTime fechaFinUTC);
+
+        /**
+         * ⚡ Reemplaza los contadores por estado de la sesión (inicio o reconciliación)
+         * y los persiste.
+         */
+        void reiniciarConteosEstado(String idSesion, Map<String, Long> conteos);
+
+        /**
+         * ⚡ Registra en los contadores de la sesión que cantidad envíos pasaron de
+         * un estado a otro.
+         */
+        void registrarCambioEstado(String idSesion, Envio.EstadoEnvio anterior, Envio.EstadoEnvio nuevo,
+                        long cantidad);
+
+        /**
+         * ⚡ Conteos por estado de la sesión sin consultar la tabla envio (memoria o
+         * tabla conteo_estado_envio). null si la sesión no tiene contadores.
+         */
+        Map<String, Long> obtenerConteosEstado(String idSesion);
+
+        /**
+         * ⚡ Guarda en conteo_estado_envio los contadores modificados. Si falla, las
+         * sesiones siguen marcadas como modificadas y la excepción se propaga.
+         */
+        void persistirConteosEstado();
+
+        /**
+         * ⚡ Elimina los contadores de la sesión (memoria y tabla).
+         */
+        void eliminarConteosEstado(String idSesion);
+
+        /**
+         * ⚡ Pedidos del rango (fechas en UTC) como proyección inmutable para el
+         * planificador.
+         */
+        List<PedidoPlanificacion> obtenerPedidosPlanificacionEnRango(LocalDateTime fechaInicioUTC,
+                        LocalDateTime fechaFinUTC);
+
+        /**
+         * ⚡ Partes no entregadas que pasan por alguno de los vuelos indicados.
+         */
+        List<ParteAsignada> obtenerPartesPendientesPorVuelos(List<Integer> vueloIds);
+
+        /**
+         * ⚡ Resuelve en vuelos la ruta codificada de las partes que aún no la
+         * tienen cargada (una consulta por lote).
+         */
+        void cargarRutas(Collection<ParteAsignada> partes);
+
+        /**
+         * ⚡ Elimina en lote las partes indicadas junto con sus tramos de ruta.
+         */
+        int eliminarPartesAsignadas(List<Integer> parteIds);
+
+        /**
+         * ⚡ Elimina las partes (y sus tramos) persistidas por una sesión aislada.
+         */
+        int eliminarPartesDeSesion(String idSesion);
+
+        /**
+         * ⚡ Elimina en una transacción las partes, tramos y contadores de una
+         * sesión aislada. Devuelve cuántas filas se borraron de cada tabla.
+         */
+        Map<String, Integer> eliminarDatosDeSesion(String idSesion);
+
+        /**
+         * ⚡ Inserción masiva por JDBC (INSERT de varias filas); asigna los IDs
+         * generados a los envíos. No inserta sus partes asignadas.
+         */
+        int insertarEnviosMasivo(List<Envio> envios);
+
+        /**
+         * ⚡ Inserción masiva de partes asignadas y de los tramos de su ruta.
+         */
+        int insertarPartesAsignadasMasivo(List<ParteAsignada> partes);
 }
@@ -2,6 +2,7 @@ package pe.edu.pucp.morapack.services;
 
 import pe.edu.pucp.morapack.dtos.PlanDeVueloResponse;
 import pe.edu.pucp.morapack.models.PlanDeVuelo;
+import pe.edu.pucp.morapack.models.RutaVuelo;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -12,14 +13,40 @@ public interface PlanDeVueloService {
     PlanDeVuelo insertarPlanDeVuelo(PlanDeVuelo planDeVuelo);
     ArrayList<PlanDeVuelo> insertarListaPlanesDeVuelo(ArrayList<PlanDeVuelo> planesDeVuelo);
     Optional<PlanDeVuelo> obtenerPlanDeVueloPorId(Integer id);
-    ArrayList<PlanDeVueloResponse> obtenerPlanesDeVuelo();
-    ArrayList<PlanDeVuelo> obtenerListaPlanesDeVuelo();
+
+    /**
+     * Vuelos (guardados e instanciados desde las rutas) con despegue UTC dentro
+     * del rango, con las coordenadas de sus aeropuertos. Las rutas operan hasta
+     * 730 días, por eso el listado exige una ventana.
+     */
+    ArrayList<PlanDeVueloResponse> obtenerPlanesDeVuelo(LocalDateTime fechaInicio, LocalDateTime fechaFin);
     Integer planAcabaAlSiguienteDia(String tInicio, String tFin, String husoOrigen, String husoDestino, Integer aa, Integer mm, Integer dd);
     ArrayList<PlanDeVuelo> obtenerVuelosEnRango(LocalDateTime fechaInicio, String husoHorarioInicio, LocalDateTime fechaFin, String husoHorarioFin);
-    ArrayList<PlanDeVuelo> obtenerVuelosDesdeFecha(LocalDateTime fechaInicio, String husoHorarioInicio);
 
     /**
      * ⚡ OPTIMIZADO: Obtiene múltiples planes de vuelo por IDs en una sola consulta.
      */
     List<PlanDeVuelo> obtenerPlanesDeVueloPorIds(List<Integer> vueloIds);
+
+    /**
+     * ⚡ Inserción masiva por JDBC (INSERT de varias filas); asigna los IDs
+     * generados a los planes.
+     */
+    int insertarPlanesDeVueloMasivo(List<PlanDeVuelo> planesDeVuelo);
+
+    /**
+     * Registra las plantillas de vuelos diarios. Una ruta con el mismo origen,
+     * destino y hora de salida se actualiza en lugar de duplicarse, así los IDs
+     * de sus instancias no cambian; su vigencia solo se amplía.
+     */
+    int registrarRutasVuelo(List<RutaVuelo> rutas);
+
+    List<RutaVuelo> obtenerRutasVuelo();
+
+    /**
+     * Igual que obtenerPlanesDeVueloPorIds, pero las instancias de rutas que aún
+     * no estén en plan_de_vuelo se guardan primero, así las entidades devueltas
+     * pueden modificarse y referenciarse desde partes asignadas.
+     */
+    List<PlanDeVuelo> materializarPlanesDeVuelo(List<Integer> vueloIds);
 }
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import pe.edu.pucp.morapack.models.Aeropuerto;
+import pe.edu.pucp.morapack.models.CacheReferencia;
 import pe.edu.pucp.morapack.repository.AeropuertoRepository;
 import pe.edu.pucp.morapack.services.AeropuertoService;
 
@@ -18,24 +19,36 @@ public class AeropuertoServiceImp implements AeropuertoService {
     @Autowired
     private final AeropuertoRepository aeropuertoRepository;
 
+    // ⚡ Caché por ID y código: todas las escrituras pasan por este servicio, así
+    // que la capacidad ocupada guardada también se mantiene al día
+    private final CacheReferencia<Aeropuerto> cacheAeropuertos = new CacheReferencia<>(Aeropuerto::getId,
+            Aeropuerto::getCodigo, AeropuertoServiceImp::copiar);
+
     public Aeropuerto insertarAeropuerto(Aeropuerto aeropuerto) {
-        return aeropuertoRepository.save(aeropuerto);
+        Aeropuerto guardado = aeropuertoRepository.save(aeropuerto);
+        cacheAeropuertos.guardar(copiar(guardado));
+        return guardado;
     }
 
     public ArrayList<Aeropuerto> insertarListaAeropuertos(ArrayList<Aeropuerto> aeropuertos) {
-        return (ArrayList<Aeropuerto>) aeropuertoRepository.saveAll(aeropuertos);
+        ArrayList<Aeropuerto> guardados = (ArrayList<Aeropuerto>) aeropuertoRepository.saveAll(aeropuertos);
+        for (Aeropuerto guardado : guardados) {
+            cacheAeropuertos.guardar(copiar(guardado));
+        }
+        return guardados;
     }
 
     public Optional<Aeropuerto> obtenerAeropuertoPorId(Integer id) {
-        return aeropuertoRepository.findById(id);
+        return cacheAeropuertos.porId(id, aeropuertoRepository::findAll, aeropuertoRepository::findById);
     }
 
     public Optional<Aeropuerto> obtenerAeropuertoPorCodigo(String codigo) {
-        return aeropuertoRepository.findAeropuertoByCodigo(codigo);
+        return cacheAeropuertos.porClave(codigo, aeropuertoRepository::findAll,
+                aeropuertoRepository::findAeropuertoByCodigo);
     }
 
     public ArrayList<Aeropuerto> obtenerTodosAeropuertos() {
-        return (ArrayList<Aeropuerto>) aeropuertoRepository.findAll();
+        return cacheAeropuertos.todos(aeropuertoRepository::findAll);
     }
 
     public void aumentarProductosEnAlmacen(Integer cantProductos) {
@@ -43,14 +56,40 @@ public class AeropuertoServiceImp implements AeropuertoService {
     }
 
     /**
-     * ⚡ OPTIMIZADO: Obtiene múltiples aeropuertos por IDs en una sola consulta.
+     * ⚡ OPTIMIZADO: Obtiene múltiples aeropuertos por IDs desde la caché (solo
+     * los que falten van a BD).
      */
     public List<Aeropuerto> obtenerAeropuertosPorIds(List<Integer> aeropuertoIds) {
         if (aeropuertoIds == null || aeropuertoIds.isEmpty()) {
             return new ArrayList<Aeropuerto>();
         }
         ArrayList<Aeropuerto> resultado = new ArrayList<>();
-        aeropuertoRepository.findAllById(aeropuertoIds).forEach(resultado::add);
+        for (Integer id : aeropuertoIds) {
+            obtenerAeropuertoPorId(id).ifPresent(resultado::add);
+        }
         return resultado;
     }
+
+    /**
+     * Descarta la caché tras cambios hechos fuera del servicio (SQL nativo).
+     */
+    public void invalidarCache() {
+        cacheAeropuertos.invalidar();
+    }
+
+    private static Aeropuerto copiar(Aeropuerto aeropuerto) {
+        return Aeropuerto.builder()
+                .id(aeropuerto.getId())
+                .pais(aeropuerto.getPais())
+                .codigo(aeropuerto.getCodigo())
+                .husoHorario(aeropuerto.getHusoHorario())
+                .capacidadMaxima(aeropuerto.getCapacidadMaxima())
+                .capacidadOcupada(aeropuerto.getCapacidadOcupada())
+                .ciudad(aeropuerto.getCiudad())
+                .abreviatura(aeropuerto.getAbreviatura())
+                .estado(aeropuerto.getEstado())
+                .longitud(aeropuerto.getLongitud())
+                .latitud(aeropuerto.getLatitud())
+                .build();
+    }
 }
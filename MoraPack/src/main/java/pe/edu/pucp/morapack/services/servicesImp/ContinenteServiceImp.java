@@ -2,6 +2,7 @@ package pe.edu.pucp.morapack.services.servicesImp;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import pe.edu.pucp.morapack.models.CacheReferencia;
 import pe.edu.pucp.morapack.models.Continente;
 import pe.edu.pucp.morapack.repository.ContinenteRepository;
 import pe.edu.pucp.morapack.services.ContinenteService;
@@ -14,18 +15,32 @@ import java.util.Optional;
 public class ContinenteServiceImp implements ContinenteService {
     private final ContinenteRepository continenteRepository;
 
+    // ⚡ Caché por ID y nombre (los continentes no cambian durante la simulación)
+    private final CacheReferencia<Continente> cacheContinentes = new CacheReferencia<>(Continente::getId,
+            Continente::getNombre, ContinenteServiceImp::copiar);
+
     @Override
     public Continente insertarContinente(Continente continente) {
-        return continenteRepository.save(continente);
+        Continente guardado = continenteRepository.save(continente);
+        cacheContinentes.guardar(copiar(guardado));
+        return guardado;
     }
 
     @Override
     public Optional<Continente> obtenerAeropuertoPorNombre(String nombre) {
-        return continenteRepository.findByNombre(nombre);
+        return cacheContinentes.porClave(nombre, continenteRepository::findAll, continenteRepository::findByNombre);
     }
 
     @Override
     public ArrayList<Continente> obtenerTodosContinentes() {
-        return (ArrayList<Continente>) continenteRepository.findAll();
+        return cacheContinentes.todos(continenteRepository::findAll);
+    }
+
+    private static Continente copiar(Continente continente) {
+        return Continente.builder()
+                .id(continente.getId())
+                .nombre(continente.getNombre())
+                .paises(continente.getPaises())
+                .build();
     }
 }
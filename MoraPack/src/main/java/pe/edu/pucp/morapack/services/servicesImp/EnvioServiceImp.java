@@ -3,25 +3,48 @@ package pe.edu.pucp.morapack.services.servicesImp;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pe.edu.pucp.morapack.models.ContadoresEstadoEnvio;
+import pe.edu.pucp.morapack.models.ConteoEstadoEnvio;
 import pe.edu.pucp.morapack.models.Envio;
 import pe.edu.pucp.morapack.models.ParteAsignada;
 import pe.edu.pucp.morapack.models.ParteAsignadaPlanDeVuelo;
+import pe.edu.pucp.morapack.models.PedidoPlanificacion;
 import pe.edu.pucp.morapack.models.PlanDeVuelo;
+import pe.edu.pucp.morapack.repository.ConteoEstadoEnvioRepository;
 import pe.edu.pucp.morapack.repository.EnvioRepository;
+import pe.edu.pucp.morapack.repository.InsercionMasivaRepository;
+import pe.edu.pucp.morapack.repository.ParteAsignadaPlanDeVueloRepository;
 import pe.edu.pucp.morapack.services.EnvioService;
+import pe.edu.pucp.morapack.services.PlanDeVueloService;
 
 import java.time.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class EnvioServiceImp implements EnvioService {
     private final EnvioRepository envioRepository;
+    private final InsercionMasivaRepository insercionMasivaRepository;
+    private final ConteoEstadoEnvioRepository conteoEstadoEnvioRepository;
+    private final PlanDeVueloService planDeVueloService;
+    private final ParteAsignadaPlanDeVueloRepository parteAsignadaPlanDeVueloRepository;
+
+    // ⚡ Envíos por estado de cada sesión, sin COUNT sobre la tabla envio
+    private final ContadoresEstadoEnvio contadoresEstado = new ContadoresEstadoEnvio();
+
+    // Filas por UPDATE al completar ingreso_epoch_minutos en datos antiguos
+    private static final int LOTE_INSTANTES_UTC = 10000;
+    private volatile boolean instantesUtcCompletos;
 
     @Override
     public Envio insertarEnvio(Envio envio) {
@@ -106,8 +129,10 @@ public class EnvioServiceImp implements EnvioService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ArrayList<Envio> obtenerEnviosFisicamenteEnAeropuerto(Integer idAeropuerto) {
         ArrayList<Envio> todosEnvios = obtenerEnvios();
+        cargarRutasDeEnvios(todosEnvios);
         ArrayList<Envio> enviosEnAeropuerto = new ArrayList<>();
         ZonedDateTime ahora = ZonedDateTime.now();
 
@@ -147,9 +172,9 @@ public class EnvioServiceImp implements EnvioService {
      *         entregada
      */
     private Integer determinarAeropuertoActual(ParteAsignada parte, ZonedDateTime ahora) {
-        List<ParteAsignadaPlanDeVuelo> vuelosRuta = parte.getVuelosRuta();
+        List<PlanDeVuelo> vuelosOrdenados = parte.getRuta();
 
-        if (vuelosRuta == null || vuelosRuta.isEmpty()) {
+        if (vuelosOrdenados == null || vuelosOrdenados.isEmpty()) {
             // Si no tiene vuelos asignados, está en el aeropuerto origen
             if (parte.getAeropuertoOrigen() != null) {
                 return parte.getAeropuertoOrigen().getId();
@@ -157,15 +182,9 @@ public class EnvioServiceImp implements EnvioService {
             return null;
         }
 
-        // Ordenar los vuelos por orden para procesarlos en secuencia
-        List<ParteAsignadaPlanDeVuelo> vuelosOrdenados = vuelosRuta.stream()
-                .sorted((a, b) -> Integer.compare(a.getOrden(), b.getOrden()))
-                .collect(Collectors.toList());
-
-        // Buscar el último vuelo que ya completó su llegada
+        // Buscar el último vuelo que ya completó su llegada (la ruta ya está en orden)
         PlanDeVuelo ultimoVueloCompletado = null;
-        for (ParteAsignadaPlanDeVuelo parteVuelo : vuelosOrdenados) {
-            PlanDeVuelo vuelo = parteVuelo.getPlanDeVuelo();
+        for (PlanDeVuelo vuelo : vuelosOrdenados) {
             if (vuelo != null && vuelo.getZonedHoraDestino() != null) {
                 ZonedDateTime llegadaVuelo = vuelo.getZonedHoraDestino();
                 // Comparar en UTC para ser consistente
@@ -184,7 +203,7 @@ public class EnvioServiceImp implements EnvioService {
             return ultimoVueloCompletado.getCiudadDestino();
         } else {
             // Ningún vuelo ha llegado aún, está en el aeropuerto origen del primer vuelo
-            PlanDeVuelo primerVuelo = vuelosOrdenados.get(0).getPlanDeVuelo();
+            PlanDeVuelo primerVuelo = vuelosOrdenados.get(0);
             if (primerVuelo != null) {
                 return primerVuelo.getCiudadOrigen();
             }
@@ -196,6 +215,82 @@ public class EnvioServiceImp implements EnvioService {
         }
     }
 
+    /**
+     * ⚡ Convierte en vuelos la ruta codificada (rutaVuelos) de las partes que aún
+     * no la tienen cargada, con una sola consulta por lote de IDs. Las instancias
+     * de rutas no guardadas se reconstruyen en memoria; las partes antiguas se
+     * cargan desde sus filas por tramo (si vuelosRuta no vino en el grafo, con
+     * una consulta para todas).
+     */
+    @Override
+    public void cargarRutas(Collection<ParteAsignada> partes) {
+        if (partes == null || partes.isEmpty()) {
+            return;
+        }
+        List<ParteAsignada> pendientes = new ArrayList<>();
+        Set<Integer> idsVuelos = new HashSet<>();
+        Map<Integer, ParteAsignada> antiguasSinTramos = new HashMap<>();
+        for (ParteAsignada parte : partes) {
+            if (parte == null) {
+                continue;
+            }
+            if (parte.tieneRutaSinCargar()) {
+                pendientes.add(parte);
+                idsVuelos.addAll(parte.getIdsRuta());
+            } else if (parte.getRutaVuelos() == null && (parte.getRuta() == null || parte.getRuta().isEmpty())) {
+                // Partes guardadas antes de la ruta codificada: solo tienen filas por tramo
+                if (parte.tieneTramosCargados()) {
+                    parte.cargarRutaDesdeBD();
+                } else if (parte.getId() != null) {
+                    antiguasSinTramos.put(parte.getId(), parte);
+                }
+            }
+        }
+        if (!antiguasSinTramos.isEmpty()) {
+            cargarRutasDesdeTramos(antiguasSinTramos);
+        }
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        Map<Integer, PlanDeVuelo> vuelosPorId = new HashMap<>();
+        for (PlanDeVuelo vuelo : planDeVueloService.obtenerPlanesDeVueloPorIds(new ArrayList<>(idsVuelos))) {
+            vuelosPorId.put(vuelo.getId(), vuelo);
+        }
+        for (ParteAsignada parte : pendientes) {
+            List<PlanDeVuelo> ruta = new ArrayList<>();
+            for (Integer idVuelo : parte.getIdsRuta()) {
+                PlanDeVuelo vuelo = vuelosPorId.get(idVuelo);
+                if (vuelo != null) {
+                    ruta.add(vuelo);
+                }
+            }
+            parte.setRuta(ruta);
+        }
+    }
+
+    private void cargarRutasDesdeTramos(Map<Integer, ParteAsignada> partesPorId) {
+        Map<Integer, List<PlanDeVuelo>> rutas = new HashMap<>();
+        for (ParteAsignadaPlanDeVuelo tramo : parteAsignadaPlanDeVueloRepository
+                .findTramosConVueloByParteIds(new ArrayList<>(partesPorId.keySet()))) {
+            rutas.computeIfAbsent(tramo.getParteAsignada().getId(), k -> new ArrayList<>())
+                    .add(tramo.getPlanDeVuelo());
+        }
+        partesPorId.forEach((id, parte) -> parte.setRuta(rutas.getOrDefault(id, new ArrayList<>())));
+    }
+
+    /**
+     * Carga las rutas de todas las partes de los envíos indicados.
+     */
+    private void cargarRutasDeEnvios(Collection<Envio> envios) {
+        List<ParteAsignada> partes = new ArrayList<>();
+        for (Envio envio : envios) {
+            if (envio.getParteAsignadas() != null) {
+                partes.addAll(envio.getParteAsignadas());
+            }
+        }
+        cargarRutas(partes);
+    }
+
     @Override
     public String determinarEstadoPedido(Envio envio) {
         if (envio == null) {
@@ -225,7 +320,7 @@ public class EnvioServiceImp implements EnvioService {
 
             // Cargar la ruta desde BD si no está cargada
             if (parte.getRuta() == null || parte.getRuta().isEmpty()) {
-                parte.cargarRutaDesdeBD();
+                cargarRutas(List.of(parte));
             }
 
             if (parte.getRuta() != null && !parte.getRuta().isEmpty() &&
@@ -261,8 +356,10 @@ public class EnvioServiceImp implements EnvioService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Object> obtenerPedidosConEstado() {
         ArrayList<Envio> todosEnvios = obtenerEnvios();
+        cargarRutasDeEnvios(todosEnvios);
         Map<String, Object> resultado = new HashMap<>();
 
         List<Map<String, Object>> pedidosEntregados = new ArrayList<>();
@@ -327,176 +424,79 @@ public class EnvioServiceImp implements EnvioService {
     public ArrayList<Envio> obtenerEnviosEnRango(LocalDateTime fechaInicio, String husoHorarioInicio,
             LocalDateTime fechaFin, String husoHorarioFin) {
         System.out.println("🔍 [EnvioService] obtenerEnviosEnRango: inicio=" + fechaInicio + ", fin=" + fechaFin);
+        completarInstantesUtc();
 
-        // Convertir las fechas de entrada a ZonedDateTime
-        Integer offsetInicio = Integer.parseInt(husoHorarioInicio);
-        Integer offsetFin = Integer.parseInt(husoHorarioFin);
-        ZoneOffset zoneInicio = ZoneOffset.ofHours(offsetInicio);
-        ZoneOffset zoneFin = ZoneOffset.ofHours(offsetFin);
-
-        ZonedDateTime zonedFechaInicio = fechaInicio.atZone(zoneInicio);
-        ZonedDateTime zonedFechaFin = fechaFin.atZone(zoneFin);
-
-        // Convertir a UTC para hacer la consulta más precisa
-        ZonedDateTime fechaInicioUTC = zonedFechaInicio.withZoneSameInstant(ZoneOffset.UTC);
-        ZonedDateTime fechaFinUTC = zonedFechaFin.withZoneSameInstant(ZoneOffset.UTC);
-
-        // Ampliar el rango para considerar todas las zonas horarias posibles (-12 a +14
-        // horas)
-        // Esto asegura que no perdamos envíos debido a diferencias de zona horaria
-        LocalDateTime fechaInicioConsulta = fechaInicioUTC.toLocalDateTime().minusHours(14);
-        LocalDateTime fechaFinConsulta = fechaFinUTC.toLocalDateTime().plusHours(14);
-
-        System.out
-                .println("🔍 [EnvioService] Ejecutando consulta BD: " + fechaInicioConsulta + " a " + fechaFinConsulta);
-
-        // Consulta optimizada en la BD (solo trae envíos relevantes)
-        ArrayList<Envio> enviosCandidatos = envioRepository.findByFechaIngresoBetween(
-                fechaInicioConsulta, fechaFinConsulta);
+        // ⚡ Consulta exacta sobre el instante UTC indexado (sin ampliar ±14h ni filtrar en memoria)
+        ArrayList<Envio> enviosEnRango = envioRepository.findByIngresoEpochMinutosBetween(
+                primerMinutoEpoch(fechaInicio, husoHorarioInicio), ultimoMinutoEpoch(fechaFin, husoHorarioFin));
 
-        System.out.println("🔍 [EnvioService] Candidatos de BD: " + enviosCandidatos.size());
-
-        // Filtrar en memoria considerando las zonas horarias reales (sobre un conjunto
-        // mucho menor)
-        ArrayList<Envio> enviosEnRango = new ArrayList<>();
-        for (Envio envio : enviosCandidatos) {
-            ZonedDateTime zonedFechaIngreso = obtenerZonedFechaIngreso(envio);
-
-            // Un envío está en el rango si su fecha de ingreso está dentro del rango
-            boolean ingresoEnRango = !zonedFechaIngreso.isBefore(zonedFechaInicio) &&
-                    !zonedFechaIngreso.isAfter(zonedFechaFin);
-
-            if (ingresoEnRango) {
-                enviosEnRango.add(envio);
-            }
-        }
-
-        System.out.println("🔍 [EnvioService] Envíos filtrados en rango: " + enviosEnRango.size());
+        System.out.println("🔍 [EnvioService] Envíos en rango: " + enviosEnRango.size());
         return enviosEnRango;
     }
 
     @Override
     public ArrayList<Envio> obtenerEnviosDesdeFecha(LocalDateTime fechaInicio, String husoHorarioInicio) {
-        // Convertir la fecha de entrada a ZonedDateTime
-        Integer offsetInicio = Integer.parseInt(husoHorarioInicio);
-        ZoneOffset zoneInicio = ZoneOffset.ofHours(offsetInicio);
-        ZonedDateTime zonedFechaInicio = fechaInicio.atZone(zoneInicio);
-
-        // Convertir a UTC para hacer la consulta más precisa
-        ZonedDateTime fechaInicioUTC = zonedFechaInicio.withZoneSameInstant(ZoneOffset.UTC);
-
-        // Ampliar el rango para considerar todas las zonas horarias posibles (-12 a +14
-        // horas)
-        // Esto asegura que no perdamos envíos debido a diferencias de zona horaria
-        LocalDateTime fechaInicioConsulta = fechaInicioUTC.toLocalDateTime().minusHours(14);
-
-        // Consulta optimizada en la BD (solo trae envíos relevantes)
-        ArrayList<Envio> enviosCandidatos = envioRepository.findByFechaIngresoGreaterThanEqual(
-                fechaInicioConsulta);
-
-        // Filtrar en memoria considerando las zonas horarias reales (sobre un conjunto
-        // mucho menor)
-        ArrayList<Envio> enviosDesdeFecha = new ArrayList<>();
-        for (Envio envio : enviosCandidatos) {
-            ZonedDateTime zonedFechaIngreso = obtenerZonedFechaIngreso(envio);
-
-            // Un envío está incluido si su fecha de ingreso es igual o posterior a la fecha
-            // de inicio
-            boolean ingresoDesdeFecha = !zonedFechaIngreso.isBefore(zonedFechaInicio);
-
-            if (ingresoDesdeFecha) {
-                enviosDesdeFecha.add(envio);
-            }
-        }
-
-        return enviosDesdeFecha;
+        completarInstantesUtc();
+        return envioRepository.findByIngresoEpochMinutosGreaterThanEqual(
+                primerMinutoEpoch(fechaInicio, husoHorarioInicio));
     }
 
     @Override
     public ArrayList<Envio> obtenerEnviosEnRangoConPartes(LocalDateTime fechaInicio, String husoHorarioInicio,
             LocalDateTime fechaFin, String husoHorarioFin) {
-        // Convertir las fechas de entrada a ZonedDateTime
-        Integer offsetInicio = Integer.parseInt(husoHorarioInicio);
-        Integer offsetFin = Integer.parseInt(husoHorarioFin);
-        ZoneOffset zoneInicio = ZoneOffset.ofHours(offsetInicio);
-        ZoneOffset zoneFin = ZoneOffset.ofHours(offsetFin);
-
-        ZonedDateTime zonedFechaInicio = fechaInicio.atZone(zoneInicio);
-        ZonedDateTime zonedFechaFin = fechaFin.atZone(zoneFin);
-
-        // Convertir a UTC para hacer la consulta más precisa
-        ZonedDateTime fechaInicioUTC = zonedFechaInicio.withZoneSameInstant(ZoneOffset.UTC);
-        ZonedDateTime fechaFinUTC = zonedFechaFin.withZoneSameInstant(ZoneOffset.UTC);
-
-        // Ampliar el rango para considerar todas las zonas horarias posibles
-        LocalDateTime fechaInicioConsulta = fechaInicioUTC.toLocalDateTime().minusHours(14);
-        LocalDateTime fechaFinConsulta = fechaFinUTC.toLocalDateTime().plusHours(14);
-
+        completarInstantesUtc();
         // ⚡ Consulta con JOIN FETCH para cargar parteAsignadas de forma eficiente
-        ArrayList<Envio> enviosCandidatos = envioRepository.findByFechaIngresoBetweenWithPartes(
-                fechaInicioConsulta, fechaFinConsulta);
-
-        // Filtrar en memoria considerando las zonas horarias reales
-        ArrayList<Envio> enviosEnRango = new ArrayList<>();
-        for (Envio envio : enviosCandidatos) {
-            ZonedDateTime zonedFechaIngreso = obtenerZonedFechaIngreso(envio);
-
-            boolean ingresoEnRango = !zonedFechaIngreso.isBefore(zonedFechaInicio) &&
-                    !zonedFechaIngreso.isAfter(zonedFechaFin);
-
-            if (ingresoEnRango) {
-                enviosEnRango.add(envio);
-            }
-        }
-
-        return enviosEnRango;
+        return envioRepository.findByIngresoEpochMinutosBetweenWithPartes(
+                primerMinutoEpoch(fechaInicio, husoHorarioInicio), ultimoMinutoEpoch(fechaFin, husoHorarioFin));
     }
 
     @Override
     public ArrayList<Envio> obtenerEnviosDesdeFechaConPartes(LocalDateTime fechaInicio, String husoHorarioInicio) {
-        // Convertir la fecha de entrada a ZonedDateTime
-        Integer offsetInicio = Integer.parseInt(husoHorarioInicio);
-        ZoneOffset zoneInicio = ZoneOffset.ofHours(offsetInicio);
-        ZonedDateTime zonedFechaInicio = fechaInicio.atZone(zoneInicio);
-
-        // Convertir a UTC para hacer la consulta más precisa
-        ZonedDateTime fechaInicioUTC = zonedFechaInicio.withZoneSameInstant(ZoneOffset.UTC);
-
-        // Ampliar el rango para considerar todas las zonas horarias posibles
-        LocalDateTime fechaInicioConsulta = fechaInicioUTC.toLocalDateTime().minusHours(14);
-
+        completarInstantesUtc();
         // ⚡ Consulta con JOIN FETCH para cargar parteAsignadas de forma eficiente
-        ArrayList<Envio> enviosCandidatos = envioRepository.findByFechaIngresoGreaterThanEqualWithPartes(
-                fechaInicioConsulta);
-
-        // Filtrar en memoria considerando las zonas horarias reales
-        ArrayList<Envio> enviosDesdeFecha = new ArrayList<>();
-        for (Envio envio : enviosCandidatos) {
-            ZonedDateTime zonedFechaIngreso = obtenerZonedFechaIngreso(envio);
-
-            boolean ingresoDesdeFecha = !zonedFechaIngreso.isBefore(zonedFechaInicio);
+        return envioRepository.findByIngresoEpochMinutosGreaterThanEqualWithPartes(
+                primerMinutoEpoch(fechaInicio, husoHorarioInicio));
+    }
 
-            if (ingresoDesdeFecha) {
-                enviosDesdeFecha.add(envio);
-            }
-        }
+    /**
+     * Primer minuto epoch UTC que no es anterior al instante indicado (redondeo
+     * hacia arriba, para que el límite inferior sea exacto con segundos).
+     */
+    private static long primerMinutoEpoch(LocalDateTime fecha, String husoHorario) {
+        return Math.ceilDiv(fecha.toEpochSecond(ZoneOffset.ofHours(Integer.parseInt(husoHorario))), 60L);
+    }
 
-        return enviosDesdeFecha;
+    /**
+     * Último minuto epoch UTC que no es posterior al instante indicado.
+     */
+    private static long ultimoMinutoEpoch(LocalDateTime fecha, String husoHorario) {
+        return Math.floorDiv(fecha.toEpochSecond(ZoneOffset.ofHours(Integer.parseInt(husoHorario))), 60L);
     }
 
     /**
-     * Método auxiliar para obtener el ZonedDateTime de la fecha de ingreso del
-     * envío.
-     * Si no está cargado, lo carga manualmente.
+     * ⚡ Completa una sola vez por ejecución el instante UTC de los envíos
+     * guardados antes de existir la columna ingreso_epoch_minutos. Los envíos
+     * nuevos ya lo traen desde la carga.
      */
-    private ZonedDateTime obtenerZonedFechaIngreso(Envio envio) {
-        if (envio.getZonedFechaIngreso() != null) {
-            return envio.getZonedFechaIngreso();
+    private void completarInstantesUtc() {
+        if (instantesUtcCompletos) {
+            return;
+        }
+        try {
+            int total = 0;
+            int actualizados;
+            do {
+                actualizados = envioRepository.completarIngresoEpochMinutos(LOTE_INSTANTES_UTC);
+                total += actualizados;
+            } while (actualizados == LOTE_INSTANTES_UTC);
+            if (total > 0) {
+                System.out.println("🕒 [EnvioService] Instante UTC completado en " + total + " envíos existentes");
+            }
+            instantesUtcCompletos = true;
+        } catch (Exception e) {
+            System.err.println("❌ [EnvioService] Error al completar instantes UTC: " + e.getMessage());
+            e.printStackTrace();
         }
-        // Si no está cargado, cargarlo manualmente
-        Integer offsetDestino = Integer.parseInt(envio.getHusoHorarioDestino());
-        ZoneOffset zoneDestino = ZoneOffset.ofHours(offsetDestino);
-        return envio.getFechaIngreso().atZone(zoneDestino);
     }
 
     /**
@@ -534,10 +534,16 @@ public class EnvioServiceImp implements EnvioService {
                     if (parteConVuelos != null && parteConVuelos.getVuelosRuta() != null) {
                         parte.setVuelosRuta(parteConVuelos.getVuelosRuta());
                     }
+                    if (parteConVuelos != null && parte.getRutaVuelos() == null) {
+                        parte.setRutaVuelos(parteConVuelos.getRutaVuelos());
+                    }
                 }
             }
         }
 
+        // Resolver las rutas codificadas en una sola consulta de vuelos
+        cargarRutasDeEnvios(envios);
+
         return envios;
     }
 
@@ -616,6 +622,8 @@ public class EnvioServiceImp implements EnvioService {
             }
         }
 
+        cargarRutas(partesConVuelos);
+
         return envios;
     }
 
@@ -677,6 +685,198 @@ public class EnvioServiceImp implements EnvioService {
             }
         }
 
+        cargarRutas(partesConVuelos);
+
         return envios;
     }
+
+    @Override
+    @Transactional
+    public int marcarPartesEntregadas(List<Integer> parteIds) {
+        if (parteIds == null || parteIds.isEmpty()) {
+            return 0;
+        }
+        return envioRepository.marcarPartesEntregadas(parteIds);
+    }
+
+    @Override
+    @Transactional
+    public int actualizarEstadoEnvios(List<Integer> envioIds, Envio.EstadoEnvio estado) {
+        if (envioIds == null || envioIds.isEmpty()) {
+            return 0;
+        }
+        return envioRepository.actualizarEstadoEnvios(envioIds, estado);
+    }
+
+    @Override
+    @Transactional
+    public int actualizarEstadoEnvios(List<Integer> envioIds, Envio.EstadoEnvio estado, String idSesion) {
+        if (envioIds == null || envioIds.isEmpty()) {
+            return 0;
+        }
+        // Estado previo de los envíos (búsqueda por PK) para mover los contadores
+        List<Object[]> anteriores = envioRepository.contarPorEstadoDeIds(envioIds);
+        int actualizados = envioRepository.actualizarEstadoEnvios(envioIds, estado);
+        for (Object[] fila : anteriores) {
+            registrarCambioEstado(idSesion, (Envio.EstadoEnvio) fila[0], estado, ((Number) fila[1]).longValue());
+        }
+        return actualizados;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Long> contarEnviosPorEstadoEnRango(LocalDateTime fechaInicioUTC, LocalDateTime fechaFinUTC) {
+        completarInstantesUtc();
+        long inicio = fechaInicioUTC != null ? primerMinutoEpoch(fechaInicioUTC, "0") : Long.MIN_VALUE;
+        long fin = fechaFinUTC != null ? ultimoMinutoEpoch(fechaFinUTC, "0") : Long.MAX_VALUE;
+        Map<String, Long> conteos = new HashMap<>();
+        for (Object[] fila : envioRepository.contarPorEstadoEnRango(inicio, fin)) {
+            conteos.put(ContadoresEstadoEnvio.clave((Envio.EstadoEnvio) fila[0]), ((Number) fila[1]).longValue());
+        }
+        return conteos;
+    }
+
+    @Override
+    public void reiniciarConteosEstado(String idSesion, Map<String, Long> conteos) {
+        Map<String, Long> anteriores = contadoresEstado.reiniciar(idSesion, conteos);
+        if (anteriores != null && !anteriores.equals(conteos)) {
+            System.out.printf("🔢 [EnvioService] Contadores de la sesión %s reconciliados: %s → %s%n", idSesion,
+                    anteriores, conteos);
+        }
+        persistirConteosEstado();
+    }
+
+    @Override
+    public void registrarCambioEstado(String idSesion, Envio.EstadoEnvio anterior, Envio.EstadoEnvio nuevo,
+            long cantidad) {
+        contadoresEstado.registrarTransicion(idSesion, anterior, nuevo, cantidad);
+    }
+
+    @Override
+    public Map<String, Long> obtenerConteosEstado(String idSesion) {
+        Map<String, Long> conteos = contadoresEstado.obtener(idSesion);
+        if (conteos != null) {
+            return conteos;
+        }
+        // Tras un reinicio del servidor: últimos conteos guardados de la sesión
+        List<ConteoEstadoEnvio> guardados = conteoEstadoEnvioRepository.findByIdSesion(idSesion);
+        if (guardados.isEmpty()) {
+            return null;
+        }
+        conteos = new HashMap<>();
+        for (ConteoEstadoEnvio conteo : guardados) {
+            conteos.put(conteo.getEstado(), conteo.getCantidad());
+        }
+        return conteos;
+    }
+
+    @Override
+    @Transactional
+    public void persistirConteosEstado() {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<String> modificadas = contadoresEstado.tomarModificadas();
+        try {
+            for (String idSesion : modificadas) {
+                Map<String, Long> conteos = contadoresEstado.obtener(idSesion);
+                if (conteos == null) {
+                    continue;
+                }
+                Map<String, ConteoEstadoEnvio> filas = new HashMap<>();
+                for (ConteoEstadoEnvio fila : conteoEstadoEnvioRepository.findByIdSesion(idSesion)) {
+                    filas.put(fila.getEstado(), fila);
+                }
+                for (Map.Entry<String, Long> entry : conteos.entrySet()) {
+                    ConteoEstadoEnvio fila = filas.computeIfAbsent(entry.getKey(), estado -> ConteoEstadoEnvio
+                            .builder().idSesion(idSesion).estado(estado).build());
+                    fila.setCantidad(entry.getValue());
+                    fila.setActualizado(ahora);
+                }
+                conteoEstadoEnvioRepository.saveAll(filas.values());
+            }
+        } catch (RuntimeException e) {
+            // tomarModificadas ya las dejó limpias: sin esto el siguiente guardado las omitiría
+            contadoresEstado.marcarModificadas(modificadas);
+            throw e;
+        }
+        // Un fallo al confirmar (flush en el commit) también debe dejarlas pendientes
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado != STATUS_COMMITTED) {
+                        contadoresEstado.marcarModificadas(modificadas);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public void eliminarConteosEstado(String idSesion) {
+        contadoresEstado.eliminar(idSesion);
+        conteoEstadoEnvioRepository.eliminarPorSesion(idSesion);
+    }
+
+    @Override
+    public List<PedidoPlanificacion> obtenerPedidosPlanificacionEnRango(LocalDateTime fechaInicioUTC,
+            LocalDateTime fechaFinUTC) {
+        completarInstantesUtc();
+        // ⚡ Consulta exacta por el instante real de ingreso (minutos epoch UTC indexados)
+        return envioRepository.findPedidosPlanificacionByIngresoEpochMinutosBetween(
+                primerMinutoEpoch(fechaInicioUTC, "0"), ultimoMinutoEpoch(fechaFinUTC, "0"));
+    }
+
+    @Override
+    public List<ParteAsignada> obtenerPartesPendientesPorVuelos(List<Integer> vueloIds) {
+        if (vueloIds == null || vueloIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // ⚡ Una consulta por el índice de tramos (id_plan_de_vuelo)
+        List<ParteAsignada> resultado = envioRepository.findPartesPendientesByVueloIds(vueloIds);
+        cargarRutas(resultado);
+        return resultado;
+    }
+
+    @Override
+    @Transactional
+    public int eliminarPartesAsignadas(List<Integer> parteIds) {
+        if (parteIds == null || parteIds.isEmpty()) {
+            return 0;
+        }
+        envioRepository.eliminarRutasDePartes(parteIds);
+        return envioRepository.eliminarPartes(parteIds);
+    }
+
+    @Override
+    @Transactional
+    public int eliminarPartesDeSesion(String idSesion) {
+        if (idSesion == null || idSesion.isBlank()) {
+            return 0;
+        }
+        envioRepository.eliminarRutasDeSesion(idSesion);
+        return envioRepository.eliminarPartesDeSesion(idSesion);
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Integer> eliminarDatosDeSesion(String idSesion) {
+        Map<String, Integer> eliminados = new HashMap<>();
+        eliminados.put("relacionesEliminadas", envioRepository.eliminarRutasDeSesion(idSesion));
+        eliminados.put("partesEliminadas", envioRepository.eliminarPartesDeSesion(idSesion));
+        eliminarConteosEstado(idSesion);
+        return eliminados;
+    }
+
+    @Override
+    @Transactional
+    public int insertarEnviosMasivo(List<Envio> envios) {
+        return insercionMasivaRepository.insertarEnvios(envios);
+    }
+
+    @Override
+    @Transactional
+    public int insertarPartesAsignadasMasivo(List<ParteAsignada> partes) {
+        return insercionMasivaRepository.insertarPartesAsignadas(partes);
+    }
 }
@@ -2,6 +2,7 @@ package pe.edu.pucp.morapack.services.servicesImp;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import pe.edu.pucp.morapack.models.CacheReferencia;
 import pe.edu.pucp.morapack.models.Pais;
 import pe.edu.pucp.morapack.repository.PaisRepository;
 import pe.edu.pucp.morapack.services.PaisService;
@@ -13,13 +14,27 @@ import java.util.ArrayList;
 public class PaisServiceImp implements PaisService {
     private final PaisRepository paisRepository;
 
+    // ⚡ Caché por ID y nombre (los países no cambian durante la simulación)
+    private final CacheReferencia<Pais> cachePaises = new CacheReferencia<>(Pais::getId, Pais::getNombre,
+            PaisServiceImp::copiar);
+
     @Override
     public Pais insertarPais(Pais pais) {
-        return paisRepository.save(pais);
+        Pais guardado = paisRepository.save(pais);
+        cachePaises.guardar(copiar(guardado));
+        return guardado;
     }
 
     @Override
     public ArrayList<Pais> obtenerTodosPaises() {
-        return (ArrayList<Pais>) paisRepository.findAll();
+        return cachePaises.todos(paisRepository::findAll);
+    }
+
+    private static Pais copiar(Pais pais) {
+        return Pais.builder()
+                .id(pais.getId())
+                .nombre(pais.getNombre())
+                .continente(pais.getContinente())
+                .build();
     }
 }
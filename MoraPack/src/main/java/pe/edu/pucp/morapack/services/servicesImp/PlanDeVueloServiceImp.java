@@ -2,22 +2,38 @@ package pe.edu.pucp.morapack.services.servicesImp;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import pe.edu.pucp.morapack.dtos.PlanDeVueloResponse;
+import pe.edu.pucp.morapack.models.Aeropuerto;
 import pe.edu.pucp.morapack.models.PlanDeVuelo;
+import pe.edu.pucp.morapack.models.RutaVuelo;
 import pe.edu.pucp.morapack.repository.AeropuertoRepository;
+import pe.edu.pucp.morapack.repository.InsercionMasivaRepository;
 import pe.edu.pucp.morapack.repository.PlanDeVueloRepository;
+import pe.edu.pucp.morapack.repository.RutaVueloRepository;
 import pe.edu.pucp.morapack.services.PlanDeVueloService;
 
 import java.time.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class PlanDeVueloServiceImp implements PlanDeVueloService {
     private final PlanDeVueloRepository planDeVueloRepository;
     private final AeropuertoRepository aeropuertoRepository;
+    private final InsercionMasivaRepository insercionMasivaRepository;
+    private final RutaVueloRepository rutaVueloRepository;
+
+    // ⚡ Plantillas de vuelos en memoria (~3k filas); se invalida al registrar rutas
+    private volatile Map<Integer, RutaVuelo> rutasPorId;
+
+    // Filas por UPDATE al completar salida_epoch_minutos en datos antiguos
+    private static final int LOTE_INSTANTES_UTC = 10000;
+    private volatile boolean instantesUtcCompletos;
+
+    // Mismo formato que devolvía la consulta JPQL del listado (DATE_FORMAT + 'Z' + huso)
+    private static final DateTimeFormatter FORMATO_HORA_RESPUESTA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     @Override
     public PlanDeVuelo insertarPlanDeVuelo(PlanDeVuelo planDeVuelo) {
@@ -30,18 +46,48 @@ public class PlanDeVueloServiceImp implements PlanDeVueloService {
     }
 
     @Override
-    public Optional<PlanDeVuelo> obtenerPlanDeVueloPorId(Integer id) {
-        return planDeVueloRepository.findById(id);
+    @Transactional
+    public int insertarPlanesDeVueloMasivo(List<PlanDeVuelo> planesDeVuelo) {
+        return insercionMasivaRepository.insertarPlanesDeVuelo(planesDeVuelo);
     }
 
     @Override
-    public ArrayList<PlanDeVueloResponse> obtenerPlanesDeVuelo() {
-        return planDeVueloRepository.queryPlanDeVueloWithAeropuerto();
+    public Optional<PlanDeVuelo> obtenerPlanDeVueloPorId(Integer id) {
+        Optional<PlanDeVuelo> plan = planDeVueloRepository.findById(id);
+        if (plan.isEmpty() && RutaVuelo.esIdInstancia(id)) {
+            return Optional.ofNullable(instanciaPorId(id));
+        }
+        return plan;
     }
 
     @Override
-    public ArrayList<PlanDeVuelo> obtenerListaPlanesDeVuelo() {
-        return (ArrayList<PlanDeVuelo>) planDeVueloRepository.findAll();
+    public ArrayList<PlanDeVueloResponse> obtenerPlanesDeVuelo(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        Map<Integer, Aeropuerto> aeropuertos = new HashMap<>();
+        for (Aeropuerto aeropuerto : aeropuertoRepository.findAll()) {
+            aeropuertos.put(aeropuerto.getId(), aeropuerto);
+        }
+        ArrayList<PlanDeVueloResponse> respuesta = new ArrayList<>();
+        for (PlanDeVuelo vuelo : obtenerVuelosEnRango(fechaInicio, "0", fechaFin, "0")) {
+            Aeropuerto origen = aeropuertos.get(vuelo.getCiudadOrigen());
+            Aeropuerto destino = aeropuertos.get(vuelo.getCiudadDestino());
+            if (origen == null || destino == null) {
+                continue;
+            }
+            respuesta.add(PlanDeVueloResponse.builder()
+                    .idTramo(vuelo.getId())
+                    .ciudadOrigen(vuelo.getCiudadOrigen())
+                    .horaOrigen(vuelo.getHoraOrigen().format(FORMATO_HORA_RESPUESTA) + "Z" + origen.getHusoHorario())
+                    .longitudOrigen(origen.getLongitud())
+                    .latitudOrigen(origen.getLatitud())
+                    .ciudadDestino(vuelo.getCiudadDestino())
+                    .horaDestino(vuelo.getHoraDestino().format(FORMATO_HORA_RESPUESTA) + "Z" + destino.getHusoHorario())
+                    .longitudDestino(destino.getLongitud())
+                    .latitudDestino(destino.getLatitud())
+                    .capacidadMaxima(vuelo.getCapacidadMaxima())
+                    .estado(vuelo.getEstado())
+                    .build());
+        }
+        return respuesta;
     }
 
     @Override
@@ -73,91 +119,61 @@ public class PlanDeVueloServiceImp implements PlanDeVueloService {
     @Override
     public ArrayList<PlanDeVuelo> obtenerVuelosEnRango(LocalDateTime fechaInicio, String husoHorarioInicio,
             LocalDateTime fechaFin, String husoHorarioFin) {
-        // Convertir las fechas de entrada a ZonedDateTime
-        Integer offsetInicio = Integer.parseInt(husoHorarioInicio);
-        Integer offsetFin = Integer.parseInt(husoHorarioFin);
-        ZoneOffset zoneInicio = ZoneOffset.ofHours(offsetInicio);
-        ZoneOffset zoneFin = ZoneOffset.ofHours(offsetFin);
-
-        ZonedDateTime zonedFechaInicio = fechaInicio.atZone(zoneInicio);
-        ZonedDateTime zonedFechaFin = fechaFin.atZone(zoneFin);
-
-        // Convertir a UTC para hacer la consulta más precisa
-        ZonedDateTime fechaInicioUTC = zonedFechaInicio.withZoneSameInstant(ZoneOffset.UTC);
-        ZonedDateTime fechaFinUTC = zonedFechaFin.withZoneSameInstant(ZoneOffset.UTC);
-
-        // Ampliar el rango para considerar todas las zonas horarias posibles (-12 a +14 horas)
-        // Esto asegura que no perdamos vuelos debido a diferencias de zona horaria
-        LocalDateTime fechaInicioConsulta = fechaInicioUTC.toLocalDateTime().minusHours(14);
-        LocalDateTime fechaFinConsulta = fechaFinUTC.toLocalDateTime().plusHours(14);
-
-        // Consulta optimizada en la BD (solo trae vuelos relevantes)
-        ArrayList<PlanDeVuelo> vuelosCandidatos = planDeVueloRepository.findByHoraOrigenBetween(
-                fechaInicioConsulta, fechaFinConsulta);
-
-        // Filtrar en memoria considerando las zonas horarias reales (sobre un conjunto mucho menor)
-        ArrayList<PlanDeVuelo> vuelosEnRango = new ArrayList<>();
-        for (PlanDeVuelo vuelo : vuelosCandidatos) {
-            ZonedDateTime zonedHoraOrigen = obtenerZonedHoraOrigen(vuelo);
-
-            // Un vuelo está en el rango si su hora de origen (despegue) está dentro del rango
-            boolean origenEnRango = !zonedHoraOrigen.isBefore(zonedFechaInicio) &&
-                                    !zonedHoraOrigen.isAfter(zonedFechaFin);
-
-            if (origenEnRango) {
-                vuelosEnRango.add(vuelo);
-            }
+        completarInstantesUtc();
+        long inicio = primerMinutoEpoch(fechaInicio, husoHorarioInicio);
+        long fin = ultimoMinutoEpoch(fechaFin, husoHorarioFin);
+
+        // ⚡ Consulta exacta sobre el despegue UTC indexado (sin ampliar ±14h ni filtrar en memoria)
+        ArrayList<PlanDeVuelo> vuelosEnRango = planDeVueloRepository.findBySalidaEpochMinutosBetween(inicio, fin);
+
+        // ⚡ Completar con las instancias de las rutas que no están guardadas (sin carga)
+        Set<Integer> idsGuardados = new HashSet<>();
+        for (PlanDeVuelo vuelo : vuelosEnRango) {
+            idsGuardados.add(vuelo.getId());
         }
+        vuelosEnRango.addAll(instanciarRutas(inicio, fin, idsGuardados));
 
         return vuelosEnRango;
     }
 
-    @Override
-    public ArrayList<PlanDeVuelo> obtenerVuelosDesdeFecha(LocalDateTime fechaInicio, String husoHorarioInicio) {
-        // Convertir la fecha de entrada a ZonedDateTime
-        Integer offsetInicio = Integer.parseInt(husoHorarioInicio);
-        ZoneOffset zoneInicio = ZoneOffset.ofHours(offsetInicio);
-        ZonedDateTime zonedFechaInicio = fechaInicio.atZone(zoneInicio);
-
-        // Convertir a UTC para hacer la consulta más precisa
-        ZonedDateTime fechaInicioUTC = zonedFechaInicio.withZoneSameInstant(ZoneOffset.UTC);
-
-        // Ampliar el rango para considerar todas las zonas horarias posibles (-12 a +14 horas)
-        // Esto asegura que no perdamos vuelos debido a diferencias de zona horaria
-        LocalDateTime fechaInicioConsulta = fechaInicioUTC.toLocalDateTime().minusHours(14);
-
-        // Consulta optimizada en la BD (solo trae vuelos relevantes)
-        ArrayList<PlanDeVuelo> vuelosCandidatos = planDeVueloRepository.findByHoraOrigenGreaterThanEqual(
-                fechaInicioConsulta);
-
-        // Filtrar en memoria considerando las zonas horarias reales (sobre un conjunto mucho menor)
-        ArrayList<PlanDeVuelo> vuelosDesdeFecha = new ArrayList<>();
-        for (PlanDeVuelo vuelo : vuelosCandidatos) {
-            ZonedDateTime zonedHoraOrigen = obtenerZonedHoraOrigen(vuelo);
-
-            // Un vuelo está incluido si su hora de origen (despegue) es igual o posterior a la fecha de inicio
-            boolean origenDesdeFecha = !zonedHoraOrigen.isBefore(zonedFechaInicio);
-
-            if (origenDesdeFecha) {
-                vuelosDesdeFecha.add(vuelo);
-            }
-        }
+    /**
+     * Primer minuto epoch UTC que no es anterior al instante indicado (redondeo
+     * hacia arriba, para que el límite inferior sea exacto con segundos).
+     */
+    private static long primerMinutoEpoch(LocalDateTime fecha, String husoHorario) {
+        return Math.ceilDiv(fecha.toEpochSecond(ZoneOffset.ofHours(Integer.parseInt(husoHorario))), 60L);
+    }
 
-        return vuelosDesdeFecha;
+    /**
+     * Último minuto epoch UTC que no es posterior al instante indicado.
+     */
+    private static long ultimoMinutoEpoch(LocalDateTime fecha, String husoHorario) {
+        return Math.floorDiv(fecha.toEpochSecond(ZoneOffset.ofHours(Integer.parseInt(husoHorario))), 60L);
     }
 
     /**
-     * Método auxiliar para obtener el ZonedDateTime de la hora de origen del vuelo.
-     * Si no está cargado, lo carga manualmente.
+     * ⚡ Completa una sola vez por ejecución el despegue UTC de los vuelos
+     * guardados antes de existir la columna salida_epoch_minutos.
      */
-    private ZonedDateTime obtenerZonedHoraOrigen(PlanDeVuelo vuelo) {
-        if (vuelo.getZonedHoraOrigen() != null) {
-            return vuelo.getZonedHoraOrigen();
+    private void completarInstantesUtc() {
+        if (instantesUtcCompletos) {
+            return;
+        }
+        try {
+            int total = 0;
+            int actualizados;
+            do {
+                actualizados = planDeVueloRepository.completarSalidaEpochMinutos(LOTE_INSTANTES_UTC);
+                total += actualizados;
+            } while (actualizados == LOTE_INSTANTES_UTC);
+            if (total > 0) {
+                System.out.println("🕒 [PlanDeVueloService] Despegue UTC completado en " + total + " vuelos existentes");
+            }
+            instantesUtcCompletos = true;
+        } catch (Exception e) {
+            System.err.println("❌ [PlanDeVueloService] Error al completar instantes UTC: " + e.getMessage());
+            e.printStackTrace();
         }
-        // Si no está cargado, cargarlo manualmente
-        Integer offsetOrigen = Integer.parseInt(vuelo.getHusoHorarioOrigen());
-        ZoneOffset zoneOrigen = ZoneOffset.ofHours(offsetOrigen);
-        return vuelo.getHoraOrigen().atZone(zoneOrigen);
     }
 
     /**
@@ -182,6 +198,138 @@ public class PlanDeVueloServiceImp implements PlanDeVueloService {
         if (vueloIds == null || vueloIds.isEmpty()) {
             return new ArrayList<>();
         }
-        return new ArrayList<>(planDeVueloRepository.findAllById(vueloIds));
+        List<PlanDeVuelo> planes = new ArrayList<>(planDeVueloRepository.findAllById(vueloIds));
+        for (Integer id : instanciasFaltantes(vueloIds, planes)) {
+            PlanDeVuelo instancia = instanciaPorId(id);
+            if (instancia != null) {
+                planes.add(instancia);
+            }
+        }
+        return planes;
+    }
+
+    @Override
+    public List<PlanDeVuelo> materializarPlanesDeVuelo(List<Integer> vueloIds) {
+        if (vueloIds == null || vueloIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<PlanDeVuelo> planes = new ArrayList<>(planDeVueloRepository.findAllById(vueloIds));
+        List<Integer> faltantes = instanciasFaltantes(vueloIds, planes);
+        if (!faltantes.isEmpty()) {
+            List<PlanDeVuelo> instancias = new ArrayList<>();
+            for (Integer id : faltantes) {
+                PlanDeVuelo instancia = instanciaPorId(id);
+                if (instancia != null) {
+                    instancias.add(instancia);
+                }
+            }
+            insercionMasivaRepository.insertarInstanciasVuelo(instancias);
+            planes.addAll(planDeVueloRepository.findAllById(faltantes));
+        }
+        return planes;
+    }
+
+    @Override
+    @Transactional
+    public int registrarRutasVuelo(List<RutaVuelo> rutas) {
+        Map<String, RutaVuelo> existentes = new HashMap<>();
+        for (RutaVuelo ruta : rutaVueloRepository.findAll()) {
+            existentes.put(claveRuta(ruta), ruta);
+        }
+        List<RutaVuelo> guardar = new ArrayList<>(rutas.size());
+        for (RutaVuelo ruta : rutas) {
+            RutaVuelo existente = existentes.get(claveRuta(ruta));
+            if (existente != null) {
+                existente.setHoraLlegada(ruta.getHoraLlegada());
+                existente.setDiasDuracion(ruta.getDiasDuracion());
+                existente.setHusoHorarioOrigen(ruta.getHusoHorarioOrigen());
+                existente.setHusoHorarioDestino(ruta.getHusoHorarioDestino());
+                existente.setCapacidadMaxima(ruta.getCapacidadMaxima());
+                existente.setMismoContinente(ruta.getMismoContinente());
+                // La vigencia solo se amplía: una carga sin límites (p. ej. la semanal) no
+                // borra la ventana registrada por otra
+                existente.setVigenteDesde(fechaMenor(existente.getVigenteDesde(), ruta.getVigenteDesde()));
+                existente.setVigenteHasta(fechaMayor(existente.getVigenteHasta(), ruta.getVigenteHasta()));
+                guardar.add(existente);
+            } else {
+                guardar.add(ruta);
+            }
+        }
+        rutaVueloRepository.saveAll(guardar);
+        rutasPorId = null;
+        return guardar.size();
+    }
+
+    @Override
+    public List<RutaVuelo> obtenerRutasVuelo() {
+        return new ArrayList<>(rutasPorId().values());
+    }
+
+    private Map<Integer, RutaVuelo> rutasPorId() {
+        Map<Integer, RutaVuelo> rutas = rutasPorId;
+        if (rutas == null) {
+            rutas = new LinkedHashMap<>();
+            for (RutaVuelo ruta : rutaVueloRepository.findAll()) {
+                rutas.put(ruta.getId(), ruta);
+            }
+            rutasPorId = rutas;
+        }
+        return rutas;
+    }
+
+    // Menor/mayor de dos fechas ignorando null (null no es un límite a registrar)
+    private static LocalDate fechaMenor(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || !b.isBefore(a) ? a : b;
+    }
+
+    private static LocalDate fechaMayor(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || !b.isAfter(a) ? a : b;
+    }
+
+    private static String claveRuta(RutaVuelo ruta) {
+        return ruta.getCiudadOrigen() + "-" + ruta.getCiudadDestino() + "-" + ruta.getHoraSalida();
+    }
+
+    /**
+     * Instancias (sin persistir) de todas las rutas con despegue UTC (minutos
+     * epoch) entre inicio y fin, excepto las que ya están guardadas.
+     */
+    private List<PlanDeVuelo> instanciarRutas(long inicio, long fin, Set<Integer> idsGuardados) {
+        // Los husos van de -12 a +14: basta revisar un día antes y uno después en UTC
+        LocalDate primerDia = LocalDate.ofEpochDay(Math.floorDiv(inicio, 1440L)).minusDays(1);
+        LocalDate ultimoDia = LocalDate.ofEpochDay(Math.floorDiv(fin, 1440L)).plusDays(1);
+        List<PlanDeVuelo> instancias = new ArrayList<>();
+        for (RutaVuelo ruta : rutasPorId().values()) {
+            ZoneOffset husoOrigen = ZoneOffset.ofHours(Integer.parseInt(ruta.getHusoHorarioOrigen()));
+            for (LocalDate fecha = primerDia; !fecha.isAfter(ultimoDia); fecha = fecha.plusDays(1)) {
+                long salida = fecha.atTime(ruta.getHoraSalida()).toEpochSecond(husoOrigen) / 60;
+                if (salida < inicio || salida > fin || !ruta.operaEn(fecha)
+                        || idsGuardados.contains(ruta.idInstancia(fecha))) {
+                    continue;
+                }
+                instancias.add(ruta.instanciar(fecha));
+            }
+        }
+        return instancias;
+    }
+
+    private PlanDeVuelo instanciaPorId(int id) {
+        RutaVuelo ruta = rutasPorId().get(RutaVuelo.idRutaDeInstancia(id));
+        LocalDate fecha = RutaVuelo.fechaDeInstancia(id);
+        return ruta != null && ruta.operaEn(fecha) ? ruta.instanciar(fecha) : null;
+    }
+
+    private static List<Integer> instanciasFaltantes(List<Integer> vueloIds, List<PlanDeVuelo> encontrados) {
+        Set<Integer> idsEncontrados = new HashSet<>();
+        for (PlanDeVuelo plan : encontrados) {
+            idsEncontrados.add(plan.getId());
+        }
+        List<Integer> faltantes = new ArrayList<>();
+        for (Integer id : new LinkedHashSet<>(vueloIds)) {
+            if (RutaVuelo.esIdInstancia(id) && !idsEncontrados.contains(id)) {
+                faltantes.add(id);
+            }
+        }
+        return faltantes;
     }
 }
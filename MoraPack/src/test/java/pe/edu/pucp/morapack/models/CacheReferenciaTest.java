@@ -0,0 +1,133 @@
+package pe.edu.pucp.morapack.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheReferenciaTest {
+
+	private static class Elemento {
+		private final Integer id;
+		private String codigo;
+		private int valor;
+
+		Elemento(Integer id, String codigo, int valor) {
+			this.id = id;
+			this.codigo = codigo;
+			this.valor = valor;
+		}
+
+		Integer getId() {
+			return id;
+		}
+
+		String getCodigo() {
+			return codigo;
+		}
+
+		Elemento copiar() {
+			return new Elemento(id, codigo, valor);
+		}
+	}
+
+	private final List<Elemento> enBD = new ArrayList<>();
+	private int cargasCompletas = 0;
+	private int lecturas = 0;
+
+	private final CacheReferencia<Elemento> cache = new CacheReferencia<>(Elemento::getId, Elemento::getCodigo,
+			Elemento::copiar);
+
+	private Iterable<Elemento> cargarTodos() {
+		cargasCompletas++;
+		List<Elemento> copia = new ArrayList<>();
+		for (Elemento elemento : enBD) {
+			copia.add(elemento.copiar());
+		}
+		return copia;
+	}
+
+	private Optional<Elemento> leerPorId(Integer id) {
+		lecturas++;
+		return enBD.stream().filter(e -> e.getId().equals(id)).findFirst().map(Elemento::copiar);
+	}
+
+	private Optional<Elemento> leerPorCodigo(String codigo) {
+		lecturas++;
+		return enBD.stream().filter(e -> e.getCodigo().equals(codigo)).findFirst().map(Elemento::copiar);
+	}
+
+	@Test
+	void cargaTodoUnaSolaVezYOrdenaPorId() {
+		enBD.add(new Elemento(3, "C", 0));
+		enBD.add(new Elemento(1, "A", 0));
+		enBD.add(new Elemento(2, "B", 0));
+
+		List<Elemento> primera = cache.todos(this::cargarTodos);
+		cache.todos(this::cargarTodos);
+		cache.porId(2, this::cargarTodos, this::leerPorId);
+		cache.porClave("A", this::cargarTodos, this::leerPorCodigo);
+
+		assertEquals(1, cargasCompletas);
+		assertEquals(0, lecturas);
+		assertEquals(List.of(1, 2, 3), primera.stream().map(Elemento::getId).toList());
+	}
+
+	@Test
+	void fallosSeLeenDeBDYQuedanEnCache() {
+		cache.todos(this::cargarTodos);
+		enBD.add(new Elemento(7, "G", 0));
+
+		assertTrue(cache.porId(7, this::cargarTodos, this::leerPorId).isPresent());
+		assertTrue(cache.porClave("G", this::cargarTodos, this::leerPorCodigo).isPresent());
+		assertFalse(cache.porId(8, this::cargarTodos, this::leerPorId).isPresent());
+		assertFalse(cache.porId(null, this::cargarTodos, this::leerPorId).isPresent());
+
+		assertEquals(2, lecturas); // 7 una vez (luego en caché) y 8
+	}
+
+	@Test
+	void devuelveCopiasQueNoAlteranLaCache() {
+		enBD.add(new Elemento(1, "A", 5));
+
+		Elemento primero = cache.porId(1, this::cargarTodos, this::leerPorId).orElseThrow();
+		primero.valor = 99;
+		Elemento segundo = cache.porClave("A", this::cargarTodos, this::leerPorCodigo).orElseThrow();
+
+		assertNotSame(primero, segundo);
+		assertEquals(5, segundo.valor);
+		assertNotSame(cache.todos(this::cargarTodos).get(0), cache.todos(this::cargarTodos).get(0));
+	}
+
+	@Test
+	void guardarReemplazaLaClaveAnterior() {
+		enBD.add(new Elemento(1, "A", 0));
+		cache.todos(this::cargarTodos);
+
+		cache.guardar(new Elemento(1, "Z", 4));
+
+		assertEquals(4, cache.porClave("Z", this::cargarTodos, this::leerPorCodigo).orElseThrow().valor);
+		assertEquals("Z", cache.porId(1, this::cargarTodos, this::leerPorId).orElseThrow().getCodigo());
+		// "A" ya no está en caché y en BD tampoco se encuentra por ese código
+		enBD.get(0).codigo = "Z";
+		assertFalse(cache.porClave("A", this::cargarTodos, this::leerPorCodigo).isPresent());
+	}
+
+	@Test
+	void invalidarObligaARecargar() {
+		enBD.add(new Elemento(1, "A", 5));
+		cache.todos(this::cargarTodos);
+		enBD.get(0).valor = 0; // p. ej. un UPDATE nativo
+
+		cache.invalidar();
+
+		assertEquals(0, cache.porId(1, this::cargarTodos, this::leerPorId).orElseThrow().valor);
+		assertEquals(2, cargasCompletas);
+	}
+}
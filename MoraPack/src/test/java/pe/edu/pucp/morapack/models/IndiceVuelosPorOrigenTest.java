@@ -0,0 +1,82 @@
+package pe.edu.pucp.morapack.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndiceVuelosPorOrigenTest {
+
+	private static final ZonedDateTime INICIO = ZonedDateTime.of(2025, 1, 2, 0, 0, 0, 0, ZoneOffset.UTC);
+	private static final int LIMA = 1;
+	private static final int BRUSELAS = 2;
+
+	private static PlanDeVuelo vuelo(int id, int origen, int horaSalida, int horasVuelo) {
+		return PlanDeVuelo.builder()
+				.id(id)
+				.ciudadOrigen(origen)
+				.zonedHoraOrigen(INICIO.plusHours(horaSalida))
+				.zonedHoraDestino(INICIO.plusHours(horaSalida + horasVuelo))
+				.build();
+	}
+
+	private static long minutos(int hora) {
+		return INICIO.plusHours(hora).toEpochSecond() / 60;
+	}
+
+	@Test
+	void agrupaPorOrigenEnOrdenDeDespegue() {
+		IndiceVuelosPorOrigen indice = new IndiceVuelosPorOrigen();
+		indice.agregar(List.of(vuelo(1, LIMA, 1, 8), vuelo(2, BRUSELAS, 2, 3), vuelo(3, LIMA, 5, 2)));
+
+		assertEquals(3, indice.getCantidadVuelos());
+		assertEquals(List.of(1, 3), indice.getVuelosPorOrigen().get(LIMA).stream().map(PlanDeVuelo::getId).toList());
+		assertEquals(List.of(2), indice.getVuelosPorOrigen().get(BRUSELAS).stream().map(PlanDeVuelo::getId).toList());
+		assertEquals(minutos(1), indice.getPrimeraSalida());
+		assertEquals(minutos(9), indice.getUltimaLlegada());
+	}
+
+	@Test
+	void elTramoNuevoSeAgregaAlFinalDeCadaOrigen() {
+		IndiceVuelosPorOrigen indice = new IndiceVuelosPorOrigen();
+		indice.agregar(List.of(vuelo(1, LIMA, 1, 2), vuelo(2, BRUSELAS, 2, 2)));
+		indice.agregar(List.of(vuelo(3, BRUSELAS, 6, 2), vuelo(4, LIMA, 7, 12)));
+
+		assertEquals(List.of(1, 4), indice.getVuelosPorOrigen().get(LIMA).stream().map(PlanDeVuelo::getId).toList());
+		assertEquals(List.of(2, 3), indice.getVuelosPorOrigen().get(BRUSELAS).stream().map(PlanDeVuelo::getId).toList());
+		assertEquals(minutos(19), indice.getUltimaLlegada());
+	}
+
+	@Test
+	void descartaSoloLosQueYaDespegaron() {
+		IndiceVuelosPorOrigen indice = new IndiceVuelosPorOrigen();
+		indice.agregar(List.of(vuelo(1, LIMA, 1, 2), vuelo(2, BRUSELAS, 2, 2), vuelo(3, LIMA, 4, 2),
+				vuelo(4, BRUSELAS, 6, 2)));
+
+		assertEquals(2, indice.descartarAntesDe(INICIO.plusHours(4)));
+
+		assertEquals(2, indice.getCantidadVuelos());
+		assertEquals(List.of(3), indice.getVuelosPorOrigen().get(LIMA).stream().map(PlanDeVuelo::getId).toList());
+		assertEquals(List.of(4), indice.getVuelosPorOrigen().get(BRUSELAS).stream().map(PlanDeVuelo::getId).toList());
+		assertEquals(minutos(4), indice.getPrimeraSalida());
+	}
+
+	@Test
+	void unOrigenSinVuelosPendientesSaleDelIndice() {
+		IndiceVuelosPorOrigen indice = new IndiceVuelosPorOrigen();
+		indice.agregar(List.of(vuelo(1, LIMA, 1, 2), vuelo(2, BRUSELAS, 3, 2)));
+
+		indice.descartarAntesDe(INICIO.plusHours(2));
+
+		assertFalse(indice.getVuelosPorOrigen().containsKey(LIMA));
+		assertEquals(minutos(3), indice.getPrimeraSalida());
+
+		indice.descartarAntesDe(INICIO.plusHours(5));
+		assertTrue(indice.estaVacio());
+	}
+}
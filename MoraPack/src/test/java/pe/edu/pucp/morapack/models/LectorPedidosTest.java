@@ -0,0 +1,97 @@
+package pe.edu.pucp.morapack.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LectorPedidosTest {
+
+	private final List<String> leidos = new ArrayList<>();
+
+	private LectorPedidos.Resultado leer(String contenido) {
+		ByteBuffer buffer = ByteBuffer.wrap(contenido.getBytes(StandardCharsets.US_ASCII));
+		// El registro se reutiliza entre líneas: se copia lo que interesa
+		return LectorPedidos.leer(buffer, r -> leidos.add(r.getIdEnvioPorAeropuerto() + "|" + r.getFechaIngreso()
+				+ "|" + r.getCodigoDestino() + "|" + r.getNumProductos() + "|" + r.getClienteTexto()));
+	}
+
+	@Test
+	void decodificaUnRegistroCompleto() {
+		LectorPedidos.Resultado resultado = leer("000000001-20250102-03-04-SVMI-005-0012345\n");
+
+		assertEquals(1, resultado.getRegistros());
+		assertEquals(0, resultado.getErrores());
+		assertEquals(List.of("1|" + LocalDateTime.of(2025, 1, 2, 3, 4) + "|"
+				+ LectorPedidos.empaquetarCodigo("SVMI") + "|5|0012345"), leidos);
+	}
+
+	@Test
+	void aceptaFinesDeLineaWindowsYUltimaLineaSinSalto() {
+		LectorPedidos.Resultado resultado = leer(
+				"000000001-20250102-03-04-SVMI-005-0012345\r\n000000002-20250102-23-59-EBCI-100-0000001");
+
+		assertEquals(2, resultado.getLineas());
+		assertEquals(2, resultado.getRegistros());
+		assertEquals(0, resultado.getErrores());
+	}
+
+	@Test
+	void diaInexistenteDelMesEsError() {
+		LectorPedidos.Resultado resultado = leer("000000001-20250231-10-00-SVMI-005-0012345\n"
+				+ "000000002-20250431-10-00-SVMI-005-0012345\n"
+				+ "000000003-20250229-10-00-SVMI-005-0012345\n");
+
+		assertEquals(3, resultado.getLineas());
+		assertEquals(0, resultado.getRegistros());
+		assertEquals(3, resultado.getErrores());
+	}
+
+	@Test
+	void aceptaElVeintinueveDeFebreroEnAnhoBisiesto() {
+		LectorPedidos.Resultado resultado = leer("000000001-20240229-10-00-SVMI-005-0012345\n");
+
+		assertEquals(1, resultado.getRegistros());
+		assertEquals(0, resultado.getErrores());
+	}
+
+	@Test
+	void lineasMalFormadasSeCuentanComoError() {
+		LectorPedidos.Resultado resultado = leer("000000001-20251302-10-00-SVMI-005-0012345\n" // mes 13
+				+ "000000002-20250102-24-00-SVMI-005-0012345\n" // hora 24
+				+ "000000003-20250102-10-60-SVMI-005-0012345\n" // minuto 60
+				+ "000000004-20250102-10-00-SVMIX-005-0012345\n" // código de 5 caracteres
+				+ "00000000A-20250102-10-00-SVMI-005-0012345\n" // ID no numérico
+				+ "000000006-20250102-10-00-SVMI-005\n" // sin cliente
+				+ "000000007-20250102-10-00-SVMI-005-0012345\n");
+
+		assertEquals(7, resultado.getLineas());
+		assertEquals(1, resultado.getRegistros());
+		assertEquals(6, resultado.getErrores());
+		assertEquals(7, Long.parseLong(leidos.get(0).split("\\|")[0]));
+	}
+
+	@Test
+	void posicionFinalApuntaAlFinDelBuffer() {
+		String contenido = "000000001-20250102-03-04-SVMI-005-0012345\n\n";
+		LectorPedidos.Resultado resultado = leer(contenido);
+
+		assertEquals(1, resultado.getLineas());
+		assertEquals(contenido.length(), resultado.getPosicionFinal());
+	}
+
+	@Test
+	void posicionTrasLineasTraduceLineasSaltadasABytes() {
+		String linea = "000000001-20250102-03-04-SVMI-005-0012345\n";
+		ByteBuffer buffer = ByteBuffer.wrap((linea + linea + linea).getBytes(StandardCharsets.US_ASCII));
+
+		assertEquals(0, LectorPedidos.posicionTrasLineas(buffer, 0));
+		assertEquals(2L * linea.length(), LectorPedidos.posicionTrasLineas(buffer, 2));
+		assertEquals(3L * linea.length(), LectorPedidos.posicionTrasLineas(buffer, 10));
+	}
+}
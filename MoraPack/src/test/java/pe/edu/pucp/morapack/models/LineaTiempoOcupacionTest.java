@@ -0,0 +1,109 @@
+package pe.edu.pucp.morapack.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LineaTiempoOcupacionTest {
+
+	private static final ZonedDateTime INICIO = ZonedDateTime.of(2025, 1, 2, 0, 0, 0, 0, ZoneOffset.UTC);
+	private static final long INICIO_EPOCH_MINUTOS = INICIO.toEpochSecond() / 60;
+	private static final int RANURAS = 144; // un día
+
+	private static LineaTiempoOcupacion lineaDeUnDia() {
+		return new LineaTiempoOcupacion(INICIO_EPOCH_MINUTOS, RANURAS);
+	}
+
+	private static ZonedDateTime ranura(int indice) {
+		return INICIO.plusMinutes((long) indice * LineaTiempoOcupacion.MINUTOS_POR_RANURA);
+	}
+
+	@Test
+	void sinReservasElMaximoEsCero() {
+		assertEquals(0, lineaDeUnDia().maximo(INICIO, INICIO.plusHours(24)));
+	}
+
+	@Test
+	void sumaSoloEnElIntervalo() {
+		LineaTiempoOcupacion linea = lineaDeUnDia();
+		linea.sumar(INICIO.plusHours(2), INICIO.plusHours(4), 7);
+
+		assertEquals(7, linea.maximo(INICIO.plusHours(3), INICIO.plusHours(3).plusMinutes(10)));
+		assertEquals(7, linea.maximo(INICIO, INICIO.plusHours(24)));
+		assertEquals(0, linea.maximo(INICIO, INICIO.plusHours(2)));
+		// "hasta" es exclusivo: la ranura que empieza a las 4h queda libre
+		assertEquals(0, linea.maximo(INICIO.plusHours(4), INICIO.plusHours(6)));
+	}
+
+	@Test
+	void intervaloParcialTocaLaRanuraCompleta() {
+		LineaTiempoOcupacion linea = lineaDeUnDia();
+		linea.sumar(INICIO.plusMinutes(13), INICIO.plusMinutes(15), 4);
+
+		assertEquals(4, linea.maximo(INICIO.plusMinutes(10), INICIO.plusMinutes(11)));
+		assertEquals(4, linea.maximo(INICIO.plusMinutes(19), INICIO.plusMinutes(25)));
+		assertEquals(0, linea.maximo(INICIO.plusMinutes(20), INICIO.plusMinutes(30)));
+	}
+
+	@Test
+	void intervalosSolapadosSeAcumulan() {
+		LineaTiempoOcupacion linea = lineaDeUnDia();
+		linea.sumar(INICIO, INICIO.plusHours(2), 5);
+		linea.sumar(INICIO.plusHours(1), INICIO.plusHours(3), 3);
+
+		assertEquals(5, linea.maximo(INICIO, INICIO.plusHours(1)));
+		assertEquals(8, linea.maximo(INICIO.plusHours(1), INICIO.plusHours(2)));
+		assertEquals(3, linea.maximo(INICIO.plusHours(2), INICIO.plusHours(3)));
+		assertEquals(8, linea.maximo(INICIO, INICIO.plusHours(24)));
+	}
+
+	@Test
+	void cantidadNegativaLibera() {
+		LineaTiempoOcupacion linea = lineaDeUnDia();
+		linea.sumar(INICIO.plusHours(5), INICIO.plusHours(8), 10);
+		linea.sumar(INICIO.plusHours(5), INICIO.plusHours(8), -10);
+
+		assertEquals(0, linea.maximo(INICIO, INICIO.plusHours(24)));
+	}
+
+	@Test
+	void instantesFueraDeLaVentanaSeRecortan() {
+		LineaTiempoOcupacion linea = lineaDeUnDia();
+		linea.sumar(INICIO.minusHours(3), INICIO.minusHours(1), 2);
+		linea.sumar(INICIO.plusDays(2), INICIO.plusDays(3), 6);
+
+		assertEquals(2, linea.maximo(INICIO, INICIO.plusMinutes(10)));
+		assertEquals(6, linea.maximo(ranura(RANURAS - 1), ranura(RANURAS)));
+		assertEquals(0, linea.maximo(INICIO.plusHours(1), INICIO.plusHours(23)));
+	}
+
+	@Test
+	void coincideConUnArregloPorRanura() {
+		LineaTiempoOcupacion linea = lineaDeUnDia();
+		int[] ocupacion = new int[RANURAS];
+		Random random = new Random(42);
+
+		for (int operacion = 0; operacion < 2000; operacion++) {
+			int desde = random.nextInt(RANURAS);
+			int hasta = desde + random.nextInt(RANURAS - desde); // ranura final incluida
+			if (random.nextBoolean()) {
+				int cantidad = random.nextInt(41) - 20;
+				linea.sumar(ranura(desde), ranura(hasta + 1), cantidad);
+				for (int i = desde; i <= hasta; i++) {
+					ocupacion[i] += cantidad;
+				}
+			} else {
+				int esperado = Integer.MIN_VALUE;
+				for (int i = desde; i <= hasta; i++) {
+					esperado = Math.max(esperado, ocupacion[i]);
+				}
+				assertEquals(esperado, linea.maximo(ranura(desde), ranura(hasta + 1)),
+						"máximo de las ranuras " + desde + ".." + hasta);
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package pe.edu.pucp.morapack.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RutaCodificadaTest {
+
+	private static PlanDeVuelo vuelo(Integer id) {
+		PlanDeVuelo vuelo = new PlanDeVuelo();
+		vuelo.setId(id);
+		return vuelo;
+	}
+
+	@Test
+	void codificaEnBase36ConComasAlInicioYAlFinal() {
+		assertEquals(",k3f,", RutaCodificada.codificarIds(List.of(Integer.parseInt("k3f", 36))));
+		assertEquals(",1,a,-4ysk2o,", RutaCodificada.codificarIds(List.of(1, 10, -Integer.parseInt("4ysk2o", 36))));
+	}
+
+	@Test
+	void codificarUsaLosIdsDeLaRutaEnOrden() {
+		List<PlanDeVuelo> ruta = List.of(vuelo(35), vuelo(-1200045), vuelo(7));
+
+		assertEquals(RutaCodificada.codificarIds(List.of(35, -1200045, 7)), RutaCodificada.codificar(ruta));
+	}
+
+	@Test
+	void decodificarDevuelveLosIdsOriginales() {
+		List<Integer> ids = List.of(1, 35, 36, Integer.MAX_VALUE, -1, -(123 * 100000 + 20102), Integer.MIN_VALUE + 1);
+
+		assertEquals(ids, RutaCodificada.decodificar(RutaCodificada.codificarIds(ids)));
+	}
+
+	@Test
+	void rutaVaciaONulaNoSeCodifica() {
+		assertNull(RutaCodificada.codificar(null));
+		assertNull(RutaCodificada.codificar(new ArrayList<>()));
+		assertNull(RutaCodificada.codificarIds(List.of()));
+		assertTrue(RutaCodificada.decodificar(null).isEmpty());
+	}
+
+	@Test
+	void vueloSinIdEsUnError() {
+		assertThrows(IllegalArgumentException.class,
+				() -> RutaCodificada.codificarIds(Arrays.asList(1, null, 3)));
+	}
+}